@@ -8,6 +8,7 @@ package main;
  * Default is GUI
  * CliWithJline if command line argument is -cli
  * Pure compliant CLI if argument is -clisafe or consoleless system
+ * Batch of commands if argument is -batch=file, or -batch to read standard input
  * 
  * @author  Yeo Kheng Meng
  */ 
@@ -15,10 +16,16 @@ package main;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import main.logic.CommandHistory;
+import main.logic.Logic;
+import main.ui.BatchCli;
 import main.ui.Cli;
 import main.ui.CliWithJline;
 import main.ui.GuiMain;
 import main.ui.GuiTrayIcon;
+import main.ui.GuiUpdate;
+import main.storage.Database;
+import main.storage.FileManagement;
 import main.ui.UI;
 
 
@@ -35,6 +42,8 @@ public class DoItStart {
 		boolean tray = false;
 		boolean cli = false;
 		boolean clisafe = false;
+		boolean batch = false;
+		String batchFilename = null;
 		
 
 		for(String params : args){
@@ -42,6 +51,27 @@ public class DoItStart {
 				toLog = true;
 			}
 			
+			if(params.equals("-journal")){
+				FileManagement.journalOn = true;
+			}
+			
+			if(params.equals("-binary")){
+				FileManagement.binaryOn = true;
+			}
+			
+			if(params.startsWith("-groupcommit")){
+				FileManagement.durability = FileManagement.Durability.GROUP_COMMIT;
+				setGroupCommitDelay(params);
+			}
+			
+			if(params.startsWith("-history=")){
+				setHistoryBudget(params);
+			}
+			
+			if(params.equals("-relaxed")){
+				FileManagement.durability = FileManagement.Durability.RELAXED;
+			}
+			
 			if(params.equals("-tray")){
 				tray = true;
 				defaultNoParams = false;
@@ -52,6 +82,12 @@ public class DoItStart {
 				defaultNoParams = false;
 			}
 			
+			if(params.equals("-batch") || params.startsWith("-batch=")){
+				batch = true;
+				batchFilename = getBatchFilename(params);
+				defaultNoParams = false;
+			}
+			
 			if(params.equals("-clisafe")){
 				clisafe = true;
 				defaultNoParams = false;
@@ -73,6 +109,12 @@ public class DoItStart {
 		
 		UI doITUi;
 		
+		if (defaultNoParams || tray) {
+			//Windows are shown at once while the tasks load. Commands typed meanwhile are queued
+			Logic.getInstance().queueUntilLoaded(Database.loadInBackground());
+			GuiUpdate.applyQueuedCommandsWhenLoaded();
+		}
+		
 		if (defaultNoParams) {
 			log.info("Start tray icon");
 			UI trayIcon = GuiTrayIcon.getInstance();
@@ -85,6 +127,13 @@ public class DoItStart {
 			doITUi = GuiTrayIcon.getInstance();
 			doITUi.runUI();	
 		
+		} else if (batch) {
+			log.info("Start batch mode");
+			//The whole batch must run against the loaded tasks
+			Database.getInstance();
+			doITUi = new BatchCli(batchFilename);
+			doITUi.runUI();	
+		
 		} else if (cli && isConsoleAttached()) {
 			log.info("Start CliWithJline");
 			doITUi = new CliWithJline();
@@ -103,6 +152,46 @@ public class DoItStart {
 
 	}
 
+	/**
+	 * To read the optional group commit delay in milliseconds given as "-groupcommit=delay"
+	 */
+	private static void setGroupCommitDelay(String params) {
+		String[] delay = params.split("=", 2);
+		
+		if(delay.length == 2){
+			try {
+				FileManagement.groupCommitDelay = Long.parseLong(delay[1]);
+			} catch (NumberFormatException e) {
+			}
+		}
+	}
+
+	/**
+	 * To read the optional file of the batch given as "-batch=file"
+	 * 
+	 * @return the file name, or null to read standard input
+	 */
+	private static String getBatchFilename(String params) {
+		String[] filename = params.split("=", 2);
+		
+		if((filename.length == 2) && !filename[1].isEmpty()){
+			return filename[1];
+		}
+		return null;
+	}
+
+	/**
+	 * To read the estimated bytes the command history keeps in memory given as "-history=bytes"
+	 */
+	private static void setHistoryBudget(String params) {
+		String[] budget = params.split("=", 2);
+		
+		try {
+			CommandHistory.memoryBudgetBytes = Long.parseLong(budget[1]);
+		} catch (NumberFormatException e) {
+		}
+	}
+
 	/**
 	 * To check if Terminal Window is attached to DoIt.
 	 * <p>
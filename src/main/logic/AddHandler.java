@@ -1,6 +1,7 @@
 package main.logic;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -109,11 +110,14 @@ class AddHandler extends CommandHandler {
 	protected void updateDatabaseNSendToUndoStack()
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException {
-		List<Task> currentTaskList = super.getCurrentTaskList();
 		dataBase.add(newTask);
 		String taskDetails = taskToString(newTask);
 		String undoMessage = "addition of task \"" + taskDetails + "\"";
-		super.pushUndoStatMesNTaskList(undoMessage, currentTaskList);
+
+		List<Task> addedTasks = new ArrayList<Task>();
+		addedTasks.add(newTask);
+		super.pushUndoStatMesNChanges(undoMessage, addedTasks,
+				new ArrayList<Task>());
 
 	}
 }
@@ -0,0 +1,86 @@
+//@author A0081007U
+package main.logic;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.joda.time.DateTime;
+
+import com.joestelmach.natty.DateGroup;
+
+import main.logic.exceptions.CannotParseDateException;
+import main.shared.NattyParserWrapper;
+
+/**
+ * An object of this class parse the "as of date" ending a list or search
+ * command, such as "list done as of last friday". The rest of the arguments is
+ * left for the parser of the command itself. The date is read by Natty.
+ *
+ */
+public class AsOfParser extends CommandParser {
+
+	private static final Pattern AS_OF = Pattern.compile(
+			"(?i)(^|\\s)as of\\s+(\\S.*)$");
+
+	private String remainingArguments;
+	private String dateText = null;
+	private DateTime moment;
+
+	/**
+	 * Constructor of the class. Splits the "as of" part from the arguments at
+	 * once so the command parser can be given the rest.
+	 *
+	 * @param arguments
+	 *            : argument string associating with the command
+	 */
+	public AsOfParser(String arguments) {
+		super(arguments);
+		Matcher matcher = AS_OF.matcher(arguments);
+
+		if (matcher.find()) {
+			remainingArguments = arguments.substring(INT_0, matcher.start())
+					.trim();
+			dateText = matcher.group(INT_2).trim();
+		} else {
+			remainingArguments = arguments;
+		}
+	}
+
+	/**
+	 * This method override the parse method in command parser class.
+	 *
+	 * @throws CannotParseDateException
+	 *             in case the date after "as of" cannot be parsed.
+	 */
+	@Override
+	public void parse() throws CannotParseDateException {
+		if (!isAsOf()) {
+			return;
+		}
+
+		List<DateGroup> groups = NattyParserWrapper.getInstance()
+				.parseWCurBaseDate(dateText);
+
+		if (groups.isEmpty() || groups.get(INT_0).getDates().isEmpty()) {
+			throw new CannotParseDateException();
+		}
+
+		moment = new DateTime(groups.get(INT_0).getDates().get(INT_0));
+	}
+
+	public boolean isAsOf() {
+		return dateText != null;
+	}
+
+	/**
+	 * @return the arguments without the "as of" part
+	 */
+	public String getRemainingArguments() {
+		return remainingArguments;
+	}
+
+	public DateTime getMoment() {
+		return moment;
+	}
+}
@@ -0,0 +1,57 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import main.shared.LogicToUi;
+import main.storage.WillNotWriteToCorruptFileException;
+
+/**
+ * Each object of this class begins a batch. Commands after it change the tasks
+ * at once, but are only written to the file when the batch is committed, all
+ * in one write. The batch can be undone as one command.
+ *
+ */
+
+public class BeginHandler extends CommandHandler {
+	private static final String MSG_BATCH_BEGUN = "Batch begun. Your changes will be saved"
+			+ " when you commit, or dropped when you rollback.";
+	private static final String ERROR_BATCH_OPEN = "A batch is already open."
+			+ " Please commit or rollback it first.";
+
+	/**
+	 * Constructor of the class.
+	 *
+	 * @param arguments
+	 *            : empty argument since begin command does not need any extra
+	 *            information
+	 */
+	public BeginHandler(String arguments) {
+		super(arguments);
+	}
+
+	/**
+	 * This method overrides the execute method in command handler class.
+	 *
+	 */
+	public LogicToUi execute() {
+		if (history.isInBatch()) {
+			return new LogicToUi(ERROR_BATCH_OPEN);
+		}
+
+		dataBase.beginTransaction();
+		history.beginBatch();
+
+		return new LogicToUi(MSG_BATCH_BEGUN);
+	}
+
+	@Override
+	@Deprecated
+	protected void updateDatabaseNSendToUndoStack()
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		// empty method
+
+	}
+}
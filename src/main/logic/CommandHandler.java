@@ -1,7 +1,7 @@
 package main.logic;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -9,9 +9,12 @@ import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
+import main.shared.ImmutableTask;
 import main.shared.LogicToUi;
 import main.shared.Task;
 import main.storage.Database;
+import main.storage.HistoryEntry;
+import main.storage.TaskUpdate;
 import main.storage.WillNotWriteToCorruptFileException;
 
 //@author A0088427U
@@ -41,9 +44,11 @@ public abstract class CommandHandler {
 	protected static final String ERROR_INDEX_NUMBER_NOT_VALID = "Sorry you did not"
 			+ " provide an index number or the number you provided is not valid."
 			+ " Please try again with a correct number or refresh the list.";
-
-	private static LinkedList<String> undoMsgHistory = new LinkedList<String>();
-	private static LinkedList<List<Task>> undoClones = new LinkedList<List<Task>>();
+	protected static final String ERROR_TIMELINE = "Sorry, I cannot read your past"
+			+ " tasks as the timeline file cannot be used.";
+	protected static final String MSG_NOTHING_CHANGED = "None of the tasks %1$s"
+			+ " needed to be changed.";
+	protected static final String MSG_TASKS_CHANGED = "%1$d task(s) %2$s %3$s.";
 
 	protected static Database dataBase = Database.getInstance();
 	protected static LastShownToUI lastShownObject = LastShownToUI
@@ -51,10 +56,18 @@ public abstract class CommandHandler {
 	protected static CommandHandler latestListingHandlerForUI = new ListHandler(
 			"");
 	protected static CommandHandler latestSortHandlerForUI = new SortHandler("");
+	protected static ResultCache resultCache = ResultCache.getInstance();
+	protected static CommandHistory history = CommandHistory.getInstance();
 
 	protected LogicToUi feedback; // All handlers will return a LogicToUi
 									// object.
 
+	//@author A0081007U
+	// Set when a changing command finds its tasks already as asked, which is
+	// not a failure even though nothing is recorded
+	private boolean isNothingToChange = false;
+	//@author A0088427U
+
 	/**
 	 * Empty constructor, to be overriden by handlers' constructor
 	 * 
@@ -72,43 +85,106 @@ public abstract class CommandHandler {
 	public abstract LogicToUi execute();
 
 	/**
-	 * This method push the latest command to undo stack.
+	 * This method push the latest command to the command history, with only
+	 * the tasks it changed.
 	 * 
 	 * @param undoMsg
 	 *            : undo message associating with the latest command
-	 * @param currentCopy
-	 *            : clone of the current databse.
+	 * @param addedTasks
+	 *            : tasks the command added.
+	 * @param removedTasks
+	 *            : tasks the command removed, as they were before.
 	 */
-	protected void pushUndoStatMesNTaskList(String undoMsg,
-			List<Task> currentCopy) {
-		undoMsgHistory.push(undoMsg);
-		undoClones.push(currentCopy);
+	protected void pushUndoStatMesNChanges(String undoMsg,
+			List<Task> addedTasks, List<Task> removedTasks) {
+		history.record(undoMsg, addedTasks, removedTasks);
 
 	}
 
 	/**
-	 * Get current database
+	 * This method push the latest command to the command history when it
+	 * replaced one task with a changed copy.
 	 * 
-	 * @return current task list.
+	 * @param undoMsg
+	 *            : undo message associating with the latest command
+	 * @param before
+	 *            : the task before the command.
+	 * @param after
+	 *            : the task after the command.
 	 */
-	protected List<Task> getCurrentTaskList() {
-		return dataBase.getAll();
-	}
+	protected void pushUndoStatMesNUpdate(String undoMsg, Task before,
+			Task after) {
+		List<Task> addedTasks = new ArrayList<Task>();
+		addedTasks.add(after);
 
-	protected List<Task> peekUndoClones() {
-		return undoClones.peek();
-	}
+		List<Task> removedTasks = new ArrayList<Task>();
+		removedTasks.add(before);
 
-	protected void popUndoClones() {
-		undoClones.pop();
+		pushUndoStatMesNChanges(undoMsg, addedTasks, removedTasks);
 	}
 
-	protected int undoStepsRemaining() {
-		return undoClones.size();
+	//@author A0081007U
+	/**
+	 * Changes every task a selection picks as one change to the database, and
+	 * pushes the change to the command history if any task was changed.
+	 * 
+	 * @param selection
+	 *            : the parsed selection of the tasks
+	 * @param update
+	 *            : the change made to each picked task
+	 * @param undoMsg
+	 *            : undo message associating with the command
+	 * @return the number of tasks changed or deleted
+	 */
+	protected int updateSelection(final SelectionParser selection,
+			final TaskUpdate update, String undoMsg)
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		TaskUpdate pickedUpdate = new TaskUpdate() {
+			@Override
+			public Task apply(ImmutableTask current) {
+				if (!selection.isPicked(current)) {
+					return current;
+				}
+				return update.apply(current);
+			}
+		};
+
+		HistoryEntry changes;
+		if (selection.isWhere()) {
+			changes = dataBase.updateWhere(selection.getTerms(), pickedUpdate,
+					undoMsg);
+		} else {
+			changes = dataBase.updateSerials(selection.getSerials(),
+					pickedUpdate, undoMsg);
+		}
+
+		int changedCount = changes.getRemovedTasks().size();
+		if (changedCount > 0) {
+			pushUndoStatMesNChanges(undoMsg, changes.getAddedTasks(),
+					changes.getRemovedTasks());
+		}
+		return changedCount;
 	}
 
-	protected String popAndGetPrevUndoMsg() {
-		return undoMsgHistory.pop();
+	/**
+	 * @param changedCount
+	 *            : the number of tasks changed, given by updateSelection
+	 * @param selection
+	 *            : the parsed selection of the tasks
+	 * @param changeDescription
+	 *            : what was done to the tasks, such as "have been deleted"
+	 * @return feedback telling how many of the picked tasks were changed
+	 */
+	protected LogicToUi selectionFeedback(int changedCount,
+			SelectionParser selection, String changeDescription) {
+		if (changedCount == 0) {
+			setNothingToChange();
+			return new LogicToUi(String.format(MSG_NOTHING_CHANGED,
+					selection.getDescription()));
+		}
+		return new LogicToUi(String.format(MSG_TASKS_CHANGED, changedCount,
+				selection.getDescription(), changeDescription));
 	}
 
 	/**
@@ -147,6 +223,28 @@ public abstract class CommandHandler {
 		return LINE_DATE_FORMATTER.print(inputDate);
 	}
 
+	/**
+	 * Tells what the result of a listing command is worked out from, so the
+	 * result can be kept and shown again while the database is unchanged.
+	 * 
+	 * @return the key of the result, or null if it cannot be kept
+	 */
+	protected ResultCache.Key cacheKey() {
+		return null;
+	}
+
+	/**
+	 * @return true if the command succeeded without changing anything, as its
+	 *         tasks were already as asked, such as marking a done task as done
+	 */
+	boolean isNothingToChange() {
+		return isNothingToChange;
+	}
+
+	protected void setNothingToChange() {
+		isNothingToChange = true;
+	}
+
 	protected abstract void updateDatabaseNSendToUndoStack()
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException;
@@ -0,0 +1,282 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import main.LogHandler;
+import main.shared.Task;
+import main.storage.Database;
+import main.storage.FileManagement;
+import main.storage.HistoryEntry;
+import main.storage.HistoryFile;
+
+/**
+ * Keeps the commands that changed the database so that they can be undone and
+ * redone.
+ *
+ * Every command is written to the history file at once, so undo still works
+ * after a restart. Only the newest commands are also kept in memory, up to a
+ * budget in estimated bytes. Older commands are read back from the file when
+ * undo reaches them. The file itself drops commands once they are too old or
+ * it grows too large.
+ *
+ * Undone commands are kept in memory for redo, within the same budget, and
+ * are dropped once a new command changes the database. If the history file
+ * cannot be used, the history is kept in memory only. If another copy of DoIt
+ * holds the database, the history file is only read and never pruned.
+ *
+ * Commands run in a batch are not recorded one by one. The batch is recorded
+ * as one command once it is committed, so it is undone as a unit.
+ *
+ * This class implements the Singleton pattern since there is only one history
+ * of the one database.
+ */
+public class CommandHistory {
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	// Estimated bytes kept in memory for each of undo and redo. Change with
+	// "-history=bytes" argument
+	public static long memoryBudgetBytes = 256 * 1024;
+	public static long maxFileBytes = 1024 * 1024;
+	public static int maxAgeDays = 30;
+
+	private static CommandHistory theOne = null;
+
+	private Logger log = LogHandler.getLogInstance();
+
+	// Null if the history file cannot be used
+	private HistoryFile historyFile;
+
+	// Newest first. With a history file these are the newest entries in it.
+	private LinkedList<HistoryEntry> recentUndos = new LinkedList<HistoryEntry>();
+	private long recentUndoBytes = 0;
+
+	// Newest first
+	private LinkedList<HistoryEntry> redos = new LinkedList<HistoryEntry>();
+	private long redoBytes = 0;
+
+	// Number of commands that changed the database in the open batch, -1 if there is none
+	private int batchCommands = -1;
+
+	static CommandHistory getInstance() {
+		if (theOne == null) {
+			theOne = new CommandHistory();
+		}
+		return theOne;
+	}
+
+	private CommandHistory() {
+		// The database file is opened and locked first
+		Database.getInstance();
+
+		FileManagement fileMgmt = FileManagement.getInstance();
+		File file = new File(fileMgmt.historyFilename);
+		historyFile = new HistoryFile(file);
+
+		try {
+			// Another copy of DoIt holding the database also owns its history
+			if (fileMgmt.isHoldingFileLock()) {
+				historyFile.open(maxFileBytes, maxAgeDays * MILLIS_PER_DAY);
+			} else {
+				historyFile.openReadOnly();
+			}
+		} catch (IOException e) {
+			log.warning("Cannot open history file, history kept in memory only " + e);
+			historyFile.close();
+			historyFile = null;
+		}
+	}
+
+	/**
+	 * Records a command that changed the database. Commands undone before it
+	 * can no longer be redone.
+	 *
+	 * @param message
+	 *            : undo message associating with the command
+	 * @param addedTasks
+	 *            : tasks the command added.
+	 * @param removedTasks
+	 *            : tasks the command removed, as they were before.
+	 */
+	void record(String message, List<Task> addedTasks, List<Task> removedTasks) {
+		if (isInBatch()) {
+			batchCommands++;
+			return;
+		}
+
+		pushUndo(new HistoryEntry(message, System.currentTimeMillis(),
+				addedTasks, removedTasks));
+
+		redos.clear();
+		redoBytes = 0;
+	}
+
+	/**
+	 * Starts a batch. Commands recorded from now on are only counted.
+	 */
+	void beginBatch() {
+		assert (!isInBatch());
+		batchCommands = 0;
+	}
+
+	/**
+	 * Ends the open batch, so that the batch itself can be recorded.
+	 *
+	 * @return the number of commands that changed the database in the batch
+	 */
+	int endBatch() {
+		assert (isInBatch());
+		int count = batchCommands;
+		batchCommands = -1;
+		return count;
+	}
+
+	boolean isInBatch() {
+		return batchCommands >= 0;
+	}
+
+	/**
+	 * @return the number of commands that changed the database in the open
+	 *         batch so far
+	 */
+	int getBatchCommands() {
+		return batchCommands;
+	}
+
+	int undoStepsRemaining() {
+		if (historyFile == null) {
+			return recentUndos.size();
+		}
+		return historyFile.size();
+	}
+
+	int redoStepsRemaining() {
+		return redos.size();
+	}
+
+	/**
+	 * @return the newest command that can be undone, or null if there is none.
+	 *         Commands that cannot be read back from the file are dropped.
+	 */
+	HistoryEntry peekUndo() {
+		if (!recentUndos.isEmpty()) {
+			return recentUndos.getFirst();
+		}
+
+		while ((historyFile != null) && (historyFile.size() > 0)) {
+			try {
+				HistoryEntry entry = historyFile.peek();
+				recentUndos.addFirst(entry);
+				recentUndoBytes += entry.getEstimatedBytes();
+				return entry;
+			} catch (IOException e) {
+				log.warning("Dropping unreadable history entry " + e);
+				popFromFile();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Moves the command given by peekUndo to the redo history once it has been
+	 * undone.
+	 */
+	void undone() {
+		HistoryEntry entry = popUndo();
+
+		redos.addFirst(entry);
+		redoBytes += entry.getEstimatedBytes();
+
+		while ((redoBytes > memoryBudgetBytes) && (redos.size() > 1)) {
+			redoBytes -= redos.removeLast().getEstimatedBytes();
+		}
+	}
+
+	/**
+	 * Drops the command given by peekUndo as it can no longer be undone.
+	 */
+	void discardUndo() {
+		popUndo();
+	}
+
+	/**
+	 * @return the command undone last, or null if there is none
+	 */
+	HistoryEntry peekRedo() {
+		return redos.peekFirst();
+	}
+
+	/**
+	 * Moves the command given by peekRedo back to the undo history once it has
+	 * been redone.
+	 */
+	void redone() {
+		HistoryEntry entry = redos.removeFirst();
+		redoBytes -= entry.getEstimatedBytes();
+
+		pushUndo(entry);
+	}
+
+	/**
+	 * Drops the command given by peekRedo as it can no longer be redone.
+	 */
+	void discardRedo() {
+		redoBytes -= redos.removeFirst().getEstimatedBytes();
+	}
+
+	private void pushUndo(HistoryEntry entry) {
+		if (historyFile != null) {
+			try {
+				historyFile.push(entry);
+			} catch (IOException e) {
+				log.warning("Cannot write history file, history kept in memory only " + e);
+				historyFile.close();
+				historyFile = null;
+			}
+		}
+
+		recentUndos.addFirst(entry);
+		recentUndoBytes += entry.getEstimatedBytes();
+
+		// Entries past the budget are still in the file, or are lost without one
+		while ((recentUndoBytes > memoryBudgetBytes) && !recentUndos.isEmpty()) {
+			recentUndoBytes -= recentUndos.removeLast().getEstimatedBytes();
+		}
+
+		// The file may have dropped its oldest entries to stay small
+		while ((historyFile != null) && (recentUndos.size() > historyFile.size())) {
+			recentUndoBytes -= recentUndos.removeLast().getEstimatedBytes();
+		}
+	}
+
+	private HistoryEntry popUndo() {
+		HistoryEntry entry = peekUndo();
+		assert (entry != null);
+
+		recentUndos.removeFirst();
+		recentUndoBytes -= entry.getEstimatedBytes();
+		popFromFile();
+
+		return entry;
+	}
+
+	private void popFromFile() {
+		if (historyFile == null) {
+			return;
+		}
+
+		try {
+			historyFile.pop();
+		} catch (IOException e) {
+			log.warning("Cannot write history file, history kept in memory only " + e);
+			historyFile.close();
+			historyFile = null;
+		}
+	}
+}
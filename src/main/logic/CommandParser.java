@@ -3,6 +3,7 @@ package main.logic;
 import main.logic.exceptions.CannotParseDateException;
 import main.logic.exceptions.CannotPostponeFloatingException;
 import main.logic.exceptions.EmptyDescriptionException;
+import main.logic.exceptions.InvalidSearchQueryException;
 
 //@author A0088427U
 
@@ -39,9 +40,12 @@ public abstract class CommandParser {
 	 * 					parsed.
 	 * @throws CannotPostponeFloatingException in case the user
 	 * 					postpone a floating task.
+	 * @throws InvalidSearchQueryException in case a search query
+	 * 					does not follow the query grammar.
 	 */
 	public abstract void parse() throws EmptyDescriptionException,
-			CannotParseDateException, CannotPostponeFloatingException;
+			CannotParseDateException, CannotPostponeFloatingException,
+			InvalidSearchQueryException;
 
 	protected String removeFirstWord(String string) {
 		return string.replaceFirst(getFirstWord(string), "").trim();
@@ -0,0 +1,86 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import main.shared.LogicToUi;
+import main.storage.HistoryEntry;
+import main.storage.WillNotWriteToCorruptFileException;
+
+/**
+ * Each object of this class commits the open batch. Every change made in the
+ * batch is written to the file in one write, and recorded as one command so
+ * that one undo reverts the whole batch.
+ *
+ */
+
+public class CommitHandler extends CommandHandler {
+	private static final String MSG_BATCH_COMMITTED = "The %1$s has been saved";
+	private static final String MSG_BATCH_ROLLED_BACK = " The batch has been rolled back.";
+	private static final String ERROR_NO_BATCH = "There is no batch to commit.";
+
+	/**
+	 * Constructor of the class.
+	 *
+	 * @param arguments
+	 *            : empty argument since commit command does not need any extra
+	 *            information
+	 */
+	public CommitHandler(String arguments) {
+		super(arguments);
+	}
+
+	/**
+	 * This method overrides the execute method in command handler class.
+	 *
+	 */
+	public LogicToUi execute() {
+		if (!history.isInBatch()) {
+			return new LogicToUi(ERROR_NO_BATCH);
+		}
+
+		String batchMessage = batchToString(history.getBatchCommands());
+
+		try {
+			HistoryEntry batch = dataBase.commitTransaction(batchMessage);
+			history.endBatch();
+
+			if (batch.getTaskCount() > 0) {
+				super.pushUndoStatMesNChanges(batchMessage,
+						batch.getAddedTasks(), batch.getRemovedTasks());
+			}
+			feedback = new LogicToUi(String.format(MSG_BATCH_COMMITTED,
+					batchMessage));
+
+		} catch (IOException e) {
+			// The database has rolled the batch back
+			history.endBatch();
+			feedback = new LogicToUi(ERROR_IO + MSG_BATCH_ROLLED_BACK);
+		} catch (WillNotWriteToCorruptFileException e) {
+			history.endBatch();
+			feedback = new LogicToUi(ERROR_FILE_CORRUPTED + MSG_BATCH_ROLLED_BACK);
+		}
+
+		return feedback;
+	}
+
+	/**
+	 * @return the batch described as the undo message
+	 */
+	static String batchToString(int commands) {
+		if (commands == 1) {
+			return "batch of 1 command";
+		}
+		return "batch of " + commands + " commands";
+	}
+
+	@Override
+	@Deprecated
+	protected void updateDatabaseNSendToUndoStack()
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		// empty method
+
+	}
+}
@@ -1,14 +1,19 @@
 package main.logic;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.joda.time.DateTime;
 
+import main.shared.ImmutableTask;
 import main.shared.LogicToUi;
+import main.shared.SearchQuery;
+import main.shared.SearchTerms;
 import main.shared.Task;
+import main.storage.HistoryEntry;
+import main.storage.TaskUpdate;
 import main.storage.WillNotWriteToCorruptFileException;
 
 //@author A0088427U
@@ -19,6 +24,9 @@ import main.storage.WillNotWriteToCorruptFileException;
  * Each object of this class associates with a delete parser object.
  * DeleteHandler object extract information out of its parser object and execute
  * 
+ * Done tasks, tasks that are over and tasks picked by ranges or "where" are
+ * deleted in one pass over the tasks the database indexes find.
+ * 
  * @author mrlinh
  * 
  */
@@ -31,6 +39,13 @@ public class DeleteHandler extends CommandHandler {
 	private static final String MSG_DONE_DELETED = "All completed tasks have been deleted";
 	private static final String MSG_DELETION_OF_TASK = "deletion of tasks before this moment";
 	private static final String MSG_ALL_DELETED = "All tasks that has ended before this moment have been deleted";
+	private static final String MSG_MANY_DELETED = "have been deleted";
+	private static final TaskUpdate DELETE = new TaskUpdate() {
+		@Override
+		public Task apply(ImmutableTask current) {
+			return null;
+		}
+	};
 	private Task toBeDeleted;
 	private DeleteParser parser;
 
@@ -47,33 +62,32 @@ public class DeleteHandler extends CommandHandler {
 	public LogicToUi execute() {
 
 		try {
-			List<Task> currentTaskList = super.getCurrentTaskList();
-			List<Integer> listOfToBeDeletedSerials = new LinkedList<Integer>();
+			List<Task> deletedTasks = new ArrayList<Task>();
 
 			parser.parse();
 			String undoMessage;
 
-			if (parser.isAll()) {
-				undoMessage = deleteAll();
-
-			} else if (parser.isDone()) {
-				undoMessage = deleteDone(currentTaskList,
-						listOfToBeDeletedSerials);
+			if (parser.isDone()) {
+				deleteDone();
+				return feedback;
 
 			} else if (parser.isOver()) {
-				undoMessage = deleteOver(currentTaskList,
-						listOfToBeDeletedSerials);
+				deleteOver();
+				return feedback;
 
-			} else {
+			} else if (parser.isAll()) {
+				undoMessage = deleteAll(dataBase.viewAll(), deletedTasks);
 
-				if (parser.isOnlyOneIndexFound()) {
-					undoMessage = deleteOne();
-				} else {
-					undoMessage = deleteMultiple();
-				}
+			} else if (parser.isOnlyOneIndexFound()) {
+				undoMessage = deleteOne(deletedTasks);
 
+			} else {
+				deleteSelection();
+				return feedback;
 			}
-			super.pushUndoStatMesNTaskList(undoMessage, currentTaskList);
+
+			super.pushUndoStatMesNChanges(undoMessage,
+					new ArrayList<Task>(), deletedTasks);
 		} catch (IOException e) {
 			feedback = new LogicToUi(ERROR_IO);
 		} catch (WillNotWriteToCorruptFileException e) {
@@ -89,56 +103,63 @@ public class DeleteHandler extends CommandHandler {
 	/**
 	 * Perform the deleteAll command.
 	 * 
+	 * @param currentTaskList
+	 *            : current list of tasks inside database.
+	 * @param deletedTasks
+	 *            : tasks deleted, to be put to undo stack.
 	 * @return undo message to be saved to undo stack.
 	 * @throws IOException
 	 *             : if unable to perfrom read/write to file.
 	 * @throws WillNotWriteToCorruptFileException
 	 *             : the file is corrupted.
 	 */
-	private String deleteAll() throws IOException,
+	private String deleteAll(List<Task> currentTaskList,
+			List<Task> deletedTasks) throws IOException,
 			WillNotWriteToCorruptFileException {
 		String undoMessage;
 		dataBase.deleteAll();
+		deletedTasks.addAll(currentTaskList);
 		feedback = new LogicToUi("All tasks have been deleted");
 		undoMessage = "deletion of all tasks";
 		return undoMessage;
 	}
 
+	//@author A0081007U
 	/**
-	 * Perform the delete on multiple items at a time.
+	 * Perform the delete on the tasks picked by several indexes, ranges of
+	 * indexes or "where", as one change.
 	 * 
-	 * @return undo message to be put to undo stack.
 	 * @throws IOException
 	 *             : if cannot read/write to file.
 	 * @throws WillNotWriteToCorruptFileException
 	 *             : if the database file is corrupted.
 	 */
-	private String deleteMultiple() throws IOException,
+	private void deleteSelection() throws IOException,
 			WillNotWriteToCorruptFileException {
-		String undoMessage;
-		dataBase.delete(parser.getListOfToBeDeletedSerials());
-		undoMessage = "deletion of tasks at indexes "
-				+ parser.getListOfToBeDeletedIndexes().toString();
-		feedback = new LogicToUi("Tasks at indexes "
-				+ parser.getListOfToBeDeletedIndexes().toString()
-				+ " have been deleted");
-		return undoMessage;
+		SelectionParser selection = parser.getSelection();
+		String undoMessage = "deletion of tasks " + selection.getDescription();
+		int deletedCount = updateSelection(selection, DELETE, undoMessage);
+		feedback = selectionFeedback(deletedCount, selection, MSG_MANY_DELETED);
 	}
 
+	//@author A0088427U
 	/**
 	 * Perform delete on one element only
 	 * 
+	 * @param deletedTasks
+	 *            : tasks deleted, to be put to undo stack.
 	 * @return the details of the task to be put to undo stack
 	 * @throws IOException
 	 *             : if cannot read/write to data file.
 	 * @throws WillNotWriteToCorruptFileException
 	 *             : if the data file is corrupt.
 	 */
-	private String deleteOne() throws IOException,
+	private String deleteOne(List<Task> deletedTasks) throws IOException,
 			WillNotWriteToCorruptFileException {
 		String undoMessage;
 		toBeDeleted = dataBase.locateATask(parser.getSerialOfTask());
 		dataBase.delete(parser.getSerialOfTask());
+		deletedTasks.add(toBeDeleted);
 		String taskDetails = taskToString(toBeDeleted);
 		feedback = new LogicToUi(taskDetails + STRING_HAS_BEEN_DELETED);
 		undoMessage = STRING_DELETION_OF_TASK + STRING_SPACE + STRING_BACKSLASH
@@ -147,61 +168,58 @@ public class DeleteHandler extends CommandHandler {
 	}
 
 	/**
-	 * Perform delete on overdue tasks.
+	 * Perform delete on tasks that have ended. Only tasks the date index finds
+	 * to have started before now are looked at.
 	 * 
-	 * @param currentTaskList
-	 *            : current list of tasks inside database.
-	 * @param listOfToBeDeleted
-	 *            : list of serials to be deleted.
-	 * @return: undo message to be put to undo stack.
 	 * @throws IOException
 	 *             : if cannot write/read to data file.
 	 * @throws WillNotWriteToCorruptFileException
 	 *             : if the data file is corrupt.
 	 */
-	private String deleteOver(List<Task> currentTaskList,
-			List<Integer> listOfToBeDeletedSerials) throws IOException,
+	private void deleteOver() throws IOException,
 			WillNotWriteToCorruptFileException {
-		String undoMessage;
-		DateTime currentTime = DateTime.now();
-		for (Task t : currentTaskList) {
-			if (t.isDeadlineTask() && t.getDeadline().isBefore(currentTime)
-					|| t.isTimedTask() && t.getEndDate().isBefore(currentTime)) {
-				listOfToBeDeletedSerials.add(t.getSerial());
+		final DateTime currentTime = DateTime.now();
+		SearchTerms datedTasks = new SearchTerms(
+				SearchQuery.before(currentTime));
+
+		TaskUpdate deleteIfOver = new TaskUpdate() {
+			@Override
+			public Task apply(ImmutableTask t) {
+				if (t.isDeadlineTask() && t.getDeadline().isBefore(currentTime)
+						|| t.isTimedTask()
+						&& t.getEndDate().isBefore(currentTime)) {
+					return null;
+				}
+				return t;
 			}
-		}
-		dataBase.delete(listOfToBeDeletedSerials);
+		};
+
+		HistoryEntry deleted = dataBase.updateWhere(datedTasks, deleteIfOver,
+				MSG_DELETION_OF_TASK);
+		super.pushUndoStatMesNChanges(MSG_DELETION_OF_TASK,
+				deleted.getAddedTasks(), deleted.getRemovedTasks());
 		feedback = new LogicToUi(MSG_ALL_DELETED);
-		undoMessage = MSG_DELETION_OF_TASK;
-		return undoMessage;
 	}
 
 	/**
-	 * Delete all finished tasks.
+	 * Delete all finished tasks. They are found by the done flag of the
+	 * database.
 	 * 
-	 * @param currentTaskList
-	 *            : current list of tasks.
-	 * @param listOfToBeDeletedSerials
-	 *            : list of serials of tasks to be deleted.
-	 * @return: undo message to be put to undo stack
 	 * @throws IOException
 	 *             : if cannot read/write to data file.
 	 * @throws WillNotWriteToCorruptFileException
 	 *             : if the data file is corrupt.
 	 */
-	private String deleteDone(List<Task> currentTaskList,
-			List<Integer> listOfToBeDeletedSerials) throws IOException,
+	private void deleteDone() throws IOException,
 			WillNotWriteToCorruptFileException {
-		String undoMessage;
-		for (Task t : currentTaskList) {
-			if (t.isDone()) {
-				listOfToBeDeletedSerials.add(t.getSerial());
-			}
-		}
-		dataBase.delete(listOfToBeDeletedSerials);
+		SearchTerms doneTasks = new SearchTerms(true, false, false, false,
+				false);
+
+		HistoryEntry deleted = dataBase.updateWhere(doneTasks, DELETE,
+				MSG_DELETION_OF_DONE);
+		super.pushUndoStatMesNChanges(MSG_DELETION_OF_DONE,
+				deleted.getAddedTasks(), deleted.getRemovedTasks());
 		feedback = new LogicToUi(MSG_DONE_DELETED);
-		undoMessage = MSG_DELETION_OF_DONE;
-		return undoMessage;
 	}
 
 	@Override
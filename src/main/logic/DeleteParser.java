@@ -1,11 +1,7 @@
 package main.logic;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.NoSuchElementException;
 
-import main.shared.Task;
-
 //@author A0088427U
 
 /**
@@ -13,6 +9,8 @@ import main.shared.Task;
  * 
  * And object of deleteParser associates with only one object of deletehandler.
  * Delete parser object parse the command argument and store the values.
+ * Tasks given by indexes, ranges of indexes or "where" are parsed by a
+ * selection parser.
  * Information regarding the command can only be extracted by the associating
  * deletehandler object.
  * 
@@ -22,11 +20,8 @@ public class DeleteParser extends CommandParser {
 	private boolean isDone;
 	private boolean isAll;
 	private boolean onlyOneIndexFound;
-	private int index;
 	private String arg;
-	private List<Task> lastShownToUi;
-	private List<Integer> listOfToBeDeletedSerials;
-	private List<Integer> listOfToBeDeletedIndexes;
+	private SelectionParser selection;
 	private int serial;
 
 	/**
@@ -42,10 +37,7 @@ public class DeleteParser extends CommandParser {
 		isAll = false;
 		onlyOneIndexFound = false;
 		arg = arguments;
-
-		listOfToBeDeletedIndexes = new LinkedList<Integer>();
-		listOfToBeDeletedSerials = new LinkedList<Integer>();
-		lastShownToUi = lastShownObject.getLastShownList();
+		selection = new SelectionParser(arguments);
 	}
 
 	/**
@@ -54,9 +46,11 @@ public class DeleteParser extends CommandParser {
 	 * @throws NumberFormatException
 	 *             : in case the number indicating index cannot be parsed as an
 	 *             integer.
+	 * @throws NoSuchElementException
+	 *             : in case an index is not in the last shown list.
 	 */
 	@Override
-	public void parse() throws NumberFormatException {
+	public void parse() throws NumberFormatException, NoSuchElementException {
 		switch (arg.toLowerCase()) {
 		case "over":
 			isOver = true;
@@ -69,23 +63,11 @@ public class DeleteParser extends CommandParser {
 			return;
 		}
 
-		String[] indexes = arg.split(STRING_SPACE);
-
-		for (String indexString : indexes) {
-			index = Integer.parseInt(indexString);
-			index--; // To account for index starting from 1
-			if ((index < INT_0) || ((index + INT_1) > lastShownToUi.size())) {
-				throw new NoSuchElementException();
-			}
-
-			listOfToBeDeletedSerials.add(lastShownToUi.get(index).getSerial());
-			listOfToBeDeletedIndexes.add(index + INT_1);
+		selection.parse();
 
-		}
-
-		if (listOfToBeDeletedIndexes.size() == INT_1) {
+		if (!selection.isWhere() && (selection.getSerials().size() == INT_1)) {
 			onlyOneIndexFound = true;
-			serial = lastShownToUi.get(index).getSerial();
+			serial = selection.getSerials().get(INT_0);
 		}
 
 	}
@@ -110,11 +92,7 @@ public class DeleteParser extends CommandParser {
 		return onlyOneIndexFound;
 	}
 
-	public List<Integer> getListOfToBeDeletedSerials() {
-		return listOfToBeDeletedSerials;
-	}
-
-	public List<Integer> getListOfToBeDeletedIndexes() {
-		return listOfToBeDeletedIndexes;
+	public SelectionParser getSelection() {
+		return selection;
 	}
 }
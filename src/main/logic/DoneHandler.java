@@ -1,12 +1,13 @@
 package main.logic;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 import main.logic.exceptions.EmptyDescriptionException;
+import main.shared.ImmutableTask;
 import main.shared.LogicToUi;
 import main.shared.Task;
+import main.storage.TaskUpdate;
 import main.storage.WillNotWriteToCorruptFileException;
 
 
@@ -24,14 +25,25 @@ public class DoneHandler extends CommandHandler {
 	private static final String STRING_SPACE = " ";
 	private static final String STRING_MARKED_DONE = "has been marked as done.";
 	private static final String MSG_ALR_DONE = "The task has already been marked as done";
+	private static final String MSG_MANY_MARKED_DONE = "have been marked as done";
+	private static final TaskUpdate MARK_DONE = new TaskUpdate() {
+		@Override
+		public Task apply(ImmutableTask current) {
+			return current.withDone(true);
+		}
+	};
 	private DoneParser parser;
-	private Task toBeDone;
+	private SelectionParser selection;
+	private ImmutableTask toBeDone;
 	private Task copy;
 	private int toBeDoneSerial;
 
 	public DoneHandler(String arguments) {
 		super(arguments);
 		parser = new DoneParser(arguments);
+		if (SelectionParser.isSelection(arguments)) {
+			selection = new SelectionParser(arguments);
+		}
 	}
 
 	/**
@@ -40,13 +52,17 @@ public class DoneHandler extends CommandHandler {
 	 */
 	@Override
 	public LogicToUi execute() {
+		if (selection != null) {
+			return executeSelection();
+		}
+
 		try {
 			parser.parse();
 			toBeDoneSerial = parser.getToBeDoneSerial();
 			toBeDone = dataBase.locateATask(toBeDoneSerial);
-			copy = new Task(toBeDone);
-			copy.done(true);
+			copy = toBeDone.withDone(true);
 			if (copy.isEqualTo(toBeDone)) {
+				setNothingToChange();
 				feedback = new LogicToUi(MSG_ALR_DONE, toBeDoneSerial);
 			} else {
 				updateDatabaseNSendToUndoStack();
@@ -69,6 +85,31 @@ public class DoneHandler extends CommandHandler {
 
 	}
 
+	//@author A0081007U
+	/**
+	 * Marks every task picked by a range, several indexes or "where" as done,
+	 * as one change.
+	 */
+	private LogicToUi executeSelection() {
+		try {
+			selection.parse();
+			String undoMessage = "marking of tasks "
+					+ selection.getDescription() + " as done";
+			int changedCount = updateSelection(selection, MARK_DONE,
+					undoMessage);
+			return selectionFeedback(changedCount, selection,
+					MSG_MANY_MARKED_DONE);
+
+		} catch (NumberFormatException | NoSuchElementException e) {
+			return new LogicToUi(ERROR_INDEX_NUMBER_NOT_VALID);
+		} catch (IOException e) {
+			return new LogicToUi(ERROR_IO);
+		} catch (WillNotWriteToCorruptFileException e) {
+			return new LogicToUi(ERROR_FILE_CORRUPTED);
+		}
+	}
+
+	//@author A0088427U
 	/**
 	 * Overrides updateDatabaseNSendToUndoStack method in commandHandler. Update
 	 * the database and push undo message as well as current database to undo
@@ -78,11 +119,10 @@ public class DoneHandler extends CommandHandler {
 	protected void updateDatabaseNSendToUndoStack()
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException {
-		List<Task> copyCurrentTaskList = super.getCurrentTaskList();
 		dataBase.update(toBeDoneSerial, copy);
 		String taskDetails = taskToString(copy);
 		String undoMessage = "marking of task \"" + taskDetails + "\" as done";
-		super.pushUndoStatMesNTaskList(undoMessage, copyCurrentTaskList);
+		super.pushUndoStatMesNUpdate(undoMessage, toBeDone, copy);
 
 	}
 
@@ -1,7 +1,6 @@
 package main.logic;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 import main.logic.exceptions.CannotParseDateException;
@@ -74,6 +73,7 @@ public class EditHandler extends CommandHandler {
 			if (copy.isEqualTo(toBeEdited)) // check if the command actually
 											// changed anything
 			{
+				setNothingToChange();
 				feedback = new LogicToUi(MESSAGE_NOTHING_UPDATED,
 						toBeEditedSerial);
 			} else {
@@ -199,10 +199,9 @@ public class EditHandler extends CommandHandler {
 	protected void updateDatabaseNSendToUndoStack()
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException {
-		List<Task> currentTaskList = super.getCurrentTaskList();
 		dataBase.update(toBeEdited.getSerial(), copy);
 		String taskDetails = taskToString(copy);
 		String undoMessage = "update to \"" + taskDetails + "\"";
-		super.pushUndoStatMesNTaskList(undoMessage, currentTaskList);
+		super.pushUndoStatMesNUpdate(undoMessage, toBeEdited, copy);
 	}
 }
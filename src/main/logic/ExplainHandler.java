@@ -0,0 +1,103 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import main.logic.exceptions.CannotParseDateException;
+import main.logic.exceptions.InvalidSearchQueryException;
+import main.shared.LogicToUi;
+import main.shared.SearchTerms;
+import main.storage.QueryPlan;
+import main.storage.WillNotWriteToCorruptFileException;
+
+/**
+ * Shows how a list or search command would be answered by the database,
+ * with the estimated and actual number of tasks after each step.
+ * The shown list is not changed.
+ */
+public class ExplainHandler extends CommandHandler {
+
+	private static final String MSG_USAGE = "Please give a list or search command to explain,"
+			+ " for example \"explain list undone timed\" or \"explain search birthday\".";
+	private static final String MSG_OVERDUE = "Overdue tasks are picked out of the full list without a search,"
+			+ " so there is no plan to explain.";
+	private static final String MSG_NO_KEYWORDS = "No search terms specified.";
+
+	private static final String COMMAND_LIST = "list";
+	private static final String COMMAND_SEARCH = "search";
+
+	private String arguments;
+
+	public ExplainHandler(String arguments) {
+		super(arguments);
+		this.arguments = arguments;
+	}
+
+	@Override
+	public LogicToUi execute() {
+		String[] commandAndRest = arguments.split(" ", 2);
+		String command = commandAndRest[0].toLowerCase();
+		String rest = (commandAndRest.length > 1) ? commandAndRest[1].trim() : "";
+
+		SearchTerms terms;
+
+		if (command.equals(COMMAND_LIST)) {
+			ListParser parser = new ListParser(rest);
+			parser.parse();
+
+			if (parser.isOverdue()) {
+				return new LogicToUi(MSG_OVERDUE);
+			}
+
+			if (parser.isNoParam()) {
+				terms = new SearchTerms(false, false, false, false, false);
+			} else {
+				terms = ListHandler.filterFor(parser);
+			}
+		} else if (command.equals(COMMAND_SEARCH)) {
+			if (rest.length() == 0) {
+				return new LogicToUi(MSG_NO_KEYWORDS);
+			}
+
+			SearchParser parser = new SearchParser(rest);
+
+			try {
+				parser.parse();
+			} catch (InvalidSearchQueryException e) {
+				return new LogicToUi(SearchHandler.ERROR_INVALID_QUERY + e.getMessage());
+			} catch (CannotParseDateException e) {
+				return new LogicToUi(ERROR_CANNOT_PARSE_DATE);
+			}
+			terms = parser.getSearchTerms();
+		} else {
+			return new LogicToUi(MSG_USAGE);
+		}
+
+		QueryPlan plan = dataBase.explain(terms);
+
+		return new LogicToUi(planToString(plan));
+	}
+
+	private String planToString(QueryPlan plan) {
+		String output = "Plan for \"" + arguments + "\":";
+		int stepNumber = 1;
+
+		for (QueryPlan.Step step : plan.getSteps()) {
+			output += "\n" + stepNumber + ". " + step.getDescription() + ": estimated "
+					+ step.getEstimatedRows() + " tasks, actual " + step.getActualRows() + " tasks";
+			stepNumber++;
+		}
+
+		return output;
+	}
+
+	@Override
+	protected void updateDatabaseNSendToUndoStack()
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		// empty method.
+
+	}
+
+}
@@ -8,6 +8,8 @@ import java.util.NoSuchElementException;
 
 import org.joda.time.DateTime;
 
+import main.logic.exceptions.CannotParseDateException;
+
 import main.shared.LogicToUi;
 import main.shared.SearchTerms;
 import main.shared.Task;
@@ -15,22 +17,40 @@ import main.storage.WillNotWriteToCorruptFileException;
 
 public class ListHandler extends CommandHandler {
 
+	private static final String CACHE_COMMAND = "list";
+
 	private ListParser parser;
+	private AsOfParser asOfParser;
 
 	public ListHandler(String arguments) {
 		super(arguments);
-		parser = new ListParser(arguments);
+		asOfParser = new AsOfParser(arguments);
+		parser = new ListParser(asOfParser.getRemainingArguments());
 	}
 
 	@Override
 	public LogicToUi execute() {
 
 		parser.parse();
+
+		if (asOfParser.isAsOf()) {
+			return executeAsOf();
+		}
+
 		List<Task> results;
 
+		//Read before the database so a kept result is never older than its version
+		long version = dataBase.getVersion();
+		ResultCache.Key key = keyFor(parser);
+
 		SearchTerms filter;
 		if(parser.isNoParam()){
-			List<Task> everything = dataBase.getAll();
+			List<Task> everything = resultCache.get(key, version);
+			
+			if (everything == null) {
+				everything = dataBase.viewAll();
+				resultCache.put(key, version, everything);
+			}
 			lastShownObject.setLastShownList(everything);
 			latestListingHandlerForUI = this;
 			
@@ -40,31 +60,7 @@ public class ListHandler extends CommandHandler {
 		
 
 		if (parser.isOverdue()) {
-			results = new ArrayList<Task>();
-			DateTime currentTime = new DateTime();
-			
-			List<Task> everything = dataBase.getAll();
-
-			for(Task entry : everything){
-				if(entry.isFloatingTask()) {
-					continue;
-				}
-				
-				DateTime toCompare;
-				
-				if(entry.isDeadlineTask()){
-					toCompare = entry.getDeadline();
-				} else if (entry.isTimedTask()){
-					toCompare = entry.getEndDate();
-				} else {
-					continue;
-				}
-				
-				if((!entry.isDone()) && toCompare.isBefore(currentTime)) {
-					results.add(entry);
-				}
-				
-			}
+			results = overdueOf(dataBase.viewAll(), new DateTime());
 			
 			String overdueStatusMsg = "Listing based on these parameters: \"overdue\" ";
 
@@ -75,6 +71,117 @@ public class ListHandler extends CommandHandler {
 
 
 
+		filter = filterFor(parser);
+
+		results = resultCache.get(key, version);
+
+		if (results == null) {
+			results = dataBase.view(filter);
+			resultCache.put(key, version, results);
+		}
+
+		lastShownObject.setLastShownList(results);
+		latestListingHandlerForUI = this;
+		return new LogicToUi(results, parser.getStatusMsg(), filter);
+
+
+	}
+
+	/**
+	 * Lists the tasks as they were at the moment given by "as of". The tasks
+	 * now in the database are not touched.
+	 */
+	private LogicToUi executeAsOf() {
+		try {
+			asOfParser.parse();
+		} catch (CannotParseDateException e) {
+			return new LogicToUi(ERROR_CANNOT_PARSE_DATE);
+		}
+
+		DateTime moment = asOfParser.getMoment();
+		List<Task> results;
+		String statusMsg;
+
+		try {
+			if (parser.isOverdue()) {
+				results = overdueOf(dataBase.getAllAsOf(moment), moment);
+				statusMsg = "Listing based on these parameters: \"overdue\" ";
+			} else if (parser.isNoParam()) {
+				results = dataBase.getAllAsOf(moment);
+				statusMsg = parser.getStatusMsg();
+			} else {
+				results = dataBase.searchAsOf(filterFor(parser), moment);
+				statusMsg = parser.getStatusMsg();
+			}
+		} catch (IOException e) {
+			return new LogicToUi(ERROR_TIMELINE);
+		}
+
+		lastShownObject.setLastShownList(results);
+		latestListingHandlerForUI = this;
+		return new LogicToUi(results, statusMsg + " as of " + dateToString(moment));
+	}
+
+	/**
+	 * @return the tasks not done by the given time, in the same order
+	 */
+	private static List<Task> overdueOf(List<Task> everything, DateTime currentTime) {
+		List<Task> results = new ArrayList<Task>();
+
+		for(Task entry : everything){
+			if(isOverdue(entry, currentTime)) {
+				results.add(entry);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return true if the task is not done and has ended by the given time.
+	 *         Also used to pick overdue tasks to change.
+	 */
+	static boolean isOverdue(Task entry, DateTime currentTime) {
+		DateTime toCompare;
+
+		if(entry.isDeadlineTask()){
+			toCompare = entry.getDeadline();
+		} else if (entry.isTimedTask()){
+			toCompare = entry.getEndDate();
+		} else {
+			return false;
+		}
+
+		return (!entry.isDone()) && toCompare.isBefore(currentTime);
+	}
+
+	@Override
+	protected ResultCache.Key cacheKey() {
+		parser.parse();
+		return keyFor(parser);
+	}
+
+	/**
+	 * Overdue depends on the time now, so it is worked out again every time.
+	 * So are past tasks, as "as of" may also be given from now.
+	 */
+	private ResultCache.Key keyFor(ListParser parser) {
+		if (parser.isOverdue() || asOfParser.isAsOf()) {
+			return null;
+		}
+		if (parser.isNoParam()) {
+			return new ResultCache.Key(CACHE_COMMAND, null, null, false);
+		}
+		return new ResultCache.Key(CACHE_COMMAND, filterFor(parser), null, false);
+	}
+
+	/**
+	 * Builds the search terms of a parsed list command that is not "overdue".
+	 * Also used by the explain command.
+	 */
+	static SearchTerms filterFor(ListParser parser) {
+		SearchTerms filter;
+
 		if (parser.isToday() && parser.isTomorrow()) {
 			DateTime startDate = new DateTime().withTimeAtStartOfDay();
 			DateTime endDate = startDate.plusDays(1).withTime(23, 59, 59, 999);
@@ -103,13 +210,7 @@ public class ListHandler extends CommandHandler {
 					parser.isFloating());
 		}
 
-		results = dataBase.search(filter);
-
-		lastShownObject.setLastShownList(results);
-		latestListingHandlerForUI = this;
-		return new LogicToUi(results, parser.getStatusMsg(), filter);
-
-
+		return filter;
 	}
 
 	@Override
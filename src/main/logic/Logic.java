@@ -1,10 +1,17 @@
 package main.logic;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import main.LogHandler;
 import main.logic.exceptions.NoSuchCommandException;
 import main.shared.LogicToUi;
+import main.shared.Task;
+import main.storage.Database;
 
 //@author A0088427U
 
@@ -18,13 +25,22 @@ import main.shared.LogicToUi;
  */
 public class Logic {
 	private static final String MSG_NO_COMMAND = "Sorry but I could not understand you. Can you rephrase the message?";
+	private static final String MSG_STILL_LOADING = "Your tasks are still loading. I will do this as soon as they are ready.";
+	private static final String THREAD_NAME_WAIT_FOR_LOADING = "DoIt wait for loading";
+	private static final String MSG_BATCH_FAILED = "%1$s %2$s.";
 
 	public enum CommandType {
-		ADD, DELETE, LIST, SEARCH, UNDO, FILE_STATUS, REFRESH, DONE, UNDONE, SORT, EDIT, POSTPONE, EXIT
+		ADD, DELETE, LIST, SEARCH, UNDO, REDO, FILE_STATUS, REFRESH, DONE, UNDONE, SORT, EDIT, POSTPONE, EXPLAIN, RANK, BEGIN, COMMIT, ROLLBACK, EXIT
 	};
 
 	private CommandHandler executor;
 
+	// Commands received while the database is loading, in the order they were received
+	private LinkedList<String> pendingCommands = new LinkedList<String>();
+	private Future<?> databaseLoading = null;
+	private List<Runnable> loadedListeners = new ArrayList<Runnable>();
+	private boolean isLoadedNotified = false;
+
 	private static Logic theOne = null;
 	private Logger log;
 
@@ -59,21 +75,228 @@ public class Logic {
 	 *          displayed to users.
 	 */
 	public LogicToUi uiCommunicator(String command) {
+		synchronized (pendingCommands) {
+			if (isQueueing()) {
+				log.info("Database not ready, command queued.");
+				pendingCommands.add(command);
+				return new LogicToUi(new ArrayList<Task>(), MSG_STILL_LOADING);
+			}
+		}
+
+		return processCommand(command);
+	}
+
+	/**
+	 * Queues the commands received until the database has loaded, instead of
+	 * waiting for it. The queued commands are carried out by
+	 * applyPendingCommands.
+	 * 
+	 * @param loading
+	 *            : completes once the database has loaded.
+	 */
+	public void queueUntilLoaded(Future<?> loading) {
+		assert (loading != null);
+		synchronized (pendingCommands) {
+			databaseLoading = loading;
+		}
+		synchronized (loadedListeners) {
+			isLoadedNotified = false;
+		}
+
+		Thread waiter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				waitForLoading();
+				notifyLoaded();
+			}
+		}, THREAD_NAME_WAIT_FOR_LOADING);
+		waiter.setDaemon(true);
+		waiter.start();
+	}
+
+	/**
+	 * To check if commands are being queued as the database is still loading.
+	 * 
+	 * @return true if the database is still loading or queued commands have
+	 *         not been applied yet.
+	 */
+	public boolean isLoading() {
+		synchronized (pendingCommands) {
+			return isQueueing();
+		}
+	}
+
+	/**
+	 * To check if a batch is open, so its changes are not saved yet.
+	 * 
+	 * @return true if begin was given and neither commit nor rollback since.
+	 *         A failed command in a batch rolls it back.
+	 */
+	public boolean isInBatch() {
+		return CommandHistory.getInstance().isInBatch();
+	}
+
+	/**
+	 * Registers a listener to be run every time the database given to
+	 * queueUntilLoaded has loaded. It is run on a background thread, or at once
+	 * if the database has already loaded. The listener should have
+	 * applyPendingCommands called on the thread the commands came from.
+	 * 
+	 * @param listener
+	 *            : to be run when the database has loaded.
+	 */
+	public void addLoadedListener(Runnable listener) {
+		assert (listener != null);
+		boolean isAlreadyLoaded;
+		synchronized (loadedListeners) {
+			loadedListeners.add(listener);
+			isAlreadyLoaded = isLoadedNotified;
+		}
+
+		if (isAlreadyLoaded) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Waits for the database and carries out the commands queued while it was
+	 * loading, in order and on the calling thread. Commands received meanwhile
+	 * keep being queued behind them until the queue is empty.
+	 * 
+	 * @return the feedback of each queued command, in the order they were
+	 *         received.
+	 */
+	public List<LogicToUi> applyPendingCommands() {
+		waitForLoading();
+		log.info("Database ready, applying queued commands.");
+
+		List<LogicToUi> feedback = new ArrayList<LogicToUi>();
+
+		while (true) {
+			String nextCommand;
+			synchronized (pendingCommands) {
+				nextCommand = pendingCommands.peek();
+				if (nextCommand == null) {
+					return feedback;
+				}
+			}
+
+			feedback.add(processCommand(nextCommand));
+
+			synchronized (pendingCommands) {
+				pendingCommands.removeFirst();
+			}
+		}
+	}
+
+	// Must be called while holding the pendingCommands lock
+	private boolean isQueueing() {
+		boolean isStillLoading = (databaseLoading != null)
+				&& !databaseLoading.isDone();
+		return isStillLoading || !pendingCommands.isEmpty();
+	}
+
+	private void waitForLoading() {
+		Future<?> loading;
+		synchronized (pendingCommands) {
+			loading = databaseLoading;
+		}
+
+		if (loading != null) {
+			boolean isInterrupted = false;
+			while (true) {
+				try {
+					loading.get();
+					break;
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				} catch (ExecutionException e) {
+					log.severe("Database failed to load " + e.getCause());
+					break;
+				}
+			}
+
+			if (isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Database.getInstance();
+	}
+
+	private void notifyLoaded() {
+		List<Runnable> listeners;
+		synchronized (loadedListeners) {
+			isLoadedNotified = true;
+			listeners = new ArrayList<Runnable>(loadedListeners);
+		}
+
+		for (Runnable listener : listeners) {
+			listener.run();
+		}
+	}
+
+	private LogicToUi processCommand(String command) {
 		LogicToUi feedback;
+		CommandHistory history = CommandHistory.getInstance();
 		try {
 			log.info("Logic received command.");
 			String commandSyntax = getFirstWord(command);
 			String arguments = removeFirstWord(command);
 			CommandType commandType = determineCommandType(commandSyntax);
+			int batchCommandsBefore = history.getBatchCommands();
 			feedback = executeCommand(commandType, arguments);
 			log.info("Command executed, return to UI.");
+
+			// A changing command that changed nothing has failed, unless its
+			// tasks were already as asked
+			if (history.isInBatch() && isChangingCommand(commandType)
+					&& (history.getBatchCommands() == batchCommandsBefore)
+					&& !executor.isNothingToChange()) {
+				feedback = rollbackFailedBatch(feedback);
+			}
 		} catch (NoSuchCommandException e) {
 			feedback = new LogicToUi(MSG_NO_COMMAND);
 			log.warning("Cannot understand command");
+
+			if (history.isInBatch()) {
+				feedback = rollbackFailedBatch(feedback);
+			}
 		}
 		return feedback;
 	}
 
+	private boolean isChangingCommand(CommandType commandType) {
+		switch (commandType) {
+		case ADD:
+		case DELETE:
+		case DONE:
+		case UNDONE:
+		case EDIT:
+		case POSTPONE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Rolls back the open batch as one of its commands failed.
+	 * 
+	 * @param failure
+	 *            : the feedback of the failed command.
+	 * @return the feedback of the failed command, telling the batch is rolled
+	 *         back.
+	 */
+	private LogicToUi rollbackFailedBatch(LogicToUi failure) {
+		log.warning("Command failed in batch, rolling back.");
+		executor = new RollbackHandler("");
+		LogicToUi rolledBack = executor.execute();
+
+		return new LogicToUi(String.format(MSG_BATCH_FAILED,
+				failure.getString(), rolledBack.getString()));
+	}
+
 	/**
 	 * This methods determine what command the user typed in based on the first
 	 * token.
@@ -118,6 +341,18 @@ public class Logic {
 		case "u":
 			log.info("undo command detected.");
 			return CommandType.UNDO;
+		case "redo":
+			log.info("redo command detected.");
+			return CommandType.REDO;
+		case "begin":
+			log.info("begin command detected.");
+			return CommandType.BEGIN;
+		case "commit":
+			log.info("commit command detected.");
+			return CommandType.COMMIT;
+		case "rollback":
+			log.info("rollback command detected.");
+			return CommandType.ROLLBACK;
 		case "sort":
 			log.info("sort command detected.");
 			return CommandType.SORT;
@@ -145,6 +380,12 @@ public class Logic {
 		case "postpone":
 			log.info("postpone command detected.");
 			return CommandType.POSTPONE;
+		case "explain":
+			log.info("explain command detected.");
+			return CommandType.EXPLAIN;
+		case "rank":
+			log.info("rank command detected.");
+			return CommandType.RANK;
 		case "exit":
 			// Fallthrough
 		case "quit":
@@ -175,6 +416,14 @@ public class Logic {
 			return checkFileStatus(arguments);
 		case UNDO:
 			return undo(arguments);
+		case REDO:
+			return redo(arguments);
+		case BEGIN:
+			return begin(arguments);
+		case COMMIT:
+			return commit(arguments);
+		case ROLLBACK:
+			return rollback(arguments);
 		case SEARCH:
 			return search(arguments);
 		case REFRESH:
@@ -189,6 +438,10 @@ public class Logic {
 			return editTask(arguments);
 		case POSTPONE:
 			return postpone(arguments);
+		case EXPLAIN:
+			return explain(arguments);
+		case RANK:
+			return rank(arguments);
 		case EXIT:
 			return exit(arguments);
 		default:
@@ -227,6 +480,18 @@ public class Logic {
 		return executor.execute();
 	}
 
+	private LogicToUi explain(String arguments) {
+		log.info("explain method entered.");
+		executor = new ExplainHandler(arguments);
+		return executor.execute();
+	}
+
+	private LogicToUi rank(String arguments) {
+		log.info("rank method entered.");
+		executor = new RankHandler(arguments);
+		return executor.execute();
+	}
+
 	private LogicToUi editTask(String argument) {
 		log.info("edit method entered.");
 		executor = new EditHandler(argument);
@@ -253,6 +518,30 @@ public class Logic {
 		return executor.execute();
 	}
 
+	private LogicToUi redo(String arguments) {
+		log.info("redo method entered.");
+		executor = new RedoHandler(arguments);
+		return executor.execute();
+	}
+
+	private LogicToUi begin(String arguments) {
+		log.info("begin method entered.");
+		executor = new BeginHandler(arguments);
+		return executor.execute();
+	}
+
+	private LogicToUi commit(String arguments) {
+		log.info("commit method entered.");
+		executor = new CommitHandler(arguments);
+		return executor.execute();
+	}
+
+	private LogicToUi rollback(String arguments) {
+		log.info("rollback method entered.");
+		executor = new RollbackHandler(arguments);
+		return executor.execute();
+	}
+
 	private LogicToUi checkFileStatus(String arguments) {
 		log.info("filestatus method entered.");
 		executor = new FileStatusHandler(arguments);
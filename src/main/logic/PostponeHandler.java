@@ -2,14 +2,19 @@ package main.logic;
 
 import java.io.IOException;
 
-import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.joda.time.Period;
 
 import main.logic.exceptions.CannotParseDateException;
 import main.logic.exceptions.CannotPostponeFloatingException;
 import main.logic.exceptions.EmptyDescriptionException;
+import main.shared.ImmutableTask;
 import main.shared.LogicToUi;
 import main.shared.Task;
+import main.storage.TaskUpdate;
 import main.storage.WillNotWriteToCorruptFileException;
 
 //@author A0088427U
@@ -27,7 +32,11 @@ public class PostponeHandler extends CommandHandler {
 	private static final String NOTHING_CHANGED = "The task is still the same!";
 	private static final String ERROR_INVALID_INDEX = "Invalid index number. Please check!";
 	private static final String ERROR_POSTPONE_FLOATING_TASK = "Cannot postpone a floating task. Please check your index.";
+	private static final Pattern POSTPONE_BY = Pattern.compile(
+			"(?i)^(.*\\S)\\s+by\\s+(\\S.*)$");
 	private PostponeParser parser;
+	private SelectionParser selection;
+	private String postponeBy;
 	private Task toBePostponed;
 	private int toBePostponedSerial;
 	private Task copy;
@@ -35,6 +44,13 @@ public class PostponeHandler extends CommandHandler {
 	public PostponeHandler(String arguments) {
 		super(arguments);
 		parser = new PostponeParser(arguments);
+
+		// "postpone 3 by friday" still postpones one task relative to its own date
+		Matcher matcher = POSTPONE_BY.matcher(arguments.trim());
+		if (matcher.find() && SelectionParser.isSelection(matcher.group(1))) {
+			selection = new SelectionParser(matcher.group(1));
+			postponeBy = matcher.group(2);
+		}
 	}
 	/**
 	 * Override the execute method in commandhandler class. 
@@ -43,6 +59,10 @@ public class PostponeHandler extends CommandHandler {
 	 */
 	@Override
 	public LogicToUi execute() {
+		if (selection != null) {
+			return executeSelection();
+		}
+
 		try {
 			parser.parse();
 			toBePostponedSerial = parser.getToBePostponedSerial();
@@ -59,6 +79,7 @@ public class PostponeHandler extends CommandHandler {
 					feedbackString = postponeTimed(feedbackString);
 				}
 				if (copy.isEqualTo(toBePostponed)) {
+					setNothingToChange();
 					feedback = new LogicToUi(NOTHING_CHANGED,
 							toBePostponedSerial);
 				} else {
@@ -91,6 +112,51 @@ public class PostponeHandler extends CommandHandler {
 
 	}
 
+	//@author A0081007U
+	/**
+	 * Postpones every task picked before "by" by the same time, as one
+	 * change. Floating tasks picked are left as they are.
+	 */
+	private LogicToUi executeSelection() {
+		try {
+			selection.parse();
+			final Period shift = PostponeParser.parseShift(postponeBy);
+
+			TaskUpdate postpone = new TaskUpdate() {
+				@Override
+				public Task apply(ImmutableTask current) {
+					if (current.isDeadlineTask()) {
+						return current.withDeadline(current.getDeadline()
+								.plus(shift));
+					}
+					if (current.isTimedTask()) {
+						return current.withStartAndEndDate(current
+								.getStartDate().plus(shift), current
+								.getEndDate().plus(shift));
+					}
+					return current;
+				}
+			};
+
+			String undoMessage = "postponement of tasks "
+					+ selection.getDescription() + " by " + postponeBy;
+			int changedCount = updateSelection(selection, postpone,
+					undoMessage);
+			return selectionFeedback(changedCount, selection,
+					"have been postponed by " + postponeBy);
+
+		} catch (CannotParseDateException e) {
+			return new LogicToUi(ERROR_CANNOT_PARSE_DATE);
+		} catch (NumberFormatException | NoSuchElementException e) {
+			return new LogicToUi(ERROR_INVALID_INDEX);
+		} catch (IOException e) {
+			return new LogicToUi(ERROR_IO);
+		} catch (WillNotWriteToCorruptFileException e) {
+			return new LogicToUi(ERROR_FILE_CORRUPTED);
+		}
+	}
+
+	//@author A0088427U
 	/**
 	 * Postpone a timed task
 	 * 
@@ -125,10 +191,9 @@ public class PostponeHandler extends CommandHandler {
 	protected void updateDatabaseNSendToUndoStack()
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException {
-		List<Task> currentTaskList = super.getCurrentTaskList();
 		dataBase.update(toBePostponed.getSerial(), copy);
 		String taskDetails = taskToString(copy);
 		String undoMessage = "postponement of task \"" + taskDetails + "\"";
-		super.pushUndoStatMesNTaskList(undoMessage, currentTaskList);
+		super.pushUndoStatMesNUpdate(undoMessage, toBePostponed, copy);
 	}
 }
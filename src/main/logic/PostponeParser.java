@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.joda.time.DateTime;
+import org.joda.time.Period;
 
 import com.joestelmach.natty.DateGroup;
 
@@ -107,6 +108,37 @@ public class PostponeParser extends CommandParser {
 		return index;
 	}
 
+	//@author A0081007U
+	/**
+	 * Parses how long tasks are postponed by, such as "1 day", once for every
+	 * task postponed together.
+	 * 
+	 * The time is kept in calendar fields, so adding it to each task's own
+	 * date gives the same day and time across daylight saving changes and
+	 * months of different lengths. It is measured from the start of a month
+	 * so that a month is not taken as the days left in a shorter one.
+	 * 
+	 * @param amount
+	 *            : the time after "by"
+	 * @return how long to postpone by
+	 * @throws CannotParseDateException
+	 *             : if the time cannot be parsed.
+	 */
+	static Period parseShift(String amount) throws CannotParseDateException {
+		DateTime base = new DateTime().withDayOfMonth(INT_1)
+				.withTimeAtStartOfDay();
+		List<DateGroup> shiftGroups = NattyParserWrapper.getInstance()
+				.parseWCustomBaseDate(base, amount);
+
+		if (shiftGroups.isEmpty()
+				|| shiftGroups.get(INT_0).getDates().isEmpty()) {
+			throw new CannotParseDateException();
+		}
+		return new Period(base, new DateTime(shiftGroups.get(INT_0)
+				.getDates().get(INT_0)));
+	}
+
+	//@author A0088427U
 	public int getToBePostponedSerial() {
 		return toBePostponedSerial;
 	}
@@ -0,0 +1,79 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import main.logic.exceptions.CannotParseDateException;
+import main.logic.exceptions.InvalidSearchQueryException;
+import main.shared.LogicToUi;
+import main.shared.SearchTerms;
+import main.shared.Task;
+import main.storage.Ranking;
+import main.storage.WillNotWriteToCorruptFileException;
+
+/**
+ * Searches the same way as the search command but shows only the best
+ * matches, best first. Whole words score above the start of a word, which
+ * scores above anywhere else in a word. Using a word more than once and having
+ * a date near now also count.
+ */
+public class RankHandler extends CommandHandler {
+
+	static final int RANK_LIMIT = 50;
+
+	private static final String MSG_NO_KEYWORDS = "No search terms specified.";
+
+	private String arguments;
+	private SearchParser parser;
+
+	public RankHandler(String arguments) {
+		super(arguments);
+		this.arguments = arguments;
+		parser = new SearchParser(arguments);
+	}
+
+	@Override
+	public LogicToUi execute() {
+		if (arguments.length() == 0) {
+			return new LogicToUi(MSG_NO_KEYWORDS);
+		}
+		try {
+			parser.parse();
+		} catch (InvalidSearchQueryException e) {
+			return new LogicToUi(SearchHandler.ERROR_INVALID_QUERY + e.getMessage());
+		} catch (CannotParseDateException e) {
+			return new LogicToUi(ERROR_CANNOT_PARSE_DATE);
+		}
+
+		SearchTerms terms = parser.getSearchTerms();
+		Ranking ranking = dataBase.searchRanked(terms, RANK_LIMIT);
+		List<Task> results = ranking.getTasks();
+
+		String statusMsg = "Best " + results.size() + " of "
+				+ ranking.getMatchCount() + " matches for ";
+
+		if (parser.isPlainKeywords()) {
+			for (String keyword : parser.getKeyWords()) {
+				statusMsg += " \"" + keyword + "\" ";
+			}
+		} else {
+			statusMsg += parser.getQuery();
+		}
+
+		lastShownObject.setLastShownList(results);
+		latestListingHandlerForUI = this;
+
+		return new LogicToUi(results, statusMsg, terms, ranking.getScores());
+	}
+
+	@Override
+	protected void updateDatabaseNSendToUndoStack()
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		// empty method.
+
+	}
+
+}
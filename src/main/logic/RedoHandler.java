@@ -0,0 +1,79 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import main.shared.LogicToUi;
+import main.storage.HistoryEntry;
+import main.storage.WillNotWriteToCorruptFileException;
+
+/**
+ * Each object of this class handles a redo operation. The object call the
+ * command history to apply again the tasks the last undone command changed.
+ *
+ */
+
+public class RedoHandler extends CommandHandler {
+	private static final String ERROR_NO_MORE_REDO = "You don't have any more redo steps left";
+	private static final String ERROR_REDO_CONFLICT = "The tasks have changed since then,"
+			+ " so the %1$s cannot be redone";
+	private static final String ERROR_IN_BATCH = "You cannot redo in a batch."
+			+ " Please commit or rollback it first.";
+
+	/**
+	 * Constructor of the class.
+	 *
+	 * @param arguments
+	 *            : empty argument since redo command does not need any extra
+	 *            information
+	 */
+	public RedoHandler(String arguments) {
+		super(arguments);
+	}
+
+	/**
+	 * This method overrides the execute method in command handler class.
+	 *
+	 */
+	public LogicToUi execute() {
+		if (history.isInBatch()) {
+			return new LogicToUi(ERROR_IN_BATCH);
+		}
+
+		HistoryEntry undone = history.peekRedo();
+
+		if (undone == null) {
+			return new LogicToUi(ERROR_NO_MORE_REDO);
+		}
+
+		try {
+			dataBase.replace(dataBase.locateSameTasks(undone.getRemovedTasks()),
+					undone.getAddedTasks());
+			String status = "The " + undone.getMessage() + " has been redone";
+
+			history.redone();
+			feedback = new LogicToUi(status);
+
+		} catch (NoSuchElementException e) {
+			history.discardRedo();
+			feedback = new LogicToUi(String.format(ERROR_REDO_CONFLICT,
+					undone.getMessage()));
+		} catch (IOException e) {
+			feedback = new LogicToUi(ERROR_IO);
+		} catch (WillNotWriteToCorruptFileException e) {
+			feedback = new LogicToUi(ERROR_FILE_CORRUPTED);
+		}
+
+		return feedback;
+	}
+
+	@Override
+	@Deprecated
+	protected void updateDatabaseNSendToUndoStack()
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		// empty method
+
+	}
+}
@@ -0,0 +1,158 @@
+//@author A0081007U
+package main.logic;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.joda.time.LocalDate;
+
+import main.shared.LogicToUi.SortStatus;
+import main.shared.SearchTerms;
+import main.shared.Task;
+
+/**
+ * Keeps the results of the latest listings, searches and sorts so that showing
+ * them again, as refresh does after every command, does not run them again.
+ *
+ * Every result is stamped with the database version it was worked out from.
+ * Once the database changes, all kept results are stale and are dropped.
+ * Only a few results are kept, the least recently used going first.
+ *
+ * This class implements the Singleton pattern since the database it caches is
+ * also a single one.
+ */
+class ResultCache {
+
+	private static final int MAX_ENTRIES = 8;
+
+	/**
+	 * What a result was worked out from: the command that gave it, its search
+	 * terms or query and how it was sorted.
+	 */
+	static class Key {
+		private final String command;
+		private final SearchTerms terms;
+		private final String query;
+		private final SortStatus sorting;
+		private final boolean isReversed;
+
+		/**
+		 * @param terms search terms, or null if the command has none
+		 * @param sorting sort order, or null if the result is not sorted
+		 */
+		Key(String command, SearchTerms terms, SortStatus sorting, boolean isReversed) {
+			this(command, terms, null, sorting, isReversed);
+		}
+
+		private Key(String command, SearchTerms terms, String query, SortStatus sorting,
+				boolean isReversed) {
+			assert (command != null);
+			this.command = command;
+			this.terms = terms;
+			this.query = query;
+			this.sorting = sorting;
+			this.isReversed = isReversed;
+		}
+
+		/**
+		 * For results whose search terms hold dates resolved when they were
+		 * parsed, such as "after:tomorrow". Those terms differ every time the
+		 * query is parsed, so the query as typed and the day it is read for
+		 * are kept instead.
+		 *
+		 * @param query the query with its spacing made even
+		 * @param day the day relative dates in the query were resolved on
+		 */
+		static Key ofQuery(String command, String query, LocalDate day) {
+			assert (query != null);
+			assert (day != null);
+			return new Key(command, null, query + " @" + day, null, false);
+		}
+
+		/**
+		 * @return the key of this result once sorted this way
+		 */
+		Key sortedBy(SortStatus newSorting, boolean isNewReversed) {
+			return new Key(command, terms, query, newSorting, isNewReversed);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+
+			Key that = (Key) other;
+			return command.equals(that.command) && Objects.equals(terms, that.terms)
+					&& Objects.equals(query, that.query)
+					&& (sorting == that.sorting) && (isReversed == that.isReversed);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(command, terms, query, sorting, isReversed);
+		}
+	}
+
+	private static ResultCache theOne = null;
+
+	private final Map<Key, List<Task>> results = new LinkedHashMap<Key, List<Task>>(
+			MAX_ENTRIES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, List<Task>> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private long version = -1;
+
+	static ResultCache getInstance() {
+		if (theOne == null) {
+			theOne = new ResultCache();
+		}
+		return theOne;
+	}
+
+	private ResultCache() {
+	}
+
+	/**
+	 * @param key what the result was worked out from, or null if it cannot be cached
+	 * @param currentVersion the database version now
+	 * @return the kept result, or null if there is none for this version
+	 */
+	synchronized List<Task> get(Key key, long currentVersion) {
+		dropIfStale(currentVersion);
+
+		if (key == null) {
+			return null;
+		}
+		return results.get(key);
+	}
+
+	/**
+	 * Keeps a result. It must not be changed afterwards.
+	 *
+	 * @param key what the result was worked out from, or null if it cannot be cached
+	 * @param resultVersion the database version read before the result was worked out
+	 */
+	synchronized void put(Key key, long resultVersion, List<Task> result) {
+		dropIfStale(resultVersion);
+
+		if ((key == null) || (resultVersion != version)) {
+			return;
+		}
+		results.put(key, result);
+	}
+
+	private void dropIfStale(long currentVersion) {
+		if (currentVersion > version) {
+			results.clear();
+			version = currentVersion;
+		}
+	}
+}
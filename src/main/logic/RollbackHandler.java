@@ -0,0 +1,55 @@
+//@author A0081007U
+package main.logic;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import main.shared.LogicToUi;
+import main.storage.WillNotWriteToCorruptFileException;
+
+/**
+ * Each object of this class rolls back the open batch. Every change made in
+ * the batch is dropped. The file was never changed by them.
+ *
+ */
+
+public class RollbackHandler extends CommandHandler {
+	private static final String MSG_BATCH_ROLLED_BACK = "The %1$s has been rolled back";
+	private static final String ERROR_NO_BATCH = "There is no batch to rollback.";
+
+	/**
+	 * Constructor of the class.
+	 *
+	 * @param arguments
+	 *            : empty argument since rollback command does not need any
+	 *            extra information
+	 */
+	public RollbackHandler(String arguments) {
+		super(arguments);
+	}
+
+	/**
+	 * This method overrides the execute method in command handler class.
+	 *
+	 */
+	public LogicToUi execute() {
+		if (!history.isInBatch()) {
+			return new LogicToUi(ERROR_NO_BATCH);
+		}
+
+		dataBase.rollbackTransaction();
+		int commands = history.endBatch();
+
+		return new LogicToUi(String.format(MSG_BATCH_ROLLED_BACK,
+				CommitHandler.batchToString(commands)));
+	}
+
+	@Override
+	@Deprecated
+	protected void updateDatabaseNSendToUndoStack()
+			throws NoSuchElementException, IOException,
+			WillNotWriteToCorruptFileException {
+		// empty method
+
+	}
+}
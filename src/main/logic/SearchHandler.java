@@ -5,6 +5,10 @@ import java.io.IOException;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.joda.time.LocalDate;
+
+import main.logic.exceptions.CannotParseDateException;
+import main.logic.exceptions.InvalidSearchQueryException;
 import main.shared.LogicToUi;
 import main.shared.SearchTerms;
 import main.shared.Task;
@@ -12,13 +16,22 @@ import main.storage.WillNotWriteToCorruptFileException;
 
 public class SearchHandler extends CommandHandler {
 
+	static final String ERROR_INVALID_QUERY = "Sorry, I could not understand the search. ";
+
+	private static final String CACHE_COMMAND = "search";
+
 	private String arguments;
 	private SearchParser parser;
+	private AsOfParser asOfParser;
+
+	// Day the query was last parsed on, null if it has not been parsed
+	private LocalDate parsedOn = null;
 
 	public SearchHandler(String arguments) {
 		super(arguments);
-		this.arguments = arguments;
-		parser = new SearchParser(arguments);
+		asOfParser = new AsOfParser(arguments);
+		this.arguments = asOfParser.getRemainingArguments();
+		parser = new SearchParser(this.arguments);
 	}
 
 	@Override
@@ -26,17 +39,47 @@ public class SearchHandler extends CommandHandler {
 		if (arguments.length() == 0) {
 			return new LogicToUi("No search terms specified.");
 		}
-		parser.parse();
+		try {
+			parseQuery();
+			asOfParser.parse();
+		} catch (InvalidSearchQueryException e) {
+			return new LogicToUi(ERROR_INVALID_QUERY + e.getMessage());
+		} catch (CannotParseDateException e) {
+			return new LogicToUi(ERROR_CANNOT_PARSE_DATE);
+		}
 
-		String[] keywords = parser.getKeyWords();
+		SearchTerms terms = parser.getSearchTerms();
+		List<Task> results;
 
-		SearchTerms terms = new SearchTerms(keywords);
-		List<Task> results = dataBase.search(terms);
+		if (asOfParser.isAsOf()) {
+			try {
+				results = dataBase.searchAsOf(terms, asOfParser.getMoment());
+			} catch (IOException e) {
+				return new LogicToUi(ERROR_TIMELINE);
+			}
+		} else {
+			long version = dataBase.getVersion();
+			ResultCache.Key key = queryKey();
+			results = resultCache.get(key, version);
+
+			if (results == null) {
+				results = dataBase.view(terms);
+				resultCache.put(key, version, results);
+			}
+		}
 
 		String statusMsg = "You have searched for ";
 
-		for (String keyword : keywords) {
-			statusMsg += " \"" + keyword + "\" ";
+		if (parser.isPlainKeywords()) {
+			for (String keyword : parser.getKeyWords()) {
+				statusMsg += " \"" + keyword + "\" ";
+			}
+		} else {
+			statusMsg += parser.getQuery();
+		}
+
+		if (asOfParser.isAsOf()) {
+			statusMsg += " as of " + dateToString(asOfParser.getMoment());
 		}
 
 		lastShownObject.setLastShownList(results);
@@ -45,6 +88,43 @@ public class SearchHandler extends CommandHandler {
 		return new LogicToUi(results, statusMsg, terms);
 	}
 
+	@Override
+	protected ResultCache.Key cacheKey() {
+		if ((arguments.length() == 0) || asOfParser.isAsOf()) {
+			return null;
+		}
+		try {
+			parseQuery();
+		} catch (InvalidSearchQueryException | CannotParseDateException e) {
+			return null;
+		}
+		return queryKey();
+	}
+
+	/**
+	 * Parses the query the first time it is run on a day. The search is run
+	 * again on every refresh, and Natty resolves relative dates to instants
+	 * as they are parsed, so the terms are only worked out again once those
+	 * dates may have moved to another day.
+	 */
+	private void parseQuery() throws InvalidSearchQueryException,
+			CannotParseDateException {
+		LocalDate today = new LocalDate();
+
+		if (today.equals(parsedOn)) {
+			return;
+		}
+
+		parser = new SearchParser(arguments);
+		parser.parse();
+		parsedOn = today;
+	}
+
+	private ResultCache.Key queryKey() {
+		String query = arguments.trim().replaceAll("\\s+", " ");
+		return ResultCache.Key.ofQuery(CACHE_COMMAND, query, parsedOn);
+	}
+
 	@Override
 	@Deprecated
 	protected void updateDatabaseNSendToUndoStack()
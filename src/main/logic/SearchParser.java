@@ -2,19 +2,104 @@
 
 package main.logic;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.joestelmach.natty.DateGroup;
+
+import main.logic.exceptions.CannotParseDateException;
+import main.logic.exceptions.InvalidSearchQueryException;
+import main.shared.NattyParserWrapper;
+import main.shared.SearchQuery;
+import main.shared.SearchTerms;
+import main.shared.Task.TaskType;
+
 /**
  * An object of this class parse a search command. Each object of searchparser
  * associates with only one search handler object.
- * 
+ *
+ * Plain words are all searched for together, as before. They may also be
+ * combined with AND, OR, NOT (or a leading "-") and brackets, put in inverted
+ * commas to search for a phrase, or given as a field: "done:yes", "done:no",
+ * "type:floating", "type:deadline", "type:timed", "before:date" or
+ * "after:date". Dates are read by Natty and may be in inverted commas, such as
+ * after:"next monday". The operators must be in capitals so that the words
+ * "and", "or" and "not" can still be searched for.
+ *
+ * A word ending in "~" also finds words a few typing mistakes away, 1 for words
+ * of up to 4 letters and 2 for longer ones. "word~1" or "word~2" gives the
+ * number of mistakes allowed.
+ *
+ * For example: (report OR memo) -draft after:"next monday"
+ *
  */
 public class SearchParser extends CommandParser {
 
+	private static final String OPERATOR_AND = "AND";
+	private static final String OPERATOR_OR = "OR";
+	private static final String OPERATOR_NOT = "NOT";
+
+	private static final String FIELD_DONE = "done";
+	private static final String FIELD_TYPE = "type";
+	private static final String FIELD_BEFORE = "before";
+	private static final String FIELD_AFTER = "after";
+
+	private static final char CHAR_QUOTE = '"';
+	private static final char CHAR_OPEN = '(';
+	private static final char CHAR_CLOSE = ')';
+	private static final char CHAR_NOT = '-';
+	private static final char CHAR_FIELD = ':';
+	private static final char CHAR_FUZZY = '~';
+
+	private static final int SHORT_WORD_LENGTH = 4;
+	private static final int SHORT_WORD_EDITS = 1;
+	private static final int LONG_WORD_EDITS = 2;
+	private static final int MAX_EDITS = 2;
+
+	private static final String ERROR_UNMATCHED_QUOTE = "An inverted comma is not closed.";
+	private static final String ERROR_UNMATCHED_OPEN = "A bracket is not closed.";
+	private static final String ERROR_UNMATCHED_CLOSE = "A bracket is closed without being opened.";
+	private static final String ERROR_MISSING_TERM = "A search term is missing after \"%s\".";
+	private static final String ERROR_EMPTY_PHRASE = "A phrase in inverted commas is empty.";
+	private static final String ERROR_NO_FIELD_VALUE = "No value given for \"%s:\".";
+	private static final String ERROR_BAD_DONE = "\"done:\" must be followed by yes or no.";
+	private static final String ERROR_BAD_TYPE = "\"type:\" must be followed by floating, deadline or timed.";
+	private static final String ERROR_TOO_MANY_EDITS = "A word ending in \"~\" can allow at most "
+			+ MAX_EDITS + " mistakes.";
+
+	private static enum TokenType {
+		WORD, PHRASE, FIELD, OPEN, CLOSE, NOT
+	};
+
+	private static class Token {
+		final TokenType type;
+		final String text;
+		final String value;
+
+		Token(TokenType type, String text, String value) {
+			this.type = type;
+			this.text = text;
+			this.value = value;
+		}
+
+		boolean isOperator(String operator) {
+			return (type == TokenType.WORD) && text.equals(operator);
+		}
+	}
+
 	private String arguments;
 	private String[] keywords = new String[0];
+	private SearchQuery query = null;
+	private boolean isPlainKeywords = true;
+
+	private List<Token> tokens;
+	private int position;
 
 	/**
 	 * Constructor of the class
-	 * 
+	 *
 	 * @param arguments
 	 *            : argument string associating with the command
 	 */
@@ -25,20 +110,339 @@ public class SearchParser extends CommandParser {
 
 	/**
 	 * This method override the parse method in command parser class.
+	 *
+	 * @throws InvalidSearchQueryException
+	 *             in case the query does not follow the grammar.
+	 * @throws CannotParseDateException
+	 *             in case the date of before: or after: cannot be parsed.
 	 */
 	@Override
-	public void parse() {
+	public void parse() throws InvalidSearchQueryException,
+			CannotParseDateException {
 
-		if (arguments.length() == 0) {
+		if (arguments.trim().length() == 0) {
 			return;
 		}
 
-		keywords = arguments.split(" ");
+		tokens = tokenize(arguments);
+		position = 0;
+
+		query = parseOr();
+
+		if (position < tokens.size()) {
+			throw new InvalidSearchQueryException(ERROR_UNMATCHED_CLOSE);
+		}
+
+		List<String> words = new ArrayList<String>();
 
+		for (Token eachToken : tokens) {
+			if ((eachToken.type != TokenType.WORD)
+					|| eachToken.isOperator(OPERATOR_AND)
+					|| eachToken.isOperator(OPERATOR_OR)
+					|| eachToken.isOperator(OPERATOR_NOT)
+					|| isFuzzy(eachToken)) {
+				isPlainKeywords = false;
+			}
+			words.add(eachToken.text);
+		}
+
+		if (isPlainKeywords) {
+			keywords = words.toArray(new String[words.size()]);
+		}
 	}
 
 	public String[] getKeyWords() {
 		return keywords;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * @return the parsed query, or null if there were no arguments
+	 */
+	public SearchQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return true if the arguments are only words to be searched for together
+	 */
+	public boolean isPlainKeywords() {
+		return isPlainKeywords;
+	}
+
+	/**
+	 * Plain words are passed as keywords, anything else as the query tree.
+	 *
+	 * @return search terms to be given to the database
+	 */
+	public SearchTerms getSearchTerms() {
+		if (isPlainKeywords) {
+			return new SearchTerms(keywords);
+		}
+		return new SearchTerms(query);
+	}
+
+	private List<Token> tokenize(String text)
+			throws InvalidSearchQueryException {
+		List<Token> found = new ArrayList<Token>();
+		int i = 0;
+
+		while (i < text.length()) {
+			char current = text.charAt(i);
+
+			if (Character.isWhitespace(current)) {
+				i++;
+			} else if (current == CHAR_OPEN) {
+				found.add(new Token(TokenType.OPEN, "(", null));
+				i++;
+			} else if (current == CHAR_CLOSE) {
+				found.add(new Token(TokenType.CLOSE, ")", null));
+				i++;
+			} else if (current == CHAR_QUOTE) {
+				int closing = findClosingQuote(text, i);
+				String phrase = text.substring(i + 1, closing);
+				found.add(new Token(TokenType.PHRASE, phrase, null));
+				i = closing + 1;
+			} else if ((current == CHAR_NOT) && isStartOfTerm(text, i + 1)) {
+				found.add(new Token(TokenType.NOT, "-", null));
+				i++;
+			} else {
+				int wordStart = i;
+
+				while ((i < text.length()) && !isWordEnd(text.charAt(i))) {
+					i++;
+				}
+
+				String word = text.substring(wordStart, i);
+				int colon = word.indexOf(CHAR_FIELD);
+				String field = (colon > 0) ? word.substring(0, colon)
+						.toLowerCase() : null;
+
+				if (isField(field)) {
+					String value = word.substring(colon + 1);
+
+					// Field value in inverted commas, such as after:"next monday"
+					if (value.isEmpty() && (i < text.length())
+							&& (text.charAt(i) == CHAR_QUOTE)) {
+						int closing = findClosingQuote(text, i);
+						value = text.substring(i + 1, closing);
+						i = closing + 1;
+					}
+
+					if (value.trim().isEmpty()) {
+						throw new InvalidSearchQueryException(String.format(
+								ERROR_NO_FIELD_VALUE, field));
+					}
+					found.add(new Token(TokenType.FIELD, field, value.trim()));
+				} else {
+					found.add(new Token(TokenType.WORD, word, null));
+				}
+			}
+		}
+
+		return found;
+	}
+
+	// query := and ( OR and )*
+	private SearchQuery parseOr() throws InvalidSearchQueryException,
+			CannotParseDateException {
+		List<SearchQuery> parts = new ArrayList<SearchQuery>();
+		parts.add(parseAnd());
+
+		while ((peek() != null) && peek().isOperator(OPERATOR_OR)) {
+			position++;
+			parts.add(parseAnd());
+		}
+
+		return SearchQuery.or(parts);
+	}
+
+	// and := unary ( [AND] unary )*
+	private SearchQuery parseAnd() throws InvalidSearchQueryException,
+			CannotParseDateException {
+		List<SearchQuery> parts = new ArrayList<SearchQuery>();
+		parts.add(parseUnary());
+
+		while ((peek() != null) && (peek().type != TokenType.CLOSE)
+				&& !peek().isOperator(OPERATOR_OR)) {
+			if (peek().isOperator(OPERATOR_AND)) {
+				position++;
+			}
+			parts.add(parseUnary());
+		}
+
+		return SearchQuery.and(parts);
+	}
+
+	// unary := ( NOT | - ) unary | primary
+	private SearchQuery parseUnary() throws InvalidSearchQueryException,
+			CannotParseDateException {
+		Token next = peek();
+
+		if ((next != null)
+				&& ((next.type == TokenType.NOT) || next.isOperator(OPERATOR_NOT))) {
+			position++;
+			return SearchQuery.not(parseUnary());
+		}
+
+		return parsePrimary();
+	}
+
+	// primary := ( query ) | field:value | "phrase" | word
+	private SearchQuery parsePrimary() throws InvalidSearchQueryException,
+			CannotParseDateException {
+		Token next = peek();
+
+		if (next == null) {
+			String previous = (position > 0) ? tokens.get(position - 1).text : "";
+			throw new InvalidSearchQueryException(String.format(
+					ERROR_MISSING_TERM, previous));
+		}
+
+		position++;
+
+		switch (next.type) {
+		case OPEN:
+			SearchQuery grouped = parseOr();
+
+			if ((peek() == null) || (peek().type != TokenType.CLOSE)) {
+				throw new InvalidSearchQueryException(ERROR_UNMATCHED_OPEN);
+			}
+			position++;
+			return grouped;
+		case CLOSE:
+			throw new InvalidSearchQueryException(ERROR_UNMATCHED_CLOSE);
+		case PHRASE:
+			if (next.text.trim().isEmpty()) {
+				throw new InvalidSearchQueryException(ERROR_EMPTY_PHRASE);
+			}
+			return SearchQuery.term(next.text);
+		case FIELD:
+			return fieldToQuery(next.text, next.value);
+		default:
+			if (next.isOperator(OPERATOR_AND) || next.isOperator(OPERATOR_OR)) {
+				throw new InvalidSearchQueryException(String.format(
+						ERROR_MISSING_TERM, next.text));
+			}
+			if (isFuzzy(next)) {
+				return fuzzyToQuery(next.text);
+			}
+			return SearchQuery.term(next.text);
+		}
+	}
+
+	private SearchQuery fieldToQuery(String field, String value)
+			throws InvalidSearchQueryException, CannotParseDateException {
+		String valueLowerCase = value.toLowerCase();
+
+		if (field.equals(FIELD_DONE)) {
+			if (valueLowerCase.equals("yes") || valueLowerCase.equals("true")) {
+				return SearchQuery.done(true);
+			} else if (valueLowerCase.equals("no")
+					|| valueLowerCase.equals("false")) {
+				return SearchQuery.done(false);
+			}
+			throw new InvalidSearchQueryException(ERROR_BAD_DONE);
+		}
+
+		if (field.equals(FIELD_TYPE)) {
+			for (TaskType eachType : TaskType.values()) {
+				if (eachType.toString().toLowerCase().equals(valueLowerCase)) {
+					return SearchQuery.type(eachType);
+				}
+			}
+			throw new InvalidSearchQueryException(ERROR_BAD_TYPE);
+		}
+
+		DateTime date = parseDate(value);
+
+		if (field.equals(FIELD_BEFORE)) {
+			return SearchQuery.before(date);
+		}
+		return SearchQuery.after(date);
+	}
+
+	// word~ or word~N
+	private SearchQuery fuzzyToQuery(String text)
+			throws InvalidSearchQueryException {
+		int tilde = text.lastIndexOf(CHAR_FUZZY);
+		String word = text.substring(INT_0, tilde);
+		String edits = text.substring(tilde + 1);
+
+		if (edits.isEmpty()) {
+			int defaultEdits = (word.length() <= SHORT_WORD_LENGTH) ? SHORT_WORD_EDITS
+					: LONG_WORD_EDITS;
+			return SearchQuery.fuzzy(word, defaultEdits);
+		}
+
+		// More than one digit is always too many, and may not fit in an int
+		if ((edits.length() > 1) || (Integer.parseInt(edits) > MAX_EDITS)) {
+			throw new InvalidSearchQueryException(ERROR_TOO_MANY_EDITS);
+		}
+		return SearchQuery.fuzzy(word, Integer.parseInt(edits));
+	}
+
+	private DateTime parseDate(String value) throws CannotParseDateException {
+		List<DateGroup> groups = NattyParserWrapper.getInstance()
+				.parseWCurBaseDate(value);
+
+		if (groups.isEmpty() || groups.get(INT_0).getDates().isEmpty()) {
+			throw new CannotParseDateException();
+		}
+
+		return new DateTime(groups.get(INT_0).getDates().get(INT_0));
+	}
+
+	private Token peek() {
+		return (position < tokens.size()) ? tokens.get(position) : null;
+	}
+
+	private int findClosingQuote(String text, int opening)
+			throws InvalidSearchQueryException {
+		int closing = text.indexOf(CHAR_QUOTE, opening + 1);
+
+		if (closing < 0) {
+			throw new InvalidSearchQueryException(ERROR_UNMATCHED_QUOTE);
+		}
+		return closing;
+	}
+
+	// A "-" only means NOT when a term follows it directly, so "-" alone or "a - b" are still words
+	private boolean isStartOfTerm(String text, int index) {
+		return (index < text.length())
+				&& !Character.isWhitespace(text.charAt(index))
+				&& (text.charAt(index) != CHAR_CLOSE)
+				&& (text.charAt(index) != CHAR_NOT);
+	}
+
+	private boolean isWordEnd(char current) {
+		return Character.isWhitespace(current) || (current == CHAR_OPEN)
+				|| (current == CHAR_CLOSE) || (current == CHAR_QUOTE);
+	}
+
+	private boolean isFuzzy(Token token) {
+		if (token.type != TokenType.WORD) {
+			return false;
+		}
+
+		int tilde = token.text.lastIndexOf(CHAR_FUZZY);
+
+		if (tilde <= 0) {
+			return false;
+		}
+
+		String edits = token.text.substring(tilde + 1);
+
+		for (int i = 0; i < edits.length(); i++) {
+			if (!Character.isDigit(edits.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isField(String field) {
+		return FIELD_DONE.equals(field) || FIELD_TYPE.equals(field)
+				|| FIELD_BEFORE.equals(field) || FIELD_AFTER.equals(field);
+	}
+
+}
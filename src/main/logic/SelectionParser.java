@@ -0,0 +1,208 @@
+//@author A0081007U
+package main.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.joda.time.DateTime;
+
+import main.shared.SearchQuery;
+import main.shared.SearchTerms;
+import main.shared.Task;
+
+/**
+ * An object of this class parses which tasks a command changing many tasks at
+ * once is given, such as "done where today", "postpone overdue by 1 day" or
+ * "delete 3-400".
+ *
+ * Tasks are picked either by the indexes of the last shown list, where "3-6"
+ * stands for every index from 3 to 6, or by the parameters of the list
+ * command following "where". "overdue" may also be given without "where".
+ *
+ */
+public class SelectionParser extends CommandParser {
+
+	private static final String WORD_WHERE = "where";
+	private static final String WORD_OVERDUE = "overdue";
+	private static final String RANGE_DELIMITER = "-";
+	private static final String INDEX_DELIMITER = ", ";
+	private static final Pattern INDEX_TOKENS = Pattern
+			.compile("\\d+(-\\d+)?(\\s+\\d+(-\\d+)?)*");
+
+	private String arguments;
+	private List<Task> lastShownToUi;
+
+	private boolean isWhere = false;
+	private boolean isOverdue = false;
+	private String whereParameters;
+	private SearchTerms terms;
+	private DateTime currentTime;
+
+	private List<Integer> serials = new ArrayList<Integer>();
+	private List<String> indexTokens = new ArrayList<String>();
+
+	/**
+	 * Constructor of the class.
+	 *
+	 * @param arguments
+	 *            : the part of the argument string picking the tasks.
+	 */
+	public SelectionParser(String arguments) {
+		super(arguments);
+		this.arguments = arguments.trim();
+		lastShownToUi = lastShownObject.getLastShownList();
+	}
+
+	/**
+	 * @return true if the arguments pick tasks some other way than by one
+	 *         index, so the command is to change many tasks at once. That is
+	 *         "where" or "overdue" first, or only indexes and ranges with more
+	 *         than one index or at least one range.
+	 */
+	static boolean isSelection(String arguments) {
+		String trimmed = arguments.trim();
+		String firstWord = trimmed.split("\\s+")[INT_0].toLowerCase();
+
+		if (firstWord.equals(WORD_WHERE) || firstWord.equals(WORD_OVERDUE)) {
+			return true;
+		}
+
+		return INDEX_TOKENS.matcher(trimmed).matches()
+				&& (trimmed.contains(RANGE_DELIMITER) || !trimmed.equals(firstWord));
+	}
+
+	/**
+	 * This method overrides the parse method in command parser class.
+	 *
+	 * @throws NumberFormatException
+	 *             in case an index or range is not made of integers.
+	 * @throws NoSuchElementException
+	 *             in case an index is not in the last shown list, or nothing
+	 *             follows "where".
+	 */
+	@Override
+	public void parse() throws NumberFormatException, NoSuchElementException {
+		String firstWord = getFirstWord(arguments).toLowerCase();
+
+		if (firstWord.equals(WORD_WHERE)) {
+			parseWhere(removeFirstWord(arguments));
+		} else if (firstWord.equals(WORD_OVERDUE)) {
+			parseWhere(arguments);
+		} else {
+			parseIndexes();
+		}
+	}
+
+	private void parseWhere(String parameters) {
+		ListParser listParser = new ListParser(parameters);
+		listParser.parse();
+
+		isWhere = true;
+		whereParameters = parameters;
+		currentTime = new DateTime();
+
+		if (listParser.isOverdue()) {
+			// The indexes find the undone tasks started before now. Which of
+			// them have ended is checked on each task
+			isOverdue = true;
+			terms = new SearchTerms(SearchQuery.and(Arrays.asList(
+					SearchQuery.done(false), SearchQuery.before(currentTime))));
+		} else if (listParser.isNoParam()) {
+			throw new NoSuchElementException();
+		} else {
+			terms = ListHandler.filterFor(listParser);
+		}
+	}
+
+	private void parseIndexes() {
+		HashSet<Integer> serialsSeen = new HashSet<Integer>();
+
+		for (String token : arguments.split(STRING_SPACE)) {
+			if (token.isEmpty()) {
+				continue;
+			}
+
+			String[] bounds = token.split(RANGE_DELIMITER, INT_2);
+			int first = Integer.parseInt(bounds[INT_0]);
+			int last = (bounds.length == INT_2) ? Integer.parseInt(bounds[INT_1])
+					: first;
+
+			if ((first < INT_1) || (first > last)
+					|| (last > lastShownToUi.size())) {
+				throw new NoSuchElementException();
+			}
+
+			for (int index = first; index <= last; index++) {
+				int serial = lastShownToUi.get(index - INT_1).getSerial();
+
+				if (serialsSeen.add(serial)) {
+					serials.add(serial);
+				}
+			}
+			indexTokens.add(token);
+		}
+
+		if (serials.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+	}
+
+	/**
+	 * @return true if the tasks are picked by list parameters rather than
+	 *         indexes
+	 */
+	public boolean isWhere() {
+		return isWhere;
+	}
+
+	/**
+	 * @return the search terms picking the tasks, when picked by list
+	 *         parameters
+	 */
+	public SearchTerms getTerms() {
+		return terms;
+	}
+
+	/**
+	 * @return the serial numbers of the tasks, when picked by indexes
+	 */
+	public List<Integer> getSerials() {
+		return serials;
+	}
+
+	/**
+	 * Tells whether a task found by the search terms is really picked, for the
+	 * parameters the search terms cannot express.
+	 *
+	 * @param task
+	 *            : a task found by the search terms, or picked by index
+	 * @return true if the task is picked
+	 */
+	public boolean isPicked(Task task) {
+		return !isOverdue || ListHandler.isOverdue(task, currentTime);
+	}
+
+	/**
+	 * @return how the tasks were picked, such as "at indexes [1, 3-5]" or
+	 *         "listed by \"today\"", to be shown to the user
+	 */
+	public String getDescription() {
+		if (isWhere) {
+			return "listed by \"" + whereParameters + "\"";
+		}
+
+		StringBuilder indexes = new StringBuilder();
+		for (String token : indexTokens) {
+			if (indexes.length() > INT_0) {
+				indexes.append(INDEX_DELIMITER);
+			}
+			indexes.append(token);
+		}
+		return "at indexes [" + indexes + "]";
+	}
+
+}
@@ -3,6 +3,7 @@
 package main.logic;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -46,12 +47,15 @@ public class SortHandler extends CommandHandler{
 
 		Comparator<Task> sorter = null;
 
+		// Read before the listing so a kept result is never older than its version
+		long version = dataBase.getVersion();
+		ResultCache.Key listingKey = latestListingHandlerForUI.cacheKey();
+
 		LogicToUi fromLatestListCommand = latestListingHandlerForUI.execute();
 		
 		SearchTerms searchFilters = fromLatestListCommand.getFilters();
 		String listStatusMsg = fromLatestListCommand.getString();
 
-		listFromLastListingCommand = fromLatestListCommand.getList();
 		String statusMsg = null;
 
 		if (parser.getType()) {
@@ -92,7 +96,19 @@ public class SortHandler extends CommandHandler{
 		
 		latestSortHandlerForUI = this;
 
-		Collections.sort(listFromLastListingCommand, sorter);
+		ResultCache.Key key = null;
+		if (listingKey != null) {
+			key = listingKey.sortedBy(latestSorting, parser.getReverse());
+		}
+		listFromLastListingCommand = resultCache.get(key, version);
+
+		if (listFromLastListingCommand == null) {
+			// Listings are read-only views of the database, so the sorted list is a copy
+			listFromLastListingCommand = new ArrayList<Task>(fromLatestListCommand.getList());
+			Collections.sort(listFromLastListingCommand, sorter);
+			resultCache.put(key, version, listFromLastListingCommand);
+		}
+		lastShownObject.setLastShownList(listFromLastListingCommand);
 		String appendedSortStatus = listStatusMsg + ", " + statusMsg;
 
 		if (searchFilters == null) {
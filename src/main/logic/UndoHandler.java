@@ -2,21 +2,24 @@
 package main.logic;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 import main.shared.LogicToUi;
-import main.shared.Task;
+import main.storage.HistoryEntry;
 import main.storage.WillNotWriteToCorruptFileException;
 
 /**
- * Each object of this class handles a undo operation. The object call the undo
- * stack to revert the data to the previous state.
+ * Each object of this class handles a undo operation. The object call the
+ * command history to revert only the tasks the last command changed.
  * 
  */
 
 public class UndoHandler extends CommandHandler {
 	private static final String ERROR_NO_MORE_UNDO = "You don't have any more undo steps left";
+	private static final String ERROR_UNDO_CONFLICT = "The tasks have changed since then,"
+			+ " so the %1$s cannot be undone";
+	private static final String ERROR_IN_BATCH = "You cannot undo in a batch."
+			+ " Please commit or rollback it first.";
 
 	/**
 	 * Constructor of the class.
@@ -33,19 +36,30 @@ public class UndoHandler extends CommandHandler {
 	 * 
 	 */
 	public LogicToUi execute() {
-		if (super.undoStepsRemaining() == 0) {
+		if (history.isInBatch()) {
+			return new LogicToUi(ERROR_IN_BATCH);
+		}
+
+		HistoryEntry previous = history.peekUndo();
+
+		if (previous == null) {
 			return new LogicToUi(ERROR_NO_MORE_UNDO);
 		}
 
 		try {
-			List<Task> previous = super.peekUndoClones();
-			dataBase.setAll(previous);
-			String status = "The " + super.popAndGetPrevUndoMsg()
+			dataBase.replace(dataBase.locateSameTasks(previous.getAddedTasks()),
+					previous.getRemovedTasks());
+			String status = "The " + previous.getMessage()
 					+ " has been undone";
 
-			super.popUndoClones();
+			history.undone();
 			feedback = new LogicToUi(status);
 
+		} catch (NoSuchElementException e) {
+			// The step no longer fits the database and never will again.
+			history.discardUndo();
+			feedback = new LogicToUi(String.format(ERROR_UNDO_CONFLICT,
+					previous.getMessage()));
 		} catch (IOException e) {
 			feedback = new LogicToUi(ERROR_IO);
 		} catch (WillNotWriteToCorruptFileException e) {
@@ -2,23 +2,36 @@
 package main.logic;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.NoSuchElementException;
+import main.shared.ImmutableTask;
 import main.shared.LogicToUi;
 import main.shared.Task;
+import main.storage.TaskUpdate;
 import main.storage.WillNotWriteToCorruptFileException;
 
 public class UndoneHandler extends CommandHandler {
 
+	private static final String MSG_MANY_MARKED_UNDONE = "have been marked as undone";
+	private static final TaskUpdate MARK_UNDONE = new TaskUpdate() {
+		@Override
+		public Task apply(ImmutableTask current) {
+			return current.withDone(false);
+		}
+	};
+
 	private String arguments;
 	private UndoneParser parser;
+	private SelectionParser selection;
 	private Task copy;
-	private Task toBeUpdated;
+	private ImmutableTask toBeUpdated;
 
 	public UndoneHandler(String arguments) {
 		super(arguments);
 		this.arguments = arguments;
 		parser = new UndoneParser(arguments);
+		if (SelectionParser.isSelection(arguments)) {
+			selection = new SelectionParser(arguments);
+		}
 	}
 
 	@Override
@@ -28,14 +41,18 @@ public class UndoneHandler extends CommandHandler {
 			return new LogicToUi(ERROR_INDEX_NUMBER_NOT_VALID);
 		}
 
+		if (selection != null) {
+			return executeSelection();
+		}
+
 		try {
 			parser.parse();
 			int serial = parser.getSerialOfTask();
 
 			toBeUpdated = dataBase.locateATask(serial);
-			copy = new Task(toBeUpdated);
-			copy.done(false);
+			copy = toBeUpdated.withDone(false);
 			if (copy.isEqualTo(toBeUpdated)) {
+				setNothingToChange();
 				feedback = new LogicToUi(taskToString(toBeUpdated)
 						+ " has been already been marked as undone.");
 			} else {
@@ -56,16 +73,38 @@ public class UndoneHandler extends CommandHandler {
 		return feedback;
 	}
 
+	/**
+	 * Marks every task picked by a range, several indexes or "where" as
+	 * undone, as one change.
+	 */
+	private LogicToUi executeSelection() {
+		try {
+			selection.parse();
+			String undoMessage = "marking of tasks "
+					+ selection.getDescription() + " as undone";
+			int changedCount = updateSelection(selection, MARK_UNDONE,
+					undoMessage);
+			return selectionFeedback(changedCount, selection,
+					MSG_MANY_MARKED_UNDONE);
+
+		} catch (NumberFormatException | NoSuchElementException e) {
+			return new LogicToUi(ERROR_INDEX_NUMBER_NOT_VALID);
+		} catch (IOException e) {
+			return new LogicToUi(ERROR_IO);
+		} catch (WillNotWriteToCorruptFileException e) {
+			return new LogicToUi(ERROR_FILE_CORRUPTED);
+		}
+	}
+
 	@Override
 	protected void updateDatabaseNSendToUndoStack()
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException {
-		List<Task> copyCurrentTaskList = super.getCurrentTaskList();
 		dataBase.update(toBeUpdated.getSerial(), copy);
 		String taskDetails = taskToString(copy);
 		String undoMessage = "marking of task \"" + taskDetails
 				+ "\" as undone";
-		super.pushUndoStatMesNTaskList(undoMessage, copyCurrentTaskList);
+		super.pushUndoStatMesNUpdate(undoMessage, toBeUpdated, copy);
 	}
 
 }
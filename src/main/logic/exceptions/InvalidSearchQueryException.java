@@ -0,0 +1,9 @@
+package main.logic.exceptions;
+//@author A0081007U
+public class InvalidSearchQueryException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public InvalidSearchQueryException(String message) {
+		super(message);
+	}
+}
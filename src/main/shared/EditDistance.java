@@ -0,0 +1,77 @@
+//@author A0081007U
+package main.shared;
+/**
+ * EditDistance.java
+ * Levenshtein distance between words: the fewest single character insertions,
+ * deletions and substitutions turning one into the other.
+ * <p>
+ * Used by fuzzy search so a word with a typo still finds the task.
+ * The distance can be given a limit, above which it stops early and only reports that the limit was passed.
+ * @author  Yeo Kheng Meng
+ */
+
+public class EditDistance {
+
+	private EditDistance() {
+	}
+
+	/**
+	 * @return the edit distance between the two words
+	 */
+	public static int between(String first, String second) {
+		return between(first, second, Integer.MAX_VALUE - 1);
+	}
+
+	/**
+	 * @param limit the largest distance of interest, at least 0
+	 * @return the edit distance between the two words, or limit + 1 if it is more than limit
+	 */
+	public static int between(String first, String second, int limit) {
+		assert (limit >= 0);
+
+		if (Math.abs(first.length() - second.length()) > limit) {
+			return limit + 1;
+		}
+
+		int[] previous = new int[second.length() + 1];
+		int[] current = new int[second.length() + 1];
+
+		for (int j = 0; j <= second.length(); j++) {
+			previous[j] = j;
+		}
+
+		for (int i = 1; i <= first.length(); i++) {
+			current[0] = i;
+			int rowSmallest = current[0];
+
+			for (int j = 1; j <= second.length(); j++) {
+				int substitution = previous[j - 1]
+						+ ((first.charAt(i - 1) == second.charAt(j - 1)) ? 0 : 1);
+				int deletion = previous[j] + 1;
+				int insertion = current[j - 1] + 1;
+
+				current[j] = Math.min(substitution, Math.min(deletion, insertion));
+				rowSmallest = Math.min(rowSmallest, current[j]);
+			}
+
+			// Distances never shrink further down, so the limit is already passed
+			if (rowSmallest > limit) {
+				return limit + 1;
+			}
+
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return Math.min(previous[second.length()], limit + 1);
+	}
+
+	/**
+	 * @return true if the two words are at most maxEdits apart
+	 */
+	public static boolean isWithin(String first, String second, int maxEdits) {
+		return between(first, second, maxEdits) <= maxEdits;
+	}
+
+}
@@ -0,0 +1,143 @@
+//@author A0081007U
+package main.shared;
+/**
+ * ImmutableTask.java
+ * A Task that can never change after it is created, so it can be shared freely between threads and callers.
+ * <p>
+ * All the methods that would change a Task throw UnsupportedOperationException.
+ * Use the with methods instead to get a changed copy, or new Task(immutableTask) for a mutable copy.
+ * @author  Yeo Kheng Meng
+ */
+
+import org.joda.time.DateTime;
+
+public final class ImmutableTask extends Task {
+
+	private static final String MSG_IMMUTABLE = "Task is immutable, use a with method or copy it first";
+
+	private ImmutableTask(Task toBeCloned) {
+		super(toBeCloned);
+	}
+
+	/**
+	 * Get an immutable version of the given task including its serial number
+	 *
+	 * @param task the task to be copied
+	 * @return the same task if it is already immutable, otherwise an immutable copy
+	 * @throws IllegalArgumentException if given task is null
+	 */
+	public static ImmutableTask of(Task task) {
+		if(task == null) {
+			throw new IllegalArgumentException();
+		}
+
+		if(task instanceof ImmutableTask) {
+			return (ImmutableTask) task;
+		}
+
+		return new ImmutableTask(task);
+	}
+
+	/**
+	 * @param newDoneStatus the done value of the copy
+	 * @return a copy of this task with the given done value
+	 */
+	public ImmutableTask withDone(boolean newDoneStatus) {
+		if(newDoneStatus == isDone()) {
+			return this;
+		}
+
+		Task changed = new Task(this);
+		changed.done(newDoneStatus);
+		return new ImmutableTask(changed);
+	}
+
+	/**
+	 * @param newName the name of the copy
+	 * @return a copy of this task with the given name
+	 * @throws IllegalArgumentException if name is null or empty
+	 */
+	public ImmutableTask withName(String newName) {
+		Task changed = new Task(this);
+		changed.changeName(newName);
+		return new ImmutableTask(changed);
+	}
+
+	/**
+	 * @return a floating copy of this task
+	 */
+	public ImmutableTask asFloating() {
+		if(isFloatingTask()) {
+			return this;
+		}
+
+		Task changed = new Task(this);
+		changed.changetoFloating();
+		return new ImmutableTask(changed);
+	}
+
+	/**
+	 * @param newDeadline deadline of the copy
+	 * @return a deadline task copy of this task
+	 * @throws IllegalArgumentException if given date is null or of the form Task.INVALID_DATE_FIELD
+	 */
+	public ImmutableTask withDeadline(DateTime newDeadline) {
+		Task changed = new Task(this);
+		changed.changeToDeadline(newDeadline);
+		return new ImmutableTask(changed);
+	}
+
+	/**
+	 * @param newStartDate start date of the copy
+	 * @param newEndDate end date of the copy
+	 * @return a timed task copy of this task
+	 * @throws IllegalArgumentException if given date is null or of the form Task.INVALID_DATE_FIELD.
+	 * Also throw if start date is after end date
+	 */
+	public ImmutableTask withStartAndEndDate(DateTime newStartDate, DateTime newEndDate) {
+		Task changed = new Task(this);
+		changed.changeToTimed(newStartDate, newEndDate);
+		return new ImmutableTask(changed);
+	}
+
+	@Override
+	public void becomeThis(Task updated) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void done(boolean newDoneStatus) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void changetoFloating() {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void changeToDeadline(DateTime newDeadline) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void changeToTimed(DateTime newStartDate, DateTime newEndDate) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void changeName(String newName) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void changeStartAndEndDate(DateTime newStartDate, DateTime newEndDate) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+	@Override
+	public void changeDeadline(DateTime newDeadline) {
+		throw new UnsupportedOperationException(MSG_IMMUTABLE);
+	}
+
+}
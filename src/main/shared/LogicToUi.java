@@ -6,6 +6,7 @@ package main.shared;
  * @author  Yeo Kheng Meng
  */ 
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -19,6 +20,7 @@ public class LogicToUi {
 	private String output = null;
 	private List<Task> display = null;
 	private SearchTerms filters = null;
+	private List<Double> scores = null;
 	
 	private int lastChangedSerial = INVALID_SERIAL;  
 	
@@ -59,6 +61,20 @@ public class LogicToUi {
 		
 	}
 	
+	public LogicToUi(List<Task> display, String output, SearchTerms filters, List<Double> scores) {
+		assert(display != null);
+		assert(output != null);
+		assert(filters != null);
+		assert(scores != null);
+		assert(scores.size() == display.size());
+		
+		this.display = display;
+		this.output = output;
+		this.filters = filters;
+		this.scores = scores;
+		
+	}
+	
 	public LogicToUi(List<Task> display, String output, SortStatus sorting, boolean reverse) {
 		assert(display != null);
 		assert(output != null);
@@ -118,6 +134,22 @@ public class LogicToUi {
 	}
 	
 	
+	public boolean containsScores(){
+		if(this.scores == null) {
+			return false;
+		} else {
+			return true;
+		}
+	}
+	
+	/**
+	 * @return the ranking score of each task in the list, best first, for a ranked search
+	 */
+	public List<Double> getScores(){
+		return scores;
+	}
+	
+	
 	public boolean containsList() {
 		if (this.display == null) {
 			return false;
@@ -131,10 +163,41 @@ public class LogicToUi {
 		return output;
 	}
 	
+	/**
+	 * @return the tasks to show. Listings and searches give a read-only list whose tasks are
+	 *         only fetched when read, so showing it a page at a time is cheaper than reading all of it.
+	 */
 	public List<Task> getList() {
 		return display;
 	}
 	
+	/**
+	 * @param offset index of the first task of the page
+	 * @param limit largest number of tasks on the page
+	 * @return a new list of the tasks on this page of the list, empty if the offset is past the end
+	 */
+	public List<Task> getPage(int offset, int limit) {
+		assert(display != null);
+		return pageOf(display, offset, limit);
+	}
+	
+	/**
+	 * Reads one page of a list of tasks, such as one given by getList, without reading the rest of it
+	 * 
+	 * @param tasks the list to read from
+	 * @param offset index of the first task of the page
+	 * @param limit largest number of tasks on the page
+	 * @return a new list of the tasks on this page of the list, empty if the offset is past the end
+	 */
+	public static List<Task> pageOf(List<Task> tasks, int offset, int limit) {
+		assert(tasks != null);
+		assert(offset >= 0);
+		assert(limit >= 0);
+		
+		int end = (int) Math.min((long) offset + limit, tasks.size());
+		return new ArrayList<Task>(tasks.subList(Math.min(offset, end), end));
+	}
+	
 	public boolean containsLastChangedSerial(){
 		if(lastChangedSerial == INVALID_SERIAL){
 			return false;
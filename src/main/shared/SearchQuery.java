@@ -0,0 +1,314 @@
+//@author A0081007U
+package main.shared;
+/**
+ * SearchQuery.java
+ * An immutable tree of search conditions joined by AND, OR and NOT, passed from logic to database.
+ * <p>
+ * Leaves are a term that must be in the task name, a word the name must have within a few edits,
+ * the done status, the task type, or a date the task must have something before or after.
+ * The database answers the tree from its indexes. matches gives the same answer for a single task.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import main.shared.Task.TaskType;
+
+public class SearchQuery {
+
+	public static enum Kind {AND, OR, NOT, TERM, FUZZY, DONE, TYPE, BEFORE, AFTER};
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("dd MMM yyyy h:mma");
+
+	private final Kind kind;
+	private final List<SearchQuery> children;
+	private final String term;
+	private final boolean done;
+	private final TaskType type;
+	private final DateTime date;
+	private final int maxEdits;
+
+	private SearchQuery(Kind kind, List<SearchQuery> children, String term, boolean done,
+			TaskType type, DateTime date) {
+		this(kind, children, term, done, type, date, 0);
+	}
+
+	private SearchQuery(Kind kind, List<SearchQuery> children, String term, boolean done,
+			TaskType type, DateTime date, int maxEdits) {
+		this.kind = kind;
+		this.children = children;
+		this.term = term;
+		this.done = done;
+		this.type = type;
+		this.date = date;
+		this.maxEdits = maxEdits;
+	}
+
+	/**
+	 * @return a query matching tasks that match all the parts
+	 */
+	public static SearchQuery and(List<SearchQuery> parts) {
+		return join(Kind.AND, parts);
+	}
+
+	/**
+	 * @return a query matching tasks that match any of the parts
+	 */
+	public static SearchQuery or(List<SearchQuery> parts) {
+		return join(Kind.OR, parts);
+	}
+
+	public static SearchQuery not(SearchQuery part) {
+		assert (part != null);
+		return new SearchQuery(Kind.NOT, Collections.singletonList(part), null, false, null, null);
+	}
+
+	/**
+	 * @param term word or phrase the task name must contain, not case sensitive
+	 */
+	public static SearchQuery term(String term) {
+		assert ((term != null) && (term.trim().length() > 0));
+		return new SearchQuery(Kind.TERM, null, term, false, null, null);
+	}
+
+	/**
+	 * @param word single word the task name must have a word close to, not case sensitive
+	 * @param maxEdits the most insertions, deletions or substitutions of a character allowed
+	 */
+	public static SearchQuery fuzzy(String word, int maxEdits) {
+		assert ((word != null) && (word.length() > 0) && (word.trim().equals(word)));
+		assert (maxEdits >= 0);
+		return new SearchQuery(Kind.FUZZY, null, word.toLowerCase(), false, null, null, maxEdits);
+	}
+
+	public static SearchQuery done(boolean isDone) {
+		return new SearchQuery(Kind.DONE, null, null, isDone, null, null);
+	}
+
+	public static SearchQuery type(TaskType type) {
+		assert (type != null);
+		return new SearchQuery(Kind.TYPE, null, null, false, type, null);
+	}
+
+	/**
+	 * @return a query matching dated tasks with a deadline or start date before this date
+	 */
+	public static SearchQuery before(DateTime date) {
+		assert (date != null);
+		return new SearchQuery(Kind.BEFORE, null, null, false, null, date);
+	}
+
+	/**
+	 * @return a query matching dated tasks with a deadline or end date after this date
+	 */
+	public static SearchQuery after(DateTime date) {
+		assert (date != null);
+		return new SearchQuery(Kind.AFTER, null, null, false, null, date);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the parts of an AND or OR, or the single part of a NOT
+	 */
+	public List<SearchQuery> getChildren() {
+		return children;
+	}
+
+	public String getTerm() {
+		return term;
+	}
+
+	/**
+	 * @return the most edits allowed by a fuzzy term
+	 */
+	public int getMaxEdits() {
+		return maxEdits;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	public TaskType getType() {
+		return type;
+	}
+
+	public DateTime getDate() {
+		return date;
+	}
+
+	/**
+	 * Checks one task against the query
+	 *
+	 * @return true if the task meets the query
+	 */
+	public boolean matches(Task task) {
+		switch (kind) {
+		case AND:
+			for (SearchQuery child : children) {
+				if (!child.matches(task)) {
+					return false;
+				}
+			}
+			return true;
+		case OR:
+			for (SearchQuery child : children) {
+				if (child.matches(task)) {
+					return true;
+				}
+			}
+			return false;
+		case NOT:
+			return !children.get(0).matches(task);
+		case TERM:
+			return task.containsTerm(term);
+		case FUZZY:
+			for (String word : wordsOf(task.getTaskName().toLowerCase())) {
+				if (EditDistance.isWithin(word, term, maxEdits)) {
+					return true;
+				}
+			}
+			return false;
+		case DONE:
+			return task.isDone() == done;
+		case TYPE:
+			return task.getType() == type;
+		case BEFORE:
+			return !task.isFloatingTask() && firstDateOf(task).isBefore(date);
+		case AFTER:
+			return !task.isFloatingTask() && lastDateOf(task).isAfter(date);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Two queries are equal if they match the same tasks for the same reasons:
+	 * the same tree of conditions, with terms compared without case and dates to the millisecond.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof SearchQuery)) {
+			return false;
+		}
+
+		SearchQuery that = (SearchQuery) other;
+
+		return (kind == that.kind) && (done == that.done) && (type == that.type)
+				&& (maxEdits == that.maxEdits)
+				&& Objects.equals(children, that.children)
+				&& Objects.equals(lowerCaseTerm(), that.lowerCaseTerm())
+				&& Objects.equals(millisOf(date), millisOf(that.date));
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(kind, children, lowerCaseTerm(), done, type, millisOf(date), maxEdits);
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case AND:
+			return joinText(" AND ");
+		case OR:
+			return joinText(" OR ");
+		case NOT:
+			return "NOT " + children.get(0).toNestedString();
+		case TERM:
+			return "\"" + term + "\"";
+		case FUZZY:
+			return term + "~" + maxEdits;
+		case DONE:
+			return done ? "done:yes" : "done:no";
+		case TYPE:
+			return "type:" + type.toString().toLowerCase();
+		case BEFORE:
+			return "before:\"" + DATE_FORMATTER.print(date) + "\"";
+		case AFTER:
+			return "after:\"" + DATE_FORMATTER.print(date) + "\"";
+		default:
+			return "";
+		}
+	}
+
+	private String lowerCaseTerm() {
+		return (term == null) ? null : term.toLowerCase();
+	}
+
+	private static Long millisOf(DateTime date) {
+		return (date == null) ? null : date.getMillis();
+	}
+
+	// A single part needs no AND or OR around it
+	private static SearchQuery join(Kind kind, List<SearchQuery> parts) {
+		assert ((parts != null) && !parts.isEmpty());
+
+		if (parts.size() == 1) {
+			return parts.get(0);
+		}
+		return new SearchQuery(kind, Collections.unmodifiableList(new ArrayList<SearchQuery>(parts)),
+				null, false, null, null);
+	}
+
+	private String joinText(String separator) {
+		String output = "";
+
+		for (SearchQuery child : children) {
+			if (output.length() > 0) {
+				output += separator;
+			}
+			output += child.toNestedString();
+		}
+
+		return output;
+	}
+
+	private String toNestedString() {
+		if ((kind == Kind.AND) || (kind == Kind.OR)) {
+			return "(" + toString() + ")";
+		}
+		return toString();
+	}
+
+	// Splits on whitespace the same way the database splits task names into words
+	private static List<String> wordsOf(String text) {
+		List<String> found = new ArrayList<String>();
+		int wordStart = -1;
+
+		for (int i = 0; i <= text.length(); i++) {
+			boolean isBoundary = (i == text.length()) || Character.isWhitespace(text.charAt(i));
+
+			if (isBoundary && (wordStart >= 0)) {
+				found.add(text.substring(wordStart, i));
+				wordStart = -1;
+			} else if (!isBoundary && (wordStart < 0)) {
+				wordStart = i;
+			}
+		}
+
+		return found;
+	}
+
+	private static DateTime firstDateOf(Task task) {
+		return task.isTimedTask() ? task.getStartDate() : task.getDeadline();
+	}
+
+	private static DateTime lastDateOf(Task task) {
+		return task.isTimedTask() ? task.getEndDate() : task.getDeadline();
+	}
+
+}
@@ -6,6 +6,10 @@ package main.shared;
  * @author  Yeo Kheng Meng
  */ 
 
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
 import org.joda.time.DateTime;
 
 public class SearchTerms {
@@ -23,6 +27,8 @@ public class SearchTerms {
 
 	private DateTime startDate = INVALID_DATE_FIELD;
 	private DateTime endDate = INVALID_DATE_FIELD;
+
+	private SearchQuery query = null;
 	
 	
 	public SearchTerms(String[] keywords) {
@@ -32,6 +38,13 @@ public class SearchTerms {
 		
 	}
 	
+	public SearchTerms(SearchQuery query) {
+		assert(query != null);
+		
+		this.query = query;
+		
+	}
+	
 	public SearchTerms(DateTime startDate, DateTime endDate) {
 		assert(startDate != null);
 		assert(endDate != null);
@@ -161,6 +174,10 @@ public class SearchTerms {
 		}
 	}
 	
+	public boolean doesSearchContainQuery() {
+		return (query != null);
+	}
+	
 	public boolean doesSearchContainDateRange() {
 		if(startDate.equals(INVALID_DATE_FIELD)) {
 			return false;
@@ -202,5 +219,57 @@ public class SearchTerms {
 	public DateTime getEndDate() {
 		return endDate;
 	}
+	
+	/**
+	 * Get the query tree of a search                           
+	 *
+	 * @return query or null if not filled.           
+	 *  
+	 */
+	
+	public SearchQuery getQuery() {
+		return query;
+	}
+	
+	/**
+	 * Two searches are equal if they ask for the same tasks: the same flags, keywords in any order
+	 * and case, dates to the millisecond and query.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof SearchTerms)) {
+			return false;
+		}
+		
+		SearchTerms that = (SearchTerms) other;
+		
+		return (completedTasks == that.completedTasks) && (incompleteTasks == that.incompleteTasks)
+				&& (timedTasks == that.timedTasks) && (deadlineTasks == that.deadlineTasks)
+				&& (floatingTasks == that.floatingTasks)
+				&& normalizedKeywords().equals(that.normalizedKeywords())
+				&& (startDate.getMillis() == that.startDate.getMillis())
+				&& (endDate.getMillis() == that.endDate.getMillis())
+				&& Objects.equals(query, that.query);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(completedTasks, incompleteTasks, timedTasks, deadlineTasks, floatingTasks,
+				normalizedKeywords(), startDate.getMillis(), endDate.getMillis(), query);
+	}
+	
+	//Keywords are not case sensitive and must all match, so their case and order do not matter
+	private Set<String> normalizedKeywords() {
+		Set<String> normalized = new TreeSet<String>();
+		
+		for (String keyword : keywords) {
+			normalized.add(keyword.toLowerCase());
+		}
+		
+		return normalized;
+	}
 }
 
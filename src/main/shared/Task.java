@@ -3,13 +3,19 @@ package main.shared;
 /**  
  * Task.java 
  * A class for holding all the information for each Task
+ * <p>
+ * Dates are stored as epoch milliseconds plus the Chronology they came with, 
+ * and the type and done status are packed into one byte. 
+ * DateTime objects are only created when a getter asks for one.
  * @author  Yeo Kheng Meng
  */ 
 
 
 
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.joda.time.Chronology;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -27,20 +33,31 @@ public class Task implements Comparable<Task> {
 	private static final int COMPARETO_BIGGER = 1;
 
 
-	private static int nextSerial = SERIAL_NUMBER_START; 
+	//Tasks may be created by background storage threads, so serials are handed out atomically
+	private static AtomicInteger nextSerial = new AtomicInteger(SERIAL_NUMBER_START); 
+
+
+	private static final TaskType[] TYPES = TaskType.values();
+	private static final int TYPE_MASK = 0x3;
+	private static final int DONE_FLAG = 0x4;
+
+	private static final long NO_DATE = INVALID_DATE_FIELD.getMillis();
 
 
 	private int serial; //A unique identifier for each task. Will reset on each new program launch
 
-	private TaskType type = null;
 	private String taskName = null;
 
-	private DateTime startDate = INVALID_DATE_FIELD;
-	private DateTime endDate = INVALID_DATE_FIELD;
-	private DateTime deadline = INVALID_DATE_FIELD;
+	//Ordinal of the TaskType in the lowest bits, DONE_FLAG above them
+	private byte flags = (byte) TaskType.FLOATING.ordinal();
 
+	//Deadline of a deadline task or start of a timed task
+	private long firstMillis = NO_DATE;
+	private long endMillis = NO_DATE;
 
-	private boolean isCompleted = false;
+	//Chronologies are shared instances, usually ISO in the default zone
+	private Chronology firstChronology = null;
+	private Chronology endChronology = null;
 
 	/**
 	 * Instantiate an undone floating task                        
@@ -55,11 +72,9 @@ public class Task implements Comparable<Task> {
 			throw new IllegalArgumentException();
 		}
 
-		this.type = TaskType.FLOATING;
 		this.taskName = name;
 
-		serial = nextSerial;
-		nextSerial++;
+		serial = nextSerial.getAndIncrement();
 	}
 
 	/**
@@ -73,7 +88,7 @@ public class Task implements Comparable<Task> {
 
 		Task newTask = new Task(name);
 		newTask.done(done);
-		this.becomeThis(newTask);
+		this.copyFrom(newTask);
 	}
 
 	/**
@@ -87,7 +102,7 @@ public class Task implements Comparable<Task> {
 
 		Task newTask = new Task(name);
 		newTask.changeToDeadline(deadline);
-		this.becomeThis(newTask);
+		this.copyFrom(newTask);
 
 	}
 
@@ -103,7 +118,7 @@ public class Task implements Comparable<Task> {
 
 		Task newTask = new Task(name, deadline);
 		newTask.done(done);
-		this.becomeThis(newTask);
+		this.copyFrom(newTask);
 
 	}
 
@@ -121,7 +136,7 @@ public class Task implements Comparable<Task> {
 
 		Task newTask = new Task(name);
 		newTask.changeToTimed(startDate, endDate);
-		this.becomeThis(newTask);
+		this.copyFrom(newTask);
 	}
 
 	/**
@@ -138,7 +153,7 @@ public class Task implements Comparable<Task> {
 	public Task(String name, DateTime startDate, DateTime endDate, boolean done) {
 		Task newTask = new Task(name, startDate, endDate);
 		newTask.done(done);
-		this.becomeThis(newTask);
+		this.copyFrom(newTask);
 	}
 
 
@@ -153,7 +168,7 @@ public class Task implements Comparable<Task> {
 			throw new IllegalArgumentException();
 		}
 
-		this.becomeThis(toBeCloned);
+		this.copyFrom(toBeCloned);
 	}
 
 	/**
@@ -173,23 +188,20 @@ public class Task implements Comparable<Task> {
 			throw new IllegalArgumentException();
 		}
 
-		this.type = updated.getType();
-		this.taskName = updated.getTaskName();
-		this.isCompleted = updated.isDone();
+		copyFrom(updated);
+	}
 
-		this.serial = updated.getSerial();
+	// Constructors copy through here rather than becomeThis so subclasses can refuse becomeThis
+	private void copyFrom(Task updated) {
+		this.taskName = updated.taskName;
+		this.flags = updated.flags;
 
-		if(!updated.getStartDate().equals(INVALID_DATE_FIELD)) {
-			this.startDate = new DateTime(updated.getStartDate());
-		}
+		this.serial = updated.serial;
 
-		if(!updated.getEndDate().equals(INVALID_DATE_FIELD))	{
-			this.endDate = new DateTime(updated.getEndDate());
-		}
-
-		if(!updated.getDeadline().equals(INVALID_DATE_FIELD))	{
-			this.deadline = new DateTime(updated.getDeadline());
-		}
+		this.firstMillis = updated.firstMillis;
+		this.firstChronology = updated.firstChronology;
+		this.endMillis = updated.endMillis;
+		this.endChronology = updated.endChronology;
 	}
 
 	/**
@@ -199,32 +211,20 @@ public class Task implements Comparable<Task> {
 	 */
 
 	public boolean isDone()	{
-		return isCompleted;
+		return (flags & DONE_FLAG) != 0;
 
 	}
 
 	public boolean isFloatingTask()	{
-		if (this.type.equals(TaskType.FLOATING)) {
-			return true;
-		}
-
-		return false;
+		return getType() == TaskType.FLOATING;
 	}
 
 	public boolean isTimedTask() {
-		if (this.type.equals(TaskType.TIMED)) {
-			return true;
-		}
-
-		return false;
+		return getType() == TaskType.TIMED;
 	}
 
 	public boolean isDeadlineTask()	{
-		if (this.type.equals(TaskType.DEADLINE)) {
-			return true;
-		}
-
-		return false;
+		return getType() == TaskType.DEADLINE;
 	}
 
 	public int getSerial() {
@@ -238,7 +238,7 @@ public class Task implements Comparable<Task> {
 	 *@return type of task. Use Task.TYPE_FLOATING, Task.TYPE_DEADLINE or Task.TYPE_TIMED
 	 */
 	public TaskType getType()	{
-		return type;
+		return TYPES[flags & TYPE_MASK];
 	}
 
 	public String getTaskName()	{
@@ -253,7 +253,10 @@ public class Task implements Comparable<Task> {
 	 */
 
 	public DateTime getStartDate()	{
-		return startDate;
+		if(!isTimedTask()) {
+			return INVALID_DATE_FIELD;
+		}
+		return new DateTime(firstMillis, firstChronology);
 	}
 
 	/**
@@ -265,7 +268,10 @@ public class Task implements Comparable<Task> {
 
 
 	public DateTime getEndDate(){
-		return endDate;
+		if(!isTimedTask()) {
+			return INVALID_DATE_FIELD;
+		}
+		return new DateTime(endMillis, endChronology);
 	}
 
 	/**
@@ -276,7 +282,10 @@ public class Task implements Comparable<Task> {
 	 */
 
 	public DateTime getDeadline(){
-		return deadline;
+		if(!isDeadlineTask()) {
+			return INVALID_DATE_FIELD;
+		}
+		return new DateTime(firstMillis, firstChronology);
 	}
 
 	/**
@@ -287,7 +296,11 @@ public class Task implements Comparable<Task> {
 	 */
 
 	public void done(boolean newDoneStatus)	{
-		this.isCompleted = newDoneStatus;
+		if(newDoneStatus) {
+			this.flags |= DONE_FLAG;
+		} else {
+			this.flags &= ~DONE_FLAG;
+		}
 	}
 	
 	
@@ -299,11 +312,10 @@ public class Task implements Comparable<Task> {
 
 	public void changetoFloating() {
 
-		this.type = TaskType.FLOATING;
+		setType(TaskType.FLOATING);
 
-		this.deadline = INVALID_DATE_FIELD;
-		this.startDate = INVALID_DATE_FIELD;
-		this.endDate = INVALID_DATE_FIELD;
+		setFirstDate(null);
+		setEndDate(null);
 	}
 	
 	/**
@@ -322,12 +334,10 @@ public class Task implements Comparable<Task> {
 		}
 
 
-		this.type = TaskType.DEADLINE;
-
-		this.deadline = newDeadline;
+		setType(TaskType.DEADLINE);
 
-		this.startDate = INVALID_DATE_FIELD;
-		this.endDate = INVALID_DATE_FIELD;
+		setFirstDate(newDeadline);
+		setEndDate(null);
 
 	}
 	
@@ -353,12 +363,10 @@ public class Task implements Comparable<Task> {
 			throw new IllegalArgumentException("Invalid start: "+newStartDate+", end: " + newEndDate);
 		}
 
-		this.type = TaskType.TIMED;
+		setType(TaskType.TIMED);
 
-		this.startDate = newStartDate;
-		this.endDate = newEndDate;
-
-		this.deadline = INVALID_DATE_FIELD;
+		setFirstDate(newStartDate);
+		setEndDate(newEndDate);
 
 	}
 
@@ -391,7 +399,7 @@ public class Task implements Comparable<Task> {
 
 	public void changeStartAndEndDate(DateTime newStartDate, DateTime newEndDate)	{
 
-		if((!this.type.equals(TaskType.TIMED))
+		if((!isTimedTask())
 				|| (newStartDate == null) 
 				|| (newStartDate.equals(INVALID_DATE_FIELD))
 				|| (newEndDate == null) 
@@ -400,8 +408,8 @@ public class Task implements Comparable<Task> {
 			throw new IllegalArgumentException();
 		}
 
-		this.startDate = newStartDate;
-		this.endDate = newEndDate;
+		setFirstDate(newStartDate);
+		setEndDate(newEndDate);
 	}
 	
 	/**
@@ -416,13 +424,38 @@ public class Task implements Comparable<Task> {
 
 
 	public void changeDeadline(DateTime newDeadline) {
-		if(!this.type.equals(TaskType.DEADLINE)
+		if(!isDeadlineTask()
 			|| (newDeadline == null)
 			|| (newDeadline.equals(INVALID_DATE_FIELD))){
 				throw new IllegalArgumentException();
 			}
 
-		this.deadline = newDeadline;
+		setFirstDate(newDeadline);
+	}
+
+	private void setType(TaskType newType) {
+		this.flags = (byte) ((flags & ~TYPE_MASK) | newType.ordinal());
+	}
+
+	// A null date clears the field
+	private void setFirstDate(DateTime newDate) {
+		if(newDate == null) {
+			this.firstMillis = NO_DATE;
+			this.firstChronology = null;
+		} else {
+			this.firstMillis = newDate.getMillis();
+			this.firstChronology = newDate.getChronology();
+		}
+	}
+
+	private void setEndDate(DateTime newDate) {
+		if(newDate == null) {
+			this.endMillis = NO_DATE;
+			this.endChronology = null;
+		} else {
+			this.endMillis = newDate.getMillis();
+			this.endChronology = newDate.getChronology();
+		}
 	}
 	
 	/**
@@ -440,9 +473,8 @@ public class Task implements Comparable<Task> {
 		
 		boolean name = false;
 		boolean type = false;
-		boolean start = false;
+		boolean first = false;
 		boolean end = false;
-		boolean deadline = false;
 		boolean done = false;
 		boolean serial = false;
 		
@@ -450,22 +482,22 @@ public class Task implements Comparable<Task> {
 			name = true;
 		}
 		
-		if(this.type.equals(toCompare.getType())){
+		if(this.getType() == toCompare.getType()){
 			type = true;
 		}
-		if(this.startDate.equals(toCompare.getStartDate())){
-			start = true;
+
+		//Dates not used by the type are always cleared, so comparing the stored fields covers all three dates
+		if((this.firstMillis == toCompare.firstMillis)
+				&& isSameChronology(this.firstChronology, toCompare.firstChronology)){
+			first = true;
 		}
 		
-		if(this.endDate.equals(toCompare.getEndDate())){
+		if((this.endMillis == toCompare.endMillis)
+				&& isSameChronology(this.endChronology, toCompare.endChronology)){
 			end = true;
 		}
 		
-		if(this.deadline.equals(toCompare.getDeadline())){
-			deadline = true;
-		}
-		
-		if(this.isCompleted == toCompare.isDone()){
+		if(this.isDone() == toCompare.isDone()){
 			done = true;
 		}
 		
@@ -473,10 +505,17 @@ public class Task implements Comparable<Task> {
 			serial = true;
 		}
 		
-		boolean isEqual = name && type && start && end && deadline && done && serial;
+		boolean isEqual = name && type && first && end && done && serial;
 		return isEqual;
 	}
 
+	private static boolean isSameChronology(Chronology first, Chronology second) {
+		if(first == null) {
+			return (second == null);
+		}
+		return first.equals(second);
+	}
+
 
 
 	/**
@@ -513,10 +552,8 @@ public class Task implements Comparable<Task> {
 			return COMPARETO_SMALLER;
 		}
 
-		DateTime currentTaskDate = comparisonDate(this);
-		DateTime inputTaskDate = comparisonDate(input);
-
-		return currentTaskDate.compareTo(inputTaskDate);
+		//Deadline or start date of the tasks
+		return Long.compare(this.firstMillis, input.firstMillis);
 
 	}
 	
@@ -569,23 +606,8 @@ public class Task implements Comparable<Task> {
 		if(this.isFloatingTask()) {
 			return false;
 		}
-		DateTime currentTaskDate = comparisonDate(this);
 
-		if(currentTaskDate.isEqual(startRange)) {
-			return true;
-		}
-		if(currentTaskDate.isEqual(endRange)) {
-			return true;
-		}
-
-
-		if(startRange.isBefore(currentTaskDate) && currentTaskDate.isBefore(endRange))	{
-			return true;
-		}
-
-
-
-		return false;
+		return isWithinMillis(firstMillis, startRange, endRange);
 	}
 	
 	/**
@@ -615,51 +637,30 @@ public class Task implements Comparable<Task> {
 		}
 		
 		if(this.isDeadlineTask()) {
-			if(deadline.isEqual(startRange) || deadline.isEqual(endRange)) {
-				return true;
-			}
-
-			if(startRange.isBefore(deadline) && deadline.isBefore(endRange))	{
-				return true;
-			}
+			return isWithinMillis(firstMillis, startRange, endRange);
 		}
 		
 		if(this.isTimedTask()) {
-			if(startDate.equals(startRange)
-					|| startDate.equals(endRange)
-					|| endDate.equals(startRange)
-					|| endDate.equals(endRange)){
-				return true;
-			}
-			
-			if(startDate.isBefore(startRange) && endDate.isAfter(startRange)){
-				return true;
-			}
-			
-			if(startDate.isAfter(startRange) && startDate.isBefore(endRange)) {
-				return true;
-			}
-
+			//Overlaps unless the task ends before the range starts or starts after the range ends
+			return (firstMillis <= endRange.getMillis()) && (endMillis >= startRange.getMillis());
 		}
 		
-		
-		
 		return false;
 		
 	}
 
+	private static boolean isWithinMillis(long millis, DateTime startRange, DateTime endRange) {
+		return (startRange.getMillis() <= millis) && (millis <= endRange.getMillis());
+	}
 
-	private DateTime comparisonDate(Task dateCompare){
-		if(dateCompare.isFloatingTask()) {
-			return Task.INVALID_DATE_FIELD;
-		}
 
-		if(dateCompare.isDeadlineTask()) {
-			return dateCompare.getDeadline();
-		}
-		else {
-			return dateCompare.getStartDate();
+
+	// End date of a timed task or the deadline of a deadline task
+	private long lastMillis() {
+		if(isTimedTask()) {
+			return endMillis;
 		}
+		return firstMillis;
 	}
 
 
@@ -728,22 +729,8 @@ public class Task implements Comparable<Task> {
 				return COMPARETO_SMALLER;
 			}
 
-			DateTime o1Start;
-			DateTime o2Start;
-
-			if(o1.isTimedTask()) {
-				o1Start = o1.getStartDate();
-			} else {
-				o1Start = o1.getDeadline();
-			}
-
-			if(o2.isTimedTask()) {
-				o2Start = o2.getStartDate();
-			} else {
-				o2Start = o2.getDeadline();
-			}
-			
-			int dateCompare = o1Start.compareTo(o2Start);
+			//Start date of a timed task and deadline of a deadline task are both stored first
+			int dateCompare = Long.compare(o1.firstMillis, o2.firstMillis);
 
 			if(dateCompare == COMPARETO_EQUAL){
 				return o1.getTaskName().compareToIgnoreCase(o2.getTaskName());
@@ -769,22 +756,7 @@ public class Task implements Comparable<Task> {
 				return COMPARETO_SMALLER;
 			}
 
-			DateTime o1End;
-			DateTime o2End;
-
-			if(o1.isTimedTask()) {
-				o1End = o1.getEndDate();
-			} else {
-				o1End = o1.getDeadline();
-			}
-
-			if(o2.isTimedTask()) {
-				o2End = o2.getEndDate();
-			} else {
-				o2End = o2.getDeadline();
-			}
-
-			int dateCompare = o1End.compareTo(o2End);
+			int dateCompare = Long.compare(o1.lastMillis(), o2.lastMillis());
 
 			if(dateCompare == COMPARETO_EQUAL){
 				return o1.getTaskName().compareToIgnoreCase(o2.getTaskName());
@@ -864,7 +836,7 @@ public class Task implements Comparable<Task> {
 			end = FILE_EMPTY_DATE;
 		}
 
-		else end = FILE_DATE_FORMAT.print(endDate);
+		else end = FILE_DATE_FORMAT.print(this.getEndDate());
 
 
 
@@ -872,7 +844,7 @@ public class Task implements Comparable<Task> {
 			dead = FILE_EMPTY_DATE;
 		}
 
-		else dead = FILE_DATE_FORMAT.print(deadline);
+		else dead = FILE_DATE_FORMAT.print(this.getDeadline());
 
 
 		String task = this.getTaskName();
@@ -0,0 +1,338 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * BinaryDatabaseFormat.java
+ * Reads and writes the compact binary form of the database file.
+ * <p>
+ * The file starts with a magic number and a format version, followed by the journal position of the checkpoint
+ * and a table of the time zone ids used by the tasks. Every task is then stored as a length-prefixed record
+ * with its dates as epoch milliseconds and an index into the zone table, so nothing has to be parsed as text.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int magic, short version, long generation, long journal offset, long last modified
+ * int zone count, { short length, UTF-8 zone id } * zone count
+ * int task count, { int record length, record } * task count
+ * record: byte type, byte done, long first date, short first zone, long second date, short second zone, UTF-8 name
+ * </pre>
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import main.shared.Task;
+import main.shared.Task.TaskType;
+
+class BinaryDatabaseFormat {
+
+	static final int MAGIC = 0x446F4974; // "DoIt"
+	static final short VERSION = 1;
+
+	private static final byte TYPE_FLOATING = 0;
+	private static final byte TYPE_DEADLINE = 1;
+	private static final byte TYPE_TIMED = 2;
+
+	private static final byte DONE = 1;
+	private static final byte UNDONE = 0;
+
+	private static final short NO_ZONE = -1;
+	private static final long NO_DATE = Task.INVALID_DATE_FIELD.getMillis();
+
+	private static final int RECORD_FIXED_LENGTH = 1 + 1 + 8 + 2 + 8 + 2;
+	private static final int MAGIC_LENGTH = 4;
+	private static final int MAX_ZONES = Short.MAX_VALUE;
+
+	private static final int RECORD_LENGTH_PREFIX = 4;
+
+	/**
+	 * Zone table and number of tasks read from the start of a binary file
+	 */
+	static class Header {
+		DateTimeZone[] zones;
+		int taskCount;
+	}
+
+	private BinaryDatabaseFormat() {
+	}
+
+	/**
+	 * Check if the file contents are in the binary format. The position of the buffer is not changed.
+	 *
+	 * @param contents the start of the file, at least 4 bytes to be recognised
+	 * @return true if the contents start with the binary magic number
+	 */
+	static boolean isBinary(ByteBuffer contents) {
+		assert (contents != null);
+
+		if (contents.remaining() < MAGIC_LENGTH) {
+			return false;
+		}
+
+		return contents.getInt(contents.position()) == MAGIC;
+	}
+
+	/**
+	 * Encodes the tasks and checkpoint position into the binary format
+	 *
+	 * @param toBeWritten tasks in the order they should be stored
+	 * @param generation generation number of the checkpoint
+	 * @param journalOffset logical journal offset already contained in the checkpoint
+	 * @return the complete file contents
+	 */
+	static byte[] encode(List<Task> toBeWritten, long generation, long journalOffset) {
+		assert (toBeWritten != null);
+
+		List<String> zoneIds = new ArrayList<String>();
+		Map<String, Short> zoneIndexes = new HashMap<String, Short>();
+
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(toBeWritten.size() * 64);
+		DataOutputStream records = new DataOutputStream(recordBytes);
+
+		try {
+			for (Task current : toBeWritten) {
+				writeRecord(records, current, zoneIds, zoneIndexes);
+			}
+
+			ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(recordBytes.size() + 256);
+			DataOutputStream file = new DataOutputStream(fileBytes);
+
+			file.writeInt(MAGIC);
+			file.writeShort(VERSION);
+			file.writeLong(generation);
+			file.writeLong(journalOffset);
+			file.writeLong(System.currentTimeMillis());
+
+			file.writeInt(zoneIds.size());
+			for (String zoneId : zoneIds) {
+				byte[] idBytes = zoneId.getBytes(StandardCharsets.UTF_8);
+				file.writeShort(idBytes.length);
+				file.write(idBytes);
+			}
+
+			file.writeInt(toBeWritten.size());
+			recordBytes.writeTo(file);
+			file.flush();
+
+			return fileBytes.toByteArray();
+		} catch (IOException e) {
+			// Only in-memory streams are used so this cannot happen
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the header of a file in the binary format, leaving the buffer at the first task record
+	 *
+	 * @param input contents of the file from its start
+	 * @param checkpoint receives the checkpoint position stored in the file
+	 * @return the zone table and number of task records that follow
+	 * @throws DataFormatException if the header is not valid
+	 */
+	static Header readHeader(ByteBuffer input, FileManagement.CheckpointHeader checkpoint)
+			throws DataFormatException {
+		assert (input != null);
+		assert (checkpoint != null);
+
+		try {
+			if (input.getInt() != MAGIC) {
+				throw new DataFormatException("Not a binary database file");
+			}
+
+			short version = input.getShort();
+			if (version != VERSION) {
+				throw new DataFormatException("Unsupported binary database version " + version);
+			}
+
+			checkpoint.generation = input.getLong();
+			checkpoint.journalOffset = input.getLong();
+			input.getLong(); // Last modified time is for information only
+
+			Header header = new Header();
+			header.zones = readZones(input);
+			header.taskCount = input.getInt();
+
+			if (header.taskCount < 0) {
+				throw new DataFormatException("Negative task count");
+			}
+
+			return header;
+		} catch (BufferUnderflowException e) {
+			throw new DataFormatException("Binary database header is truncated");
+		}
+	}
+
+	/**
+	 * Check if the next task record is completely inside the buffer
+	 */
+	static boolean hasCompleteRecord(ByteBuffer input) {
+		if (input.remaining() < RECORD_LENGTH_PREFIX) {
+			return false;
+		}
+
+		int recordLength = input.getInt(input.position());
+		return (recordLength >= 0) && (input.remaining() - RECORD_LENGTH_PREFIX >= recordLength);
+	}
+
+	/**
+	 * Reads the next task record
+	 *
+	 * @param input positioned at the start of a complete record
+	 * @param zones zone table read from the header
+	 * @return the task in the record
+	 * @throws DataFormatException if the record is not valid
+	 */
+	static Task readRecord(ByteBuffer input, DateTimeZone[] zones) throws DataFormatException {
+		try {
+			return readRecordFields(input, zones);
+		} catch (BufferUnderflowException e) {
+			throw new DataFormatException("Binary database file is truncated");
+		} catch (IllegalArgumentException e) {
+			throw new DataFormatException("Invalid task in binary database file " + e.getMessage());
+		}
+	}
+
+	private static void writeRecord(DataOutputStream records, Task toBeWritten,
+			List<String> zoneIds, Map<String, Short> zoneIndexes) throws IOException {
+
+		byte type;
+		DateTime first = Task.INVALID_DATE_FIELD;
+		DateTime second = Task.INVALID_DATE_FIELD;
+
+		TaskType typeOfTask = toBeWritten.getType();
+
+		if (typeOfTask.equals(TaskType.TIMED)) {
+			type = TYPE_TIMED;
+			first = toBeWritten.getStartDate();
+			second = toBeWritten.getEndDate();
+		} else if (typeOfTask.equals(TaskType.DEADLINE)) {
+			type = TYPE_DEADLINE;
+			first = toBeWritten.getDeadline();
+		} else {
+			type = TYPE_FLOATING;
+		}
+
+		byte[] nameBytes = toBeWritten.getTaskName().getBytes(StandardCharsets.UTF_8);
+
+		records.writeInt(RECORD_FIXED_LENGTH + nameBytes.length);
+		records.writeByte(type);
+		records.writeByte(toBeWritten.isDone() ? DONE : UNDONE);
+		writeDate(records, first, zoneIds, zoneIndexes);
+		writeDate(records, second, zoneIds, zoneIndexes);
+		records.write(nameBytes);
+	}
+
+	private static void writeDate(DataOutputStream records, DateTime date,
+			List<String> zoneIds, Map<String, Short> zoneIndexes) throws IOException {
+
+		if (Task.INVALID_DATE_FIELD.isEqual(date)) {
+			records.writeLong(NO_DATE);
+			records.writeShort(NO_ZONE);
+			return;
+		}
+
+		String zoneId = date.getZone().getID();
+		Short zoneIndex = zoneIndexes.get(zoneId);
+
+		if (zoneIndex == null) {
+			if (zoneIds.size() >= MAX_ZONES) {
+				throw new IOException("Too many time zones");
+			}
+			zoneIndex = (short) zoneIds.size();
+			zoneIds.add(zoneId);
+			zoneIndexes.put(zoneId, zoneIndex);
+		}
+
+		records.writeLong(date.getMillis());
+		records.writeShort(zoneIndex);
+	}
+
+	private static DateTimeZone[] readZones(ByteBuffer input) throws DataFormatException {
+		int zoneCount = input.getInt();
+
+		if ((zoneCount < 0) || (zoneCount > MAX_ZONES)) {
+			throw new DataFormatException("Invalid zone count");
+		}
+
+		DateTimeZone[] zones = new DateTimeZone[zoneCount];
+
+		for (int i = 0; i < zoneCount; i++) {
+			byte[] idBytes = new byte[input.getShort()];
+			input.get(idBytes);
+			zones[i] = DateTimeZone.forID(new String(idBytes, StandardCharsets.UTF_8));
+		}
+
+		return zones;
+	}
+
+	private static Task readRecordFields(ByteBuffer input, DateTimeZone[] zones) throws DataFormatException {
+		int recordLength = input.getInt();
+		int nameLength = recordLength - RECORD_FIXED_LENGTH;
+
+		if ((nameLength <= 0) || (nameLength > input.remaining())) {
+			throw new DataFormatException("Invalid record length");
+		}
+
+		byte type = input.get();
+		boolean done = readDone(input.get());
+		DateTime first = readDate(input, zones);
+		DateTime second = readDate(input, zones);
+
+		byte[] nameBytes = new byte[nameLength];
+		input.get(nameBytes);
+		String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+		switch (type) {
+		case TYPE_FLOATING:
+			return new Task(name, done);
+		case TYPE_DEADLINE:
+			return new Task(name, first, done);
+		case TYPE_TIMED:
+			if (first.isAfter(second)) {
+				throw new DataFormatException("Start date after end date");
+			}
+			return new Task(name, first, second, done);
+		default:
+			throw new DataFormatException("Unknown task type");
+		}
+	}
+
+	private static boolean readDone(byte done) throws DataFormatException {
+		if (done == DONE) {
+			return true;
+		} else if (done == UNDONE) {
+			return false;
+		} else {
+			throw new DataFormatException("Unknown Done value");
+		}
+	}
+
+	private static DateTime readDate(ByteBuffer input, DateTimeZone[] zones) throws DataFormatException {
+		long millis = input.getLong();
+		short zoneIndex = input.getShort();
+
+		if (zoneIndex == NO_ZONE) {
+			return Task.INVALID_DATE_FIELD;
+		}
+
+		if ((zoneIndex < 0) || (zoneIndex >= zones.length)) {
+			throw new DataFormatException("Unknown zone index");
+		}
+
+		return new DateTime(millis, zones[zoneIndex]);
+	}
+
+}
@@ -0,0 +1,162 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * BkTree.java
+ * An immutable Burkhard-Keller tree of words, for finding the words within a few edits of a term.
+ * <p>
+ * Every child of a node is stored under its edit distance to the node's word.
+ * Edit distance obeys the triangle inequality, so a word within k edits of the term can only be under
+ * a child whose distance is within k of the term's distance to the node. Other children are skipped,
+ * and only a small part of the words is ever compared with the term.
+ * <p>
+ * Adding a word copies only the nodes on its path. Words cannot be taken out,
+ * so whoever keeps the tree must ignore words it no longer has and rebuild the tree when there are many.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import main.shared.EditDistance;
+
+class BkTree {
+
+	static final BkTree EMPTY = new BkTree(null, 0);
+
+	private static class Node {
+		final String word;
+		// Edit distances of the children in increasing order
+		final int[] distances;
+		final Node[] children;
+
+		Node(String word, int[] distances, Node[] children) {
+			this.word = word;
+			this.distances = distances;
+			this.children = children;
+		}
+
+		int largestDistance() {
+			return (distances.length == 0) ? 0 : distances[distances.length - 1];
+		}
+	}
+
+	private final Node root;
+	private final int size;
+
+	private BkTree(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Builds the tree of these distinct words
+	 */
+	static BkTree build(Collection<String> words) {
+		BkTree built = EMPTY;
+
+		for (String word : words) {
+			built = built.with(word);
+		}
+
+		return built;
+	}
+
+	/**
+	 * @return the number of words added to the tree
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return a tree with this word added. The same tree if it already has the word.
+	 */
+	BkTree with(String word) {
+		assert (word != null);
+
+		if (root == null) {
+			return new BkTree(new Node(word, new int[0], new Node[0]), 1);
+		}
+
+		Node changed = with(root, word);
+		return (changed == root) ? this : new BkTree(changed, size + 1);
+	}
+
+	/**
+	 * @return the words at most maxEdits away from the term
+	 */
+	List<String> within(String term, int maxEdits) {
+		List<String> found = new ArrayList<String>();
+
+		if (root != null) {
+			collectWithin(root, term, maxEdits, found);
+		}
+
+		return found;
+	}
+
+	private static Node with(Node node, String word) {
+		int distance = EditDistance.between(node.word, word);
+
+		if (distance == 0) {
+			return node;
+		}
+
+		int position = positionOf(node.distances, distance);
+
+		if ((position < node.distances.length) && (node.distances[position] == distance)) {
+			Node changedChild = with(node.children[position], word);
+
+			if (changedChild == node.children[position]) {
+				return node;
+			}
+
+			Node[] children = node.children.clone();
+			children[position] = changedChild;
+			return new Node(node.word, node.distances, children);
+		}
+
+		int[] distances = new int[node.distances.length + 1];
+		Node[] children = new Node[node.children.length + 1];
+
+		System.arraycopy(node.distances, 0, distances, 0, position);
+		System.arraycopy(node.children, 0, children, 0, position);
+		distances[position] = distance;
+		children[position] = new Node(word, new int[0], new Node[0]);
+		System.arraycopy(node.distances, position, distances, position + 1, node.distances.length - position);
+		System.arraycopy(node.children, position, children, position + 1, node.children.length - position);
+
+		return new Node(node.word, distances, children);
+	}
+
+	private static void collectWithin(Node node, String term, int maxEdits, List<String> found) {
+		// No child is further than the largest distance, so nothing beyond it plus maxEdits is needed
+		int limit = node.largestDistance() + maxEdits;
+		int distance = EditDistance.between(node.word, term, Math.max(limit, maxEdits));
+
+		if (distance <= maxEdits) {
+			found.add(node.word);
+		}
+
+		for (int i = positionOf(node.distances, distance - maxEdits); i < node.distances.length; i++) {
+			if (node.distances[i] > distance + maxEdits) {
+				break;
+			}
+			collectWithin(node.children[i], term, maxEdits, found);
+		}
+	}
+
+	// First position whose distance is at least this one
+	private static int positionOf(int[] distances, int distance) {
+		int position = 0;
+
+		while ((position < distances.length) && (distances[position] < distance)) {
+			position++;
+		}
+
+		return position;
+	}
+
+}
@@ -0,0 +1,640 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * CompressedBitmap.java
+ * An immutable compressed set of non-negative ints, used for the search indexes.
+ * <p>
+ * Follows the Roaring bitmap layout. Values are split by their high 16 bits into chunks of 65536.
+ * A chunk with few values is a sorted array of its low 16 bits,
+ * a chunk with more than 4096 values is a plain bitmap of 1024 longs.
+ * AND, OR and AND NOT work chunk by chunk, and on whole 64 bit words where chunks are bitmaps.
+ * Changes only copy the chunk they touch.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+class CompressedBitmap {
+
+	private static final int CHUNK_BITS = 16;
+	private static final int LOW_MASK = 0xFFFF;
+	private static final int ARRAY_LIMIT = 4096;
+	private static final int BITMAP_WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+	private static final int WORD_SHIFT = 6;
+
+	static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0], 0);
+
+	// High 16 bits of each chunk in increasing order, with the chunk at the same position
+	private final char[] keys;
+	private final Container[] containers;
+	private final int cardinality;
+
+	private CompressedBitmap(char[] keys, Container[] containers, int cardinality) {
+		this.keys = keys;
+		this.containers = containers;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * @param sortedValues non-negative values in increasing order without duplicates
+	 * @param count number of values used from the start of the array
+	 */
+	static CompressedBitmap ofSorted(int[] sortedValues, int count) {
+		if (count == 0) {
+			return EMPTY;
+		}
+
+		int chunks = 0;
+		for (int i = 0; i < count; i++) {
+			if ((i == 0) || (high(sortedValues[i]) != high(sortedValues[i - 1]))) {
+				chunks++;
+			}
+		}
+
+		char[] keys = new char[chunks];
+		Container[] containers = new Container[chunks];
+
+		int chunk = 0;
+		int chunkStart = 0;
+
+		for (int i = 1; i <= count; i++) {
+			if ((i == count) || (high(sortedValues[i]) != high(sortedValues[chunkStart]))) {
+				keys[chunk] = high(sortedValues[chunkStart]);
+				containers[chunk] = chunkOf(sortedValues, chunkStart, i);
+				chunk++;
+				chunkStart = i;
+			}
+		}
+
+		return new CompressedBitmap(keys, containers, count);
+	}
+
+	int cardinality() {
+		return cardinality;
+	}
+
+	boolean isEmpty() {
+		return (cardinality == 0);
+	}
+
+	boolean contains(int value) {
+		int position = Arrays.binarySearch(keys, high(value));
+		return (position >= 0) && containers[position].contains(low(value));
+	}
+
+	/**
+	 * @return a bitmap with this value added. The same bitmap if it is already there.
+	 */
+	CompressedBitmap with(int value) {
+		assert (value >= 0);
+		int position = Arrays.binarySearch(keys, high(value));
+
+		if (position >= 0) {
+			Container changed = containers[position].add(low(value));
+
+			if (changed == containers[position]) {
+				return this;
+			}
+
+			Container[] newContainers = containers.clone();
+			newContainers[position] = changed;
+			return new CompressedBitmap(keys, newContainers, cardinality + 1);
+		}
+
+		int insertAt = -position - 1;
+		char[] newKeys = new char[keys.length + 1];
+		Container[] newContainers = new Container[containers.length + 1];
+
+		System.arraycopy(keys, 0, newKeys, 0, insertAt);
+		System.arraycopy(containers, 0, newContainers, 0, insertAt);
+		newKeys[insertAt] = high(value);
+		newContainers[insertAt] = ArrayContainer.of(new char[] { low(value) }, 1);
+		System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+		System.arraycopy(containers, insertAt, newContainers, insertAt + 1, containers.length - insertAt);
+
+		return new CompressedBitmap(newKeys, newContainers, cardinality + 1);
+	}
+
+	/**
+	 * @return a bitmap without this value. The same bitmap if it is not there.
+	 */
+	CompressedBitmap without(int value) {
+		int position = Arrays.binarySearch(keys, high(value));
+
+		if ((position < 0) || !containers[position].contains(low(value))) {
+			return this;
+		}
+
+		Container changed = containers[position].remove(low(value));
+
+		if (changed != null) {
+			Container[] newContainers = containers.clone();
+			newContainers[position] = changed;
+			return new CompressedBitmap(keys, newContainers, cardinality - 1);
+		}
+
+		char[] newKeys = new char[keys.length - 1];
+		Container[] newContainers = new Container[containers.length - 1];
+
+		System.arraycopy(keys, 0, newKeys, 0, position);
+		System.arraycopy(containers, 0, newContainers, 0, position);
+		System.arraycopy(keys, position + 1, newKeys, position, keys.length - position - 1);
+		System.arraycopy(containers, position + 1, newContainers, position, containers.length - position - 1);
+
+		return new CompressedBitmap(newKeys, newContainers, cardinality - 1);
+	}
+
+	/**
+	 * @return values in both bitmaps
+	 */
+	CompressedBitmap and(CompressedBitmap other) {
+		Builder result = new Builder(Math.min(keys.length, other.keys.length));
+		int i = 0;
+		int j = 0;
+
+		while ((i < keys.length) && (j < other.keys.length)) {
+			if (keys[i] == other.keys[j]) {
+				result.add(keys[i], containers[i].and(other.containers[j]));
+				i++;
+				j++;
+			} else if (keys[i] < other.keys[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+
+		return result.build();
+	}
+
+	/**
+	 * @return values in either bitmap
+	 */
+	CompressedBitmap or(CompressedBitmap other) {
+		Builder result = new Builder(keys.length + other.keys.length);
+		int i = 0;
+		int j = 0;
+
+		while ((i < keys.length) || (j < other.keys.length)) {
+			if ((j == other.keys.length) || ((i < keys.length) && (keys[i] < other.keys[j]))) {
+				result.add(keys[i], containers[i]);
+				i++;
+			} else if ((i == keys.length) || (other.keys[j] < keys[i])) {
+				result.add(other.keys[j], other.containers[j]);
+				j++;
+			} else {
+				result.add(keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+
+		return result.build();
+	}
+
+	/**
+	 * @return values in this bitmap but not the other
+	 */
+	CompressedBitmap andNot(CompressedBitmap other) {
+		Builder result = new Builder(keys.length);
+		int j = 0;
+
+		for (int i = 0; i < keys.length; i++) {
+			while ((j < other.keys.length) && (other.keys[j] < keys[i])) {
+				j++;
+			}
+
+			if ((j < other.keys.length) && (other.keys[j] == keys[i])) {
+				result.add(keys[i], containers[i].andNot(other.containers[j]));
+			} else {
+				result.add(keys[i], containers[i]);
+			}
+		}
+
+		return result.build();
+	}
+
+	/**
+	 * Unions many bitmaps at once, setting the bits of each chunk in a single word array
+	 * instead of merging the growing result again for every bitmap.
+	 *
+	 * @return values in any of the bitmaps
+	 */
+	static CompressedBitmap or(List<CompressedBitmap> bitmaps) {
+		if (bitmaps.isEmpty()) {
+			return EMPTY;
+		}
+
+		if (bitmaps.size() == 1) {
+			return bitmaps.get(0);
+		}
+
+		Map<Character, long[]> wordsOfChunk = new TreeMap<Character, long[]>();
+
+		for (CompressedBitmap current : bitmaps) {
+			for (int i = 0; i < current.keys.length; i++) {
+				long[] words = wordsOfChunk.get(current.keys[i]);
+
+				if (words == null) {
+					words = new long[BITMAP_WORDS];
+					wordsOfChunk.put(current.keys[i], words);
+				}
+				current.containers[i].orInto(words);
+			}
+		}
+
+		Builder result = new Builder(wordsOfChunk.size());
+
+		for (Map.Entry<Character, long[]> entry : wordsOfChunk.entrySet()) {
+			result.add(entry.getKey(), Container.fromWords(entry.getValue()));
+		}
+
+		return result.build();
+	}
+
+	/**
+	 * @return all values in increasing order
+	 */
+	int[] toArray() {
+		int[] values = new int[cardinality];
+		int position = 0;
+
+		for (int i = 0; i < keys.length; i++) {
+			position = containers[i].fill(values, position, keys[i] << CHUNK_BITS);
+		}
+
+		return values;
+	}
+
+	// Stores the chunk of values from the start index to before the end index in the smaller form
+	private static Container chunkOf(int[] sortedValues, int start, int end) {
+		if (end - start > ARRAY_LIMIT) {
+			long[] words = new long[BITMAP_WORDS];
+
+			for (int i = start; i < end; i++) {
+				words[low(sortedValues[i]) >>> WORD_SHIFT] |= 1L << sortedValues[i];
+			}
+			return new BitmapContainer(words, end - start);
+		}
+
+		char[] lows = new char[end - start];
+
+		for (int i = start; i < end; i++) {
+			lows[i - start] = low(sortedValues[i]);
+		}
+		return ArrayContainer.of(lows, lows.length);
+	}
+
+	private static char high(int value) {
+		return (char) (value >>> CHUNK_BITS);
+	}
+
+	private static char low(int value) {
+		return (char) (value & LOW_MASK);
+	}
+
+	// Collects the non-empty chunks of a result in key order
+	private static class Builder {
+		private char[] keys;
+		private Container[] containers;
+		private int chunks = 0;
+		private int cardinality = 0;
+
+		Builder(int capacity) {
+			keys = new char[capacity];
+			containers = new Container[capacity];
+		}
+
+		void add(char key, Container container) {
+			if (container == null) {
+				return;
+			}
+			keys[chunks] = key;
+			containers[chunks] = container;
+			cardinality += container.cardinality();
+			chunks++;
+		}
+
+		CompressedBitmap build() {
+			if (chunks == 0) {
+				return EMPTY;
+			}
+			return new CompressedBitmap(Arrays.copyOf(keys, chunks), Arrays.copyOf(containers, chunks), cardinality);
+		}
+	}
+
+	/**
+	 * The low 16 bits of the values of one chunk. Never empty, operations return null instead.
+	 */
+	private abstract static class Container {
+
+		abstract int cardinality();
+
+		abstract boolean contains(char low);
+
+		// Same container if already present
+		abstract Container add(char low);
+
+		// Null if nothing is left
+		abstract Container remove(char low);
+
+		abstract long[] toWords();
+
+		// Sets the bits of this chunk's values in the words
+		abstract void orInto(long[] words);
+
+		// Writes the values of the chunk starting at position and returns the position after them
+		abstract int fill(int[] values, int position, int highBits);
+
+		Container and(Container other) {
+			if ((this instanceof ArrayContainer) && (other instanceof ArrayContainer)) {
+				return ((ArrayContainer) this).andArray((ArrayContainer) other);
+			}
+
+			if (this instanceof ArrayContainer) {
+				return ((ArrayContainer) this).filter(other, true);
+			}
+
+			if (other instanceof ArrayContainer) {
+				return ((ArrayContainer) other).filter(this, true);
+			}
+
+			long[] words = toWords().clone();
+			long[] otherWords = other.toWords();
+
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				words[i] &= otherWords[i];
+			}
+
+			return fromWords(words);
+		}
+
+		Container or(Container other) {
+			long[] words = toWords().clone();
+			long[] otherWords = other.toWords();
+
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				words[i] |= otherWords[i];
+			}
+
+			return fromWords(words);
+		}
+
+		Container andNot(Container other) {
+			if (this instanceof ArrayContainer) {
+				return ((ArrayContainer) this).filter(other, false);
+			}
+
+			long[] words = toWords().clone();
+			long[] otherWords = other.toWords();
+
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				words[i] &= ~otherWords[i];
+			}
+
+			return fromWords(words);
+		}
+
+		// Picks the smaller form for these bits
+		static Container fromWords(long[] words) {
+			int count = 0;
+
+			for (long word : words) {
+				count += Long.bitCount(word);
+			}
+
+			if (count == 0) {
+				return null;
+			}
+
+			if (count > ARRAY_LIMIT) {
+				return new BitmapContainer(words, count);
+			}
+
+			char[] lows = new char[count];
+			int position = 0;
+
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+
+				while (word != 0) {
+					lows[position++] = (char) ((i << WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+
+			return ArrayContainer.of(lows, count);
+		}
+	}
+
+	private static class ArrayContainer extends Container {
+		private final char[] lows;
+
+		private ArrayContainer(char[] lows) {
+			this.lows = lows;
+		}
+
+		// Uses the array directly if it is exactly the right length
+		static ArrayContainer of(char[] sortedLows, int count) {
+			if (sortedLows.length == count) {
+				return new ArrayContainer(sortedLows);
+			}
+			return new ArrayContainer(Arrays.copyOf(sortedLows, count));
+		}
+
+		@Override
+		int cardinality() {
+			return lows.length;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return Arrays.binarySearch(lows, low) >= 0;
+		}
+
+		@Override
+		Container add(char low) {
+			int position = Arrays.binarySearch(lows, low);
+
+			if (position >= 0) {
+				return this;
+			}
+
+			if (lows.length >= ARRAY_LIMIT) {
+				long[] words = toWords();
+				words[low >>> WORD_SHIFT] |= 1L << low;
+				return new BitmapContainer(words, lows.length + 1);
+			}
+
+			int insertAt = -position - 1;
+			char[] changed = new char[lows.length + 1];
+
+			System.arraycopy(lows, 0, changed, 0, insertAt);
+			changed[insertAt] = low;
+			System.arraycopy(lows, insertAt, changed, insertAt + 1, lows.length - insertAt);
+
+			return new ArrayContainer(changed);
+		}
+
+		@Override
+		Container remove(char low) {
+			int position = Arrays.binarySearch(lows, low);
+
+			if (position < 0) {
+				return this;
+			}
+
+			if (lows.length == 1) {
+				return null;
+			}
+
+			char[] changed = new char[lows.length - 1];
+
+			System.arraycopy(lows, 0, changed, 0, position);
+			System.arraycopy(lows, position + 1, changed, position, lows.length - position - 1);
+
+			return new ArrayContainer(changed);
+		}
+
+		@Override
+		long[] toWords() {
+			long[] words = new long[BITMAP_WORDS];
+
+			for (char low : lows) {
+				words[low >>> WORD_SHIFT] |= 1L << low;
+			}
+
+			return words;
+		}
+
+		@Override
+		void orInto(long[] words) {
+			for (char low : lows) {
+				words[low >>> WORD_SHIFT] |= 1L << low;
+			}
+		}
+
+		@Override
+		int fill(int[] values, int position, int highBits) {
+			for (char low : lows) {
+				values[position++] = highBits | low;
+			}
+			return position;
+		}
+
+		Container andArray(ArrayContainer other) {
+			char[] common = new char[Math.min(lows.length, other.lows.length)];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+
+			while ((i < lows.length) && (j < other.lows.length)) {
+				if (lows[i] == other.lows[j]) {
+					common[count++] = lows[i];
+					i++;
+					j++;
+				} else if (lows[i] < other.lows[j]) {
+					i++;
+				} else {
+					j++;
+				}
+			}
+
+			return (count == 0) ? null : of(common, count);
+		}
+
+		// Keeps the values that are in the other container, or that are not if keepMatches is false
+		Container filter(Container other, boolean keepMatches) {
+			char[] kept = new char[lows.length];
+			int count = 0;
+
+			for (char low : lows) {
+				if (other.contains(low) == keepMatches) {
+					kept[count++] = low;
+				}
+			}
+
+			if (count == lows.length) {
+				return this;
+			}
+
+			return (count == 0) ? null : of(kept, count);
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		private final long[] words;
+		private final int cardinality;
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return (words[low >>> WORD_SHIFT] & (1L << low)) != 0;
+		}
+
+		@Override
+		Container add(char low) {
+			if (contains(low)) {
+				return this;
+			}
+
+			long[] changed = words.clone();
+			changed[low >>> WORD_SHIFT] |= 1L << low;
+			return new BitmapContainer(changed, cardinality + 1);
+		}
+
+		@Override
+		Container remove(char low) {
+			if (!contains(low)) {
+				return this;
+			}
+
+			long[] changed = words.clone();
+			changed[low >>> WORD_SHIFT] &= ~(1L << low);
+
+			if (cardinality - 1 <= ARRAY_LIMIT) {
+				return fromWords(changed);
+			}
+			return new BitmapContainer(changed, cardinality - 1);
+		}
+
+		@Override
+		long[] toWords() {
+			return words;
+		}
+
+		@Override
+		void orInto(long[] otherWords) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				otherWords[i] |= words[i];
+			}
+		}
+
+		@Override
+		int fill(int[] values, int position, int highBits) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+
+				while (word != 0) {
+					values[position++] = highBits | ((i << WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return position;
+		}
+	}
+
+}
@@ -4,24 +4,38 @@ package main.storage;
 /**  
  * Database.java 
  * A class for managing all queries to the database and disk, 
- *  most public methods will do a clone to prevent internal references from being leaked.
+ *  tasks are stored and returned as ImmutableTask so they can be handed out without copying.
+ * <p>
+ * Tasks are held in an immutable TaskSnapshot. Changes are serialised and publish a new snapshot
+ * once they are on disk, so reads work on a consistent snapshot without locking or sorting.
+ * Searches are answered from the snapshot's indexes by a QueryPlanner.
+ * Changes made in a transaction are published at once but only written when it is committed, in one write.
+ * Bulk updates pick their tasks through the same indexes and are also written as one change.
  * @author  Yeo Kheng Meng
  */
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 
 import org.joda.time.DateTime;
 
 import main.LogHandler;
 import main.storage.FileManagement.FileStatus;
+import main.shared.ImmutableTask;
 import main.shared.SearchTerms;
 import main.shared.Task;
 
@@ -31,21 +45,114 @@ public class Database {
 		FILE_ALL_OK, FILE_READ_ONLY, FILE_PERMISSIONS_UNKNOWN, FILE_IS_CORRUPT, FILE_IS_LOCKED
 	};
 
-	private HashMap<Integer, Task> quickAccessTask = new HashMap<Integer, Task>();
+	// Replaced as a whole on every change so readers never need a lock
+	private volatile TaskSnapshot tasks = TaskSnapshot.EMPTY;
+
+	// Counts the changes, so results worked out from an older version are known to be stale
+	private volatile long version = 0;
 
 	private FileManagement diskFile;
+	private TaskTimeline timeline;
+
+	// Tasks when the open transaction began, null if there is none
+	private TaskSnapshot transactionStart = null;
+	// Serial numbers of the tasks removed or added in the open transaction, so committing it only looks at those
+	private final Set<Integer> transactionChanges = new LinkedHashSet<Integer>();
 	private DB_File_Status fileAttributes;
 
 	private Logger log = LogHandler.getLogInstance();
 
-	private static Database theOne = null;
+	private static final String LOADER_THREAD_NAME = "DoIt database loader";
+
+	private static volatile Database theOne = null;
+	private static FutureTask<Database> loading = null;
 
+	/**
+	 * Returns the database, waiting for it to finish loading if it is being loaded in the background
+	 */
 	public static Database getInstance() {
-		if (theOne == null) {
-			theOne = new Database();
+		if (theOne != null) {
+			return theOne;
 		}
 
-		return theOne;
+		Future<Database> loadingInProgress;
+
+		synchronized (Database.class) {
+			if (loading == null) {
+				theOne = new Database();
+				return theOne;
+			}
+			loadingInProgress = loading;
+		}
+
+		return waitForLoading(loadingInProgress);
+	}
+
+	/**
+	 * Starts opening and reading the database file on a background thread.
+	 * The returned future completes once the database is ready. Calling this again returns the same future.
+	 *
+	 * @return the readiness future of the database
+	 */
+	public static synchronized Future<Database> loadInBackground() {
+		if (loading != null) {
+			return loading;
+		}
+
+		final Database alreadyLoaded = theOne;
+
+		loading = new FutureTask<Database>(new Callable<Database>() {
+			@Override
+			public Database call() {
+				if (alreadyLoaded != null) {
+					return alreadyLoaded;
+				}
+
+				Database loaded = new Database();
+				theOne = loaded;
+				return loaded;
+			}
+		});
+
+		if (alreadyLoaded != null) {
+			loading.run();
+		} else {
+			LogHandler.getLogInstance().info("Loading database in the background");
+			Thread loader = new Thread(loading, LOADER_THREAD_NAME);
+			loader.setDaemon(true);
+			loader.start();
+		}
+
+		return loading;
+	}
+
+	/**
+	 * Check if the database can be used without waiting
+	 *
+	 * @return true if the database has been loaded
+	 */
+	public static boolean isReady() {
+		return (theOne != null);
+	}
+
+	private static Database waitForLoading(Future<Database> loadingInProgress) {
+		boolean isInterrupted = false;
+
+		try {
+			while (true) {
+				try {
+					return loadingInProgress.get();
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Database could not be loaded", e.getCause());
+		} finally {
+			if (isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	/**
@@ -61,26 +168,43 @@ public class Database {
 		diskFile = FileManagement.getInstance();
 		diskFile.prepareDatabaseFile();
 		taskList = diskFile.readFileAndDetectCorruption();
-		duplicateListToHashMap(taskList);
+		replaceTasks(TaskSnapshot.of(taskList));
 		fileAttributes = parseFileAttributes();
 
 		log.info("FileMgmt started");
-	}
-
-	private void duplicateListToHashMap(List<Task> listOfTasks) {
 
-		quickAccessTask.clear();
-		for(Task current : listOfTasks) {
-			quickAccessTask.put(current.getSerial(), current);
-		}	
+		timeline = new TaskTimeline(new File(diskFile.timelineFilename));
+		try {
+			// Another copy of DoIt holding the database also owns its timeline,
+			// and a corrupt file has none of the tasks to keep
+			if (diskFile.isHoldingFileLock()
+					&& !fileAttributes.equals(DB_File_Status.FILE_IS_CORRUPT)) {
+				timeline.open(taskList);
+			} else {
+				timeline.openReadOnly();
+			}
+		} catch (IOException e) {
+			log.warning("Cannot open timeline, past tasks will not be kept " + e);
+			timeline.close();
+		}
+	}
 
+	/**
+	 * Gives the version of the tasks, which goes up by one on every change.
+	 * <p>
+	 * Read the version before reading the tasks. Results read after it are then at least as new
+	 * as the version, and can be kept until the version changes.
+	 * 
+	 * @return the version of the tasks now in the database
+	 */
+	public long getVersion() {
+		return version;
 	}
 
 	/**
 	 * To give the results based on a search term.
 	 * <p>
-	 * Returned result is a clone of the tasks in database, operations done on
-	 * the result will not affect the database
+	 * Returned tasks are immutable and shared with the database. The list itself is new and may be changed.
 	 * 
 	 * @param terms Input in the form of a search term class
 	 * @return an List<Task> containing all the matched tasks
@@ -89,111 +213,75 @@ public class Database {
 		assert (terms != null);
 		log.info("Search request made");
 		
-		List<Task> searchResults = new ArrayList<Task>();
+		QueryPlanner planner = new QueryPlanner(tasks, terms);
 
-		for (Map.Entry<Integer, Task> entry : quickAccessTask.entrySet()) {
-			Task currentEntry = entry.getValue();
-			
-			if (taskMeetsSearchTerms(currentEntry, terms)) {
-				searchResults.add(new Task(currentEntry));
-			}
-		}
-		
-		Collections.sort(searchResults);
-		
-
-		return searchResults;
+		return new ArrayList<Task>(planner.run());
 	}
 
-	private boolean taskMeetsSearchTerms(Task currentEntry, SearchTerms terms) {
-
-		boolean taskDone = false;
-		boolean taskUndone = false;
-
-		boolean taskFloating = false;
-		boolean taskDeadline = false;
-		boolean taskTimed = false;
-
-		boolean keywordMatched = false;
-		boolean dateRangeMatched = false;
-
-		if (terms.completeFlag() && currentEntry.isDone()) {
-			taskDone = true;
-		} else if (terms.completeFlag() == false) {
-			taskDone = true;
-		}
-
-		if (terms.incompleteFlag() && !currentEntry.isDone()) {
-			taskUndone = true;
-		} else if (terms.incompleteFlag() == false) {
-			taskUndone = true;
-		}
-
-		if (terms.floatingFlag() && currentEntry.isFloatingTask()) {
-			taskFloating = true;
-		} else if (terms.floatingFlag() == false) {
-			taskFloating = true;
-		}
-
-		if (terms.deadlineFlag() && currentEntry.isDeadlineTask()) {
-			taskDeadline = true;
-		} else if (terms.deadlineFlag() == false) {
-			taskDeadline = true;
-		}
-
-		if (terms.timedFlag() && currentEntry.isTimedTask()) {
-			taskTimed = true;
-		} else if (terms.timedFlag() == false) {
-			taskTimed = true;
-		}
+	/**
+	 * To give the results of a search as a read-only list whose tasks are only fetched when read.
+	 * <p>
+	 * The list stays the same after the database changes, so indexes shown to the user keep their tasks.
+	 * Reading one page of it costs about the same however many tasks match.
+	 * 
+	 * @param terms Input in the form of a search term class
+	 * @return the matched tasks in display order
+	 */
+	public ResultList view(SearchTerms terms) {
+		assert (terms != null);
+		log.info("Search view request made");
 
-		if ((terms.doesSearchContainKeywords() == false)
-				|| keywordMatching(currentEntry, terms)) {
-			keywordMatched = true;
-		}
+		TaskSnapshot current = tasks;
+		QueryPlanner planner = new QueryPlanner(current, terms);
+		CompressedBitmap serials = planner.findSerials();
 
-		if (terms.doesSearchContainDateRange()) {
-			dateRangeMatched = dateMatching(currentEntry, terms);
-		} else {
-			dateRangeMatched = true;
+		if (serials == null) {
+			return ResultList.of(planner.run());
 		}
 
-		boolean areAllConditionsSatisfied = taskDone && taskUndone
-				&& taskFloating && taskDeadline && taskTimed && keywordMatched
-				&& dateRangeMatched;
-		
-		return areAllConditionsSatisfied;
+		return ResultList.of(current, serials);
 	}
 
-	private boolean dateMatching(Task currentEntry, SearchTerms terms) {
-		DateTime startRange = terms.getStartDate();
-		DateTime endRange = terms.getEndDate();
+	/**
+	 * To give the best matches of a search, ranked by how well and how often the keywords match
+	 * and how near each task is to now.
+	 * <p>
+	 * Returned tasks are immutable and shared with the database.
+	 * 
+	 * @param terms Input in the form of a search term class
+	 * @param limit the largest number of tasks to return, at least 1
+	 * @return the best matches, best first, with their scores
+	 */
+	public Ranking searchRanked(SearchTerms terms, int limit) {
+		assert (terms != null);
+		assert (limit > 0);
+		log.info("Ranked search request made for the best " + limit);
 
-		return currentEntry.clashesWithRange(startRange, endRange);
+		RankedSearch ranked = new RankedSearch(tasks, terms, limit, System.currentTimeMillis());
 
+		return ranked.run();
 	}
 
-	// Check if task contains all the keywords specified
-	private boolean keywordMatching(Task currentEntry, SearchTerms terms) {
-		boolean match = true;
-
-		String[] keywordList = terms.getKeywords();
-
-		for (String word : keywordList) {
+	/**
+	 * Runs a search the same way as search and tells how it was answered.
+	 * 
+	 * @param terms Input in the form of a search term class
+	 * @return the steps taken with their estimated and actual number of tasks
+	 */
+	public QueryPlan explain(SearchTerms terms) {
+		assert (terms != null);
+		log.info("Explain request made");
 
-			if (!currentEntry.containsTerm(word)) {
-				match = false;
-			}
-		}
+		QueryPlanner planner = new QueryPlanner(tasks, terms);
+		planner.run();
 
-		return match;
+		return planner.getPlan();
 	}
 
 	/**
 	 * To return the list of all tasks in database. Sorted
 	 * <p>
-	 * Returned result is a clone of the tasks in database, operations done on
-	 * the result will not affect the database
+	 * Returned tasks are immutable and shared with the database. The list itself is new and may be changed.
 	 * 
 	 * @return a List<Task> containing all the tasks in database
 	 */
@@ -201,20 +289,74 @@ public class Database {
 	public List<Task> getAll() {
 		log.info("Retrieving entire database");
 
-		List<Task> result = new ArrayList<Task>();
+		TaskSnapshot current = tasks;
+		List<Task> result = new ArrayList<Task>(current.size());
 
-		for (Map.Entry<Integer, Task> entry : quickAccessTask.entrySet()) {
-			Task currentEntry = entry.getValue();
-			result.add(new Task(currentEntry));
+		for (Task currentEntry : current.inDisplayOrder()) {
+			result.add(currentEntry);
 		}
-		
-		Collections.sort(result);
 
 		log.info("Database of size " + result.size() + " returned");
 
 		return result;
 	}
 	
+	/**
+	 * To give all tasks in the database as a read-only list whose tasks are only fetched when read.
+	 * <p>
+	 * The list stays the same after the database changes, and nothing is copied to make it.
+	 * 
+	 * @return all tasks in display order
+	 */
+	public ResultList viewAll() {
+		log.info("Viewing entire database");
+
+		return ResultList.all(tasks);
+	}
+
+	/**
+	 * To give all tasks as they were at a past moment. The tasks now in the database are not touched.
+	 * <p>
+	 * Returned tasks are new copies read from the timeline, whose serial numbers match no task in the database.
+	 * 
+	 * @param moment the past moment
+	 * @return the tasks at that moment in display order, none if it is before the timeline starts
+	 * @throws IOException if the timeline cannot be read
+	 */
+	public List<Task> getAllAsOf(DateTime moment) throws IOException {
+		assert (moment != null);
+		log.info("Retrieving entire database as of " + moment);
+
+		return pastTasks(moment).toList();
+	}
+
+	/**
+	 * To give the results of a search over the tasks as they were at a past moment.
+	 * The tasks now in the database are not touched.
+	 * 
+	 * @param terms Input in the form of a search term class
+	 * @param moment the past moment
+	 * @return the matched tasks at that moment in display order
+	 * @throws IOException if the timeline cannot be read
+	 */
+	public List<Task> searchAsOf(SearchTerms terms, DateTime moment) throws IOException {
+		assert (terms != null);
+		assert (moment != null);
+		log.info("Search request made as of " + moment);
+
+		QueryPlanner planner = new QueryPlanner(pastTasks(moment), terms);
+
+		return new ArrayList<Task>(planner.run());
+	}
+
+	private TaskSnapshot pastTasks(DateTime moment) throws IOException {
+		if (!timeline.isOpen()) {
+			throw new IOException("Timeline is not open");
+		}
+
+		return TaskSnapshot.of(timeline.tasksAsOf(moment.getMillis()));
+	}
+
 	/**
 	 * Overwrites all tasks in the database with this list
 	 * @param incoming the list of tasks to overwrite
@@ -222,7 +364,7 @@ public class Database {
 	 * @throws WillNotWriteToCorruptFileException if file already corrupt
 	 */
 
-	public void setAll(List<Task> incoming) throws IOException,
+	public synchronized void setAll(List<Task> incoming) throws IOException,
 	WillNotWriteToCorruptFileException {
 		assert (incoming != null);
 
@@ -233,16 +375,21 @@ public class Database {
 		List<Task> newList = new ArrayList<Task>();
 
 		for (Task currentEntry : incoming) {
-			newList.add(new Task(currentEntry));
+			newList.add(ImmutableTask.of(currentEntry));
 		}
 
 		log.info("Incoming data saved to temporary copy");
 
-		log.info("Send data to FileMgmt");
-		diskFile.writeDataBaseToFile(newList);	
+		if (transactionStart == null) {
+			log.info("Send data to FileMgmt");
+			diskFile.writeDataBaseToFile(newList);	
+			snapshotTimeline(newList);
+		} else {
+			noteEveryTaskChanged(newList);
+		}
 
 		log.info("FileMgmt saved successfully, permanently use new data");
-		duplicateListToHashMap(newList);
+		replaceTasks(TaskSnapshot.of(newList));
 
 	}
 
@@ -254,7 +401,7 @@ public class Database {
 	 * @throws WillNotWriteToCorruptFileException
 	 */
 
-	public void add(Task newTask) throws IOException,
+	public synchronized void add(Task newTask) throws IOException,
 	WillNotWriteToCorruptFileException {
 		assert (newTask != null);
 
@@ -262,26 +409,20 @@ public class Database {
 		
 		verifyFileWritingAbility();
 
-		Task newTaskClone = new Task(newTask);
-
-		List<Task> newList = new ArrayList<Task>();
-
-		for (Map.Entry<Integer, Task> entry : quickAccessTask.entrySet()) {
-			Task currentEntry = entry.getValue();
-			newList.add(new Task(currentEntry));
-		}
+		ImmutableTask newTaskClone = ImmutableTask.of(newTask);
 
-		newList.add(newTaskClone);
+		List<Task> added = new ArrayList<Task>();
+		added.add(newTaskClone);
 
 		log.info("Incoming task saved to temporary copy");
 
-		Collections.sort(newList);
+		TaskSnapshot before = tasks;
+		TaskSnapshot after = before.with(newTaskClone);
 
-		log.info("Send data to FileMgmt");
-		diskFile.writeDataBaseToFile(newList);
+		commitChanges(before, new ArrayList<Integer>(), added, after);
 
 		log.info("FileMgmt saved successfully, permanently use new data");
-		quickAccessTask.put(newTaskClone.getSerial(), newTaskClone);
+		replaceTasks(after);
 
 	}
 
@@ -290,22 +431,98 @@ public class Database {
 	 * 
 	 * @param serial  Serial number of task to be located
 	 * 
-	 * @return the located task with matching serial number
+	 * @return the located task with matching serial number. Copy it with new Task(...) to change it.
 	 * @throws NoSuchElementException if existing Task by serial number cannot be found
 	 */
 
-	public Task locateATask(int serial) throws NoSuchElementException {
+	public ImmutableTask locateATask(int serial) throws NoSuchElementException {
 		log.info("Asked to search for this serial " + serial);
-		Task locatedTask = quickAccessTask.get(serial);
+		ImmutableTask locatedTask = tasks.get(serial);
 
 		if(locatedTask != null) {
-			return new Task(locatedTask);
+			return locatedTask;
 		} else {
 			log.warning("Task with this serial " + serial + " not found");
 			throw new NoSuchElementException();
 		}
 	}
 
+	/**
+	 * To find the tasks in the database that are the same as these apart from their serial numbers,
+	 * such as the tasks of a command being undone.
+	 * <p>
+	 * The task with the same serial number is taken if it is still the same.
+	 * Otherwise any task with the same name, dates and done status is taken,
+	 * as serial numbers change each time the program is launched. No task is taken twice.
+	 * Tasks are only looked up by their contents if a serial number does not fit,
+	 * and then every task in the database is read once however many tasks are wanted.
+	 * 
+	 * @param wanted tasks to be found
+	 * @return serial numbers of the matching tasks, in the same order
+	 * @throws NoSuchElementException if at least one task has no match
+	 */
+
+	public List<Integer> locateSameTasks(List<Task> wanted) throws NoSuchElementException {
+		assert (wanted != null);
+		log.info("Asked to find " + wanted.size() + " tasks by their contents");
+
+		TaskSnapshot current = tasks;
+		HashSet<Integer> serialsTaken = new HashSet<Integer>();
+		List<Integer> found = new ArrayList<Integer>();
+		Map<String, LinkedList<Integer>> serialsByContents = null;
+
+		for (Task like : wanted) {
+			String likeLine = diskFile.taskToLine(like);
+			Integer match = null;
+			ImmutableTask sameSerial = current.get(like.getSerial());
+
+			if ((sameSerial != null) && !serialsTaken.contains(sameSerial.getSerial())
+					&& diskFile.taskToLine(sameSerial).equals(likeLine)) {
+				match = sameSerial.getSerial();
+			} else {
+				if (serialsByContents == null) {
+					serialsByContents = groupSerialsByContents(current);
+				}
+
+				LinkedList<Integer> sameContents = serialsByContents.get(likeLine);
+
+				while ((match == null) && (sameContents != null) && !sameContents.isEmpty()) {
+					Integer candidate = sameContents.removeFirst();
+					if (!serialsTaken.contains(candidate)) {
+						match = candidate;
+					}
+				}
+			}
+
+			if (match == null) {
+				log.warning("No task the same as " + likeLine + " found");
+				throw new NoSuchElementException();
+			}
+
+			serialsTaken.add(match);
+			found.add(match);
+		}
+
+		return found;
+	}
+
+	private Map<String, LinkedList<Integer>> groupSerialsByContents(TaskSnapshot snapshot) {
+		Map<String, LinkedList<Integer>> serialsByContents = new HashMap<String, LinkedList<Integer>>();
+
+		for (ImmutableTask current : snapshot.inDisplayOrder()) {
+			String line = diskFile.taskToLine(current);
+			LinkedList<Integer> serials = serialsByContents.get(line);
+
+			if (serials == null) {
+				serials = new LinkedList<Integer>();
+				serialsByContents.put(line, serials);
+			}
+			serials.add(current.getSerial());
+		}
+
+		return serialsByContents;
+	}
+
 	/**
 	 * To update existing task in database
 	 * 
@@ -317,7 +534,7 @@ public class Database {
 	 * @throws WillNotWriteToCorruptFileException
 	 */
 
-	public void update(int originalSerial, Task updated)
+	public synchronized void update(int originalSerial, Task updated)
 			throws NoSuchElementException, IOException,
 			WillNotWriteToCorruptFileException {
 		assert (updated != null);
@@ -327,39 +544,31 @@ public class Database {
 
 		verifyFileWritingAbility();
 
-		List<Task> newList = new ArrayList<Task>();
+		TaskSnapshot before = tasks;
 
-		for (Map.Entry<Integer, Task> entry : quickAccessTask.entrySet()) {
-			Task currentEntry = entry.getValue();
-			newList.add(new Task(currentEntry));
+		if (!before.contains(originalSerial)) {
+			log.warning("Cannot find old task, exception thrown");
+			throw new NoSuchElementException();
 		}
 
-		boolean isOriginalTaskFound = false;
-		for (Task toBeUpdated : newList) {
-			if (toBeUpdated.getSerial() == originalSerial) {
-				toBeUpdated.becomeThis(updated);
-				isOriginalTaskFound = true;
-				log.info("Old task with this serial " + originalSerial
-						+ " found");
-				break;
-			}
-		}
+		log.info("Old task with this serial " + originalSerial + " found");
+
+		ImmutableTask updatedClone = ImmutableTask.of(updated);
+
+		List<Integer> removed = new ArrayList<Integer>();
+		removed.add(originalSerial);
+
+		List<Task> added = new ArrayList<Task>();
+		added.add(updatedClone);
 
 		log.info("Incoming data saved to temporary copy");
 
-		Collections.sort(newList);
+		TaskSnapshot after = before.without(originalSerial).with(updatedClone);
 
-		if (isOriginalTaskFound) {
-			log.info("Send data to FileMgmt");
-			diskFile.writeDataBaseToFile(newList);
-			log.info("FileMgmt saved successfully, permanently use new data");
-			quickAccessTask.remove(originalSerial);
-			quickAccessTask.put(updated.getSerial(), updated);
-			
-		} else {
-			log.warning("Cannot find old task, exception thrown");
-			throw new NoSuchElementException();
-		}
+		commitChanges(before, removed, added, after);
+
+		log.info("FileMgmt saved successfully, permanently use new data");
+		replaceTasks(after);
 
 	}
 
@@ -382,6 +591,78 @@ public class Database {
 
 	}
 
+	/**
+	 * Sends a change to FileMgmt. 
+	 * Only the change itself is written if journaling is in use, otherwise the whole file is rewritten.
+	 * 
+	 * @param before tasks before this change
+	 * @param removedSerials serial numbers of existing tasks removed by this change
+	 * @param added new tasks added by this change
+	 * @param after tasks after this change
+	 */
+	private void commitChanges(TaskSnapshot before, List<Integer> removedSerials,
+			List<Task> added, TaskSnapshot after)
+			throws IOException, WillNotWriteToCorruptFileException {
+
+		if (transactionStart != null) {
+			log.info("Change kept in memory until the transaction is committed");
+			transactionChanges.addAll(removedSerials);
+			for (Task currentEntry : added) {
+				transactionChanges.add(currentEntry.getSerial());
+			}
+			return;
+		}
+
+		List<Task> removed = new ArrayList<Task>();
+
+		for (Integer currentSerial : removedSerials) {
+			removed.add(before.get(currentSerial));
+		}
+
+		writeChanges(removed, added, after);
+		recordTimeline(removed, added, after);
+	}
+
+	private void writeChanges(List<Task> removed, List<Task> added, TaskSnapshot after)
+			throws IOException, WillNotWriteToCorruptFileException {
+		if (diskFile.isJournalEnabled()) {
+			log.info("Send change to FileMgmt journal");
+			diskFile.writeChangesToJournal(removed, added);
+		} else {
+			log.info("Send data to FileMgmt");
+			diskFile.writeDataBaseToFile(after.toList());
+		}
+	}
+
+	private void recordTimeline(List<Task> removed, List<Task> added, TaskSnapshot after) {
+		if (timeline.isWritable()) {
+			try {
+				timeline.record(removed, added, after);
+			} catch (IOException e) {
+				log.warning("Cannot write timeline, past tasks will no longer be kept " + e);
+				timeline.close();
+			}
+		}
+	}
+
+	// Keeps every task as a snapshot in the timeline, when all tasks are replaced at once
+	private void snapshotTimeline(List<Task> all) {
+		if (timeline.isWritable()) {
+			try {
+				timeline.snapshot(all);
+			} catch (IOException e) {
+				log.warning("Cannot write timeline, past tasks will no longer be kept " + e);
+				timeline.close();
+			}
+		}
+	}
+
+	// Uses the new tasks and moves on to the next version
+	private void replaceTasks(TaskSnapshot changed) {
+		tasks = changed;
+		version++;
+	}
+
 	/**
 	 * To delete existing task in database
 	 * 
@@ -392,46 +673,30 @@ public class Database {
 	 * @throws WillNotWriteToCorruptFileException
 	 */
 
-	public void delete(int serial) throws NoSuchElementException, IOException,
+	public synchronized void delete(int serial) throws NoSuchElementException, IOException,
 	WillNotWriteToCorruptFileException {
 		log.info("Received this serial " + serial);
 
 		verifyFileWritingAbility();
 
-		List<Task> newList = new ArrayList<Task>();
+		TaskSnapshot before = tasks;
 
-		for (Map.Entry<Integer, Task> entry : quickAccessTask.entrySet()) {
-			Task currentEntry = entry.getValue();
-			newList.add(new Task(currentEntry));
+		if (!before.contains(serial)) {
+			log.warning("No task with this serial found");
+			throw new NoSuchElementException();
 		}
 
-		boolean isOriginalTaskFound = false;
+		log.info("Original Task found");
 
-		Task currentTask;
-
-		for (int i = 0; i < newList.size(); i++) {
-			currentTask = newList.get(i);
-
-			if (currentTask.getSerial() == serial) {
-				newList.remove(i);
-				isOriginalTaskFound = true;
-				log.info("Original Task found");
-				break;
-			}
-
-		}
+		List<Integer> removed = new ArrayList<Integer>();
+		removed.add(serial);
 
-		if (isOriginalTaskFound) {
+		TaskSnapshot after = before.without(serial);
 
-			log.info("Send data to FileMgmt");
-			diskFile.writeDataBaseToFile(newList);
+		commitChanges(before, removed, new ArrayList<Task>(), after);
 
-			log.info("FileMgmt saved successfully, permanently use new list");
-			quickAccessTask.remove(serial);
-		} else {
-			log.warning("No task with this serial found");
-			throw new NoSuchElementException();
-		}
+		log.info("FileMgmt saved successfully, permanently use new list");
+		replaceTasks(after);
 
 	}
 
@@ -445,49 +710,195 @@ public class Database {
 	 * @throws WillNotWriteToCorruptFileException
 	 */
 
-	public void delete(List<Integer> serial) throws NoSuchElementException,
+	public synchronized void delete(List<Integer> serial) throws NoSuchElementException,
 	IOException, WillNotWriteToCorruptFileException {
-		log.info("received array of serials of size " + serial.size());
-
 		assert (serial != null);
 
+		log.info("received array of serials of size " + serial.size());
+
 		verifyFileWritingAbility();
 
-		List<Task> newList = new ArrayList<Task>();
+		TaskSnapshot before = tasks;
+		TaskSnapshot after = before;
+		HashSet<Integer> serialsSeen = new HashSet<Integer>();
 
-		for (Map.Entry<Integer, Task> entry : quickAccessTask.entrySet()) {
-			Task currentEntry = entry.getValue();
-			newList.add(new Task(currentEntry));
+		for (Integer currentSerial : serial) {
+			// A serial given twice cannot be deleted the second time
+			if (!before.contains(currentSerial)
+					|| !serialsSeen.add(currentSerial)) {
+				log.warning("At least one task is not found, exception thrown");
+				throw new NoSuchElementException();
+			}
+			after = after.without(currentSerial);
 		}
 
-		for (Integer currentSerial : serial) {
-			boolean taskFound = false;
+		commitChanges(before, serial, new ArrayList<Task>(), after);
 
-			for(Iterator<Task> iter = newList.iterator(); iter.hasNext();){
-				Task current = iter.next();
+		replaceTasks(after);
+		log.info("FileMgmt saved successfully, permanently use new list");
 
-				if(current.getSerial() == currentSerial){
-					iter.remove();
+	}
 
-					taskFound = true;
-					break; // Break iterator, go to next serial number
-				}
+	/**
+	 * To remove some tasks and add others in one change, such as when a command is undone
+	 * 
+	 * @param removedSerials List of serial numbers of existing tasks to be removed
+	 * @param added Tasks to be added after the removal, keeping their serial numbers
+	 * 
+	 * @throws NoSuchElementException if at least one task to remove cannot be found,
+	 *             or a task to add has the serial number of a task that stays
+	 * @throws IOException if cannot commit changes to file, database will not be modified
+	 * @throws WillNotWriteToCorruptFileException
+	 */
+
+	public synchronized void replace(List<Integer> removedSerials, List<Task> added)
+			throws NoSuchElementException, IOException, WillNotWriteToCorruptFileException {
+		assert (removedSerials != null);
+		assert (added != null);
+
+		log.info("Received " + removedSerials.size() + " serials to remove and "
+				+ added.size() + " tasks to add");
+
+		verifyFileWritingAbility();
+
+		TaskSnapshot before = tasks;
+		TaskSnapshot after = before;
+		HashSet<Integer> serialsSeen = new HashSet<Integer>();
+
+		for (Integer currentSerial : removedSerials) {
+			if (!before.contains(currentSerial)
+					|| !serialsSeen.add(currentSerial)) {
+				log.warning("At least one task is not found, exception thrown");
+				throw new NoSuchElementException();
+			}
+			after = after.without(currentSerial);
+		}
+
+		List<Task> addedClones = new ArrayList<Task>();
+
+		for (Task currentEntry : added) {
+			ImmutableTask currentClone = ImmutableTask.of(currentEntry);
+
+			if (after.contains(currentClone.getSerial())) {
+				log.warning("A task to add is already in the database, exception thrown");
+				throw new NoSuchElementException();
 			}
+			after = after.with(currentClone);
+			addedClones.add(currentClone);
+		}
 
-			if (!taskFound) {
+		commitChanges(before, removedSerials, addedClones, after);
+
+		replaceTasks(after);
+		log.info("FileMgmt saved successfully, permanently use new list");
+
+	}
+
+	/**
+	 * To change every task matching a search as one change, such as marking them all done.
+	 * <p>
+	 * The matching tasks are found through the indexes as a search would, and are then given to the update one by one.
+	 * Every change is written to the file at once.
+	 *
+	 * @param terms the tasks to be given to the update
+	 * @param update the change made to each task, which may also leave a task as it is or delete it
+	 * @param message description of the change
+	 * @return the tasks the change removed and added, to be kept for undo. Both are empty if nothing changed
+	 * @throws IOException if cannot commit changes to file, database will not be modified
+	 * @throws WillNotWriteToCorruptFileException
+	 */
+
+	public synchronized HistoryEntry updateWhere(SearchTerms terms, TaskUpdate update, String message)
+			throws IOException, WillNotWriteToCorruptFileException {
+		assert (terms != null);
+		assert (update != null);
+
+		log.info("Bulk update request made");
+
+		verifyFileWritingAbility();
+
+		TaskSnapshot before = tasks;
+		QueryPlanner planner = new QueryPlanner(before, terms);
+
+		return applyUpdate(before, planner.run(), update, message);
+	}
+
+	/**
+	 * To change the given tasks as one change, such as marking them all done.
+	 *
+	 * @param serials serial numbers of the tasks to be given to the update
+	 * @param update the change made to each task, which may also leave a task as it is or delete it
+	 * @param message description of the change
+	 * @return the tasks the change removed and added, to be kept for undo. Both are empty if nothing changed
+	 * @throws NoSuchElementException if at least one task by serial number cannot be found
+	 * @throws IOException if cannot commit changes to file, database will not be modified
+	 * @throws WillNotWriteToCorruptFileException
+	 */
+
+	public synchronized HistoryEntry updateSerials(List<Integer> serials, TaskUpdate update, String message)
+			throws NoSuchElementException, IOException, WillNotWriteToCorruptFileException {
+		assert (serials != null);
+		assert (update != null);
+
+		log.info("Bulk update request made for " + serials.size() + " serials");
+
+		verifyFileWritingAbility();
+
+		TaskSnapshot before = tasks;
+		List<ImmutableTask> selected = new ArrayList<ImmutableTask>();
+		HashSet<Integer> serialsSeen = new HashSet<Integer>();
+
+		for (Integer currentSerial : serials) {
+			if (!before.contains(currentSerial)
+					|| !serialsSeen.add(currentSerial)) {
 				log.warning("At least one task is not found, exception thrown");
 				throw new NoSuchElementException();
 			}
+			selected.add(before.get(currentSerial));
+		}
 
+		return applyUpdate(before, selected, update, message);
+	}
+
+	// Gives each selected task to the update and commits whatever it changed as one change
+	private HistoryEntry applyUpdate(TaskSnapshot before, List<ImmutableTask> selected,
+			TaskUpdate update, String message) throws IOException, WillNotWriteToCorruptFileException {
+		TaskSnapshot after = before;
+		List<Integer> removedSerials = new ArrayList<Integer>();
+		List<Task> removed = new ArrayList<Task>();
+		List<Task> added = new ArrayList<Task>();
+
+		for (ImmutableTask currentEntry : selected) {
+			Task changed = update.apply(currentEntry);
+
+			if (changed == currentEntry) {
+				continue;
+			}
+
+			removedSerials.add(currentEntry.getSerial());
+			removed.add(currentEntry);
+			after = after.without(currentEntry.getSerial());
+
+			if (changed != null) {
+				ImmutableTask changedClone = ImmutableTask.of(changed);
+				assert (changedClone.getSerial() == currentEntry.getSerial());
+
+				after = after.with(changedClone);
+				added.add(changedClone);
+			}
 		}
 
-		log.info("Send data to FileMgmt");
-		diskFile.writeDataBaseToFile(newList);
-		for (Integer currentSerial : serial) {
-			quickAccessTask.remove(currentSerial);
+		log.info("Bulk update of " + selected.size() + " tasks changed " + removed.size()
+				+ " and deleted " + (removed.size() - added.size()));
+
+		if (!removedSerials.isEmpty()) {
+			commitChanges(before, removedSerials, added, after);
+
+			replaceTasks(after);
+			log.info("FileMgmt saved successfully, permanently use new list");
 		}
-		log.info("FileMgmt saved successfully, permanently use new list");
 
+		return new HistoryEntry(message, System.currentTimeMillis(), added, removed);
 	}
 
 	/**
@@ -497,15 +908,125 @@ public class Database {
 	 * @throws WillNotWriteToCorruptFileException
 	 */
 
-	public void deleteAll() throws IOException,
+	public synchronized void deleteAll() throws IOException,
 	WillNotWriteToCorruptFileException {
 		verifyFileWritingAbility();
 
-		log.info("Send data to FileMgmt");
-		diskFile.writeDataBaseToFile(new ArrayList<Task>());
+		if (transactionStart == null) {
+			log.info("Send data to FileMgmt");
+			diskFile.writeDataBaseToFile(new ArrayList<Task>());
+			snapshotTimeline(new ArrayList<Task>());
+		} else {
+			noteEveryTaskChanged(new ArrayList<Task>());
+		}
 
 		log.info("FileMgmt saved successfully, permanently use new list");
-		quickAccessTask.clear();
+		replaceTasks(TaskSnapshot.EMPTY);
+	}
+
+	/**
+	 * To start a transaction. Changes made from now on are seen at once, but are only written
+	 * to the file when the transaction is committed, all in one write.
+	 * 
+	 * @throws IllegalStateException if a transaction is already open
+	 */
+
+	public synchronized void beginTransaction() {
+		if (transactionStart != null) {
+			throw new IllegalStateException("A transaction is already open");
+		}
+
+		log.info("Transaction begun");
+		transactionStart = tasks;
+		transactionChanges.clear();
+	}
+
+	// Every task now is removed and every task of the new list added, when all of them are replaced
+	private void noteEveryTaskChanged(List<Task> newList) {
+		for (ImmutableTask currentEntry : tasks.inDisplayOrder()) {
+			transactionChanges.add(currentEntry.getSerial());
+		}
+		for (Task currentEntry : newList) {
+			transactionChanges.add(currentEntry.getSerial());
+		}
+	}
+
+	public synchronized boolean isInTransaction() {
+		return transactionStart != null;
+	}
+
+	/**
+	 * To write every change made in the open transaction to the file as one change.
+	 * The transaction is rolled back if it cannot be written.
+	 * 
+	 * @param message description of the transaction
+	 * @return the tasks the transaction removed and added, to be kept for undo
+	 * @throws IllegalStateException if no transaction is open
+	 * @throws IOException if cannot commit changes to file, database is rolled back
+	 * @throws WillNotWriteToCorruptFileException
+	 */
+
+	public synchronized HistoryEntry commitTransaction(String message) throws IOException,
+	WillNotWriteToCorruptFileException {
+		if (transactionStart == null) {
+			throw new IllegalStateException("No transaction is open");
+		}
+
+		TaskSnapshot before = transactionStart;
+		TaskSnapshot after = tasks;
+
+		//Only tasks changed in the transaction are looked at. Changed tasks are new objects,
+		//so one that is not the same object at the end was removed or added
+		List<Task> removed = new ArrayList<Task>();
+		List<Task> added = new ArrayList<Task>();
+		for (Integer currentSerial : transactionChanges) {
+			ImmutableTask original = before.get(currentSerial);
+			ImmutableTask current = after.get(currentSerial);
+
+			if (original == current) {
+				continue;
+			}
+			if (original != null) {
+				removed.add(original);
+			}
+			if (current != null) {
+				added.add(current);
+			}
+		}
+
+		log.info("Committing transaction of " + removed.size() + " removed and " + added.size() + " added tasks");
+
+		try {
+			verifyFileWritingAbility();
+			writeChanges(removed, added, after);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			log.warning("Cannot commit transaction, rolling back");
+			rollbackTransaction();
+			throw e;
+		}
+
+		transactionStart = null;
+		transactionChanges.clear();
+		recordTimeline(removed, added, after);
+
+		return new HistoryEntry(message, System.currentTimeMillis(), added, removed);
+	}
+
+	/**
+	 * To drop every change made in the open transaction. The file was never changed by them.
+	 * 
+	 * @throws IllegalStateException if no transaction is open
+	 */
+
+	public synchronized void rollbackTransaction() {
+		if (transactionStart == null) {
+			throw new IllegalStateException("No transaction is open");
+		}
+
+		log.info("Transaction rolled back");
+		replaceTasks(transactionStart);
+		transactionStart = null;
+		transactionChanges.clear();
 	}
 
 	/**
@@ -6,18 +6,23 @@ package main.storage;
  * A class for managing all read and writes to disk. Will lock the database file during the duration of the program run
  * @author  Yeo Kheng Meng
  */
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.io.StringReader;
 
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 
@@ -39,11 +44,36 @@ public class FileManagement {
 		FILE_IS_LOCKED
 	};
 
-	public final String filename = "database.txt";
+	/**
+	 * SYNC writes and flushes every change before returning.
+	 * GROUP_COMMIT accepts changes at once and flushes them together within the group commit delay.
+	 * RELAXED accepts changes at once and leaves flushing to the operating system.
+	 */
+	public enum Durability {
+		SYNC,
+		GROUP_COMMIT,
+		RELAXED
+	};
+
+	public final String filename;
+	public final String binaryFilename;
+	public final String journalFilename;
+	public final String historyFilename;
+	public final String timelineFilename;
+
+	//Journaling is disabled by default. To enable provide "-journal" argument
+	public static boolean journalOn = false;
+
+	//Database is stored as text by default. To store it in the binary format provide "-binary" argument
+	public static boolean binaryOn = false;
+
+	//Changes are written synchronously by default. Change with "-groupcommit[=delay]" or "-relaxed" argument
+	public static Durability durability = Durability.SYNC;
+	public static long groupCommitDelay = 20;
 
 	private final int FILE_INDEX_START = 1;
+	private final int JOURNAL_LINE_INDEX = 0;
 
-	private final String LINE_IGNORE_CHARACTER = "#";
 	private final String LINE_PARAM_DELIMITER_READ = " \\| ";
 	private final String LINE_PARAM_DELIMITER_WRITE = " | ";
 	private final String LINE_EMPTY_DATE = "----------------------";
@@ -88,24 +118,41 @@ public class FileManagement {
 	private final String LINE_END_OF_LINE = System.getProperty("line.separator");
 
 	private final String LINE_LAST_MODIFIED = "#Last Modified: %1$s";
+	private final String LINE_GENERATION = "#Journal Generation: ";
+	private final String LINE_JOURNAL_OFFSET = "#Journal Offset: ";
+	private static final long INITIAL_GENERATION = 0;
+	private static final long INITIAL_JOURNAL_OFFSET = 0;
+	private final String COMPACTED_FILE_SUFFIX = ".compact";
+	private final String CHECKPOINT_COPY_SUFFIX = ".base";
 	private final int ZERO_LENGTH_TASK_NAME = 0;
 
 	private final long START_OF_FILE = 0;
 	private final long INITIAL_FILE_SIZE = 0;
 
-	private FileStatus fileAttributes = FileStatus.FILE_PERMISSIONS_UNKNOWN;
+	private volatile FileStatus fileAttributes = FileStatus.FILE_PERMISSIONS_UNKNOWN;
 
-	private File databaseFile = new File(filename);
+	private File databaseFile;
 	private FileLock databaseFileLock = null;
 	private FileChannel databaseChannel = null;
 	private RandomAccessFile randDatabaseAccess = null;
+
+	private TaskJournal journal = null;
+	private volatile WriteBehindQueue writeBehind = null;
+	private JournalCompactor journalCompactor = new JournalCompactor(this);
+	private long checkpointGeneration = INITIAL_GENERATION;
+	private long checkpointJournalOffset = INITIAL_JOURNAL_OFFSET;
+
+	// Guards the open files, the journal and the checkpoint position while disk IO is done.
+	// Always taken after the instance lock and never before it, so the writer thread
+	// can write to disk while changes are still being accepted under the instance lock.
+	private final Object diskLock = new Object();
 	
 
 	private Logger log = LogHandler.getLogInstance();
 
 	private static FileManagement theOne = null;
 
-	public static FileManagement getInstance() {
+	public static synchronized FileManagement getInstance() {
 		if (theOne == null) {
 			theOne = new FileManagement();
 		}
@@ -113,11 +160,50 @@ public class FileManagement {
 		return theOne;
 	}
 
+	/**
+	 * Creates an instance apart from the shared one, keeping its files in the given directory.
+	 * Lets tests work on their own database file without touching the one in use.
+	 *
+	 * @param directory where the database, journal, history and timeline files are kept
+	 * @return a new instance that has not opened any file yet
+	 */
+	public static FileManagement inDirectory(File directory) {
+		assert (directory != null);
+		return new FileManagement(directory);
+	}
+
 	private FileManagement() {
+		this(null);
+	}
+
+	private FileManagement(File directory) {
+		filename = new File(directory, "database.txt").getPath();
+		binaryFilename = new File(directory, "database.dat").getPath();
+		journalFilename = new File(directory, "database.journal").getPath();
+		historyFilename = new File(directory, "database.history").getPath();
+		timelineFilename = new File(directory, "database.timeline").getPath();
+		databaseFile = new File(filename);
+
 		log.info("FileMgmt instance created");
 	}
 
+	// Journal position the database file has been brought up to
+	static class CheckpointHeader {
+		long generation = INITIAL_GENERATION;
+		long journalOffset = INITIAL_JOURNAL_OFFSET;
+	}
+
 	public List<Task> readFileAndDetectCorruption() {
+		flushWriteBehind();
+
+		synchronized (this) {
+			synchronized (diskLock) {
+				return readFileAndDetectCorruptionNow();
+			}
+		}
+	}
+
+	private List<Task> readFileAndDetectCorruptionNow() {
 
 		List<Task> tasksRead = new ArrayList<Task>();
 		
@@ -126,6 +212,7 @@ public class FileManagement {
 			try {
 				tasksRead =  readFiletoDataBase();
 			} catch (Exception e) {
+				log.warning("Database file is corrupt " + e);
 				fileAttributes = FileStatus.FILE_IS_CORRUPT;
 			}
 		}
@@ -133,10 +220,12 @@ public class FileManagement {
 		return tasksRead;
 	}
 
-	public void prepareDatabaseFile() {
+	public synchronized void prepareDatabaseFile() {
 
 		log.info("Prepare database file");
-		assert (databaseFile != null);
+
+		databaseFile = new File(getDatabaseFilename());
+		migrateDatabaseFormat();
 		
 		boolean firstLaunch = false;
 		
@@ -148,7 +237,7 @@ public class FileManagement {
 		boolean isRWLockSucessful = true;
 		// Open file as read and write
 		try {
-			randDatabaseAccess = new RandomAccessFile(databaseFile, "rws");
+			randDatabaseAccess = new RandomAccessFile(databaseFile, readWriteMode());
 			databaseChannel = randDatabaseAccess.getChannel();
 
 			log.info("Attempting to get file lock");
@@ -169,6 +258,21 @@ public class FileManagement {
 
 		// If the above is successful, we end this method
 		if (isRWLockSucessful)   {
+			if(journalOn) {
+				prepareJournal(true);
+			}
+
+			if(!durability.equals(Durability.SYNC)) {
+				log.info("Start write behind with durability " + durability);
+				writeBehind = new WriteBehindQueue(new WriteBehindQueue.WindowWriter() {
+					@Override
+					public void writeWindow(List<WriteBehindQueue.PendingWrite> window)
+							throws IOException, WillNotWriteToCorruptFileException {
+						FileManagement.this.writeWindow(window);
+					}
+				}, groupCommitDelay);
+			}
+
 			if(firstLaunch){
 
 				//If first launch, inject sample tasks into schedule
@@ -196,6 +300,114 @@ public class FileManagement {
 			log.severe("Unknown file permissions " + e);
 		}
 
+		if(journalOn && fileAttributes.equals(FileStatus.FILE_READ_ONLY)
+				&& new File(journalFilename).exists()) {
+			prepareJournal(false);
+		}
+
+	}
+
+	private String getDatabaseFilename() {
+		if (binaryOn) {
+			return binaryFilename;
+		} else {
+			return filename;
+		}
+	}
+
+	// Converts the database left in the other format if there is none in the chosen format yet
+	private void migrateDatabaseFormat() {
+		File otherFormat;
+
+		if (binaryOn) {
+			otherFormat = new File(filename);
+		} else {
+			otherFormat = new File(binaryFilename);
+		}
+
+		if (databaseFile.exists() || !otherFormat.exists()) {
+			return;
+		}
+
+		log.info("Converting " + otherFormat + " to " + databaseFile);
+
+		try {
+			convertDatabaseFile(otherFormat, databaseFile, binaryOn);
+		} catch (IOException | DataFormatException e) {
+			log.warning("Cannot convert database file, starting with a new one " + e);
+		}
+	}
+
+	/**
+	 * Converts a database file in either format to the text format.
+	 * The journal position is kept so the journal still applies to the converted file.
+	 *
+	 * @param source database file in the text or binary format
+	 * @param destination file to write the text format to. Replaced if it exists.
+	 * @throws IOException if either file cannot be accessed
+	 * @throws DataFormatException if the source file is corrupt
+	 */
+	public void convertToText(File source, File destination) throws IOException, DataFormatException {
+		convertDatabaseFile(source, destination, false);
+	}
+
+	/**
+	 * Converts a database file in either format to the binary format.
+	 * The journal position is kept so the journal still applies to the converted file.
+	 *
+	 * @param source database file in the text or binary format
+	 * @param destination file to write the binary format to. Replaced if it exists.
+	 * @throws IOException if either file cannot be accessed
+	 * @throws DataFormatException if the source file is corrupt
+	 */
+	public void convertToBinary(File source, File destination) throws IOException, DataFormatException {
+		convertDatabaseFile(source, destination, true);
+	}
+
+	private void convertDatabaseFile(File source, File destination, boolean toBinary)
+			throws IOException, DataFormatException {
+		assert (source != null);
+		assert (destination != null);
+
+		CheckpointHeader header = new CheckpointHeader();
+		List<Task> tasks = parseCheckpoint(Files.readAllBytes(source.toPath()), header);
+
+		File converted = new File(destination.getPath() + COMPACTED_FILE_SUFFIX);
+		Files.write(converted.toPath(), encodeCheckpoint(tasks, header.generation, header.journalOffset, toBinary));
+		Files.move(converted.toPath(), destination.toPath(),
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		log.info("Converted " + tasks.size() + " tasks from " + source + " to " + destination);
+	}
+
+	private void prepareJournal(boolean writable) {
+		log.info("Prepare journal file");
+		journal = new TaskJournal(new File(journalFilename));
+
+		try {
+			journal.open(writable, durability.equals(Durability.SYNC));
+		} catch (IOException e) {
+			log.warning("Cannot open journal, falling back to full file writes " + e);
+			journal = null;
+		}
+	}
+
+	// Every write is flushed by the operating system only in synchronous mode
+	private String readWriteMode() {
+		if (durability.equals(Durability.SYNC)) {
+			return "rws";
+		} else {
+			return "rw";
+		}
+	}
+
+	/**
+	 * Check if changes are recorded to the journal instead of rewriting the database file
+	 *
+	 * @return true if journaling is in use
+	 */
+	public synchronized boolean isJournalEnabled() {
+		return (journal != null);
 	}
 
 	public List<Task> prepareInitialLaunchTasks() {
@@ -242,26 +454,74 @@ public class FileManagement {
 		return fileAttributes;
 	}
 
+	/**
+	 * @return true if this copy of DoIt holds the lock on the database file, so no other copy can change it
+	 */
+	public boolean isHoldingFileLock() {
+		synchronized (diskLock) {
+			return (databaseFileLock != null) && databaseFileLock.isValid();
+		}
+	}
+
 	public void closeFile() {
-		log.info("Closing File");
-		try {
-			if (databaseFileLock != null) {
-				databaseFileLock.release();
-				databaseFileLock = null;
-			}
-			if (databaseChannel != null) {
-				databaseChannel.close();
-				databaseChannel = null;
-			}
+		WriteBehindQueue toStop;
+
+		synchronized (this) {
+			toStop = writeBehind;
+			writeBehind = null;
+		}
+
+		// Stopped outside the lock so nothing queued behind the writer is held up while it finishes
+		if (toStop != null) {
+			toStop.shutdown();
+		}
+
+		synchronized (this) {
+			closeFileNow();
+		}
+	}
+
+	// Waits for accepted writes to reach the disk. Must not be called while holding the disk lock as the writer needs it.
+	private void flushWriteBehind() {
+		WriteBehindQueue toFlush = writeBehind;
 
-			if (randDatabaseAccess != null) {
-				randDatabaseAccess.close();
+		if (toFlush != null) {
+			try {
+				toFlush.flush();
+			} catch (IOException e) {
+				log.severe("Accepted writes could not be written " + e);
 			}
-			randDatabaseAccess = null;
+		}
+	}
 
-		} catch (IOException e) {
-			log.severe("Cannot close file " + databaseFileLock + " "
-					+ databaseChannel + " " + randDatabaseAccess + " " + e);
+	private void closeFileNow() {
+		log.info("Closing File");
+
+		synchronized (diskLock) {
+			try {
+				if (databaseFileLock != null) {
+					databaseFileLock.release();
+					databaseFileLock = null;
+				}
+				if (databaseChannel != null) {
+					databaseChannel.close();
+					databaseChannel = null;
+				}
+
+				if (randDatabaseAccess != null) {
+					randDatabaseAccess.close();
+				}
+				randDatabaseAccess = null;
+
+				if (journal != null) {
+					journal.close();
+					journal = null;
+				}
+
+			} catch (IOException e) {
+				log.severe("Cannot close file " + databaseFileLock + " "
+						+ databaseChannel + " " + randDatabaseAccess + " " + e);
+			}
 		}
 	}
 
@@ -279,44 +539,252 @@ public class FileManagement {
 			throw new IOException();
 		}
 
-		int fileSize = (int) databaseFile.length();
-		byte[] fileByteContents = new byte[fileSize];
+		log.info("Start reading from disk");
 
-		assert (START_OF_FILE >= 0);
+		CheckpointHeader header = new CheckpointHeader();
+		storeInHere = new MappedDatabaseLoader(header).load(databaseChannel);
 
-		log.info("Start reading from disk");
+		checkpointGeneration = header.generation;
+		checkpointJournalOffset = header.journalOffset;
+
+		if (journal != null) {
+			log.info("Replaying journal");
+			List<String[]> records = journal.readCommittedRecords(checkpointGeneration, checkpointJournalOffset);
+			storeInHere = applyJournalRecords(storeInHere, records);
+
+			if (journalCompactor.isCompactionDue(journal)) {
+				journalCompactor.requestCompaction();
+			}
+		}
+		
+		return storeInHere;
+
+	}
+
+	// Parses the database file in whichever format it is in. Does not touch any state so compaction can run it in the background
+	private List<Task> parseCheckpoint(byte[] fileByteContents, CheckpointHeader header)
+			throws DataFormatException {
+		return new MappedDatabaseLoader(header).parse(ByteBuffer.wrap(fileByteContents));
+	}
 
-		randDatabaseAccess.seek(START_OF_FILE);
-		randDatabaseAccess.read(fileByteContents);
+	/**
+	 * Applies the committed changes in the journal onto the tasks read from the checkpoint.
+	 * <p>
+	 * Removed tasks are identified by their line in the database file format,
+	 * as serial numbers are not kept across program launches.
+	 */
+	private List<Task> applyJournalRecords(List<Task> checkpointTasks, List<String[]> records)
+			throws DataFormatException {
 
-		log.info("Reading to RAM completed");
+		if (records.isEmpty()) {
+			return checkpointTasks;
+		}
 
-		String fileInStringFormat = new String(fileByteContents);
-		BufferedReader fileStringReader = new BufferedReader(new StringReader(fileInStringFormat));
+		Map<String, LinkedList<Task>> liveTasks = new HashMap<String, LinkedList<Task>>();
 
-		String lineFromInput;
-		String parsed[] = null;
+		for (Task current : checkpointTasks) {
+			addToLiveTasks(liveTasks, current);
+		}
 
-		log.info("Parsing contents");
+		for (String[] record : records) {
+			String recordType = record[0];
+			Task recordTask = taskParser(record[1].split(LINE_PARAM_DELIMITER_READ, LINE_NUM_FIELDS));
 
-		while ((lineFromInput = fileStringReader.readLine()) != null) {
-			log.fine("Input line " + lineFromInput);
+			if (recordType.equals(TaskJournal.RECORD_ADD)) {
+				addToLiveTasks(liveTasks, recordTask);
+			} else {
+				LinkedList<Task> sameTasks = liveTasks.get(taskToJournalString(recordTask));
 
-			if (lineFromInput.startsWith(LINE_IGNORE_CHARACTER)){
-				continue;
+				if ((sameTasks == null) || sameTasks.isEmpty()) {
+					throw new DataFormatException("Journal removes a task that does not exist");
+				}
+				sameTasks.removeFirst();
 			}
-			parsed = lineFromInput.split(LINE_PARAM_DELIMITER_READ,	LINE_NUM_FIELDS);
+		}
+
+		List<Task> replayed = new ArrayList<Task>();
+		for (LinkedList<Task> sameTasks : liveTasks.values()) {
+			replayed.addAll(sameTasks);
+		}
+
+		Collections.sort(replayed);
 
-			Task toBeAdded = taskParser(parsed);
-			log.fine("Parsed line " + toBeAdded.showInfo());
+		log.info("Journal replayed " + records.size() + " records");
+		return replayed;
+	}
+
+	/**
+	 * Folds the journal into a fresh checkpoint and cuts the folded records away from the journal.
+	 * <p>
+	 * Run by JournalCompactor on its own thread. The checkpoint is rebuilt from disk
+	 * without holding any lock, so changes can still be journaled while this runs.
+	 * Only the disk lock is taken to swap the new checkpoint in.
+	 */
+	void compactJournal() {
+		long generation;
+		long foldedOffset;
+		long snapshotOffset;
+		long checkpointLength;
+		FileChannel checkpointChannel;
+
+		synchronized (diskLock) {
+			if ((journal == null) || (databaseChannel == null)
+					|| !fileAttributes.equals(FileStatus.FILE_ALL_OK)) {
+				return;
+			}
 
-			storeInHere.add(toBeAdded);
+			try {
+				generation = checkpointGeneration;
+				foldedOffset = checkpointJournalOffset;
+				snapshotOffset = journal.getLogicalEnd();
+				checkpointLength = databaseChannel.size();
+				checkpointChannel = databaseChannel;
+
+				// The database file already has every batch, as after a crash between swapping in
+				// the last checkpoint and cutting the journal. Only the journal is left to cut.
+				if (snapshotOffset <= foldedOffset) {
+					journal.truncateBefore(foldedOffset);
+					return;
+				}
+			} catch (IOException e) {
+				log.warning("Cannot start compaction " + e);
+				return;
+			}
 		}
 
-		log.info("Parsing complete");
-		
-		return storeInHere;
+		log.info("Compacting journal from offset " + foldedOffset + " to " + snapshotOffset);
+
+		File compacted = new File(databaseFile.getPath() + COMPACTED_FILE_SUFFIX);
+
+		try {
+			List<Task> tasks = readCheckpointCopy(checkpointChannel, checkpointLength);
+			tasks = applyJournalRecords(tasks, journal.readRecordsBetween(foldedOffset, snapshotOffset));
+
+			RandomAccessFile compactedAccess = new RandomAccessFile(compacted, "rw");
+			try {
+				compactedAccess.setLength(INITIAL_FILE_SIZE);
+				compactedAccess.write(encodeCheckpoint(tasks, generation, snapshotOffset, binaryOn));
+				compactedAccess.getChannel().force(true);
+			} finally {
+				compactedAccess.close();
+			}
+
+			synchronized (diskLock) {
+				if ((generation != checkpointGeneration) || (journal == null)
+						|| (databaseChannel == null)) {
+					log.info("Database changed during compaction, compaction abandoned");
+					compacted.delete();
+					return;
+				}
+
+				swapInCheckpoint(compacted);
+				checkpointJournalOffset = snapshotOffset;
+				journal.truncateBefore(snapshotOffset);
+			}
+
+			log.info("Compaction complete");
+
+		} catch (Exception e) {
+			log.warning("Compaction failed, journal kept as it is " + e);
+			compacted.delete();
+		}
+	}
+
+	/**
+	 * Copies the checkpoint to a side file and parses the copy, so the checkpoint can be rewritten meanwhile.
+	 * The bytes are streamed by the file system and never held on the heap, whatever the size of the checkpoint.
+	 */
+	private List<Task> readCheckpointCopy(FileChannel checkpointChannel, long checkpointLength)
+			throws IOException, DataFormatException {
+		File checkpointCopy = new File(databaseFile.getPath() + CHECKPOINT_COPY_SUFFIX);
+		RandomAccessFile copyAccess = new RandomAccessFile(checkpointCopy, "rw");
+
+		try {
+			copyAccess.setLength(INITIAL_FILE_SIZE);
+			FileChannel copyChannel = copyAccess.getChannel();
+
+			long copied = 0;
+			while (copied < checkpointLength) {
+				long transferred = checkpointChannel.transferTo(copied, checkpointLength - copied, copyChannel);
+				if (transferred <= 0) {
+					throw new IOException("Checkpoint ended unexpectedly");
+				}
+				copied += transferred;
+			}
+
+			return new MappedDatabaseLoader(new CheckpointHeader()).load(copyChannel);
+		} finally {
+			copyAccess.close();
+			checkpointCopy.delete();
+		}
+	}
+
+	/**
+	 * Atomically replaces the database file with the new checkpoint.
+	 * The old file is unlocked and closed before the move, as an open or locked file cannot be
+	 * replaced on every platform, and the database file is opened and locked again afterwards.
+	 * If the move fails the old file is opened again instead.
+	 *
+	 * @throws IOException if the file cannot be moved, or cannot be opened and locked again
+	 */
+	private void swapInCheckpoint(File compacted) throws IOException {
+		databaseFileLock.release();
+		databaseFileLock = null;
+		randDatabaseAccess.close();
+		randDatabaseAccess = null;
+		databaseChannel = null;
+
+		try {
+			Files.move(compacted.toPath(), databaseFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			reopenDatabaseFile();
+		}
+	}
+
+	private void reopenDatabaseFile() throws IOException {
+		randDatabaseAccess = new RandomAccessFile(databaseFile, readWriteMode());
+		databaseChannel = randDatabaseAccess.getChannel();
+		databaseFileLock = databaseChannel.tryLock();
+
+		// Another copy of DoIt took the file while it was unlocked
+		if (databaseFileLock == null) {
+			fileAttributes = FileStatus.FILE_IS_LOCKED;
+			log.severe("Database file was locked by another instance during compaction");
+			throw new IOException("Cannot lock database file again");
+		}
+	}
+
+	private void addToLiveTasks(Map<String, LinkedList<Task>> liveTasks, Task toAdd) {
+		String key = taskToJournalString(toAdd);
+		LinkedList<Task> sameTasks = liveTasks.get(key);
+
+		if (sameTasks == null) {
+			sameTasks = new LinkedList<Task>();
+			liveTasks.put(key, sameTasks);
+		}
+		sameTasks.add(toAdd);
+	}
+
+	private String taskToJournalString(Task toBeConverted) {
+		return taskToDatabaseString(toBeConverted, JOURNAL_LINE_INDEX);
+	}
 
+	/**
+	 * @return the task as one line of the database file format, without its index.
+	 *         Two tasks have the same line if they are the same apart from their serial numbers.
+	 */
+	String taskToLine(Task toBeConverted) {
+		return taskToJournalString(toBeConverted);
+	}
+
+	/**
+	 * @param line a task written by taskToLine
+	 * @return a new task read from the line
+	 * @throws DataFormatException if the line is malformed
+	 */
+	Task lineToTask(String line) throws DataFormatException {
+		return taskParser(line.split(LINE_PARAM_DELIMITER_READ, LINE_NUM_FIELDS));
 	}
 
 	private Task taskParser(String[] parsed) throws DataFormatException {
@@ -469,7 +937,7 @@ public class FileManagement {
 		return FILE_DATE_FORMAT.print(toBeConverted);
 	}
 
-	public void writeDataBaseToFile(List<Task> toBeWritten) throws IOException,
+	public synchronized void writeDataBaseToFile(List<Task> toBeWritten) throws IOException,
 	WillNotWriteToCorruptFileException {
 		assert (toBeWritten != null);
 
@@ -485,6 +953,106 @@ public class FileManagement {
 			throw new IOException("Database file not prepared");
 		}
 
+		if (writeBehind != null) {
+			writeBehind.throwWriteFailure();
+			writeBehind.enqueueSnapshot(new ArrayList<Task>(toBeWritten));
+			log.info("Write accepted for write behind");
+			return;
+		}
+
+		writeCheckpoint(toBeWritten);
+	}
+
+	private void writeCheckpoint(List<Task> toBeWritten) throws IOException {
+		synchronized (diskLock) {
+			if (randDatabaseAccess == null) {
+				throw new IOException("Database file not prepared");
+			}
+
+			long newGeneration = checkpointGeneration + 1;
+			byte[] dataToBeWritten = encodeCheckpoint(toBeWritten, newGeneration, INITIAL_JOURNAL_OFFSET, binaryOn);
+
+			// Truncate the file to 0 or INITIAL_FILE_SIZE size to clear the old
+			// database file before writing
+			log.info("Attempt to write to disk");
+
+			randDatabaseAccess.setLength(INITIAL_FILE_SIZE);
+			randDatabaseAccess.seek(START_OF_FILE);
+			randDatabaseAccess.write(dataToBeWritten);
+
+			log.info("Disk Write complete");
+
+			// The checkpoint must be on disk before the journal it replaces is cleared,
+			// whatever the durability. Synchronous writes are on disk already
+			if ((journal != null) && !durability.equals(Durability.SYNC)) {
+				databaseChannel.force(true);
+			}
+
+			// The new checkpoint already contains everything in the journal
+			checkpointGeneration = newGeneration;
+			checkpointJournalOffset = INITIAL_JOURNAL_OFFSET;
+			if (journal != null) {
+				journal.reset(newGeneration);
+			}
+		}
+	}
+
+	/**
+	 * Writes out one window of accepted writes for the write behind thread.
+	 * Only the last snapshot in the window is written as it replaces everything before it.
+	 * The window is flushed to disk once at the end under group commit.
+	 * <p>
+	 * Only the disk lock is held, so writes can still be accepted while this waits on the disk.
+	 */
+	void writeWindow(List<WriteBehindQueue.PendingWrite> window)
+			throws IOException, WillNotWriteToCorruptFileException {
+		assert (window != null);
+
+		synchronized (diskLock) {
+			if (randDatabaseAccess == null) {
+				throw new IOException("Database file not prepared");
+			}
+
+			int lastSnapshot = -1;
+			for (int i = 0; i < window.size(); i++) {
+				if (window.get(i).isSnapshot()) {
+					lastSnapshot = i;
+				}
+			}
+
+			if (lastSnapshot >= 0) {
+				writeCheckpoint(window.get(lastSnapshot).getSnapshot());
+			}
+
+			for (int i = lastSnapshot + 1; i < window.size(); i++) {
+				WriteBehindQueue.PendingWrite change = window.get(i);
+				appendToJournal(change.getRemoved(), change.getAdded());
+			}
+
+			if (durability.equals(Durability.GROUP_COMMIT)) {
+				databaseChannel.force(true);
+				if (journal != null) {
+					journal.force();
+				}
+			}
+		}
+
+		log.info("Window of " + window.size() + " writes complete");
+	}
+
+	private byte[] encodeCheckpoint(List<Task> toBeWritten, long generation, long journalOffset, boolean toBinary) {
+		if (toBinary) {
+			return BinaryDatabaseFormat.encode(toBeWritten, generation, journalOffset);
+		}
+
+		String dataStringToBeWritten = databaseToString(toBeWritten, generation, journalOffset);
+		log.fine("Data to be written " + dataStringToBeWritten);
+
+		// One byte per character, as the text file has always been written
+		return dataStringToBeWritten.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private String databaseToString(List<Task> toBeWritten, long generation, long journalOffset) {
 		StringBuffer dataToBeWritten = new StringBuffer();
 
 		for (String helpline : filehelp) {
@@ -502,24 +1070,74 @@ public class FileManagement {
 			index++;
 		}
 
+		dataToBeWritten.append(LINE_GENERATION + generation + LINE_END_OF_LINE);
+		dataToBeWritten.append(LINE_JOURNAL_OFFSET + journalOffset + LINE_END_OF_LINE);
+
 		String currentTime = LINE_DATE_LONGER_FORMATTER.print(new DateTime());
 
 		String appendLastModified = String.format(LINE_LAST_MODIFIED, currentTime);
 		dataToBeWritten.append(appendLastModified + LINE_END_OF_LINE);
 
-		String dataStringToBeWritten = dataToBeWritten.toString();
-		log.fine("Data to be written " + dataStringToBeWritten);
+		return dataToBeWritten.toString();
+	}
 
-		// Truncate the file to 0 or INITIAL_FILE_SIZE size to clear the old
-		// database file before writing
-		log.info("Attempt to write to disk");
+	/**
+	 * Records a change to the journal without rewriting the database file.
+	 * Time taken does not depend on the number of tasks in the database.
+	 *
+	 * @param removed tasks removed by this change
+	 * @param added tasks added by this change
+	 * @throws IOException if the journal cannot be written
+	 * @throws WillNotWriteToCorruptFileException if file is already corrupt
+	 */
+	public synchronized void writeChangesToJournal(List<Task> removed, List<Task> added)
+			throws IOException, WillNotWriteToCorruptFileException {
+		assert (removed != null);
+		assert (added != null);
 
-		randDatabaseAccess.setLength(INITIAL_FILE_SIZE);
-		randDatabaseAccess.seek(START_OF_FILE);
-		randDatabaseAccess.writeBytes(dataStringToBeWritten);
+		if (fileAttributes.equals(FileStatus.FILE_IS_CORRUPT)) {
+			log.warning("Attempting to write to corrupt file");
+			throw new WillNotWriteToCorruptFileException("Corrupt File");
+		}
 
-		log.info("Disk Write complete");
+		if (journal == null) {
+			log.warning("journal is null");
+			throw new IOException("Journal not prepared");
+		}
 
+		if (writeBehind != null) {
+			writeBehind.throwWriteFailure();
+			writeBehind.enqueueChange(removed, added);
+			log.info("Change accepted for write behind");
+			return;
+		}
+
+		appendToJournal(removed, added);
+	}
+
+	private void appendToJournal(List<Task> removed, List<Task> added) throws IOException {
+		List<String> removedLines = new ArrayList<String>();
+		for (Task current : removed) {
+			removedLines.add(taskToJournalString(current));
+		}
+
+		List<String> addedLines = new ArrayList<String>();
+		for (Task current : added) {
+			addedLines.add(taskToJournalString(current));
+		}
+
+		synchronized (diskLock) {
+			if (journal == null) {
+				throw new IOException("Journal not prepared");
+			}
+
+			journal.append(removedLines, addedLines);
+			log.info("Journal write complete");
+
+			if (journalCompactor.isCompactionDue(journal)) {
+				journalCompactor.requestCompaction();
+			}
+		}
 	}
 
 }
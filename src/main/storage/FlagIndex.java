@@ -0,0 +1,174 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * FlagIndex.java
+ * Immutable bitmaps of which tasks are done and of which type they are, keyed by serial number.
+ * <p>
+ * Serial numbers are handed out one after another from Task.SERIAL_NUMBER_START, so they already are
+ * dense row ids and the bitmaps stay compact.
+ * Undone tasks are all tasks AND NOT the done ones, so only the done bitmap is kept.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.List;
+
+import main.shared.Task;
+
+class FlagIndex {
+
+	static final FlagIndex EMPTY = new FlagIndex(CompressedBitmap.EMPTY, CompressedBitmap.EMPTY,
+			CompressedBitmap.EMPTY, CompressedBitmap.EMPTY, CompressedBitmap.EMPTY);
+
+	private final CompressedBitmap all;
+	private final CompressedBitmap done;
+	private final CompressedBitmap floating;
+	private final CompressedBitmap deadline;
+	private final CompressedBitmap timed;
+
+	private FlagIndex(CompressedBitmap all, CompressedBitmap done, CompressedBitmap floating,
+			CompressedBitmap deadline, CompressedBitmap timed) {
+		this.all = all;
+		this.done = done;
+		this.floating = floating;
+		this.deadline = deadline;
+		this.timed = timed;
+	}
+
+	/**
+	 * Builds the index in one pass
+	 *
+	 * @param tasksBySerial tasks sorted by serial number without repeats
+	 */
+	static FlagIndex build(List<? extends Task> tasksBySerial) {
+		int size = tasksBySerial.size();
+		int[] allSerials = new int[size];
+		int[] doneSerials = new int[size];
+		int[] floatingSerials = new int[size];
+		int[] deadlineSerials = new int[size];
+		int[] timedSerials = new int[size];
+
+		int doneCount = 0;
+		int floatingCount = 0;
+		int deadlineCount = 0;
+		int timedCount = 0;
+
+		for (int i = 0; i < size; i++) {
+			Task current = tasksBySerial.get(i);
+			int serial = current.getSerial();
+
+			allSerials[i] = serial;
+
+			if (current.isDone()) {
+				doneSerials[doneCount++] = serial;
+			}
+
+			if (current.isFloatingTask()) {
+				floatingSerials[floatingCount++] = serial;
+			} else if (current.isDeadlineTask()) {
+				deadlineSerials[deadlineCount++] = serial;
+			} else if (current.isTimedTask()) {
+				timedSerials[timedCount++] = serial;
+			}
+		}
+
+		return new FlagIndex(CompressedBitmap.ofSorted(allSerials, size),
+				CompressedBitmap.ofSorted(doneSerials, doneCount),
+				CompressedBitmap.ofSorted(floatingSerials, floatingCount),
+				CompressedBitmap.ofSorted(deadlineSerials, deadlineCount),
+				CompressedBitmap.ofSorted(timedSerials, timedCount));
+	}
+
+	/**
+	 * @return an index with this task added
+	 */
+	FlagIndex with(Task added) {
+		int serial = added.getSerial();
+
+		return new FlagIndex(all.with(serial),
+				added.isDone() ? done.with(serial) : done,
+				added.isFloatingTask() ? floating.with(serial) : floating,
+				added.isDeadlineTask() ? deadline.with(serial) : deadline,
+				added.isTimedTask() ? timed.with(serial) : timed);
+	}
+
+	/**
+	 * @return an index with this task removed
+	 */
+	FlagIndex without(Task removed) {
+		int serial = removed.getSerial();
+
+		return new FlagIndex(all.without(serial), done.without(serial), floating.without(serial),
+				deadline.without(serial), timed.without(serial));
+	}
+
+	/**
+	 * Finds the tasks meeting every flag that is set, the same way Database.search checks them.
+	 * With no flags set every task matches.
+	 *
+	 * @return serial numbers of the matching tasks
+	 */
+	CompressedBitmap matching(boolean isDone, boolean isUndone, boolean isFloating,
+			boolean isDeadline, boolean isTimed) {
+		CompressedBitmap result = all;
+
+		if (isDone) {
+			result = result.and(done);
+		}
+
+		if (isUndone) {
+			result = result.andNot(done);
+		}
+
+		if (isFloating) {
+			result = result.and(floating);
+		}
+
+		if (isDeadline) {
+			result = result.and(deadline);
+		}
+
+		if (isTimed) {
+			result = result.and(timed);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Estimates how many tasks meet every flag that is set from the share of tasks having each flag,
+	 * as if the flags were independent of each other
+	 */
+	int estimateMatching(boolean isDone, boolean isUndone, boolean isFloating,
+			boolean isDeadline, boolean isTimed) {
+		if (all.isEmpty()) {
+			return 0;
+		}
+
+		double total = all.cardinality();
+		double estimate = total;
+
+		if (isDone) {
+			estimate *= done.cardinality() / total;
+		}
+
+		if (isUndone) {
+			estimate *= (total - done.cardinality()) / total;
+		}
+
+		if (isFloating) {
+			estimate *= floating.cardinality() / total;
+		}
+
+		if (isDeadline) {
+			estimate *= deadline.cardinality() / total;
+		}
+
+		if (isTimed) {
+			estimate *= timed.cardinality() / total;
+		}
+
+		return (int) Math.ceil(estimate);
+	}
+
+}
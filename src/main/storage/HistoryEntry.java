@@ -0,0 +1,113 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * HistoryEntry.java
+ * What one command changed in the database, kept in the command history so it can be undone and redone.
+ * <p>
+ * Only the tasks the command touched are kept: the tasks it added and the tasks it removed,
+ * each as it was at that moment. A changed task is both, its new version added and its old version removed.
+ * Undoing removes the added tasks and adds back the removed ones, and redoing does the opposite.
+ * Tasks are found again by Database.locateSameTasks, so an entry still applies after a restart
+ * when every task has a new serial number.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import main.shared.ImmutableTask;
+import main.shared.Task;
+
+public class HistoryEntry {
+
+	// Rough heap use of an entry and of each task it keeps, not counting the characters of their strings
+	private static final int ENTRY_OVERHEAD_BYTES = 96;
+	private static final int TASK_OVERHEAD_BYTES = 120;
+	private static final int BYTES_PER_CHAR = 2;
+
+	private final String message;
+	private final long timeMillis;
+	private final List<Task> addedTasks;
+	private final List<Task> removedTasks;
+
+	/**
+	 * @param message description of the command, such as "addition of task ..."
+	 * @param timeMillis when the command was run, in epoch milliseconds
+	 * @param addedTasks tasks the command added
+	 * @param removedTasks tasks the command removed, as they were before it
+	 */
+	public HistoryEntry(String message, long timeMillis, List<Task> addedTasks, List<Task> removedTasks) {
+		assert (message != null);
+		assert (addedTasks != null);
+		assert (removedTasks != null);
+
+		this.message = message;
+		this.timeMillis = timeMillis;
+		this.addedTasks = immutableCopyOf(addedTasks);
+		this.removedTasks = immutableCopyOf(removedTasks);
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+
+	/**
+	 * @return the tasks the command added
+	 */
+	public List<Task> getAddedTasks() {
+		return addedTasks;
+	}
+
+	/**
+	 * @return the tasks the command removed, as they were before it
+	 */
+	public List<Task> getRemovedTasks() {
+		return removedTasks;
+	}
+
+	/**
+	 * @return the number of tasks kept by this entry
+	 */
+	public int getTaskCount() {
+		return addedTasks.size() + removedTasks.size();
+	}
+
+	/**
+	 * @return an estimate of the bytes this entry takes on the heap
+	 */
+	public long getEstimatedBytes() {
+		long bytes = ENTRY_OVERHEAD_BYTES + BYTES_PER_CHAR * message.length();
+
+		for (Task added : addedTasks) {
+			bytes += estimateBytes(added);
+		}
+
+		for (Task removed : removedTasks) {
+			bytes += estimateBytes(removed);
+		}
+
+		return bytes;
+	}
+
+	private static long estimateBytes(Task task) {
+		String name = task.getTaskName();
+		return TASK_OVERHEAD_BYTES + ((name == null) ? 0 : BYTES_PER_CHAR * name.length());
+	}
+
+	private static List<Task> immutableCopyOf(List<Task> tasks) {
+		List<Task> copy = new ArrayList<Task>(tasks.size());
+
+		for (Task current : tasks) {
+			copy.add(ImmutableTask.of(current));
+		}
+
+		return Collections.unmodifiableList(copy);
+	}
+
+}
@@ -0,0 +1,374 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * HistoryFile.java
+ * The command history kept on disk as a stack of HistoryEntry, so undo still works after a restart.
+ * <p>
+ * Every entry is written as a "@" record with its time and message, then "+" (task added)
+ * and "-" (task removed) records, then a commit record. Entries are pushed and popped at the end of the file,
+ * so neither needs more than the one entry to be read or written.
+ * An entry without its commit record was only half written and is dropped when the file is opened.
+ * <p>
+ * Entries older than the age limit are dropped when the file is opened.
+ * A copy of DoIt that did not get the database file lock opens the history read only,
+ * so it neither drops entries nor writes new ones.
+ * Once the file grows past its size limit, the oldest entries are dropped until it is well under the limit again.
+ * The shortened file is written to a new file and swapped in, so the history on disk is always complete.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+
+import main.LogHandler;
+import main.shared.Task;
+
+public class HistoryFile {
+
+	private static final String RECORD_ENTRY = "@";
+	private static final String RECORD_ADD = "+";
+	private static final String RECORD_REMOVE = "-";
+	private static final String RECORD_COMMIT = "=";
+	private static final String RECORD_DELIMITER = " | ";
+
+	private static final String TEMPORARY_FILE_SUFFIX = ".compact";
+	private static final String LINE_END_OF_LINE = "\n";
+	private static final int RECORD_PREFIX_LENGTH = RECORD_ENTRY.length() + RECORD_DELIMITER.length();
+
+	// After dropping old entries the file is cut to this share of its size limit
+	private static final double COMPACTED_SHARE = 0.75;
+
+	private final File historyFile;
+	private final FileManagement lineFormat = FileManagement.getInstance();
+	private Logger log = LogHandler.getLogInstance();
+
+	private RandomAccessFile historyAccess = null;
+	private boolean isWritable = false;
+
+	// End of the last committed entry. A read only file may have an uncommitted tail after it
+	private long endOfEntries = 0;
+
+	// Start of every entry in the file, oldest first
+	private final List<Long> entryStarts = new ArrayList<Long>();
+
+	private long maxBytes;
+
+	public HistoryFile(File historyFile) {
+		assert (historyFile != null);
+		this.historyFile = historyFile;
+	}
+
+	/**
+	 * Opens the history file, creating it if it does not exist, and drops entries past the limits
+	 *
+	 * @param maxBytes size the file may grow to before its oldest entries are dropped
+	 * @param maxAgeMillis age after which an entry is dropped, in milliseconds
+	 * @throws IOException if the file cannot be opened
+	 */
+	public void open(long maxBytes, long maxAgeMillis) throws IOException {
+		assert (maxBytes > 0);
+		log.info("Opening history " + historyFile);
+
+		this.maxBytes = maxBytes;
+		historyAccess = new RandomAccessFile(historyFile, "rw");
+		isWritable = true;
+
+		String contents = readBytes(0, historyAccess.length());
+		endOfEntries = findEntries(contents);
+
+		if (endOfEntries < contents.length()) {
+			log.warning("Dropping uncommitted tail of history from byte " + endOfEntries);
+			historyAccess.setLength(endOfEntries);
+		}
+
+		long oldestKept = System.currentTimeMillis() - maxAgeMillis;
+		int tooOld = 0;
+
+		while ((tooOld < entryStarts.size()) && (readTimeAt(contents, entryStarts.get(tooOld)) < oldestKept)) {
+			tooOld++;
+		}
+
+		if (tooOld > 0) {
+			dropOldest(tooOld);
+		}
+
+		log.info("History has " + entryStarts.size() + " entries");
+	}
+
+	/**
+	 * Opens an existing history file without changing it, for when another copy of DoIt holds the database.
+	 * Entries can be read but not pushed or popped.
+	 *
+	 * @throws IOException if the file cannot be opened
+	 */
+	public void openReadOnly() throws IOException {
+		log.info("Opening history read only " + historyFile);
+
+		historyAccess = new RandomAccessFile(historyFile, "r");
+		isWritable = false;
+
+		endOfEntries = findEntries(readBytes(0, historyAccess.length()));
+
+		log.info("History has " + entryStarts.size() + " entries");
+	}
+
+	public boolean isOpen() {
+		return historyAccess != null;
+	}
+
+	/**
+	 * @return the number of entries in the file
+	 */
+	public int size() {
+		return entryStarts.size();
+	}
+
+	/**
+	 * Adds an entry to the end of the history, dropping the oldest entries if the file gets too large
+	 *
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void push(HistoryEntry entry) throws IOException {
+		assert (entry != null);
+		assert (isOpen());
+		throwIfReadOnly();
+
+		StringBuilder record = new StringBuilder();
+		record.append(RECORD_ENTRY + RECORD_DELIMITER + entry.getTimeMillis()
+				+ RECORD_DELIMITER + entry.getMessage().replace(LINE_END_OF_LINE, " ") + LINE_END_OF_LINE);
+
+		for (Task added : entry.getAddedTasks()) {
+			record.append(RECORD_ADD + RECORD_DELIMITER + lineFormat.taskToLine(added) + LINE_END_OF_LINE);
+		}
+
+		for (Task removed : entry.getRemovedTasks()) {
+			record.append(RECORD_REMOVE + RECORD_DELIMITER + lineFormat.taskToLine(removed) + LINE_END_OF_LINE);
+		}
+
+		record.append(RECORD_COMMIT + LINE_END_OF_LINE);
+
+		long start = historyAccess.length();
+		historyAccess.seek(start);
+		historyAccess.write(record.toString().getBytes(StandardCharsets.ISO_8859_1));
+		entryStarts.add(start);
+		endOfEntries = historyAccess.length();
+
+		if (historyAccess.length() > maxBytes) {
+			dropUntilUnder((long) (maxBytes * COMPACTED_SHARE));
+		}
+	}
+
+	/**
+	 * Reads the newest entry without removing it
+	 *
+	 * @return the newest entry, or null if the history is empty
+	 * @throws IOException if the entry cannot be read or is malformed
+	 */
+	public HistoryEntry peek() throws IOException {
+		assert (isOpen());
+
+		if (entryStarts.isEmpty()) {
+			return null;
+		}
+
+		long start = entryStarts.get(entryStarts.size() - 1);
+		String record = readBytes(start, endOfEntries - start);
+
+		try {
+			return parseEntry(record);
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed history entry", e);
+		}
+	}
+
+	/**
+	 * Removes the newest entry without reading it
+	 *
+	 * @throws IOException if the file cannot be shortened
+	 */
+	public void pop() throws IOException {
+		assert (isOpen());
+		throwIfReadOnly();
+
+		if (entryStarts.isEmpty()) {
+			return;
+		}
+
+		endOfEntries = entryStarts.remove(entryStarts.size() - 1);
+		historyAccess.setLength(endOfEntries);
+	}
+
+	/**
+	 * Removes every entry
+	 *
+	 * @throws IOException if the file cannot be emptied
+	 */
+	public void clear() throws IOException {
+		assert (isOpen());
+		throwIfReadOnly();
+
+		historyAccess.setLength(0);
+		entryStarts.clear();
+		endOfEntries = 0;
+	}
+
+	public void close() {
+		try {
+			if (historyAccess != null) {
+				historyAccess.close();
+			}
+		} catch (IOException e) {
+			log.severe("Cannot close history " + e);
+		}
+		historyAccess = null;
+	}
+
+	private void throwIfReadOnly() throws IOException {
+		if (!isWritable) {
+			throw new IOException("History file is read only");
+		}
+	}
+
+	// Notes where every committed entry starts and returns where the last one ends
+	private long findEntries(String contents) {
+		entryStarts.clear();
+
+		long endOfLastCommit = 0;
+		long entryStart = -1;
+		int lineStart = 0;
+		int lineEnd;
+
+		while ((lineEnd = contents.indexOf(LINE_END_OF_LINE, lineStart)) >= 0) {
+			String line = contents.substring(lineStart, lineEnd);
+
+			if (line.startsWith(RECORD_ENTRY + RECORD_DELIMITER)) {
+				entryStart = lineStart;
+			} else if (line.equals(RECORD_COMMIT) && (entryStart >= 0)) {
+				entryStarts.add(entryStart);
+				endOfLastCommit = lineEnd + LINE_END_OF_LINE.length();
+				entryStart = -1;
+			}
+			lineStart = lineEnd + LINE_END_OF_LINE.length();
+		}
+
+		return endOfLastCommit;
+	}
+
+	private long readTimeAt(String contents, long start) {
+		int timeStart = (int) start + RECORD_PREFIX_LENGTH;
+		int timeEnd = contents.indexOf(RECORD_DELIMITER, timeStart);
+
+		try {
+			return Long.parseLong(contents.substring(timeStart, timeEnd));
+		} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	private HistoryEntry parseEntry(String record) throws DataFormatException {
+		String[] lines = record.split(LINE_END_OF_LINE);
+		String[] header = lines[0].substring(RECORD_PREFIX_LENGTH).split(" \\| ", 2);
+
+		if (header.length != 2) {
+			throw new DataFormatException("Malformed history entry header");
+		}
+
+		long timeMillis;
+		try {
+			timeMillis = Long.parseLong(header[0]);
+		} catch (NumberFormatException e) {
+			throw new DataFormatException("Malformed history entry time");
+		}
+
+		List<Task> added = new ArrayList<Task>();
+		List<Task> removed = new ArrayList<Task>();
+
+		for (int i = 1; i < lines.length; i++) {
+			if (lines[i].equals(RECORD_COMMIT)) {
+				break;
+			}
+
+			if (lines[i].length() < RECORD_PREFIX_LENGTH) {
+				throw new DataFormatException("Malformed history record");
+			}
+
+			Task task = lineFormat.lineToTask(lines[i].substring(RECORD_PREFIX_LENGTH));
+
+			if (lines[i].startsWith(RECORD_ADD)) {
+				added.add(task);
+			} else if (lines[i].startsWith(RECORD_REMOVE)) {
+				removed.add(task);
+			} else {
+				throw new DataFormatException("Unknown history record");
+			}
+		}
+
+		return new HistoryEntry(header[1], timeMillis, added, removed);
+	}
+
+	private void dropUntilUnder(long targetBytes) throws IOException {
+		long length = historyAccess.length();
+		int dropped = 0;
+
+		// The newest entry is always kept
+		while ((dropped < entryStarts.size() - 1) && (length - entryStarts.get(dropped) > targetBytes)) {
+			dropped++;
+		}
+
+		if (dropped > 0) {
+			dropOldest(dropped);
+		}
+	}
+
+	// Writes the file again without its oldest entries and swaps it in
+	private void dropOldest(int count) throws IOException {
+		long keepFrom = (count < entryStarts.size()) ? entryStarts.get(count) : historyAccess.length();
+		String kept = readBytes(keepFrom, historyAccess.length() - keepFrom);
+
+		File shortened = new File(historyFile.getPath() + TEMPORARY_FILE_SUFFIX);
+		RandomAccessFile shortenedAccess = new RandomAccessFile(shortened, "rw");
+		try {
+			shortenedAccess.setLength(0);
+			shortenedAccess.write(kept.getBytes(StandardCharsets.ISO_8859_1));
+			shortenedAccess.getChannel().force(true);
+		} finally {
+			shortenedAccess.close();
+		}
+
+		close();
+
+		try {
+			Files.move(shortened.toPath(), historyFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			historyAccess = new RandomAccessFile(historyFile, "rw");
+		}
+
+		List<Long> remaining = new ArrayList<Long>();
+		for (int i = count; i < entryStarts.size(); i++) {
+			remaining.add(entryStarts.get(i) - keepFrom);
+		}
+		entryStarts.clear();
+		entryStarts.addAll(remaining);
+		endOfEntries = historyAccess.length();
+
+		log.info("Dropped " + count + " oldest history entries");
+	}
+
+	private String readBytes(long start, long length) throws IOException {
+		byte[] contents = new byte[(int) length];
+		historyAccess.seek(start);
+		historyAccess.readFully(contents);
+		return new String(contents, StandardCharsets.ISO_8859_1);
+	}
+
+}
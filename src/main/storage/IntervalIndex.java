@@ -0,0 +1,309 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * IntervalIndex.java
+ * An immutable interval tree of the dated tasks, used to find the tasks clashing with a date range.
+ * <p>
+ * Deadline tasks are stored as the single point of their deadline and timed tasks as their start to end range.
+ * It is an AVL tree with path copying, sorted by start date and then serial number,
+ * where every node also keeps the latest end date in its subtree.
+ * Subtrees that end before the range or start after it are skipped, so a query costs O(log n + results).
+ * Results come out in start date order, which is the display order of dated tasks.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import main.shared.ImmutableTask;
+import main.shared.Task;
+
+class IntervalIndex {
+
+	private static final int EMPTY_HEIGHT = 0;
+	private static final int MAX_IMBALANCE = 1;
+
+	private static class Node {
+		final long start;
+		final long end;
+		final int serial;
+		final ImmutableTask task;
+
+		final Node left;
+		final Node right;
+		final int height;
+		final int size;
+		final long maxEnd;
+		final long totalLength;
+
+		Node(long start, long end, int serial, ImmutableTask task, Node left, Node right) {
+			this.start = start;
+			this.end = end;
+			this.serial = serial;
+			this.task = task;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+			this.maxEnd = Math.max(end, Math.max(maxEnd(left), maxEnd(right)));
+			this.totalLength = (end - start) + totalLength(left) + totalLength(right);
+		}
+
+		Node withChildren(Node newLeft, Node newRight) {
+			return new Node(start, end, serial, task, newLeft, newRight);
+		}
+	}
+
+	static final IntervalIndex EMPTY = new IntervalIndex(null);
+
+	private final Node root;
+
+	private IntervalIndex(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Builds the index in one pass
+	 *
+	 * @param tasksInDisplayOrder all tasks sorted by TaskSnapshot.DISPLAY_ORDER. Floating tasks are skipped.
+	 */
+	static IntervalIndex build(List<ImmutableTask> tasksInDisplayOrder) {
+		List<ImmutableTask> dated = new ArrayList<ImmutableTask>(tasksInDisplayOrder.size());
+
+		// Display order sorts dated tasks by start date and serial, the same as this tree
+		for (ImmutableTask current : tasksInDisplayOrder) {
+			if (!current.isFloatingTask()) {
+				dated.add(current);
+			}
+		}
+
+		return new IntervalIndex(buildBalanced(dated, 0, dated.size()));
+	}
+
+	int size() {
+		return size(root);
+	}
+
+	/**
+	 * @return an index with this task added. Floating tasks are not indexed.
+	 */
+	IntervalIndex with(ImmutableTask added) {
+		if (added.isFloatingTask()) {
+			return this;
+		}
+		return new IntervalIndex(insert(root, newLeaf(added)));
+	}
+
+	/**
+	 * @return an index without this task. The same index if the task is not in it.
+	 */
+	IntervalIndex without(Task removed) {
+		if (removed.isFloatingTask()) {
+			return this;
+		}
+
+		long start = startOf(removed);
+
+		if (!contains(root, start, removed.getSerial())) {
+			return this;
+		}
+
+		return new IntervalIndex(remove(root, start, removed.getSerial()));
+	}
+
+	/**
+	 * Finds the tasks clashing with the range inclusive, as Task.clashesWithRange
+	 *
+	 * @param rangeStart start of the range in epoch milliseconds
+	 * @param rangeEnd end of the range in epoch milliseconds
+	 * @return the clashing tasks sorted by start date and serial number
+	 */
+	List<ImmutableTask> overlapping(long rangeStart, long rangeEnd) {
+		List<ImmutableTask> found = new ArrayList<ImmutableTask>();
+		collectOverlapping(root, rangeStart, rangeEnd, found);
+		return found;
+	}
+
+	/**
+	 * Estimates how many tasks clash with the range from the first start date, the last end date
+	 * and the average length of the tasks, as if they were spread evenly in between
+	 *
+	 * @param rangeStart start of the range in epoch milliseconds
+	 * @param rangeEnd end of the range in epoch milliseconds
+	 */
+	int estimateOverlapping(long rangeStart, long rangeEnd) {
+		if (root == null) {
+			return 0;
+		}
+
+		long earliestStart = smallest(root).start;
+		long latestEnd = root.maxEnd;
+
+		if ((rangeEnd < earliestStart) || (rangeStart > latestEnd)) {
+			return 0;
+		}
+
+		double averageLength = (double) root.totalLength / root.size;
+		double span = (double) latestEnd - earliestStart + 1 + averageLength;
+		double covered = (double) Math.min(rangeEnd, latestEnd) - Math.max(rangeStart, earliestStart) + 1
+				+ averageLength;
+
+		return (int) Math.min(root.size, Math.ceil(root.size * covered / span));
+	}
+
+	private static void collectOverlapping(Node node, long rangeStart, long rangeEnd, List<ImmutableTask> found) {
+		// Nothing below this node ends in time to reach the range
+		if ((node == null) || (node.maxEnd < rangeStart)) {
+			return;
+		}
+
+		collectOverlapping(node.left, rangeStart, rangeEnd, found);
+
+		// This node and everything to its right start after the range
+		if (node.start > rangeEnd) {
+			return;
+		}
+
+		if (node.end >= rangeStart) {
+			found.add(node.task);
+		}
+
+		collectOverlapping(node.right, rangeStart, rangeEnd, found);
+	}
+
+	private static Node newLeaf(ImmutableTask task) {
+		long start = startOf(task);
+		long end = task.isTimedTask() ? task.getEndDate().getMillis() : start;
+		return new Node(start, end, task.getSerial(), task, null, null);
+	}
+
+	private static long startOf(Task task) {
+		DateTime start = task.isTimedTask() ? task.getStartDate() : task.getDeadline();
+		return start.getMillis();
+	}
+
+	private static int compare(long start, int serial, Node node) {
+		if (start != node.start) {
+			return (start < node.start) ? -1 : 1;
+		}
+		return Integer.compare(serial, node.serial);
+	}
+
+	private static boolean contains(Node node, long start, int serial) {
+		while (node != null) {
+			int comparison = compare(start, serial, node);
+
+			if (comparison == 0) {
+				return true;
+			}
+			node = (comparison < 0) ? node.left : node.right;
+		}
+		return false;
+	}
+
+	private static Node insert(Node node, Node leaf) {
+		if (node == null) {
+			return leaf;
+		}
+
+		int comparison = compare(leaf.start, leaf.serial, node);
+
+		if (comparison < 0) {
+			return balance(node, insert(node.left, leaf), node.right);
+		} else if (comparison > 0) {
+			return balance(node, node.left, insert(node.right, leaf));
+		} else {
+			return leaf.withChildren(node.left, node.right);
+		}
+	}
+
+	private static Node remove(Node node, long start, int serial) {
+		int comparison = compare(start, serial, node);
+
+		if (comparison < 0) {
+			return balance(node, remove(node.left, start, serial), node.right);
+		} else if (comparison > 0) {
+			return balance(node, node.left, remove(node.right, start, serial));
+		}
+
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+
+		return balance(smallest(node.right), node.left, removeSmallest(node.right));
+	}
+
+	private static Node smallest(Node node) {
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node;
+	}
+
+	private static Node removeSmallest(Node node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return balance(node, removeSmallest(node.left), node.right);
+	}
+
+	// Rebuilds the entry of top with new children, rotating if one side has become too tall
+	private static Node balance(Node top, Node left, Node right) {
+		int difference = height(left) - height(right);
+
+		if (difference > MAX_IMBALANCE) {
+			if (height(left.left) >= height(left.right)) {
+				return left.withChildren(left.left, top.withChildren(left.right, right));
+			}
+			return left.right.withChildren(
+					left.withChildren(left.left, left.right.left),
+					top.withChildren(left.right.right, right));
+		}
+
+		if (difference < -MAX_IMBALANCE) {
+			if (height(right.right) >= height(right.left)) {
+				return right.withChildren(top.withChildren(left, right.left), right.right);
+			}
+			return right.left.withChildren(
+					top.withChildren(left, right.left.left),
+					right.withChildren(right.left.right, right.right));
+		}
+
+		return top.withChildren(left, right);
+	}
+
+	private static Node buildBalanced(List<ImmutableTask> sorted, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+
+		int middle = (from + to) >>> 1;
+
+		return newLeaf(sorted.get(middle)).withChildren(
+				buildBalanced(sorted, from, middle),
+				buildBalanced(sorted, middle + 1, to));
+	}
+
+	private static int height(Node node) {
+		return (node == null) ? EMPTY_HEIGHT : node.height;
+	}
+
+	private static int size(Node node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	private static long maxEnd(Node node) {
+		return (node == null) ? Long.MIN_VALUE : node.maxEnd;
+	}
+
+	private static long totalLength(Node node) {
+		return (node == null) ? 0 : node.totalLength;
+	}
+
+}
@@ -0,0 +1,95 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * JournalCompactor.java
+ * Decides when the journal has grown enough to be folded into the database file
+ * and runs the compaction on a background thread so that database changes are never held up by it.
+ * <p>
+ * Compaction is due when either the number of batches to replay on startup
+ * or the size of the journal goes over its limit, which keeps startup time bounded.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import main.LogHandler;
+
+class JournalCompactor {
+
+	static final int COMPACT_AFTER_BATCHES = 500;
+	static final long COMPACT_AFTER_BYTES = 256 * 1024;
+
+	private static final String THREAD_NAME = "DoIt journal compactor";
+
+	private FileManagement diskFile;
+	private ExecutorService compactionThread;
+	private AtomicBoolean isCompactionPending = new AtomicBoolean(false);
+
+	private Logger log = LogHandler.getLogInstance();
+
+	JournalCompactor(FileManagement diskFile) {
+		assert (diskFile != null);
+		this.diskFile = diskFile;
+
+		compactionThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable toRun) {
+				Thread compactor = new Thread(toRun, THREAD_NAME);
+				compactor.setDaemon(true);
+				compactor.setPriority(Thread.MIN_PRIORITY);
+				return compactor;
+			}
+		});
+	}
+
+	/**
+	 * Check if the journal is long enough to be worth folding into the database file
+	 *
+	 * @param journal the journal in use
+	 * @return true if a compaction should be started
+	 */
+	boolean isCompactionDue(TaskJournal journal) throws IOException {
+		assert (journal != null);
+
+		return (journal.getCommittedBatches() >= COMPACT_AFTER_BATCHES)
+				|| (journal.getBodyLength() >= COMPACT_AFTER_BYTES);
+	}
+
+	/**
+	 * Starts a compaction in the background. No effect if one is already waiting or running.
+	 */
+	void requestCompaction() {
+		if (!isCompactionPending.compareAndSet(false, true)) {
+			return;
+		}
+
+		log.info("Compaction requested");
+
+		compactionThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					diskFile.compactJournal();
+				} finally {
+					isCompactionPending.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Check if a compaction is waiting or running
+	 *
+	 * @return true if compaction has not completed
+	 */
+	boolean isCompactionPending() {
+		return isCompactionPending.get();
+	}
+
+}
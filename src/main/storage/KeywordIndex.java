@@ -0,0 +1,432 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * KeywordIndex.java
+ * An immutable inverted index from the words in task names to bitmaps of the serial numbers of the tasks using them.
+ * <p>
+ * Names are lowercased the same way as Task.containsTerm and split on whitespace.
+ * A keyword without whitespace can only be found inside a single word,
+ * so the tasks containing it are exactly the tasks of the indexed words containing it.
+ * This keeps keyword search exact without looking at every task.
+ * <p>
+ * The distinct words are also kept in a TrigramIndex so keywords of 3 or more characters
+ * only check the few words sharing all their trigrams. Shorter keywords check every distinct word.
+ * <p>
+ * Words used more than once in a task name are also kept, with the tasks repeating them,
+ * so ranked search can tell how often a keyword is used without looking at the tasks.
+ * <p>
+ * The distinct words are kept in a BkTree as well, for fuzzy search. It is only built on the first fuzzy search,
+ * so loading the database does not wait for it, and is then kept up to date by later changes.
+ * Words no longer used by any task stay in the tree but are skipped,
+ * and the tree is rebuilt once most of its words are unused.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import main.shared.Task;
+
+class KeywordIndex {
+
+	private static final Comparator<String> WORD_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String first, String second) {
+			return first.compareTo(second);
+		}
+	};
+
+	static final KeywordIndex EMPTY = new KeywordIndex(
+			new PersistentSortedMap<String, CompressedBitmap>(WORD_ORDER),
+			new PersistentSortedMap<String, CompressedBitmap>(WORD_ORDER), TrigramIndex.EMPTY, null);
+
+	// The fuzzy tree is rebuilt when it has more than this many times the words in use
+	private static final int UNUSED_WORDS_LIMIT_FACTOR = 2;
+
+	private final PersistentSortedMap<String, CompressedBitmap> words;
+	private final PersistentSortedMap<String, CompressedBitmap> repeatedWords;
+	private final TrigramIndex trigrams;
+
+	// Null until the first fuzzy search. Building it twice from the same words gives the same tree.
+	private volatile BkTree fuzzyWords;
+
+	private KeywordIndex(PersistentSortedMap<String, CompressedBitmap> words,
+			PersistentSortedMap<String, CompressedBitmap> repeatedWords, TrigramIndex trigrams,
+			BkTree fuzzyWords) {
+		this.words = words;
+		this.repeatedWords = repeatedWords;
+		this.trigrams = trigrams;
+		this.fuzzyWords = fuzzyWords;
+	}
+
+	/**
+	 * Builds the index of these tasks in one pass
+	 */
+	static KeywordIndex build(Iterable<? extends Task> tasks) {
+		Map<String, List<Integer>> serialsOfWord = new HashMap<String, List<Integer>>();
+		Map<String, List<Integer>> serialsOfRepeatedWord = new HashMap<String, List<Integer>>();
+
+		for (Task current : tasks) {
+			for (Map.Entry<String, Integer> word : wordCountsOf(current).entrySet()) {
+				addSerial(serialsOfWord, word.getKey(), current.getSerial());
+
+				if (word.getValue() > 1) {
+					addSerial(serialsOfRepeatedWord, word.getKey(), current.getSerial());
+				}
+			}
+		}
+
+		List<String> sortedWords = sortedKeys(serialsOfWord);
+
+		return new KeywordIndex(toPostings(serialsOfWord, sortedWords),
+				toPostings(serialsOfRepeatedWord, sortedKeys(serialsOfRepeatedWord)),
+				TrigramIndex.build(sortedWords), null);
+	}
+
+	/**
+	 * @return an index with the words of this task added
+	 */
+	KeywordIndex with(Task added) {
+		PersistentSortedMap<String, CompressedBitmap> changed = words;
+		PersistentSortedMap<String, CompressedBitmap> changedRepeats = repeatedWords;
+		TrigramIndex changedTrigrams = trigrams;
+		BkTree changedFuzzyWords = fuzzyWords;
+
+		for (Map.Entry<String, Integer> wordCount : wordCountsOf(added).entrySet()) {
+			String word = wordCount.getKey();
+			CompressedBitmap existing = changed.get(word);
+
+			if (existing == null) {
+				existing = CompressedBitmap.EMPTY;
+				changedTrigrams = changedTrigrams.with(word);
+				changedFuzzyWords = (changedFuzzyWords == null) ? null : changedFuzzyWords.with(word);
+			}
+			changed = changed.put(word, existing.with(added.getSerial()));
+
+			if (wordCount.getValue() > 1) {
+				CompressedBitmap existingRepeats = changedRepeats.get(word);
+
+				if (existingRepeats == null) {
+					existingRepeats = CompressedBitmap.EMPTY;
+				}
+				changedRepeats = changedRepeats.put(word, existingRepeats.with(added.getSerial()));
+			}
+		}
+
+		return new KeywordIndex(changed, changedRepeats, changedTrigrams, changedFuzzyWords);
+	}
+
+	/**
+	 * @return an index with the words of this task removed
+	 */
+	KeywordIndex without(Task removed) {
+		PersistentSortedMap<String, CompressedBitmap> changed = words;
+		PersistentSortedMap<String, CompressedBitmap> changedRepeats = repeatedWords;
+		TrigramIndex changedTrigrams = trigrams;
+
+		for (Map.Entry<String, Integer> wordCount : wordCountsOf(removed).entrySet()) {
+			String word = wordCount.getKey();
+			CompressedBitmap existing = changed.get(word);
+
+			if (existing == null) {
+				continue;
+			}
+
+			CompressedBitmap remaining = existing.without(removed.getSerial());
+
+			if (remaining.isEmpty()) {
+				changed = changed.remove(word);
+				changedTrigrams = changedTrigrams.without(word);
+			} else {
+				changed = changed.put(word, remaining);
+			}
+
+			CompressedBitmap existingRepeats = changedRepeats.get(word);
+
+			if ((wordCount.getValue() > 1) && (existingRepeats != null)) {
+				CompressedBitmap remainingRepeats = existingRepeats.without(removed.getSerial());
+				changedRepeats = remainingRepeats.isEmpty() ? changedRepeats.remove(word)
+						: changedRepeats.put(word, remainingRepeats);
+			}
+		}
+
+		BkTree changedFuzzyWords = fuzzyWords;
+
+		if ((changedFuzzyWords != null)
+				&& (changedFuzzyWords.size() > UNUSED_WORDS_LIMIT_FACTOR * changed.size())) {
+			changedFuzzyWords = BkTree.build(wordsIn(changed));
+		}
+
+		return new KeywordIndex(changed, changedRepeats, changedTrigrams, changedFuzzyWords);
+	}
+
+	/**
+	 * Finds the tasks whose names contain all the keywords, ignoring case
+	 *
+	 * @param keywords keywords as given to Task.containsTerm
+	 * @return serials of the matching tasks, or null if a keyword cannot be answered by the index
+	 */
+	CompressedBitmap find(String[] keywords) {
+		CompressedBitmap result = null;
+
+		for (String keyword : keywords) {
+			if (!isIndexable(keyword)) {
+				return null;
+			}
+		}
+
+		for (String keyword : keywords) {
+			CompressedBitmap matches = find(keyword.toLowerCase());
+			result = (result == null) ? matches : result.and(matches);
+
+			if (result.isEmpty()) {
+				break;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Estimates how many tasks contain all the keywords from the sizes of the postings of the words
+	 * containing each keyword. Tasks using several such words are counted once per word.
+	 *
+	 * @param keywords keywords as given to Task.containsTerm
+	 * @return the smallest total over the keywords, or null if a keyword cannot be answered by the index
+	 */
+	Integer estimate(String[] keywords) {
+		Integer smallest = null;
+
+		for (String keyword : keywords) {
+			if (!isIndexable(keyword)) {
+				return null;
+			}
+		}
+
+		for (String keyword : keywords) {
+			int total = 0;
+
+			for (CompressedBitmap matches : postingsContaining(keyword.toLowerCase())) {
+				total += matches.cardinality();
+			}
+
+			if ((smallest == null) || (total < smallest)) {
+				smallest = total;
+			}
+		}
+
+		return smallest;
+	}
+
+	/**
+	 * @param wordLowerCase a single lowercase word
+	 * @return serials of the tasks using this whole word in their names
+	 */
+	CompressedBitmap findWord(String wordLowerCase) {
+		CompressedBitmap matches = words.get(wordLowerCase);
+		return (matches == null) ? CompressedBitmap.EMPTY : matches;
+	}
+
+	/**
+	 * @param wordLowerCase a single lowercase word
+	 * @return serials of the tasks using this whole word more than once in their names
+	 */
+	CompressedBitmap findRepeatedWord(String wordLowerCase) {
+		CompressedBitmap matches = repeatedWords.get(wordLowerCase);
+		return (matches == null) ? CompressedBitmap.EMPTY : matches;
+	}
+
+	/**
+	 * @param keywordLowerCase a single lowercase keyword
+	 * @return serials of the tasks having a word starting with the keyword, including the whole keyword
+	 */
+	CompressedBitmap findWordPrefix(String keywordLowerCase) {
+		return CompressedBitmap.or(postingsContaining(keywordLowerCase, true));
+	}
+
+	/**
+	 * Finds the tasks having a word at most maxEdits edits away from the word
+	 *
+	 * @param wordLowerCase a single lowercase word
+	 * @return serials of the matching tasks
+	 */
+	CompressedBitmap findFuzzy(String wordLowerCase, int maxEdits) {
+		return CompressedBitmap.or(postingsWithin(wordLowerCase, maxEdits));
+	}
+
+	/**
+	 * @return estimated number of tasks having a word at most maxEdits edits away from the word
+	 */
+	int estimateFuzzy(String wordLowerCase, int maxEdits) {
+		int total = 0;
+
+		for (CompressedBitmap matches : postingsWithin(wordLowerCase, maxEdits)) {
+			total += matches.cardinality();
+		}
+
+		return total;
+	}
+
+	// Gathers the postings of every word still in use within maxEdits of the word
+	private List<CompressedBitmap> postingsWithin(String wordLowerCase, int maxEdits) {
+		List<CompressedBitmap> matches = new ArrayList<CompressedBitmap>();
+
+		BkTree tree = fuzzyWords;
+
+		if (tree == null) {
+			tree = BkTree.build(wordsIn(words));
+			fuzzyWords = tree;
+		}
+
+		for (String word : tree.within(wordLowerCase, maxEdits)) {
+			CompressedBitmap postings = words.get(word);
+
+			if (postings != null) {
+				matches.add(postings);
+			}
+		}
+
+		return matches;
+	}
+
+	private CompressedBitmap find(String keywordLowerCase) {
+		return CompressedBitmap.or(postingsContaining(keywordLowerCase));
+	}
+
+	private List<CompressedBitmap> postingsContaining(String keywordLowerCase) {
+		return postingsContaining(keywordLowerCase, false);
+	}
+
+	// Gathers the postings of every distinct word containing the keyword, or only those starting with it
+	private List<CompressedBitmap> postingsContaining(String keywordLowerCase, boolean isPrefixOnly) {
+		List<CompressedBitmap> matches = new ArrayList<CompressedBitmap>();
+		List<String> candidates = trigrams.candidates(keywordLowerCase);
+
+		if (candidates == null) {
+			for (Map.Entry<String, CompressedBitmap> entry : words.entries()) {
+				if (isMatch(entry.getKey(), keywordLowerCase, isPrefixOnly)) {
+					matches.add(entry.getValue());
+				}
+			}
+		} else {
+			for (String word : candidates) {
+				if (isMatch(word, keywordLowerCase, isPrefixOnly)) {
+					matches.add(words.get(word));
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	private static boolean isMatch(String word, String keywordLowerCase, boolean isPrefixOnly) {
+		return isPrefixOnly ? word.startsWith(keywordLowerCase) : word.contains(keywordLowerCase);
+	}
+
+	private static boolean isIndexable(String keyword) {
+		if ((keyword == null) || keyword.isEmpty()) {
+			return false;
+		}
+
+		String keywordLowerCase = keyword.toLowerCase();
+
+		for (int i = 0; i < keywordLowerCase.length(); i++) {
+			if (Character.isWhitespace(keywordLowerCase.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Number of times each word is used in the name of the task
+	private static Map<String, Integer> wordCountsOf(Task task) {
+		Map<String, Integer> found = new HashMap<String, Integer>();
+
+		for (String word : splitWords(task.getTaskName().toLowerCase())) {
+			Integer count = found.get(word);
+			found.put(word, (count == null) ? 1 : count + 1);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Splits text on whitespace the same way task names are split into indexed words
+	 */
+	static List<String> splitWords(String text) {
+		List<String> found = new ArrayList<String>();
+
+		int wordStart = -1;
+
+		for (int i = 0; i <= text.length(); i++) {
+			boolean isBoundary = (i == text.length())
+					|| Character.isWhitespace(text.charAt(i));
+
+			if (isBoundary && (wordStart >= 0)) {
+				found.add(text.substring(wordStart, i));
+				wordStart = -1;
+			} else if (!isBoundary && (wordStart < 0)) {
+				wordStart = i;
+			}
+		}
+
+		return found;
+	}
+
+	private static List<String> wordsIn(PersistentSortedMap<String, CompressedBitmap> postings) {
+		List<String> found = new ArrayList<String>(postings.size());
+
+		for (Map.Entry<String, CompressedBitmap> entry : postings.entries()) {
+			found.add(entry.getKey());
+		}
+
+		return found;
+	}
+
+	private static void addSerial(Map<String, List<Integer>> serialsOfWord, String word, int serial) {
+		List<Integer> serials = serialsOfWord.get(word);
+
+		if (serials == null) {
+			serials = new ArrayList<Integer>();
+			serialsOfWord.put(word, serials);
+		}
+		serials.add(serial);
+	}
+
+	private static List<String> sortedKeys(Map<String, List<Integer>> serialsOfWord) {
+		List<String> sortedWords = new ArrayList<String>(serialsOfWord.keySet());
+		Collections.sort(sortedWords, WORD_ORDER);
+		return sortedWords;
+	}
+
+	private static PersistentSortedMap<String, CompressedBitmap> toPostings(
+			Map<String, List<Integer>> serialsOfWord, List<String> sortedWords) {
+		List<CompressedBitmap> postings = new ArrayList<CompressedBitmap>(sortedWords.size());
+
+		for (String word : sortedWords) {
+			postings.add(toBitmap(serialsOfWord.get(word)));
+		}
+
+		return PersistentSortedMap.fromSorted(WORD_ORDER, sortedWords, postings);
+	}
+
+	private static CompressedBitmap toBitmap(List<Integer> serials) {
+		int[] sorted = new int[serials.size()];
+
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = serials.get(i);
+		}
+
+		Arrays.sort(sorted);
+
+		return CompressedBitmap.ofSorted(sorted, sorted.length);
+	}
+
+}
@@ -0,0 +1,718 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * MappedDatabaseLoader.java
+ * Loads the database file by mapping it into memory and reading the tasks straight out of the mapping.
+ * <p>
+ * The "|" delimited fields of the text format are located in place and only the task name is turned into a String.
+ * Dates in the usual "dd-MMM-yyyy HHmm Z" shape are decoded by hand, anything else goes through the Joda formatter.
+ * Files larger than a single mapping are read one window at a time, each window starting at a line or record boundary.
+ * <p>
+ * Text lines do not depend on each other, so large windows are cut into chunks at line boundaries
+ * which are parsed in parallel on a fork-join pool. The chunks are merged back in file order
+ * and the first corrupt line in the file is reported with its line number.
+ * <p>
+ * A loader keeps the state of one load and should not be reused.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import main.LogHandler;
+import main.shared.Task;
+
+public class MappedDatabaseLoader {
+
+	// Largest window mapped at once. Lines and records must fit within one window.
+	public static long mappingWindow = Integer.MAX_VALUE;
+
+	// Windows smaller than this are parsed on the calling thread
+	public static int parallelThreshold = 1024 * 1024;
+
+	// Releases each mapping as soon as it is read instead of on garbage collection.
+	// Only Windows needs it, as it will not truncate or delete a file that is still mapped.
+	static boolean forceUnmap = System.getProperty("os.name", "").startsWith("Windows");
+
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+	private static final byte LINE_END = '\n';
+	private static final byte CARRIAGE_RETURN = '\r';
+	private static final byte LINE_IGNORE_CHARACTER = '#';
+	private static final byte[] LINE_PARAM_DELIMITER = {' ', '|', ' '};
+	private static final byte[] LINE_GENERATION = "#Journal Generation: ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] LINE_JOURNAL_OFFSET = "#Journal Offset: ".getBytes(StandardCharsets.ISO_8859_1);
+
+	private static final int LINE_POSITION_TASKTYPE = 1;
+	private static final int LINE_POSITION_DONE = 2;
+	private static final int LINE_POSITION_START_DEADLINE_DATE = 3;
+	private static final int LINE_POSITION_END_DATE = 4;
+	private static final int LINE_POSITION_TASKNAME = 5;
+	private static final int LINE_NUM_USED_FIELDS = 6;
+
+	private static final byte LINE_FLOATING = 'F';
+	private static final byte LINE_DEADLINE = 'D';
+	private static final byte LINE_TIMED = 'T';
+	private static final byte LINE_DONE = '*';
+	private static final byte LINE_UNDONE = '-';
+
+	private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormat.forPattern("dd-MMM-yyyy HHmm Z");
+	private static final Chronology UTC_CHRONOLOGY = ISOChronology.getInstanceUTC();
+
+	// "21-Oct-2012 1729 +0800"
+	private static final int DATE_LENGTH = 22;
+	private static final int MONTH_LENGTH = 3;
+	private static final int MONTHS_IN_YEAR = 12;
+	private static final int MAX_OFFSET_HOURS = 23;
+	private static final int MAX_OFFSET_MINUTES = 59;
+
+	// Short month names as the formatter prints them, so both decoders agree on the locale
+	private static final byte[][] MONTH_NAMES = prepareMonthNames();
+
+	private static ForkJoinPool parsingPool = null;
+	private static volatile boolean isUnmapUnavailable = false;
+
+	private FileManagement.CheckpointHeader header;
+	private List<Task> tasksRead = new ArrayList<Task>();
+	private long lineNumber = 0;
+
+	private Logger log = LogHandler.getLogInstance();
+
+	public MappedDatabaseLoader() {
+		this(new FileManagement.CheckpointHeader());
+	}
+
+	/**
+	 * @param header receives the checkpoint position stored in the file
+	 */
+	MappedDatabaseLoader(FileManagement.CheckpointHeader header) {
+		assert (header != null);
+		this.header = header;
+	}
+
+	/**
+	 * Maps the file behind the channel and reads all tasks in it
+	 *
+	 * @param channel channel of the database file, at least readable
+	 * @return tasks in the order they are stored in the file
+	 * @throws IOException if the file cannot be mapped
+	 * @throws DataFormatException if the file is corrupt. The message contains the line number for text files.
+	 */
+	public List<Task> load(FileChannel channel) throws IOException, DataFormatException {
+		assert (channel != null);
+
+		long fileSize = channel.size();
+		log.info("Mapping " + fileSize + " bytes");
+
+		if (fileSize == 0) {
+			return tasksRead;
+		}
+
+		MappedByteBuffer firstWindow = map(channel, 0, fileSize);
+		boolean isBinary = BinaryDatabaseFormat.isBinary(firstWindow);
+
+		try {
+			if (isBinary) {
+				loadBinary(channel, fileSize, firstWindow);
+			} else {
+				loadText(channel, fileSize, firstWindow);
+			}
+		} finally {
+			unmap(firstWindow);
+		}
+
+		log.info("Loaded " + tasksRead.size() + " tasks");
+		return tasksRead;
+	}
+
+	/**
+	 * Reads all tasks from contents already in memory
+	 *
+	 * @param contents complete contents of a database file in either format
+	 * @return tasks in the order they are stored
+	 * @throws DataFormatException if the contents are corrupt
+	 */
+	List<Task> parse(ByteBuffer contents) throws DataFormatException {
+		assert (contents != null);
+
+		if (BinaryDatabaseFormat.isBinary(contents)) {
+			BinaryDatabaseFormat.Header binaryHeader = BinaryDatabaseFormat.readHeader(contents, header);
+
+			if (readBinaryRecords(contents, binaryHeader, binaryHeader.taskCount) < binaryHeader.taskCount) {
+				throw new DataFormatException("Binary database file is truncated");
+			}
+
+			if (contents.hasRemaining()) {
+				throw new DataFormatException("Unexpected data after last task");
+			}
+		} else {
+			parseLines(contents, true);
+		}
+
+		return tasksRead;
+	}
+
+	private void loadText(FileChannel channel, long fileSize, MappedByteBuffer firstWindow)
+			throws IOException, DataFormatException {
+
+		long windowStart = 0;
+		MappedByteBuffer window = firstWindow;
+
+		while (true) {
+			boolean isLastWindow = (windowStart + window.limit() == fileSize);
+			int consumed = parseLines(window, isLastWindow);
+
+			if (window != firstWindow) {
+				unmap(window);
+			}
+
+			if (isLastWindow) {
+				return;
+			}
+
+			if (consumed == 0) {
+				throw new DataFormatException("Line " + (lineNumber + 1) + ": longer than the mapping window");
+			}
+
+			windowStart += consumed;
+			window = map(channel, windowStart, fileSize);
+		}
+	}
+
+	private void loadBinary(FileChannel channel, long fileSize, MappedByteBuffer firstWindow)
+			throws IOException, DataFormatException {
+
+		BinaryDatabaseFormat.Header binaryHeader = BinaryDatabaseFormat.readHeader(firstWindow, header);
+
+		long windowStart = 0;
+		MappedByteBuffer window = firstWindow;
+		int tasksLeft = binaryHeader.taskCount;
+
+		while (true) {
+			tasksLeft -= readBinaryRecords(window, binaryHeader, tasksLeft);
+
+			long position = windowStart + window.position();
+
+			if (window != firstWindow) {
+				unmap(window);
+			}
+
+			if (tasksLeft == 0) {
+				if (position != fileSize) {
+					throw new DataFormatException("Unexpected data after last task");
+				}
+				return;
+			}
+
+			if ((position == fileSize) || (position == windowStart)) {
+				throw new DataFormatException("Binary database file is truncated");
+			}
+
+			windowStart = position;
+			window = map(channel, windowStart, fileSize);
+		}
+	}
+
+	// Reads records until the count is reached or the buffer ends. Returns the number read.
+	private int readBinaryRecords(ByteBuffer input, BinaryDatabaseFormat.Header binaryHeader, int maxRecords)
+			throws DataFormatException {
+		int recordsRead = 0;
+
+		while ((recordsRead < maxRecords) && BinaryDatabaseFormat.hasCompleteRecord(input)) {
+			tasksRead.add(BinaryDatabaseFormat.readRecord(input, binaryHeader.zones));
+			recordsRead++;
+		}
+
+		return recordsRead;
+	}
+
+	/**
+	 * Parses every complete line in the buffer.
+	 *
+	 * @param isLastWindow true if the buffer ends at the end of the file, so the last line needs no line end
+	 * @return number of bytes parsed, always ending at a line boundary
+	 */
+	private int parseLines(ByteBuffer input, boolean isLastWindow) throws DataFormatException {
+		int start = input.position();
+		int end = input.limit();
+
+		if (!isLastWindow) {
+			end = findLastLineEnd(input, start, end);
+		}
+
+		List<TextChunk> chunks = splitIntoChunks(input, start, end);
+
+		if (chunks.size() == 1) {
+			chunks.get(0).compute();
+		} else {
+			log.info("Parsing " + chunks.size() + " chunks in parallel");
+			getParsingPool().invoke(new ParseAllChunks(chunks));
+		}
+
+		for (TextChunk chunk : chunks) {
+			mergeChunk(chunk);
+		}
+
+		return end;
+	}
+
+	// Adds the results of a chunk as if its lines had just been parsed in order
+	private void mergeChunk(TextChunk chunk) throws DataFormatException {
+		if (chunk.failure != null) {
+			long corruptLine = lineNumber + chunk.failedLine;
+			log.warning("Corrupt line " + corruptLine + " " + chunk.failure.getMessage());
+			throw new DataFormatException("Line " + corruptLine + ": " + chunk.failure.getMessage());
+		}
+
+		tasksRead.addAll(chunk.tasksRead);
+		lineNumber += chunk.lineCount;
+
+		if (chunk.hasGeneration) {
+			header.generation = chunk.generation;
+		}
+
+		if (chunk.hasJournalOffset) {
+			header.journalOffset = chunk.journalOffset;
+		}
+	}
+
+	// Cuts the lines between start and end into chunks of roughly equal size
+	private List<TextChunk> splitIntoChunks(ByteBuffer input, int start, int end) {
+		List<TextChunk> chunks = new ArrayList<TextChunk>();
+		int length = end - start;
+
+		if (length < parallelThreshold) {
+			chunks.add(new TextChunk(input, start, end));
+			return chunks;
+		}
+
+		int parallelism = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD;
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, length / parallelism);
+
+		int chunkStart = start;
+		while (chunkStart < end) {
+			int chunkEnd;
+
+			if (end - chunkStart <= chunkSize) {
+				chunkEnd = end;
+			} else {
+				chunkEnd = Math.min(findLineEnd(input, chunkStart + chunkSize, end) + 1, end);
+			}
+
+			chunks.add(new TextChunk(input, chunkStart, chunkEnd));
+			chunkStart = chunkEnd;
+		}
+
+		return chunks;
+	}
+
+	// Returns the position just after the last line end, or start if there is none
+	private int findLastLineEnd(ByteBuffer input, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			if (input.get(i) == LINE_END) {
+				return i + 1;
+			}
+		}
+		return start;
+	}
+
+	private int findLineEnd(ByteBuffer input, int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			if (input.get(i) == LINE_END) {
+				return i;
+			}
+		}
+		return limit;
+	}
+
+	private static synchronized ForkJoinPool getParsingPool() {
+		if (parsingPool == null) {
+			parsingPool = new ForkJoinPool();
+		}
+		return parsingPool;
+	}
+
+	/**
+	 * Runs all chunks and waits for them
+	 */
+	private static class ParseAllChunks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private List<TextChunk> chunks;
+
+		ParseAllChunks(List<TextChunk> chunks) {
+			this.chunks = chunks;
+		}
+
+		@Override
+		protected void compute() {
+			ForkJoinTask.invokeAll(chunks);
+		}
+	}
+
+	/**
+	 * Parses a run of complete lines. Line numbers are counted from the start of the chunk.
+	 * A corrupt line stops the chunk and is kept to be reported when the chunks are merged.
+	 */
+	private class TextChunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private ByteBuffer input;
+		private int start;
+		private int end;
+
+		private List<Task> tasksRead = new ArrayList<Task>();
+		private long lineCount = 0;
+
+		private boolean hasGeneration = false;
+		private long generation;
+		private boolean hasJournalOffset = false;
+		private long journalOffset;
+
+		private DataFormatException failure = null;
+		private long failedLine;
+
+		private int[] fieldStart = new int[LINE_NUM_USED_FIELDS];
+		private int[] fieldEnd = new int[LINE_NUM_USED_FIELDS];
+		private byte[] nameBytes = new byte[256];
+
+		TextChunk(ByteBuffer input, int start, int end) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			int lineStart = start;
+
+			while (lineStart < end) {
+				int lineEnd = findLineEnd(input, lineStart, end);
+
+				int contentEnd = lineEnd;
+				if ((contentEnd > lineStart) && (input.get(contentEnd - 1) == CARRIAGE_RETURN)) {
+					contentEnd--;
+				}
+
+				lineCount++;
+
+				try {
+					parseLine(lineStart, contentEnd);
+				} catch (DataFormatException e) {
+					failure = e;
+					failedLine = lineCount;
+					return;
+				}
+
+				lineStart = Math.min(lineEnd + 1, end);
+			}
+		}
+
+		private void parseLine(int start, int end) throws DataFormatException {
+			if ((end > start) && (input.get(start) == LINE_IGNORE_CHARACTER)) {
+				if (startsWith(input, start, end, LINE_GENERATION)) {
+					generation = parseHeaderNumber(input, start + LINE_GENERATION.length, end);
+					hasGeneration = true;
+				} else if (startsWith(input, start, end, LINE_JOURNAL_OFFSET)) {
+					journalOffset = parseHeaderNumber(input, start + LINE_JOURNAL_OFFSET.length, end);
+					hasJournalOffset = true;
+				}
+				return;
+			}
+
+			splitFields(start, end);
+
+			byte type = singleByteField(LINE_POSITION_TASKTYPE);
+			boolean done = parseDone(singleByteField(LINE_POSITION_DONE));
+			String taskName = parseTaskName();
+
+			Task parsedTask;
+
+			switch (type) {
+			case LINE_FLOATING:
+				parsedTask = new Task(taskName, done);
+				break;
+			case LINE_DEADLINE:
+				parsedTask = new Task(taskName, parseDate(LINE_POSITION_START_DEADLINE_DATE), done);
+				break;
+			case LINE_TIMED:
+				DateTime startDate = parseDate(LINE_POSITION_START_DEADLINE_DATE);
+				DateTime endDate = parseDate(LINE_POSITION_END_DATE);
+
+				if (startDate.isAfter(endDate)) {
+					throw new DataFormatException("Start date after end date");
+				}
+				parsedTask = new Task(taskName, startDate, endDate, done);
+				break;
+			default:
+				throw new DataFormatException("Unknown task type");
+			}
+
+			tasksRead.add(parsedTask);
+		}
+
+		// Locates the fields the same way as splitting on " | " would. The name ends at the next delimiter if any.
+		private void splitFields(int start, int end) throws DataFormatException {
+			int field = 0;
+			fieldStart[field] = start;
+
+			int i = start;
+			while (i <= end - LINE_PARAM_DELIMITER.length) {
+				if (isDelimiterAt(input, i)) {
+					fieldEnd[field] = i;
+					field++;
+					i += LINE_PARAM_DELIMITER.length;
+
+					if (field == LINE_NUM_USED_FIELDS) {
+						return;
+					}
+					fieldStart[field] = i;
+				} else {
+					i++;
+				}
+			}
+
+			if (field < LINE_POSITION_TASKNAME) {
+				throw new DataFormatException("Missing fields");
+			}
+
+			fieldEnd[field] = end;
+		}
+
+		private byte singleByteField(int field) {
+			if (fieldEnd[field] - fieldStart[field] != 1) {
+				return 0;
+			}
+			return input.get(fieldStart[field]);
+		}
+
+		private String parseTaskName() throws DataFormatException {
+			int nameStart = fieldStart[LINE_POSITION_TASKNAME];
+			int length = fieldEnd[LINE_POSITION_TASKNAME] - nameStart;
+
+			if (length == 0) {
+				throw new DataFormatException("0 length task name");
+			}
+
+			if (nameBytes.length < length) {
+				nameBytes = new byte[Math.max(length, nameBytes.length * 2)];
+			}
+
+			for (int i = 0; i < length; i++) {
+				nameBytes[i] = input.get(nameStart + i);
+			}
+
+			// The text file is written one byte per character
+			return new String(nameBytes, 0, length, StandardCharsets.ISO_8859_1);
+		}
+
+		private DateTime parseDate(int field) throws DataFormatException {
+			int dateStart = fieldStart[field];
+			int dateEnd = fieldEnd[field];
+
+			if (dateEnd - dateStart == DATE_LENGTH) {
+				long millis = decodeDate(input, dateStart);
+				if (millis != Long.MIN_VALUE) {
+					return new DateTime(millis);
+				}
+			}
+
+			// Not in the usual shape, let the formatter decide
+			byte[] dateBytes = new byte[dateEnd - dateStart];
+			for (int i = 0; i < dateBytes.length; i++) {
+				dateBytes[i] = input.get(dateStart + i);
+			}
+
+			try {
+				return new DateTime(FILE_DATE_FORMAT.parseDateTime(new String(dateBytes, StandardCharsets.ISO_8859_1)));
+			} catch (IllegalArgumentException e) {
+				throw new DataFormatException("Date not in correct format");
+			}
+		}
+	}
+
+	private boolean isDelimiterAt(ByteBuffer input, int position) {
+		for (int i = 0; i < LINE_PARAM_DELIMITER.length; i++) {
+			if (input.get(position + i) != LINE_PARAM_DELIMITER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean parseDone(byte done) throws DataFormatException {
+		if (done == LINE_DONE) {
+			return true;
+		} else if (done == LINE_UNDONE) {
+			return false;
+		} else {
+			throw new DataFormatException("Unknown Done value");
+		}
+	}
+
+	/**
+	 * Decodes "dd-MMM-yyyy HHmm +hhmm" starting at the given position
+	 *
+	 * @return the instant in epoch millis, or Long.MIN_VALUE if the date is not in exactly this shape
+	 */
+	private long decodeDate(ByteBuffer input, int start) {
+		int day = digits(input, start, 2);
+		int month = monthAt(input, start + 3);
+		int year = digits(input, start + 7, 4);
+		int hour = digits(input, start + 12, 2);
+		int minute = digits(input, start + 14, 2);
+		int offsetHours = digits(input, start + 18, 2);
+		int offsetMinutes = digits(input, start + 20, 2);
+		byte sign = input.get(start + 17);
+
+		if ((day < 0) || (month < 0) || (year < 0) || (hour < 0) || (minute < 0)
+				|| (offsetHours < 0) || (offsetHours > MAX_OFFSET_HOURS)
+				|| (offsetMinutes < 0) || (offsetMinutes > MAX_OFFSET_MINUTES)
+				|| (input.get(start + 2) != '-') || (input.get(start + 6) != '-')
+				|| (input.get(start + 11) != ' ') || (input.get(start + 16) != ' ')
+				|| ((sign != '+') && (sign != '-'))) {
+			return Long.MIN_VALUE;
+		}
+
+		long offsetMillis = offsetHours * (long) DateTimeConstants.MILLIS_PER_HOUR
+				+ offsetMinutes * (long) DateTimeConstants.MILLIS_PER_MINUTE;
+		if (sign == '-') {
+			offsetMillis = -offsetMillis;
+		}
+
+		try {
+			return UTC_CHRONOLOGY.getDateTimeMillis(year, month, day, hour, minute, 0, 0) - offsetMillis;
+		} catch (IllegalArgumentException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	// Returns -1 if any of the characters is not a digit
+	private int digits(ByteBuffer input, int start, int count) {
+		int value = 0;
+
+		for (int i = start; i < start + count; i++) {
+			int digit = input.get(i) - '0';
+			if ((digit < 0) || (digit > 9)) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+
+		return value;
+	}
+
+	// Returns the month from 1 to 12, or -1 if not recognised
+	private int monthAt(ByteBuffer input, int start) {
+		if (MONTH_NAMES == null) {
+			return -1;
+		}
+
+		for (int month = 0; month < MONTHS_IN_YEAR; month++) {
+			boolean isSame = true;
+
+			for (int i = 0; (i < MONTH_LENGTH) && isSame; i++) {
+				isSame = Character.toLowerCase((char) (input.get(start + i) & 0xFF))
+						== Character.toLowerCase((char) MONTH_NAMES[month][i]);
+			}
+
+			if (isSame) {
+				return month + 1;
+			}
+		}
+
+		return -1;
+	}
+
+	private long parseHeaderNumber(ByteBuffer input, int start, int end) throws DataFormatException {
+		byte[] numberBytes = new byte[end - start];
+		for (int i = 0; i < numberBytes.length; i++) {
+			numberBytes[i] = input.get(start + i);
+		}
+
+		try {
+			return Long.parseLong(new String(numberBytes, StandardCharsets.ISO_8859_1).trim());
+		} catch (NumberFormatException e) {
+			throw new DataFormatException("Header not in correct format");
+		}
+	}
+
+	private boolean startsWith(ByteBuffer input, int start, int end, byte[] prefix) {
+		if (end - start < prefix.length) {
+			return false;
+		}
+
+		for (int i = 0; i < prefix.length; i++) {
+			if (input.get(start + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private MappedByteBuffer map(FileChannel channel, long start, long fileSize) throws IOException {
+		long length = Math.min(mappingWindow, fileSize - start);
+		return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+	}
+
+	// Returns null if the formatter's month names are not 3 single byte characters, which turns the fast path off
+	private static byte[][] prepareMonthNames() {
+		DateTimeFormatter monthFormat = DateTimeFormat.forPattern("MMM");
+		byte[][] names = new byte[MONTHS_IN_YEAR][];
+
+		for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+			String name = monthFormat.print(new DateTime(2000, month, 1, 0, 0, UTC_CHRONOLOGY));
+
+			if ((name.length() != MONTH_LENGTH) || !StandardCharsets.US_ASCII.newEncoder().canEncode(name)) {
+				return null;
+			}
+			names[month - 1] = name.getBytes(StandardCharsets.US_ASCII);
+		}
+
+		return names;
+	}
+
+	/**
+	 * Releases the mapping at once if forceUnmap is on, otherwise it is released when garbage collected.
+	 * There is no public API for this, so it goes through a JDK internal. If that is not there
+	 * the mappings are left to garbage collection and the next write of the database file may fail.
+	 */
+	private void unmap(MappedByteBuffer mapping) {
+		if (!forceUnmap || isUnmapUnavailable) {
+			return;
+		}
+
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			invokeCleaner.invoke(theUnsafe.get(null), mapping);
+		} catch (Exception e) {
+			isUnmapUnavailable = true;
+			log.warning("Cannot release mappings early, leaving them to garbage collection " + e);
+		}
+	}
+
+}
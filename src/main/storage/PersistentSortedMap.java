@@ -0,0 +1,340 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * PersistentSortedMap.java
+ * An immutable sorted map. Every change returns a new map that shares all untouched nodes with the old one,
+ * so a change costs O(log n) new nodes and the old map stays valid for anyone still reading it.
+ * <p>
+ * Implemented as an AVL tree with path copying. Every node also keeps the size of its subtree
+ * so entries can be found by their position in the sort order.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+class PersistentSortedMap<K, V> implements Iterable<V> {
+
+	private static final int EMPTY_HEIGHT = 0;
+	private static final int EMPTY_SIZE = 0;
+	private static final int MAX_IMBALANCE = 1;
+
+	private static class Node<K, V> {
+		final K key;
+		final V value;
+		final Node<K, V> left;
+		final Node<K, V> right;
+		final int height;
+		final int size;
+
+		Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+
+	private final Comparator<? super K> order;
+	private final Node<K, V> root;
+
+	/**
+	 * Creates an empty map
+	 *
+	 * @param order order of the keys
+	 */
+	PersistentSortedMap(Comparator<? super K> order) {
+		this(order, null);
+	}
+
+	private PersistentSortedMap(Comparator<? super K> order, Node<K, V> root) {
+		assert (order != null);
+		this.order = order;
+		this.root = root;
+	}
+
+	/**
+	 * Builds a balanced map in one pass from entries that are already sorted
+	 *
+	 * @param order order of the keys
+	 * @param keys keys in increasing order without duplicates
+	 * @param values value of each key at the same position
+	 */
+	static <K, V> PersistentSortedMap<K, V> fromSorted(Comparator<? super K> order,
+			List<K> keys, List<V> values) {
+		assert (keys.size() == values.size());
+		return new PersistentSortedMap<K, V>(order, buildBalanced(keys, values, 0, keys.size()));
+	}
+
+	int size() {
+		return size(root);
+	}
+
+	boolean isEmpty() {
+		return (root == null);
+	}
+
+	/**
+	 * @return the value for this key, or null if there is none
+	 */
+	V get(K key) {
+		Node<K, V> current = root;
+
+		while (current != null) {
+			int comparison = order.compare(key, current.key);
+
+			if (comparison == 0) {
+				return current.value;
+			}
+			current = (comparison < 0) ? current.left : current.right;
+		}
+
+		return null;
+	}
+
+	boolean containsKey(K key) {
+		return (get(key) != null);
+	}
+
+	/**
+	 * Finds a value by its position in the sort order
+	 *
+	 * @param index position from 0 to size() - 1
+	 * @return the value at that position
+	 * @throws IndexOutOfBoundsException if there is no such position
+	 */
+	V getByIndex(int index) {
+		if ((index < 0) || (index >= size())) {
+			throw new IndexOutOfBoundsException("Index " + index + " size " + size());
+		}
+
+		Node<K, V> current = root;
+
+		while (true) {
+			int leftSize = size(current.left);
+
+			if (index == leftSize) {
+				return current.value;
+			} else if (index < leftSize) {
+				current = current.left;
+			} else {
+				index -= leftSize + 1;
+				current = current.right;
+			}
+		}
+	}
+
+	/**
+	 * @return a map with this key set to the value. Replaces any existing value of the key.
+	 */
+	PersistentSortedMap<K, V> put(K key, V value) {
+		assert (key != null);
+		assert (value != null);
+		return new PersistentSortedMap<K, V>(order, put(root, key, value));
+	}
+
+	/**
+	 * @return a map without this key. The same map if the key is not in it.
+	 */
+	PersistentSortedMap<K, V> remove(K key) {
+		if (!containsKey(key)) {
+			return this;
+		}
+		return new PersistentSortedMap<K, V>(order, remove(root, key));
+	}
+
+	/**
+	 * Iterates over the values in key order
+	 */
+	@Override
+	public Iterator<V> iterator() {
+		final InOrderIterator<K, V> nodes = new InOrderIterator<K, V>(root);
+
+		return new Iterator<V>() {
+			@Override
+			public boolean hasNext() {
+				return nodes.hasNext();
+			}
+
+			@Override
+			public V next() {
+				return nodes.next().value;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Iterates over the keys and values in key order
+	 */
+	Iterable<Map.Entry<K, V>> entries() {
+		return new Iterable<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				final InOrderIterator<K, V> nodes = new InOrderIterator<K, V>(root);
+
+				return new Iterator<Map.Entry<K, V>>() {
+					@Override
+					public boolean hasNext() {
+						return nodes.hasNext();
+					}
+
+					@Override
+					public Map.Entry<K, V> next() {
+						Node<K, V> current = nodes.next();
+						return new AbstractMap.SimpleImmutableEntry<K, V>(current.key, current.value);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	private static <K, V> Node<K, V> buildBalanced(List<K> keys, List<V> values, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+
+		int middle = (from + to) >>> 1;
+
+		return new Node<K, V>(keys.get(middle), values.get(middle),
+				buildBalanced(keys, values, from, middle),
+				buildBalanced(keys, values, middle + 1, to));
+	}
+
+	private Node<K, V> put(Node<K, V> node, K key, V value) {
+		if (node == null) {
+			return new Node<K, V>(key, value, null, null);
+		}
+
+		int comparison = order.compare(key, node.key);
+
+		if (comparison < 0) {
+			return balance(node.key, node.value, put(node.left, key, value), node.right);
+		} else if (comparison > 0) {
+			return balance(node.key, node.value, node.left, put(node.right, key, value));
+		} else {
+			return new Node<K, V>(key, value, node.left, node.right);
+		}
+	}
+
+	private Node<K, V> remove(Node<K, V> node, K key) {
+		int comparison = order.compare(key, node.key);
+
+		if (comparison < 0) {
+			return balance(node.key, node.value, remove(node.left, key), node.right);
+		} else if (comparison > 0) {
+			return balance(node.key, node.value, node.left, remove(node.right, key));
+		}
+
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+
+		Node<K, V> successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+
+		return balance(successor.key, successor.value, node.left, removeSmallest(node.right));
+	}
+
+	private Node<K, V> removeSmallest(Node<K, V> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return balance(node.key, node.value, removeSmallest(node.left), node.right);
+	}
+
+	// Builds a node from the parts, rotating if one side has become too tall
+	private Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+		int difference = height(left) - height(right);
+
+		if (difference > MAX_IMBALANCE) {
+			if (height(left.left) >= height(left.right)) {
+				return new Node<K, V>(left.key, left.value, left.left,
+						new Node<K, V>(key, value, left.right, right));
+			}
+			return new Node<K, V>(left.right.key, left.right.value,
+					new Node<K, V>(left.key, left.value, left.left, left.right.left),
+					new Node<K, V>(key, value, left.right.right, right));
+		}
+
+		if (difference < -MAX_IMBALANCE) {
+			if (height(right.right) >= height(right.left)) {
+				return new Node<K, V>(right.key, right.value,
+						new Node<K, V>(key, value, left, right.left), right.right);
+			}
+			return new Node<K, V>(right.left.key, right.left.value,
+					new Node<K, V>(key, value, left, right.left.left),
+					new Node<K, V>(right.key, right.value, right.left.right, right.right));
+		}
+
+		return new Node<K, V>(key, value, left, right);
+	}
+
+	private static int height(Node<?, ?> node) {
+		return (node == null) ? EMPTY_HEIGHT : node.height;
+	}
+
+	private static int size(Node<?, ?> node) {
+		return (node == null) ? EMPTY_SIZE : node.size;
+	}
+
+	private static class InOrderIterator<K, V> implements Iterator<Node<K, V>> {
+		private Deque<Node<K, V>> path = new ArrayDeque<Node<K, V>>();
+
+		InOrderIterator(Node<K, V> root) {
+			pushLeftEdge(root);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !path.isEmpty();
+		}
+
+		@Override
+		public Node<K, V> next() {
+			if (path.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+
+			Node<K, V> current = path.pop();
+			pushLeftEdge(current.right);
+			return current;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void pushLeftEdge(Node<K, V> node) {
+			while (node != null) {
+				path.push(node);
+				node = node.left;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * QueryPlan.java
+ * The steps a search went through, as shown by the explain command.
+ * <p>
+ * The first step is where the search started, such as an index or the list of all tasks.
+ * Every later step narrows it down. Each step has the number of tasks the planner expected
+ * to be left after it, and the number that actually were.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class QueryPlan {
+
+	public static class Step {
+		private final String description;
+		private final int estimatedRows;
+		private int actualRows;
+
+		Step(String description, int estimatedRows) {
+			this.description = description;
+			this.estimatedRows = estimatedRows;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public int getEstimatedRows() {
+			return estimatedRows;
+		}
+
+		public int getActualRows() {
+			return actualRows;
+		}
+
+		void setActualRows(int actualRows) {
+			this.actualRows = actualRows;
+		}
+	}
+
+	private final List<Step> steps = new ArrayList<Step>();
+
+	QueryPlan() {
+	}
+
+	Step addStep(String description, int estimatedRows) {
+		Step added = new Step(description, estimatedRows);
+		steps.add(added);
+		return added;
+	}
+
+	/**
+	 * @return the steps in the order they were run
+	 */
+	public List<Step> getSteps() {
+		return Collections.unmodifiableList(steps);
+	}
+
+}
@@ -0,0 +1,386 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * QueryPlanner.java
+ * Decides how a search is answered and runs it.
+ * <p>
+ * A SearchQuery tree is always answered first, from the indexes by a SearchQueryEvaluator.
+ * Otherwise the flag bitmaps, the keyword index and the date index each estimate how many tasks they would give.
+ * The search starts from the one expected to give the fewest tasks, or from all tasks if none applies.
+ * The remaining search terms are then checked as filters, most selective first,
+ * so each task stops being checked at the first term it fails.
+ * Flags are always checked with the bitmaps by serial number, without looking at the task.
+ * <p>
+ * Every step is recorded in a QueryPlan with its estimated and actual number of tasks.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import main.LogHandler;
+import main.shared.ImmutableTask;
+import main.shared.SearchTerms;
+import main.shared.Task;
+
+class QueryPlanner {
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("dd MMM yyyy h:mma");
+	private static final double ALL_SELECTED = 1.0;
+
+	private enum Access {
+		QUERY_INDEXES, FLAG_BITMAP, KEYWORD_INDEX, DATE_INDEX, ALL_TASKS
+	};
+
+	// A search term checked on each task the search started from
+	private abstract static class Filter {
+		final String description;
+		final double selectivity;
+
+		Filter(String description, double selectivity) {
+			this.description = description;
+			this.selectivity = selectivity;
+		}
+
+		abstract boolean accepts(ImmutableTask task);
+	}
+
+	private static final Comparator<Filter> MOST_SELECTIVE_FIRST = new Comparator<Filter>() {
+		@Override
+		public int compare(Filter first, Filter second) {
+			return Double.compare(first.selectivity, second.selectivity);
+		}
+	};
+
+	private Logger log = LogHandler.getLogInstance();
+
+	private final TaskSnapshot snapshot;
+	private final SearchTerms terms;
+	private final QueryPlan plan = new QueryPlan();
+
+	private final boolean hasFlags;
+	private final int flagEstimate;
+
+	// Null if the search has no such term or the index cannot answer it
+	private final Integer keywordEstimate;
+	private final Integer dateEstimate;
+
+	private final Access access;
+
+	QueryPlanner(TaskSnapshot snapshot, SearchTerms terms) {
+		assert (snapshot != null);
+		assert (terms != null);
+
+		this.snapshot = snapshot;
+		this.terms = terms;
+
+		hasFlags = terms.completeFlag() || terms.incompleteFlag() || terms.floatingFlag()
+				|| terms.deadlineFlag() || terms.timedFlag();
+		flagEstimate = snapshot.estimateByFlags(terms.completeFlag(), terms.incompleteFlag(),
+				terms.floatingFlag(), terms.deadlineFlag(), terms.timedFlag());
+
+		keywordEstimate = terms.doesSearchContainKeywords()
+				? snapshot.estimateByKeywords(terms.getKeywords()) : null;
+		dateEstimate = terms.doesSearchContainDateRange()
+				? snapshot.estimateClashing(terms.getStartDate(), terms.getEndDate()) : null;
+
+		access = chooseAccess();
+		log.info("Search will start from " + access);
+	}
+
+	/**
+	 * @return the plan, with actual numbers of tasks once run has been called
+	 */
+	QueryPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Runs the search. Can only be called once.
+	 *
+	 * @return the matching tasks in display order
+	 */
+	List<ImmutableTask> run() {
+		Iterable<ImmutableTask> candidates;
+		double estimate;
+		QueryPlan.Step start;
+
+		CompressedBitmap flagMatches = null;
+		boolean areFlagsChecked = !hasFlags;
+
+		if (hasFlags) {
+			flagMatches = snapshot.findByFlags(terms.completeFlag(), terms.incompleteFlag(),
+					terms.floatingFlag(), terms.deadlineFlag(), terms.timedFlag());
+		}
+
+		switch (access) {
+		case QUERY_INDEXES:
+			SearchQueryEvaluator evaluator = new SearchQueryEvaluator(snapshot);
+			int queryEstimate = evaluator.estimate(terms.getQuery());
+			CompressedBitmap queryMatches = evaluator.evaluate(terms.getQuery());
+			start = plan.addStep("Query indexes (" + terms.getQuery() + ")", queryEstimate);
+			start.setActualRows(queryMatches.cardinality());
+			estimate = queryEstimate;
+			candidates = snapshot.tasksOf(queryMatches);
+			break;
+
+		case FLAG_BITMAP:
+			start = plan.addStep("Flag bitmap (" + describeFlags() + ")", flagEstimate);
+			start.setActualRows(flagMatches.cardinality());
+			estimate = flagEstimate;
+			candidates = snapshot.tasksOf(flagMatches);
+			areFlagsChecked = true;
+			break;
+
+		case KEYWORD_INDEX:
+			CompressedBitmap selected = snapshot.findByKeywords(terms.getKeywords());
+			start = plan.addStep("Keyword index (" + describeKeywords() + ")", keywordEstimate);
+			start.setActualRows(selected.cardinality());
+			estimate = keywordEstimate;
+
+			// Both are bitmaps so the flags are checked before any task is fetched
+			if (hasFlags) {
+				selected = selected.and(flagMatches);
+				estimate *= flagSelectivity();
+				QueryPlan.Step flagStep = plan.addStep("AND flag bitmap (" + describeFlags() + ")",
+						(int) Math.ceil(estimate));
+				flagStep.setActualRows(selected.cardinality());
+				areFlagsChecked = true;
+			}
+
+			candidates = snapshot.tasksOf(selected);
+			break;
+
+		case DATE_INDEX:
+			List<ImmutableTask> clashing = snapshot.findClashing(terms.getStartDate(), terms.getEndDate());
+			start = plan.addStep("Date index (" + describeDates() + ")", dateEstimate);
+			start.setActualRows(clashing.size());
+			estimate = dateEstimate;
+			candidates = clashing;
+			break;
+
+		default:
+			start = plan.addStep("All tasks", snapshot.size());
+			start.setActualRows(snapshot.size());
+			estimate = snapshot.size();
+			candidates = snapshot.inDisplayOrder();
+			break;
+		}
+
+		List<Filter> filters = remainingFilters(flagMatches, areFlagsChecked);
+		return applyFilters(candidates, filters, estimate);
+	}
+
+	/**
+	 * Answers the search from the bitmaps and indexes alone, without fetching any task.
+	 * Nothing is added to the plan.
+	 *
+	 * @return serial numbers of the matching tasks, or null if the search has no terms
+	 *         or a term cannot be answered by an index
+	 */
+	CompressedBitmap findSerials() {
+		CompressedBitmap found = null;
+
+		if (terms.doesSearchContainQuery()) {
+			found = new SearchQueryEvaluator(snapshot).evaluate(terms.getQuery());
+		}
+
+		if (hasFlags) {
+			found = intersect(found, snapshot.findByFlags(terms.completeFlag(), terms.incompleteFlag(),
+					terms.floatingFlag(), terms.deadlineFlag(), terms.timedFlag()));
+		}
+
+		if (terms.doesSearchContainKeywords()) {
+			CompressedBitmap keywordMatches = snapshot.findByKeywords(terms.getKeywords());
+
+			if (keywordMatches == null) {
+				return null;
+			}
+			found = intersect(found, keywordMatches);
+		}
+
+		if (terms.doesSearchContainDateRange()) {
+			if (dateEstimate == null) {
+				return null;
+			}
+			found = intersect(found, snapshot.findClashingSerials(terms.getStartDate().getMillis(),
+					terms.getEndDate().getMillis()));
+		}
+
+		return found;
+	}
+
+	private Access chooseAccess() {
+		if (terms.doesSearchContainQuery()) {
+			return Access.QUERY_INDEXES;
+		}
+
+		Access chosen = Access.ALL_TASKS;
+		int fewest = snapshot.size();
+
+		if (hasFlags && (flagEstimate <= fewest)) {
+			chosen = Access.FLAG_BITMAP;
+			fewest = flagEstimate;
+		}
+
+		if ((keywordEstimate != null) && (keywordEstimate <= fewest)) {
+			chosen = Access.KEYWORD_INDEX;
+			fewest = keywordEstimate;
+		}
+
+		if ((dateEstimate != null) && (dateEstimate <= fewest)) {
+			chosen = Access.DATE_INDEX;
+			fewest = dateEstimate;
+		}
+
+		return chosen;
+	}
+
+	private List<Filter> remainingFilters(final CompressedBitmap flagMatches, boolean areFlagsChecked) {
+		List<Filter> filters = new ArrayList<Filter>();
+
+		if (!areFlagsChecked) {
+			filters.add(new Filter("Filter by flag bitmap (" + describeFlags() + ")", flagSelectivity()) {
+				@Override
+				boolean accepts(ImmutableTask task) {
+					return flagMatches.contains(task.getSerial());
+				}
+			});
+		}
+
+		if (terms.doesSearchContainKeywords() && (access != Access.KEYWORD_INDEX)) {
+			final String[] keywordList = terms.getKeywords();
+			filters.add(new Filter("Filter by keywords (" + describeKeywords() + ")",
+					selectivity(keywordEstimate)) {
+				@Override
+				boolean accepts(ImmutableTask task) {
+					for (String word : keywordList) {
+						if (!task.containsTerm(word)) {
+							return false;
+						}
+					}
+					return true;
+				}
+			});
+		}
+
+		if (terms.doesSearchContainDateRange() && (access != Access.DATE_INDEX)) {
+			final DateTime startRange = terms.getStartDate();
+			final DateTime endRange = terms.getEndDate();
+			filters.add(new Filter("Filter by dates (" + describeDates() + ")", selectivity(dateEstimate)) {
+				@Override
+				boolean accepts(ImmutableTask task) {
+					return task.clashesWithRange(startRange, endRange);
+				}
+			});
+		}
+
+		Collections.sort(filters, MOST_SELECTIVE_FIRST);
+		return filters;
+	}
+
+	// Checks each task against the filters in order, counting how many tasks get past each one
+	private List<ImmutableTask> applyFilters(Iterable<ImmutableTask> candidates, List<Filter> filters,
+			double estimate) {
+		List<ImmutableTask> found = new ArrayList<ImmutableTask>();
+		int[] passed = new int[filters.size()];
+
+		for (ImmutableTask current : candidates) {
+			boolean isAccepted = true;
+
+			for (int i = 0; i < filters.size(); i++) {
+				if (!filters.get(i).accepts(current)) {
+					isAccepted = false;
+					break;
+				}
+				passed[i]++;
+			}
+
+			if (isAccepted) {
+				found.add(current);
+			}
+		}
+
+		for (int i = 0; i < filters.size(); i++) {
+			estimate *= filters.get(i).selectivity;
+			QueryPlan.Step filterStep = plan.addStep(filters.get(i).description, (int) Math.ceil(estimate));
+			filterStep.setActualRows(passed[i]);
+		}
+
+		return found;
+	}
+
+	private static CompressedBitmap intersect(CompressedBitmap found, CompressedBitmap other) {
+		return (found == null) ? other : found.and(other);
+	}
+
+	private double flagSelectivity() {
+		return selectivity(flagEstimate);
+	}
+
+	// Share of all tasks expected to be left. Terms without an estimate are assumed to keep every task.
+	private double selectivity(Integer estimate) {
+		if ((estimate == null) || (snapshot.size() == 0)) {
+			return ALL_SELECTED;
+		}
+		return Math.min(ALL_SELECTED, (double) estimate / snapshot.size());
+	}
+
+	private String describeFlags() {
+		List<String> flags = new ArrayList<String>();
+
+		if (terms.completeFlag()) {
+			flags.add("done");
+		}
+		if (terms.incompleteFlag()) {
+			flags.add("undone");
+		}
+		if (terms.floatingFlag()) {
+			flags.add("floating");
+		}
+		if (terms.deadlineFlag()) {
+			flags.add("deadline");
+		}
+		if (terms.timedFlag()) {
+			flags.add("timed");
+		}
+
+		return join(flags);
+	}
+
+	private String describeKeywords() {
+		List<String> keywords = new ArrayList<String>();
+
+		for (String keyword : terms.getKeywords()) {
+			keywords.add("\"" + keyword + "\"");
+		}
+
+		return join(keywords);
+	}
+
+	private String describeDates() {
+		return DATE_FORMATTER.print(terms.getStartDate()) + " to " + DATE_FORMATTER.print(terms.getEndDate());
+	}
+
+	private static String join(List<String> parts) {
+		StringBuilder joined = new StringBuilder();
+
+		for (String part : parts) {
+			if (joined.length() > 0) {
+				joined.append(", ");
+			}
+			joined.append(part);
+		}
+
+		return joined.toString();
+	}
+
+}
@@ -0,0 +1,325 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * RankedSearch.java
+ * Finds the best few matches of a search by score instead of every match in display order.
+ * <p>
+ * Each keyword adds to the score of a task by how it matches the words of the task name.
+ * A whole word scores most, and more again if the name uses it more than once (its term frequency).
+ * The start of a word scores less, and anywhere else inside a word adds nothing.
+ * How near the deadline or start of the task is to now, before or after, adds up to 1.
+ * Floating tasks add nothing for it. Tasks with the same score keep their display order.
+ * Only the best K are kept, in a bounded heap whose head is the worst of them.
+ * <p>
+ * A single keyword splits its matches into tiers using the keyword index alone:
+ * repeated whole word, whole word, start of a word and inside a word.
+ * Every task of a tier outscores every task of the next, so the tiers are filled in turn.
+ * A large tier is walked outwards from now in display order, skipping tasks not in it,
+ * and the walk stops as soon as no task further away can beat the worst one kept.
+ * The work then depends on K and on how common the keyword is, not on how many tasks match.
+ * Small tiers, and searches with several keywords, flags, dates or a query, score every match.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import main.shared.ImmutableTask;
+import main.shared.SearchQuery;
+import main.shared.SearchTerms;
+import main.shared.Task;
+
+class RankedSearch {
+
+	static final double SCORE_WHOLE_WORD = 4;
+	static final double SCORE_WORD_PREFIX = 2;
+	static final double SCORE_PER_USE = 2;
+	static final int MAX_USES_COUNTED = 2;
+
+	private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000.0;
+
+	private static class ScoredTask {
+		final ImmutableTask task;
+		final double score;
+
+		ScoredTask(ImmutableTask task, double score) {
+			this.task = task;
+			this.score = score;
+		}
+	}
+
+	// Lower scores first, then later in display order, so the head of the heap is the worst kept
+	private static final Comparator<ScoredTask> WORST_FIRST = new Comparator<ScoredTask>() {
+		@Override
+		public int compare(ScoredTask first, ScoredTask second) {
+			int comparison = Double.compare(first.score, second.score);
+
+			if (comparison != 0) {
+				return comparison;
+			}
+			return TaskSnapshot.DISPLAY_ORDER.compare(second.task, first.task);
+		}
+	};
+
+	private final TaskSnapshot snapshot;
+	private final SearchTerms terms;
+	private final int limit;
+	private final long nowMillis;
+	private final String[] keywordsLowerCase;
+
+	private final PriorityQueue<ScoredTask> best;
+
+	/**
+	 * @param limit the largest number of tasks to return, at least 1
+	 * @param nowMillis the time nearness of dates is measured from
+	 */
+	RankedSearch(TaskSnapshot snapshot, SearchTerms terms, int limit, long nowMillis) {
+		assert (snapshot != null);
+		assert (terms != null);
+		assert (limit > 0);
+
+		this.snapshot = snapshot;
+		this.terms = terms;
+		this.limit = limit;
+		this.nowMillis = nowMillis;
+		this.keywordsLowerCase = scoredKeywords(terms);
+		this.best = new PriorityQueue<ScoredTask>(limit, WORST_FIRST);
+	}
+
+	/**
+	 * Runs the search. Can only be called once.
+	 *
+	 * @return the best matches, best first
+	 */
+	Ranking run() {
+		int matchCount;
+		CompressedBitmap keywordMatches = isSingleKeyword() ? snapshot.findByKeywords(keywordsLowerCase) : null;
+
+		if (keywordMatches != null) {
+			rankByTiers(keywordsLowerCase[0], keywordMatches);
+			matchCount = keywordMatches.cardinality();
+		} else {
+			List<ImmutableTask> matches = new QueryPlanner(snapshot, terms).run();
+
+			for (ImmutableTask current : matches) {
+				offer(current);
+			}
+			matchCount = matches.size();
+		}
+
+		List<ScoredTask> ranked = new ArrayList<ScoredTask>(best);
+		Collections.sort(ranked, Collections.reverseOrder(WORST_FIRST));
+
+		List<Task> rankedTasks = new ArrayList<Task>(ranked.size());
+		List<Double> scores = new ArrayList<Double>(ranked.size());
+
+		for (ScoredTask current : ranked) {
+			rankedTasks.add(current.task);
+			scores.add(current.score);
+		}
+
+		return new Ranking(rankedTasks, scores, matchCount);
+	}
+
+	/**
+	 * @return the score of the task for these lowercase keywords
+	 */
+	static double score(Task task, String[] keywordsLowerCase, long nowMillis) {
+		List<String> words = KeywordIndex.splitWords(task.getTaskName().toLowerCase());
+		double total = 0;
+
+		for (String keyword : keywordsLowerCase) {
+			int uses = 0;
+			boolean isPrefix = false;
+
+			for (String word : words) {
+				if (word.equals(keyword)) {
+					uses++;
+				} else if (word.startsWith(keyword)) {
+					isPrefix = true;
+				}
+			}
+
+			if (uses > 0) {
+				total += SCORE_WHOLE_WORD + SCORE_PER_USE * Math.min(uses, MAX_USES_COUNTED);
+			} else if (isPrefix) {
+				total += SCORE_WORD_PREFIX;
+			}
+		}
+
+		return total + nearness(task, nowMillis);
+	}
+
+	// 1 for a date at now, falling towards 0 further away. 0 for floating tasks.
+	private static double nearness(Task task, long nowMillis) {
+		if (task.isFloatingTask()) {
+			return 0;
+		}
+
+		double daysAway = Math.abs(dateOf(task) - nowMillis) / MILLIS_PER_DAY;
+		return 1 / (1 + daysAway);
+	}
+
+	private static long dateOf(Task task) {
+		return task.isTimedTask() ? task.getStartDate().getMillis() : task.getDeadline().getMillis();
+	}
+
+	private boolean isSingleKeyword() {
+		return !terms.doesSearchContainQuery() && !terms.doesSearchContainDateRange()
+				&& !terms.completeFlag() && !terms.incompleteFlag() && !terms.floatingFlag()
+				&& !terms.deadlineFlag() && !terms.timedFlag()
+				&& (terms.getKeywords().length == 1) && (keywordsLowerCase.length == 1);
+	}
+
+	// Fills the heap from the tiers of the keyword in turn
+	private void rankByTiers(String keyword, CompressedBitmap all) {
+		CompressedBitmap wholeWord = snapshot.findByWord(keyword);
+		CompressedBitmap repeated = snapshot.findByRepeatedWord(keyword);
+		CompressedBitmap prefix = snapshot.findByWordPrefix(keyword);
+
+		rankTier(repeated, SCORE_WHOLE_WORD + SCORE_PER_USE * MAX_USES_COUNTED);
+		rankTier(wholeWord.andNot(repeated), SCORE_WHOLE_WORD + SCORE_PER_USE);
+		rankTier(prefix.andNot(wholeWord), SCORE_WORD_PREFIX);
+		rankTier(all.andNot(prefix), 0);
+	}
+
+	// Every task in the tier scores tierScore plus its nearness
+	private void rankTier(CompressedBitmap tier, double tierScore) {
+		int wanted = limit - best.size();
+
+		if ((wanted <= 0) || tier.isEmpty()) {
+			return;
+		}
+
+		// Walking finds a task of the tier about every size / cardinality tasks
+		long walkCost = (long) wanted * snapshot.size() / tier.cardinality();
+
+		if (walkCost < tier.cardinality()) {
+			walkTier(tier, tierScore);
+			return;
+		}
+
+		for (int serial : tier.toArray()) {
+			offer(snapshot.get(serial));
+		}
+	}
+
+	private void walkTier(CompressedBitmap tier, double tierScore) {
+		int floatingCount = snapshot.findByFlags(false, false, true, false, false).cardinality();
+		int datedCount = snapshot.size() - floatingCount;
+
+		int later = firstDatedFrom(nowMillis, datedCount);
+		int earlier = later - 1;
+
+		while ((earlier >= 0) || (later < datedCount)) {
+			ImmutableTask next;
+
+			if (earlier < 0) {
+				next = snapshot.getByIndex(later++);
+			} else if (later >= datedCount) {
+				next = snapshot.getByIndex(earlier--);
+			} else {
+				ImmutableTask earlierTask = snapshot.getByIndex(earlier);
+				ImmutableTask laterTask = snapshot.getByIndex(later);
+
+				if (nowMillis - dateOf(earlierTask) <= dateOf(laterTask) - nowMillis) {
+					next = earlierTask;
+					earlier--;
+				} else {
+					next = laterTask;
+					later++;
+				}
+			}
+
+			// Tasks are visited from the nearest date outwards, so no later one can score more than this
+			double highestLeft = tierScore + nearness(next, nowMillis);
+
+			if (isFull() && (best.peek().score > highestLeft)) {
+				return;
+			}
+
+			if (tier.contains(next.getSerial())) {
+				offer(next);
+			}
+		}
+
+		// Floating tasks of a tier all score the same, so the first ones in display order win
+		for (int i = datedCount; (i < snapshot.size()) && !isFull(); i++) {
+			ImmutableTask current = snapshot.getByIndex(i);
+
+			if (tier.contains(current.getSerial())) {
+				offer(current);
+			}
+		}
+	}
+
+	// Position in display order of the first dated task on or after the time
+	private int firstDatedFrom(long millis, int datedCount) {
+		int low = 0;
+		int high = datedCount;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (dateOf(snapshot.getByIndex(middle)) < millis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	private void offer(ImmutableTask task) {
+		ScoredTask scored = new ScoredTask(task, score(task, keywordsLowerCase, nowMillis));
+
+		if (!isFull()) {
+			best.add(scored);
+		} else if (WORST_FIRST.compare(scored, best.peek()) > 0) {
+			best.poll();
+			best.add(scored);
+		}
+	}
+
+	private boolean isFull() {
+		return best.size() >= limit;
+	}
+
+	// The keywords a task is scored on. Words under NOT in a query do not count.
+	private static String[] scoredKeywords(SearchTerms terms) {
+		List<String> found = new ArrayList<String>();
+
+		if (terms.doesSearchContainQuery()) {
+			addPositiveTerms(terms.getQuery(), found);
+		} else if (terms.doesSearchContainKeywords()) {
+			for (String keyword : terms.getKeywords()) {
+				found.addAll(KeywordIndex.splitWords(keyword.toLowerCase()));
+			}
+		}
+
+		return found.toArray(new String[found.size()]);
+	}
+
+	private static void addPositiveTerms(SearchQuery query, List<String> found) {
+		switch (query.getKind()) {
+		case AND:
+			// Fallthrough
+		case OR:
+			for (SearchQuery child : query.getChildren()) {
+				addPositiveTerms(child, found);
+			}
+			break;
+		case TERM:
+			found.addAll(KeywordIndex.splitWords(query.getTerm().toLowerCase()));
+			break;
+		default:
+			break;
+		}
+	}
+
+}
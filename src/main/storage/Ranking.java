@@ -0,0 +1,53 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * Ranking.java
+ * The best matches of a ranked search, best first, with the score of each.
+ * <p>
+ * Scores only mean something compared with each other in the same ranking.
+ * The number of matches counts every task meeting the search, not only the ranked ones.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+import main.shared.Task;
+
+public class Ranking {
+
+	private final List<Task> tasks;
+	private final List<Double> scores;
+	private final int matchCount;
+
+	Ranking(List<Task> tasks, List<Double> scores, int matchCount) {
+		assert (tasks.size() == scores.size());
+
+		this.tasks = tasks;
+		this.scores = scores;
+		this.matchCount = matchCount;
+	}
+
+	/**
+	 * @return the ranked tasks, best first. The list is new and may be changed.
+	 */
+	public List<Task> getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * @return the score of each ranked task, in the same order
+	 */
+	public List<Double> getScores() {
+		return Collections.unmodifiableList(scores);
+	}
+
+	/**
+	 * @return the number of tasks meeting the search
+	 */
+	public int getMatchCount() {
+		return matchCount;
+	}
+
+}
@@ -0,0 +1,149 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * ResultList.java
+ * A read-only list of search results in display order, whose tasks are only fetched when asked for.
+ * <p>
+ * The list keeps the snapshot it was made from, so it never changes and index numbers shown to the user
+ * keep pointing at the same tasks even after the database has changed.
+ * Listing every task reads the snapshot by position directly.
+ * Results given as a bitmap of serial numbers are found by walking the display order and skipping other tasks.
+ * The list remembers where the last walk stopped, so reading page after page, forwards or backwards,
+ * only walks over the tasks of those pages. Few results are simply fetched and sorted at once.
+ * <p>
+ * Memory stays the same however many tasks there are, and the time to read a page depends on the page size.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import main.shared.ImmutableTask;
+import main.shared.Task;
+
+public class ResultList extends AbstractList<Task> implements RandomAccess {
+
+	// Below this share of all tasks, results are fetched and sorted at once instead of walked to
+	private static final int WALK_LIMIT_DIVISOR = 8;
+
+	private final TaskSnapshot snapshot;
+
+	// Exactly one of these is set, unless the list has every task of the snapshot
+	private final CompressedBitmap serials;
+	private final List<ImmutableTask> fetched;
+
+	private final int size;
+
+	// Index in this list and position in display order of the task the last walk stopped at
+	private int cursorIndex = -1;
+	private int cursorPosition = -1;
+
+	private ResultList(TaskSnapshot snapshot, CompressedBitmap serials, List<ImmutableTask> fetched, int size) {
+		this.snapshot = snapshot;
+		this.serials = serials;
+		this.fetched = fetched;
+		this.size = size;
+	}
+
+	/**
+	 * @return every task of the snapshot in display order
+	 */
+	static ResultList all(TaskSnapshot snapshot) {
+		return new ResultList(snapshot, null, null, snapshot.size());
+	}
+
+	/**
+	 * @return the tasks of these serial numbers in display order
+	 */
+	static ResultList of(TaskSnapshot snapshot, CompressedBitmap serials) {
+		if (serials.cardinality() == snapshot.size()) {
+			return all(snapshot);
+		}
+
+		if (serials.cardinality() <= snapshot.size() / WALK_LIMIT_DIVISOR) {
+			return of(snapshot.tasksOf(serials));
+		}
+
+		return new ResultList(snapshot, serials, null, serials.cardinality());
+	}
+
+	/**
+	 * @return a list of tasks that have already been fetched, in the given order
+	 */
+	static ResultList of(List<ImmutableTask> fetched) {
+		return new ResultList(null, null, fetched, fetched.size());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized Task get(int index) {
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		if (fetched != null) {
+			return fetched.get(index);
+		}
+
+		if (serials == null) {
+			return snapshot.getByIndex(index);
+		}
+
+		return walkTo(index);
+	}
+
+	/**
+	 * Reads one page of the results
+	 *
+	 * @param offset index of the first task of the page
+	 * @param limit largest number of tasks on the page
+	 * @return a new list of the tasks on the page, empty if the offset is past the end
+	 */
+	public List<Task> page(int offset, int limit) {
+		assert (offset >= 0);
+		assert (limit >= 0);
+
+		int end = (int) Math.min((long) offset + limit, size);
+		List<Task> found = new ArrayList<Task>(Math.max(0, end - offset));
+
+		for (int i = offset; i < end; i++) {
+			found.add(get(i));
+		}
+
+		return found;
+	}
+
+	// Moves the cursor from where it is, or from the start if that is nearer, until it reaches the index
+	private ImmutableTask walkTo(int index) {
+		if ((cursorIndex < 0) || (index < cursorIndex - index)) {
+			cursorIndex = -1;
+			cursorPosition = -1;
+		}
+
+		while (cursorIndex < index) {
+			cursorPosition++;
+
+			if (serials.contains(snapshot.getByIndex(cursorPosition).getSerial())) {
+				cursorIndex++;
+			}
+		}
+
+		while (cursorIndex > index) {
+			cursorPosition--;
+
+			if (serials.contains(snapshot.getByIndex(cursorPosition).getSerial())) {
+				cursorIndex--;
+			}
+		}
+
+		return snapshot.getByIndex(cursorPosition);
+	}
+
+}
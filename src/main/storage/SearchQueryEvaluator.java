@@ -0,0 +1,184 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * SearchQueryEvaluator.java
+ * Answers a SearchQuery tree from the indexes of a snapshot, as a bitmap of serial numbers.
+ * <p>
+ * Each leaf comes from an index: terms from the keyword index, fuzzy words from its BkTree,
+ * done and type from the flag bitmaps, before and after from the date index.
+ * AND, OR and NOT are then bitmap operations,
+ * so no task is looked at except to check phrases, which the keyword index can only narrow down.
+ * NOT parts of an AND are taken away from the other parts instead of being turned into
+ * the large set of every other task first.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import main.shared.ImmutableTask;
+import main.shared.SearchQuery;
+import main.shared.Task.TaskType;
+
+class SearchQueryEvaluator {
+
+	private final TaskSnapshot snapshot;
+
+	SearchQueryEvaluator(TaskSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * @return serial numbers of the tasks meeting the query, the same as SearchQuery.matches
+	 */
+	CompressedBitmap evaluate(SearchQuery query) {
+		switch (query.getKind()) {
+		case AND:
+			return evaluateAnd(query.getChildren());
+		case OR:
+			List<CompressedBitmap> parts = new ArrayList<CompressedBitmap>();
+
+			for (SearchQuery child : query.getChildren()) {
+				parts.add(evaluate(child));
+			}
+			return CompressedBitmap.or(parts);
+		case NOT:
+			return allTasks().andNot(evaluate(query.getChildren().get(0)));
+		case TERM:
+			return evaluateTerm(query.getTerm());
+		case FUZZY:
+			return snapshot.findByFuzzyWord(query.getTerm(), query.getMaxEdits());
+		case DONE:
+			return snapshot.findByFlags(query.isDone(), !query.isDone(), false, false, false);
+		case TYPE:
+			TaskType type = query.getType();
+			return snapshot.findByFlags(false, false, type == TaskType.FLOATING,
+					type == TaskType.DEADLINE, type == TaskType.TIMED);
+		case BEFORE:
+			return snapshot.findClashingSerials(Long.MIN_VALUE, query.getDate().getMillis() - 1);
+		case AFTER:
+			return snapshot.findClashingSerials(query.getDate().getMillis() + 1, Long.MAX_VALUE);
+		default:
+			return CompressedBitmap.EMPTY;
+		}
+	}
+
+	/**
+	 * Estimates the number of tasks meeting the query from the estimates of the indexes,
+	 * treating the parts of the query as independent
+	 */
+	int estimate(SearchQuery query) {
+		int total = snapshot.size();
+
+		switch (query.getKind()) {
+		case AND:
+			double estimate = total;
+
+			for (SearchQuery child : query.getChildren()) {
+				estimate *= (total == 0) ? 0 : (double) estimate(child) / total;
+			}
+			return (int) Math.ceil(estimate);
+		case OR:
+			long sum = 0;
+
+			for (SearchQuery child : query.getChildren()) {
+				sum += estimate(child);
+			}
+			return (int) Math.min(total, sum);
+		case NOT:
+			return total - estimate(query.getChildren().get(0));
+		case TERM:
+			Integer termEstimate = snapshot.estimateByKeywords(piecesOf(query.getTerm()));
+			return (termEstimate == null) ? total : Math.min(total, termEstimate);
+		case FUZZY:
+			return Math.min(total, snapshot.estimateByFuzzyWord(query.getTerm(), query.getMaxEdits()));
+		case DONE:
+			return snapshot.estimateByFlags(query.isDone(), !query.isDone(), false, false, false);
+		case TYPE:
+			TaskType type = query.getType();
+			return snapshot.estimateByFlags(false, false, type == TaskType.FLOATING,
+					type == TaskType.DEADLINE, type == TaskType.TIMED);
+		case BEFORE:
+			return snapshot.estimateClashing(Long.MIN_VALUE, query.getDate().getMillis() - 1);
+		case AFTER:
+			return snapshot.estimateClashing(query.getDate().getMillis() + 1, Long.MAX_VALUE);
+		default:
+			return 0;
+		}
+	}
+
+	private CompressedBitmap evaluateAnd(List<SearchQuery> children) {
+		CompressedBitmap result = null;
+		List<CompressedBitmap> excluded = new ArrayList<CompressedBitmap>();
+
+		for (SearchQuery child : children) {
+			if (child.getKind() == SearchQuery.Kind.NOT) {
+				excluded.add(evaluate(child.getChildren().get(0)));
+				continue;
+			}
+
+			CompressedBitmap part = evaluate(child);
+			result = (result == null) ? part : result.and(part);
+
+			if (result.isEmpty()) {
+				return result;
+			}
+		}
+
+		if (result == null) {
+			result = allTasks();
+		}
+
+		return result.andNot(CompressedBitmap.or(excluded));
+	}
+
+	// A single word is answered exactly by the keyword index, a phrase is checked on the tasks having all its words
+	private CompressedBitmap evaluateTerm(String term) {
+		String[] pieces = piecesOf(term);
+		CompressedBitmap candidates = snapshot.findByKeywords(pieces);
+
+		if (candidates == null) {
+			candidates = allTasks();
+		} else if ((pieces.length == 1) && pieces[0].equals(term)) {
+			return candidates;
+		}
+
+		int[] serials = candidates.toArray();
+		int matchCount = 0;
+
+		for (int serial : serials) {
+			ImmutableTask current = snapshot.get(serial);
+
+			if (current.containsTerm(term)) {
+				serials[matchCount++] = serial;
+			}
+		}
+
+		return CompressedBitmap.ofSorted(serials, matchCount);
+	}
+
+	private CompressedBitmap allTasks() {
+		return snapshot.findByFlags(false, false, false, false, false);
+	}
+
+	// Splits a phrase on whitespace the same way the keyword index splits task names
+	private static String[] piecesOf(String term) {
+		List<String> pieces = new ArrayList<String>();
+		int pieceStart = -1;
+
+		for (int i = 0; i <= term.length(); i++) {
+			boolean isBoundary = (i == term.length()) || Character.isWhitespace(term.charAt(i));
+
+			if (isBoundary && (pieceStart >= 0)) {
+				pieces.add(term.substring(pieceStart, i));
+				pieceStart = -1;
+			} else if (!isBoundary && (pieceStart < 0)) {
+				pieceStart = i;
+			}
+		}
+
+		return pieces.toArray(new String[pieces.size()]);
+	}
+
+}
@@ -0,0 +1,436 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * TaskJournal.java
+ * An append-only log of the changes made to the database since the last checkpoint.
+ * <p>
+ * Every change is written as a batch of "+" (task added) and "-" (task removed) records
+ * followed by a commit record. A batch without its commit record is ignored,
+ * so a half written batch will never be replayed.
+ * <p>
+ * The journal carries the generation number of the checkpoint it belongs to.
+ * A journal whose generation does not match the checkpoint has already been folded into it and is discarded.
+ * Within a generation, records are addressed by a logical offset that does not change when
+ * the front of the journal is cut away after compaction.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+
+import main.LogHandler;
+
+class TaskJournal {
+
+	static final String RECORD_ADD = "+";
+	static final String RECORD_REMOVE = "-";
+
+	private static final String RECORD_COMMIT = "=";
+	private static final String RECORD_DELIMITER = " | ";
+	private static final String HEADER_GENERATION = "#Journal Generation: ";
+	private static final String HEADER_BASE = "#Journal Base: ";
+
+	private static final String TEMPORARY_FILE_SUFFIX = ".compact";
+
+	private static final String LINE_END_OF_LINE = "\n";
+	private static final int RECORD_TYPE_LENGTH = 1;
+	private static final int RECORD_PREFIX_LENGTH = RECORD_TYPE_LENGTH + RECORD_DELIMITER.length();
+
+	private static final long START_OF_FILE = 0;
+	private static final long INITIAL_FILE_SIZE = 0;
+	private static final long INITIAL_BASE = 0;
+	private static final long UNKNOWN_GENERATION = -1;
+
+	private File journalFile;
+	private RandomAccessFile journalAccess = null;
+	private FileChannel journalChannel = null;
+	private boolean isWritable = false;
+	private boolean isSynchronous = true;
+
+	private long generation = UNKNOWN_GENERATION;
+	private long base = INITIAL_BASE;
+	private long headerLength = 0;
+	private int committedBatches = 0;
+
+	private Logger log = LogHandler.getLogInstance();
+
+	TaskJournal(File journalFile) {
+		assert (journalFile != null);
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * Opens the journal file, creating it if it does not exist
+	 *
+	 * @param writable false to open the journal as read only
+	 * @param synchronous true to have every write flushed to disk before returning
+	 * @throws IOException if the journal cannot be opened
+	 */
+	void open(boolean writable, boolean synchronous) throws IOException {
+		log.info("Opening journal " + journalFile + " writable " + writable);
+
+		isSynchronous = synchronous;
+
+		if (writable && synchronous) {
+			journalAccess = new RandomAccessFile(journalFile, "rws");
+		} else if (writable) {
+			journalAccess = new RandomAccessFile(journalFile, "rw");
+		} else {
+			journalAccess = new RandomAccessFile(journalFile, "r");
+		}
+		journalChannel = journalAccess.getChannel();
+		isWritable = writable;
+	}
+
+	boolean isOpen() {
+		return journalAccess != null;
+	}
+
+	/**
+	 * Reads back every committed record of this journal from the given logical offset.
+	 * A trailing uncommitted batch is dropped from the file if it is writable.
+	 *
+	 * @param checkpointGeneration generation number of the checkpoint this journal should belong to
+	 * @param checkpointOffset logical offset up to which the checkpoint already contains the journal
+	 * @return list of records in the form {record type, task line}. Empty if the journal is stale.
+	 * @throws IOException if the journal cannot be read
+	 * @throws DataFormatException if a committed record is malformed
+	 */
+	List<String[]> readCommittedRecords(long checkpointGeneration, long checkpointOffset)
+			throws IOException, DataFormatException {
+		assert (isOpen());
+
+		String journalContents = readBytes(START_OF_FILE, journalChannel.size());
+		int bodyStart = readHeader(journalContents);
+
+		if (generation != checkpointGeneration) {
+			log.warning("Journal generation " + generation + " does not match checkpoint "
+					+ checkpointGeneration + ", journal discarded");
+			committedBatches = 0;
+			if (isWritable) {
+				reset(checkpointGeneration);
+			}
+			return new ArrayList<String[]>();
+		}
+
+		if (checkpointOffset < base) {
+			throw new DataFormatException("Journal is missing records the checkpoint needs");
+		}
+
+		String body = journalContents.substring(bodyStart);
+		int endOfLastCommit = findEndOfLastCommit(body);
+
+		if ((endOfLastCommit < body.length()) && isWritable) {
+			log.warning("Dropping uncommitted tail of journal from byte " + (bodyStart + endOfLastCommit));
+			journalAccess.setLength(bodyStart + endOfLastCommit);
+		}
+
+		body = body.substring(0, endOfLastCommit);
+		committedBatches = countBatches(body);
+
+		int skipFolded = (int) Math.min(checkpointOffset - base, body.length());
+		List<String[]> records = parseRecords(body.substring(skipFolded));
+
+		log.info("Journal has " + committedBatches + " committed batches, "
+				+ records.size() + " records to replay");
+		return records;
+	}
+
+	/**
+	 * Reads the committed records between two logical offsets.
+	 * Safe to call while other batches are being appended.
+	 *
+	 * @param fromOffset logical offset to start from, must be a batch boundary
+	 * @param toOffset logical offset to stop at, must be a batch boundary
+	 * @return list of records in the form {record type, task line}
+	 */
+	List<String[]> readRecordsBetween(long fromOffset, long toOffset)
+			throws IOException, DataFormatException {
+		assert (fromOffset >= base);
+		assert (fromOffset <= toOffset);
+
+		String section = readBytes(toPhysical(fromOffset), toOffset - fromOffset);
+		return parseRecords(section);
+	}
+
+	/**
+	 * Appends one batch of changes to the journal and commits it
+	 *
+	 * @param removedLines task lines removed by this change
+	 * @param addedLines task lines added by this change
+	 * @throws IOException if the batch cannot be written
+	 */
+	void append(List<String> removedLines, List<String> addedLines) throws IOException {
+		assert (removedLines != null);
+		assert (addedLines != null);
+
+		if (!isOpen() || !isWritable) {
+			throw new IOException("Journal not open for writing");
+		}
+
+		StringBuilder batch = new StringBuilder();
+
+		for (String removed : removedLines) {
+			batch.append(RECORD_REMOVE + RECORD_DELIMITER + removed + LINE_END_OF_LINE);
+		}
+
+		for (String added : addedLines) {
+			batch.append(RECORD_ADD + RECORD_DELIMITER + added + LINE_END_OF_LINE);
+		}
+
+		batch.append(RECORD_COMMIT + LINE_END_OF_LINE);
+
+		journalAccess.seek(journalAccess.length());
+		journalAccess.write(batch.toString().getBytes(StandardCharsets.ISO_8859_1));
+		committedBatches++;
+	}
+
+	/**
+	 * Clears the journal and marks it as belonging to the given checkpoint
+	 *
+	 * @param newGeneration generation number of the new checkpoint
+	 * @throws IOException if the journal cannot be written
+	 */
+	void reset(long newGeneration) throws IOException {
+		if (!isOpen() || !isWritable) {
+			throw new IOException("Journal not open for writing");
+		}
+
+		String header = headerString(newGeneration, INITIAL_BASE);
+
+		journalAccess.setLength(INITIAL_FILE_SIZE);
+		journalAccess.seek(START_OF_FILE);
+		journalAccess.write(header.getBytes(StandardCharsets.ISO_8859_1));
+
+		generation = newGeneration;
+		base = INITIAL_BASE;
+		headerLength = header.length();
+		committedBatches = 0;
+		log.info("Journal reset to generation " + newGeneration);
+	}
+
+	/**
+	 * Cuts away the records before the given logical offset once a checkpoint contains them.
+	 * The shortened journal is written to a new file and swapped in,
+	 * so the journal on disk is always complete.
+	 *
+	 * @param newBase logical offset of the first record to keep, must be a batch boundary
+	 * @throws IOException if the shortened journal cannot be written, the journal is left untouched
+	 */
+	void truncateBefore(long newBase) throws IOException {
+		if (!isOpen() || !isWritable) {
+			throw new IOException("Journal not open for writing");
+		}
+
+		assert (newBase >= base);
+
+		long tailStart = toPhysical(newBase);
+		String tail = readBytes(tailStart, journalChannel.size() - tailStart);
+		String header = headerString(generation, newBase);
+
+		File shortened = new File(journalFile.getPath() + TEMPORARY_FILE_SUFFIX);
+		RandomAccessFile shortenedAccess = new RandomAccessFile(shortened, "rw");
+		try {
+			shortenedAccess.setLength(INITIAL_FILE_SIZE);
+			shortenedAccess.write((header + tail).getBytes(StandardCharsets.ISO_8859_1));
+			shortenedAccess.getChannel().force(true);
+		} finally {
+			shortenedAccess.close();
+		}
+
+		close();
+
+		try {
+			Files.move(shortened.toPath(), journalFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			open(true, isSynchronous);
+		}
+
+		base = newBase;
+		headerLength = header.length();
+		committedBatches = countBatches(tail);
+		log.info("Journal truncated before offset " + newBase);
+	}
+
+	/**
+	 * Flushes appended batches to disk when the journal is not synchronous
+	 */
+	void force() throws IOException {
+		if (isOpen()) {
+			journalChannel.force(false);
+		}
+	}
+
+	/**
+	 * @return logical offset just after the last committed batch
+	 */
+	long getLogicalEnd() throws IOException {
+		return base + (journalChannel.size() - headerLength);
+	}
+
+	long getBodyLength() throws IOException {
+		return journalChannel.size() - headerLength;
+	}
+
+	int getCommittedBatches() {
+		return committedBatches;
+	}
+
+	void close() {
+		try {
+			if (journalAccess != null) {
+				journalAccess.close();
+			}
+		} catch (IOException e) {
+			log.severe("Cannot close journal " + e);
+		}
+		journalAccess = null;
+		journalChannel = null;
+	}
+
+	private long toPhysical(long logicalOffset) {
+		return headerLength + (logicalOffset - base);
+	}
+
+	private String headerString(long headerGeneration, long headerBase) {
+		return HEADER_GENERATION + headerGeneration + LINE_END_OF_LINE
+				+ HEADER_BASE + headerBase + LINE_END_OF_LINE;
+	}
+
+	// Reads the header lines and returns the position where the records start
+	private int readHeader(String journalContents) throws DataFormatException {
+		generation = UNKNOWN_GENERATION;
+		base = INITIAL_BASE;
+
+		int lineStart = 0;
+		int lineEnd;
+
+		while ((lineEnd = journalContents.indexOf(LINE_END_OF_LINE, lineStart)) >= 0) {
+			String line = stripCarriageReturn(journalContents.substring(lineStart, lineEnd));
+
+			if (line.startsWith(HEADER_GENERATION)) {
+				generation = parseNumber(line, HEADER_GENERATION);
+			} else if (line.startsWith(HEADER_BASE)) {
+				base = parseNumber(line, HEADER_BASE);
+			} else {
+				break;
+			}
+			lineStart = lineEnd + LINE_END_OF_LINE.length();
+		}
+
+		headerLength = lineStart;
+		return lineStart;
+	}
+
+	private int findEndOfLastCommit(String body) {
+		int endOfLastCommit = 0;
+		int lineStart = 0;
+		int lineEnd;
+
+		while ((lineEnd = body.indexOf(LINE_END_OF_LINE, lineStart)) >= 0) {
+			String line = stripCarriageReturn(body.substring(lineStart, lineEnd));
+			lineStart = lineEnd + LINE_END_OF_LINE.length();
+
+			if (line.equals(RECORD_COMMIT)) {
+				endOfLastCommit = lineStart;
+			}
+		}
+
+		return endOfLastCommit;
+	}
+
+	private int countBatches(String body) {
+		int batches = 0;
+		int commitAt = body.indexOf(RECORD_COMMIT + LINE_END_OF_LINE);
+
+		while (commitAt >= 0) {
+			if ((commitAt == 0) || (body.charAt(commitAt - 1) == LINE_END_OF_LINE.charAt(0))) {
+				batches++;
+			}
+			commitAt = body.indexOf(RECORD_COMMIT + LINE_END_OF_LINE, commitAt + 1);
+		}
+
+		return batches;
+	}
+
+	// Parses committed batches only, anything after the last commit record is left out
+	private List<String[]> parseRecords(String body) throws DataFormatException {
+		List<String[]> committed = new ArrayList<String[]>();
+		List<String[]> pendingBatch = new ArrayList<String[]>();
+
+		int lineStart = 0;
+		int lineEnd;
+
+		while ((lineEnd = body.indexOf(LINE_END_OF_LINE, lineStart)) >= 0) {
+			String line = stripCarriageReturn(body.substring(lineStart, lineEnd));
+			lineStart = lineEnd + LINE_END_OF_LINE.length();
+
+			if (line.equals(RECORD_COMMIT)) {
+				committed.addAll(pendingBatch);
+				pendingBatch.clear();
+			} else {
+				pendingBatch.add(parseRecord(line));
+			}
+		}
+
+		return committed;
+	}
+
+	private String[] parseRecord(String line) throws DataFormatException {
+		if (line.length() < RECORD_PREFIX_LENGTH
+				|| !line.startsWith(RECORD_DELIMITER, RECORD_TYPE_LENGTH)) {
+			throw new DataFormatException("Malformed journal record");
+		}
+
+		String recordType = line.substring(0, RECORD_TYPE_LENGTH);
+
+		if (!recordType.equals(RECORD_ADD) && !recordType.equals(RECORD_REMOVE)) {
+			throw new DataFormatException("Unknown journal record type");
+		}
+
+		String[] record = { recordType, line.substring(RECORD_PREFIX_LENGTH) };
+		return record;
+	}
+
+	private long parseNumber(String line, String header) throws DataFormatException {
+		try {
+			return Long.parseLong(line.substring(header.length()).trim());
+		} catch (NumberFormatException e) {
+			throw new DataFormatException("Malformed journal header");
+		}
+	}
+
+	// Positional read which does not disturb the file pointer used for appending
+	private String readBytes(long position, long length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+
+		while (buffer.hasRemaining()) {
+			int read = journalChannel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new IOException("Journal ended unexpectedly");
+			}
+		}
+
+		return new String(buffer.array(), StandardCharsets.ISO_8859_1);
+	}
+
+	private String stripCarriageReturn(String line) {
+		if (line.endsWith("\r")) {
+			return line.substring(0, line.length() - 1);
+		}
+		return line;
+	}
+
+}
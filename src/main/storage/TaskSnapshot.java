@@ -0,0 +1,356 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * TaskSnapshot.java
+ * An immutable view of every task in the database at one point in time.
+ * <p>
+ * Tasks are kept both by serial number, for lookups, and in display order, so listing them needs no sorting.
+ * The words of their names are kept in a KeywordIndex for keyword search,
+ * their dates in an IntervalIndex for date range search
+ * and their done and type flags in a FlagIndex.
+ * Keyword and flag searches give bitmaps of serial numbers that are combined before any task is fetched.
+ * Changes return a new snapshot that shares most of its structure with the old one,
+ * so readers holding the old snapshot are never affected by a change.
+ * Tasks are stored as ImmutableTask so they can be handed out directly.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import main.shared.ImmutableTask;
+import main.shared.Task;
+
+class TaskSnapshot {
+
+	// Order tasks are shown in. Tasks that compare equal are kept apart by their serial number.
+	static final Comparator<Task> DISPLAY_ORDER = new Comparator<Task>() {
+		@Override
+		public int compare(Task first, Task second) {
+			int comparison = first.compareTo(second);
+
+			if (comparison != 0) {
+				return comparison;
+			}
+			return Integer.compare(first.getSerial(), second.getSerial());
+		}
+	};
+
+	private static final Comparator<Integer> SERIAL_ORDER = new Comparator<Integer>() {
+		@Override
+		public int compare(Integer first, Integer second) {
+			return first.compareTo(second);
+		}
+	};
+
+	static final TaskSnapshot EMPTY = new TaskSnapshot(
+			new PersistentSortedMap<Integer, ImmutableTask>(SERIAL_ORDER),
+			new PersistentSortedMap<Task, ImmutableTask>(DISPLAY_ORDER),
+			KeywordIndex.EMPTY, IntervalIndex.EMPTY, FlagIndex.EMPTY);
+
+	// Above this share of all tasks, matches are picked out of the display order instead of sorted
+	private static final int SORT_LIMIT_DIVISOR = 8;
+
+	private final PersistentSortedMap<Integer, ImmutableTask> bySerial;
+	private final PersistentSortedMap<Task, ImmutableTask> inDisplayOrder;
+	private final KeywordIndex keywords;
+	private final IntervalIndex dates;
+	private final FlagIndex flags;
+
+	private TaskSnapshot(PersistentSortedMap<Integer, ImmutableTask> bySerial,
+			PersistentSortedMap<Task, ImmutableTask> inDisplayOrder, KeywordIndex keywords,
+			IntervalIndex dates, FlagIndex flags) {
+		this.bySerial = bySerial;
+		this.inDisplayOrder = inDisplayOrder;
+		this.keywords = keywords;
+		this.dates = dates;
+		this.flags = flags;
+	}
+
+	/**
+	 * Builds a snapshot in one pass. If a serial number appears more than once the last task is kept.
+	 *
+	 * @return a snapshot holding exactly these tasks, using immutable copies of any mutable ones
+	 */
+	static TaskSnapshot of(List<Task> tasks) {
+		Map<Integer, ImmutableTask> unique = new HashMap<Integer, ImmutableTask>();
+
+		for (Task current : tasks) {
+			unique.put(current.getSerial(), ImmutableTask.of(current));
+		}
+
+		List<Integer> serials = new ArrayList<Integer>(unique.keySet());
+		Collections.sort(serials, SERIAL_ORDER);
+
+		List<ImmutableTask> tasksBySerial = new ArrayList<ImmutableTask>(serials.size());
+		for (Integer currentSerial : serials) {
+			tasksBySerial.add(unique.get(currentSerial));
+		}
+
+		List<Task> sortedTasks = new ArrayList<Task>(tasksBySerial);
+		Collections.sort(sortedTasks, DISPLAY_ORDER);
+
+		List<ImmutableTask> tasksInDisplayOrder = new ArrayList<ImmutableTask>(sortedTasks.size());
+		for (Task current : sortedTasks) {
+			tasksInDisplayOrder.add((ImmutableTask) current);
+		}
+
+		return new TaskSnapshot(PersistentSortedMap.fromSorted(SERIAL_ORDER, serials, tasksBySerial),
+				PersistentSortedMap.fromSorted(DISPLAY_ORDER, sortedTasks, tasksInDisplayOrder),
+				KeywordIndex.build(tasksBySerial),
+				IntervalIndex.build(tasksInDisplayOrder),
+				FlagIndex.build(tasksBySerial));
+	}
+
+	/**
+	 * @return a snapshot with this task added, replacing any task with the same serial number
+	 */
+	TaskSnapshot with(ImmutableTask added) {
+		assert (added != null);
+		TaskSnapshot base = without(added.getSerial());
+
+		return new TaskSnapshot(base.bySerial.put(added.getSerial(), added),
+				base.inDisplayOrder.put(added, added),
+				base.keywords.with(added),
+				base.dates.with(added),
+				base.flags.with(added));
+	}
+
+	/**
+	 * @return a snapshot without the task of this serial number. The same snapshot if there is no such task.
+	 */
+	TaskSnapshot without(int serial) {
+		ImmutableTask removed = bySerial.get(serial);
+
+		if (removed == null) {
+			return this;
+		}
+
+		return new TaskSnapshot(bySerial.remove(serial), inDisplayOrder.remove(removed),
+				keywords.without(removed),
+				dates.without(removed),
+				flags.without(removed));
+	}
+
+	/**
+	 * @return the task with this serial number, or null if there is none
+	 */
+	ImmutableTask get(int serial) {
+		return bySerial.get(serial);
+	}
+
+	boolean contains(int serial) {
+		return bySerial.containsKey(serial);
+	}
+
+	int size() {
+		return bySerial.size();
+	}
+
+	/**
+	 * @return the task at this position in display order
+	 */
+	ImmutableTask getByIndex(int index) {
+		return inDisplayOrder.getByIndex(index);
+	}
+
+	/**
+	 * @return all tasks in display order, without copying the snapshot
+	 */
+	Iterable<ImmutableTask> inDisplayOrder() {
+		return inDisplayOrder;
+	}
+
+	/**
+	 * Finds the tasks whose names contain all the keywords using the keyword index
+	 *
+	 * @param keywordList keywords as given to Task.containsTerm
+	 * @return serial numbers of the matching tasks, or null if the index cannot answer these keywords
+	 */
+	CompressedBitmap findByKeywords(String[] keywordList) {
+		return keywords.find(keywordList);
+	}
+
+	/**
+	 * @return estimated number of tasks containing all the keywords, or null if the index cannot answer them
+	 */
+	Integer estimateByKeywords(String[] keywordList) {
+		return keywords.estimate(keywordList);
+	}
+
+	/**
+	 * @return serial numbers of the tasks using this lowercase word in their names
+	 */
+	CompressedBitmap findByWord(String wordLowerCase) {
+		return keywords.findWord(wordLowerCase);
+	}
+
+	/**
+	 * @return serial numbers of the tasks using this lowercase word more than once in their names
+	 */
+	CompressedBitmap findByRepeatedWord(String wordLowerCase) {
+		return keywords.findRepeatedWord(wordLowerCase);
+	}
+
+	/**
+	 * @return serial numbers of the tasks having a word starting with this lowercase keyword
+	 */
+	CompressedBitmap findByWordPrefix(String keywordLowerCase) {
+		return keywords.findWordPrefix(keywordLowerCase);
+	}
+
+	/**
+	 * @return serial numbers of the tasks having a word at most maxEdits edits away from this lowercase word
+	 */
+	CompressedBitmap findByFuzzyWord(String wordLowerCase, int maxEdits) {
+		return keywords.findFuzzy(wordLowerCase, maxEdits);
+	}
+
+	/**
+	 * @return estimated number of tasks having a word at most maxEdits edits away from this lowercase word
+	 */
+	int estimateByFuzzyWord(String wordLowerCase, int maxEdits) {
+		return keywords.estimateFuzzy(wordLowerCase, maxEdits);
+	}
+
+	/**
+	 * Finds the tasks meeting every flag that is set using the flag bitmaps
+	 *
+	 * @return serial numbers of the matching tasks. All tasks if no flag is set.
+	 */
+	CompressedBitmap findByFlags(boolean isDone, boolean isUndone, boolean isFloating,
+			boolean isDeadline, boolean isTimed) {
+		return flags.matching(isDone, isUndone, isFloating, isDeadline, isTimed);
+	}
+
+	/**
+	 * @return estimated number of tasks meeting every flag that is set
+	 */
+	int estimateByFlags(boolean isDone, boolean isUndone, boolean isFloating,
+			boolean isDeadline, boolean isTimed) {
+		return flags.estimateMatching(isDone, isUndone, isFloating, isDeadline, isTimed);
+	}
+
+	/**
+	 * Fetches the tasks of these serial numbers.
+	 * Few tasks are looked up and sorted, many are picked out while walking the display order.
+	 *
+	 * @param serials serial numbers of tasks in this snapshot
+	 * @return the tasks in display order
+	 */
+	List<ImmutableTask> tasksOf(CompressedBitmap serials) {
+		List<ImmutableTask> found = new ArrayList<ImmutableTask>(serials.cardinality());
+
+		if (serials.cardinality() > size() / SORT_LIMIT_DIVISOR) {
+			boolean isEveryTask = (serials.cardinality() == size());
+
+			for (ImmutableTask current : inDisplayOrder) {
+				if (isEveryTask || serials.contains(current.getSerial())) {
+					found.add(current);
+				}
+			}
+			return found;
+		}
+
+		for (int serial : serials.toArray()) {
+			found.add(bySerial.get(serial));
+		}
+
+		Collections.sort(found, DISPLAY_ORDER);
+
+		return found;
+	}
+
+	/**
+	 * @return the tasks whose serial numbers are in the bitmap, keeping their order
+	 */
+	static List<ImmutableTask> filter(List<ImmutableTask> tasks, CompressedBitmap serials) {
+		List<ImmutableTask> found = new ArrayList<ImmutableTask>(Math.min(tasks.size(), serials.cardinality()));
+
+		for (ImmutableTask current : tasks) {
+			if (serials.contains(current.getSerial())) {
+				found.add(current);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Finds the tasks clashing with the date range using the interval index
+	 *
+	 * @param startRange start of time range
+	 * @param endRange end of time range
+	 * @return the clashing tasks in display order, or null if the range is not valid for Task.clashesWithRange
+	 */
+	List<ImmutableTask> findClashing(DateTime startRange, DateTime endRange) {
+		if (!isIndexableRange(startRange, endRange)) {
+			return null;
+		}
+
+		return dates.overlapping(startRange.getMillis(), endRange.getMillis());
+	}
+
+	/**
+	 * @return estimated number of tasks clashing with the date range, or null if the range is not valid
+	 */
+	Integer estimateClashing(DateTime startRange, DateTime endRange) {
+		if (!isIndexableRange(startRange, endRange)) {
+			return null;
+		}
+
+		return dates.estimateOverlapping(startRange.getMillis(), endRange.getMillis());
+	}
+
+	/**
+	 * @return serial numbers of the tasks clashing with the range in epoch milliseconds, inclusive
+	 */
+	CompressedBitmap findClashingSerials(long rangeStart, long rangeEnd) {
+		List<ImmutableTask> clashing = dates.overlapping(rangeStart, rangeEnd);
+		int[] serials = new int[clashing.size()];
+
+		for (int i = 0; i < serials.length; i++) {
+			serials[i] = clashing.get(i).getSerial();
+		}
+
+		Arrays.sort(serials);
+
+		return CompressedBitmap.ofSorted(serials, serials.length);
+	}
+
+	/**
+	 * @return estimated number of tasks clashing with the range in epoch milliseconds
+	 */
+	int estimateClashing(long rangeStart, long rangeEnd) {
+		return dates.estimateOverlapping(rangeStart, rangeEnd);
+	}
+
+	private static boolean isIndexableRange(DateTime startRange, DateTime endRange) {
+		return (startRange != null) && (endRange != null)
+				&& !startRange.equals(Task.INVALID_DATE_FIELD)
+				&& !endRange.equals(Task.INVALID_DATE_FIELD)
+				&& !startRange.isAfter(endRange);
+	}
+
+	/**
+	 * @return a new list of all tasks in display order
+	 */
+	List<Task> toList() {
+		List<Task> tasks = new ArrayList<Task>(size());
+
+		for (ImmutableTask current : inDisplayOrder) {
+			tasks.add(current);
+		}
+
+		return tasks;
+	}
+
+}
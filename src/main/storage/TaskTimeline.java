@@ -0,0 +1,592 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * TaskTimeline.java
+ * Every state the database has been in, kept on disk so that the tasks as they were at any past moment can be read.
+ * <p>
+ * The file holds snapshot records with every task at that moment, and change records with the tasks one change
+ * removed and added. Each record starts with a "#" (snapshot) or "@" (change) line giving its time,
+ * then one "+" or "-" line per task, then a commit line. Records are only ever appended.
+ * <p>
+ * A snapshot is written in the background after every few changes, and at once whenever all tasks are replaced.
+ * The tasks at a past moment are the latest snapshot before it with the changes after that snapshot replayed,
+ * so reading them costs one snapshot and a few changes however long the timeline is.
+ * The file is read a chunk at a time. Once it grows past its size limit the records before a later snapshot
+ * are dropped in the background, so the oldest moments can no longer be read.
+ * Tasks are kept as lines of the database file format and matched by their contents,
+ * as serial numbers change each time the program is launched.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+
+import main.LogHandler;
+import main.shared.Task;
+
+public class TaskTimeline {
+
+	private static final String RECORD_SNAPSHOT = "#";
+	private static final String RECORD_CHANGE = "@";
+	private static final String RECORD_ADD = "+";
+	private static final String RECORD_REMOVE = "-";
+	private static final String RECORD_COMMIT = "=";
+	private static final String RECORD_DELIMITER = " | ";
+
+	private static final String LINE_END_OF_LINE = "\n";
+	private static final byte LINE_END_BYTE = '\n';
+	private static final int RECORD_PREFIX_LENGTH = RECORD_SNAPSHOT.length() + RECORD_DELIMITER.length();
+
+	private static final int READ_CHUNK_BYTES = 64 * 1024;
+	private static final String TEMPORARY_FILE_SUFFIX = ".compact";
+
+	// Share of the size limit left after the oldest records are dropped, so they are not dropped on every change
+	private static final double COMPACTED_SHARE = 0.75;
+
+	// Tries at writing a snapshot without holding up changes, before it is written while holding them up
+	private static final int MAX_BACKGROUND_SNAPSHOT_TRIES = 3;
+
+	// Changes after which a snapshot is written, so a past moment needs about as many changes replayed
+	public static int snapshotInterval = 100;
+
+	// Size the file may grow to before its oldest records are dropped
+	public static long maxBytes = 4 * 1024 * 1024;
+
+	private final File timelineFile;
+	private final FileManagement lineFormat = FileManagement.getInstance();
+	private Logger log = LogHandler.getLogInstance();
+
+	private RandomAccessFile timelineAccess = null;
+	private boolean isWritable = false;
+
+	// End of the last committed record. A read only file may have an uncommitted tail after it
+	private long endOfRecords = 0;
+
+	// Time and start in the file of every snapshot, oldest first
+	private final List<Long> snapshotTimes = new ArrayList<Long>();
+	private final List<Long> snapshotStarts = new ArrayList<Long>();
+
+	private int changesSinceSnapshot = 0;
+
+	// Tasks after the last change recorded and how many changes were recorded, for the background snapshot
+	private TaskSnapshot tasksNow = null;
+	private long changeCount = 0;
+
+	private final TimelineCompactor compactor = new TimelineCompactor(this);
+
+	public TaskTimeline(File timelineFile) {
+		assert (timelineFile != null);
+		this.timelineFile = timelineFile;
+	}
+
+	/**
+	 * Opens the timeline file, creating it if it does not exist.
+	 * A snapshot of the current tasks is written if the timeline does not end with them,
+	 * such as when it is new or the database file was changed while DoIt was not running.
+	 *
+	 * @param current the tasks in the database now
+	 * @throws IOException if the file cannot be opened or written
+	 */
+	public synchronized void open(List<Task> current) throws IOException {
+		assert (current != null);
+		log.info("Opening timeline " + timelineFile);
+
+		timelineAccess = new RandomAccessFile(timelineFile, "rw");
+		isWritable = true;
+
+		endOfRecords = findRecords();
+
+		if (endOfRecords < timelineAccess.length()) {
+			log.warning("Dropping uncommitted tail of timeline from byte " + endOfRecords);
+			timelineAccess.setLength(endOfRecords);
+		}
+
+		if (snapshotStarts.isEmpty() || !linesAsOf(Long.MAX_VALUE).equals(linesOf(current))) {
+			snapshot(current);
+		}
+
+		log.info("Timeline has " + snapshotStarts.size() + " snapshots");
+	}
+
+	/**
+	 * Opens the timeline file for reading only, for when another copy of DoIt holds the database
+	 * and so owns its timeline. Nothing is written, not even to drop an uncommitted tail.
+	 *
+	 * @throws IOException if the file does not exist or cannot be read
+	 */
+	public synchronized void openReadOnly() throws IOException {
+		log.info("Opening timeline read only " + timelineFile);
+
+		timelineAccess = new RandomAccessFile(timelineFile, "r");
+		isWritable = false;
+
+		endOfRecords = findRecords();
+
+		log.info("Timeline has " + snapshotStarts.size() + " snapshots");
+	}
+
+	public synchronized boolean isOpen() {
+		return timelineAccess != null;
+	}
+
+	/**
+	 * @return true if the timeline is open and changes can be recorded to it
+	 */
+	public synchronized boolean isWritable() {
+		return isOpen() && isWritable;
+	}
+
+	/**
+	 * Appends one change. A snapshot is started in the background if enough changes were made since the last one.
+	 *
+	 * @param removed tasks removed by the change, as they were before it
+	 * @param added tasks added by the change
+	 * @param after all tasks after the change
+	 * @throws IOException if the change cannot be written
+	 */
+	synchronized void record(List<Task> removed, List<Task> added, TaskSnapshot after) throws IOException {
+		assert (isOpen());
+		throwIfReadOnly();
+
+		StringBuilder record = new StringBuilder();
+		appendHeader(record, RECORD_CHANGE);
+		appendTasks(record, RECORD_REMOVE, removed);
+		appendTasks(record, RECORD_ADD, added);
+		record.append(RECORD_COMMIT + LINE_END_OF_LINE);
+
+		append(record);
+		tasksNow = after;
+		changeCount++;
+		changesSinceSnapshot++;
+
+		requestCompactionIfDue();
+	}
+
+	/**
+	 * Appends a snapshot of every task, such as when all tasks are replaced at once
+	 *
+	 * @param all every task in the database now
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public synchronized void snapshot(List<Task> all) throws IOException {
+		assert (isOpen());
+		throwIfReadOnly();
+
+		StringBuilder tasks = new StringBuilder();
+		appendTasks(tasks, RECORD_ADD, all);
+		appendSnapshot(tasks);
+
+		requestCompactionIfDue();
+	}
+
+	/**
+	 * Writes the snapshot that is due after enough changes, then drops the oldest records
+	 * if the file has grown past its size limit. Runs on the background thread of the compactor.
+	 */
+	void compact() {
+		try {
+			writeDueSnapshot();
+			dropOldestIfTooLarge();
+		} catch (IOException e) {
+			log.warning("Cannot compact timeline, past tasks will no longer be kept " + e);
+			close();
+		}
+	}
+
+	/**
+	 * Check if a snapshot or the dropping of old records is waiting or running
+	 *
+	 * @return true if compaction has not completed
+	 */
+	public boolean isCompactionPending() {
+		return compactor.isCompactionPending();
+	}
+
+	/**
+	 * Reads the tasks as they were at a moment. The database is not touched.
+	 *
+	 * @param timeMillis the moment, in epoch milliseconds
+	 * @return new tasks as they were at that moment, none if it is before the timeline starts
+	 * @throws IOException if the timeline cannot be read or is malformed
+	 */
+	public synchronized List<Task> tasksAsOf(long timeMillis) throws IOException {
+		assert (isOpen());
+
+		List<Task> tasks = new ArrayList<Task>();
+
+		try {
+			for (Map.Entry<String, Integer> line : linesAsOf(timeMillis).entrySet()) {
+				for (int i = 0; i < line.getValue(); i++) {
+					tasks.add(lineFormat.lineToTask(line.getKey()));
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed timeline record", e);
+		}
+
+		return tasks;
+	}
+
+	public synchronized void close() {
+		try {
+			if (timelineAccess != null) {
+				timelineAccess.close();
+			}
+		} catch (IOException e) {
+			log.severe("Cannot close timeline " + e);
+		}
+		timelineAccess = null;
+	}
+
+	private void requestCompactionIfDue() {
+		if (isSnapshotDue() || (endOfRecords > maxBytes)) {
+			compactor.requestCompaction();
+		}
+	}
+
+	private boolean isSnapshotDue() {
+		return (changesSinceSnapshot >= snapshotInterval) && (tasksNow != null);
+	}
+
+	// The tasks are written out without holding up changes and only appended if no change came in meanwhile
+	private void writeDueSnapshot() throws IOException {
+		for (int i = 0; i < MAX_BACKGROUND_SNAPSHOT_TRIES; i++) {
+			TaskSnapshot toWrite;
+			long asOfChange;
+
+			synchronized (this) {
+				if (!isWritable() || !isSnapshotDue()) {
+					return;
+				}
+				toWrite = tasksNow;
+				asOfChange = changeCount;
+			}
+
+			StringBuilder tasks = new StringBuilder();
+			appendTasks(tasks, RECORD_ADD, toWrite.toList());
+
+			synchronized (this) {
+				if (!isWritable() || !isSnapshotDue()) {
+					return;
+				}
+				if (changeCount == asOfChange) {
+					appendSnapshot(tasks);
+					return;
+				}
+			}
+		}
+
+		// Changes keep coming in, so they wait for this one snapshot
+		synchronized (this) {
+			if (isWritable() && isSnapshotDue()) {
+				StringBuilder tasks = new StringBuilder();
+				appendTasks(tasks, RECORD_ADD, tasksNow.toList());
+				appendSnapshot(tasks);
+			}
+		}
+	}
+
+	private synchronized void dropOldestIfTooLarge() throws IOException {
+		if (!isWritable() || (endOfRecords <= maxBytes)) {
+			return;
+		}
+
+		long targetBytes = (long) (maxBytes * COMPACTED_SHARE);
+		int firstKept = 0;
+
+		// The newest snapshot is always kept so the tasks now can still be read
+		while ((firstKept < snapshotStarts.size() - 1) && (endOfRecords - snapshotStarts.get(firstKept) > targetBytes)) {
+			firstKept++;
+		}
+
+		if (firstKept > 0) {
+			dropBefore(firstKept);
+		}
+	}
+
+	// Writes the file again from the given snapshot on and swaps it in. The file is closed first so it can be replaced
+	private void dropBefore(int firstKept) throws IOException {
+		long keepFrom = snapshotStarts.get(firstKept);
+		long keptLength = endOfRecords - keepFrom;
+
+		File shortened = new File(timelineFile.getPath() + TEMPORARY_FILE_SUFFIX);
+		RandomAccessFile shortenedAccess = new RandomAccessFile(shortened, "rw");
+		try {
+			shortenedAccess.setLength(0);
+			FileChannel source = timelineAccess.getChannel();
+			FileChannel destination = shortenedAccess.getChannel();
+
+			long copied = 0;
+			while (copied < keptLength) {
+				long transferred = source.transferTo(keepFrom + copied, keptLength - copied, destination);
+				if (transferred <= 0) {
+					throw new IOException("Timeline ended unexpectedly");
+				}
+				copied += transferred;
+			}
+			destination.force(true);
+		} finally {
+			shortenedAccess.close();
+		}
+
+		timelineAccess.close();
+		timelineAccess = null;
+
+		try {
+			Files.move(shortened.toPath(), timelineFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			timelineAccess = new RandomAccessFile(timelineFile, "rw");
+		}
+
+		List<Long> remainingStarts = new ArrayList<Long>();
+		for (int i = firstKept; i < snapshotStarts.size(); i++) {
+			remainingStarts.add(snapshotStarts.get(i) - keepFrom);
+		}
+		snapshotStarts.clear();
+		snapshotStarts.addAll(remainingStarts);
+		snapshotTimes.subList(0, firstKept).clear();
+		endOfRecords = keptLength;
+
+		log.info("Dropped " + firstKept + " oldest timeline snapshots and the changes after them");
+	}
+
+	private void appendSnapshot(StringBuilder tasks) throws IOException {
+		StringBuilder record = new StringBuilder();
+		long time = appendHeader(record, RECORD_SNAPSHOT);
+		record.append(tasks);
+		record.append(RECORD_COMMIT + LINE_END_OF_LINE);
+
+		long start = append(record);
+		snapshotTimes.add(time);
+		snapshotStarts.add(start);
+		changesSinceSnapshot = 0;
+	}
+
+	private void throwIfReadOnly() throws IOException {
+		if (!isWritable) {
+			throw new IOException("Timeline file is read only");
+		}
+	}
+
+	// Replays the changes after the latest snapshot at or before the moment, giving how many of each line there were
+	private Map<String, Integer> linesAsOf(long timeMillis) throws IOException {
+		Map<String, Integer> lines = new HashMap<String, Integer>();
+		int snapshot = latestSnapshotAtOrBefore(timeMillis);
+
+		if (snapshot < 0) {
+			return lines;
+		}
+
+		long start = snapshotStarts.get(snapshot);
+		long end = (snapshot + 1 < snapshotStarts.size()) ? snapshotStarts.get(snapshot + 1) : endOfRecords;
+		LineReader reader = new LineReader(start, end);
+		String line;
+		boolean isPastMoment = false;
+
+		while (!isPastMoment && ((line = reader.readLine()) != null)) {
+			if (line.equals(RECORD_COMMIT)) {
+				continue;
+			}
+
+			if (line.length() < RECORD_PREFIX_LENGTH) {
+				throw new IOException("Malformed timeline record");
+			}
+
+			String value = line.substring(RECORD_PREFIX_LENGTH);
+
+			if (line.startsWith(RECORD_CHANGE)) {
+				isPastMoment = parseTime(value) > timeMillis;
+			} else if (line.startsWith(RECORD_ADD)) {
+				Integer count = lines.get(value);
+				lines.put(value, (count == null) ? 1 : count + 1);
+			} else if (line.startsWith(RECORD_REMOVE)) {
+				Integer count = lines.get(value);
+
+				if (count == null) {
+					throw new IOException("Timeline removes a task it does not have");
+				} else if (count == 1) {
+					lines.remove(value);
+				} else {
+					lines.put(value, count - 1);
+				}
+			} else if (!line.startsWith(RECORD_SNAPSHOT)) {
+				throw new IOException("Unknown timeline record");
+			}
+		}
+
+		return lines;
+	}
+
+	private Map<String, Integer> linesOf(List<Task> tasks) {
+		Map<String, Integer> lines = new HashMap<String, Integer>();
+
+		for (Task current : tasks) {
+			String line = lineFormat.taskToLine(current);
+			Integer count = lines.get(line);
+			lines.put(line, (count == null) ? 1 : count + 1);
+		}
+
+		return lines;
+	}
+
+	private int latestSnapshotAtOrBefore(long timeMillis) {
+		int low = 0;
+		int high = snapshotTimes.size() - 1;
+		int found = -1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+
+			if (snapshotTimes.get(middle) <= timeMillis) {
+				found = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		return found;
+	}
+
+	// Notes every committed snapshot and the changes after the last one, and returns where the last record ends
+	private long findRecords() throws IOException {
+		snapshotTimes.clear();
+		snapshotStarts.clear();
+		changesSinceSnapshot = 0;
+
+		LineReader lines = new LineReader(0, timelineAccess.length());
+
+		long endOfLastCommit = 0;
+		long recordStart = -1;
+		String recordHeader = null;
+		String line;
+
+		while ((line = lines.readLine()) != null) {
+			if (line.startsWith(RECORD_SNAPSHOT + RECORD_DELIMITER) || line.startsWith(RECORD_CHANGE + RECORD_DELIMITER)) {
+				recordStart = lines.getLineStart();
+				recordHeader = line;
+			} else if (line.equals(RECORD_COMMIT) && (recordStart >= 0)) {
+				if (recordHeader.startsWith(RECORD_SNAPSHOT)) {
+					snapshotTimes.add(parseTime(recordHeader.substring(RECORD_PREFIX_LENGTH)));
+					snapshotStarts.add(recordStart);
+					changesSinceSnapshot = 0;
+				} else {
+					changesSinceSnapshot++;
+				}
+				endOfLastCommit = lines.getNextLineStart();
+				recordStart = -1;
+			}
+		}
+
+		return endOfLastCommit;
+	}
+
+	private long parseTime(String value) throws IOException {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed timeline time", e);
+		}
+	}
+
+	// Records never go back in time, so that a past moment has a single latest snapshot
+	private long appendHeader(StringBuilder record, String type) {
+		long time = System.currentTimeMillis();
+
+		if (!snapshotTimes.isEmpty()) {
+			time = Math.max(time, snapshotTimes.get(snapshotTimes.size() - 1));
+		}
+
+		record.append(type + RECORD_DELIMITER + time + LINE_END_OF_LINE);
+		return time;
+	}
+
+	private void appendTasks(StringBuilder record, String type, List<Task> tasks) {
+		for (Task current : tasks) {
+			record.append(type + RECORD_DELIMITER + lineFormat.taskToLine(current) + LINE_END_OF_LINE);
+		}
+	}
+
+	private long append(StringBuilder record) throws IOException {
+		long start = timelineAccess.length();
+		timelineAccess.seek(start);
+		timelineAccess.write(record.toString().getBytes(StandardCharsets.ISO_8859_1));
+		endOfRecords = timelineAccess.length();
+		return start;
+	}
+
+	// Reads the lines between two points of the file a chunk at a time, so the file is never held in memory.
+	// A line not ended before the end point is left unread.
+	private class LineReader {
+		private final long end;
+		private final byte[] chunk = new byte[READ_CHUNK_BYTES];
+		private long chunkStart;
+		private int chunkLength = 0;
+		private int position = 0;
+
+		private long lineStart;
+		private long nextLineStart;
+
+		LineReader(long start, long end) {
+			this.chunkStart = start;
+			this.end = end;
+			this.nextLineStart = start;
+		}
+
+		// Gives the next line without its end of line, or null if there is none
+		String readLine() throws IOException {
+			StringBuilder line = new StringBuilder();
+
+			while (true) {
+				if (position == chunkLength) {
+					chunkStart += chunkLength;
+					if (chunkStart >= end) {
+						return null;
+					}
+					chunkLength = (int) Math.min(chunk.length, end - chunkStart);
+					position = 0;
+					timelineAccess.seek(chunkStart);
+					timelineAccess.readFully(chunk, 0, chunkLength);
+				}
+
+				int lineEnd = position;
+				while ((lineEnd < chunkLength) && (chunk[lineEnd] != LINE_END_BYTE)) {
+					lineEnd++;
+				}
+				line.append(new String(chunk, position, lineEnd - position, StandardCharsets.ISO_8859_1));
+
+				if (lineEnd < chunkLength) {
+					position = lineEnd + 1;
+					lineStart = nextLineStart;
+					nextLineStart = chunkStart + position;
+					return line.toString();
+				}
+				position = chunkLength;
+			}
+		}
+
+		// Start in the file of the line last read
+		long getLineStart() {
+			return lineStart;
+		}
+
+		// Start in the file of the line after the one last read
+		long getNextLineStart() {
+			return nextLineStart;
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * TaskUpdate.java
+ * A change made to each task picked by a bulk update of the database, such as marking it done.
+ * <p>
+ * The update may also leave a task as it is, so that a test the indexes cannot answer can be made on each task,
+ * or delete it.
+ * @author  Yeo Kheng Meng
+ */
+
+import main.shared.ImmutableTask;
+import main.shared.Task;
+
+public interface TaskUpdate {
+
+	/**
+	 * @param current a task picked by the bulk update
+	 * @return the changed task with the same serial number, the same task to leave it as it is, or null to delete it
+	 */
+	Task apply(ImmutableTask current);
+
+}
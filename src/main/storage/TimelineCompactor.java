@@ -0,0 +1,75 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * TimelineCompactor.java
+ * Writes the periodic snapshots of the timeline and drops its oldest records on a background thread,
+ * so that a command never waits for every task to be written out.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import main.LogHandler;
+
+class TimelineCompactor {
+
+	private static final String THREAD_NAME = "DoIt timeline compactor";
+
+	private TaskTimeline timeline;
+	private ExecutorService compactionThread;
+	private AtomicBoolean isCompactionPending = new AtomicBoolean(false);
+
+	private Logger log = LogHandler.getLogInstance();
+
+	TimelineCompactor(TaskTimeline timeline) {
+		assert (timeline != null);
+		this.timeline = timeline;
+
+		compactionThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable toRun) {
+				Thread compactor = new Thread(toRun, THREAD_NAME);
+				compactor.setDaemon(true);
+				compactor.setPriority(Thread.MIN_PRIORITY);
+				return compactor;
+			}
+		});
+	}
+
+	/**
+	 * Starts a compaction in the background. No effect if one is already waiting or running.
+	 */
+	void requestCompaction() {
+		if (!isCompactionPending.compareAndSet(false, true)) {
+			return;
+		}
+
+		log.info("Timeline compaction requested");
+
+		compactionThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					timeline.compact();
+				} finally {
+					isCompactionPending.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Check if a compaction is waiting or running
+	 *
+	 * @return true if compaction has not completed
+	 */
+	boolean isCompactionPending() {
+		return isCompactionPending.get();
+	}
+
+}
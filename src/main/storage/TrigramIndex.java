@@ -0,0 +1,179 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * TrigramIndex.java
+ * An immutable index from every 3 character sequence to the words containing it.
+ * <p>
+ * Any term of 3 or more characters can only be inside a word that contains all of the term's trigrams,
+ * so intersecting their word sets gives a small list of candidates to check with String.contains.
+ * Shorter terms have no trigram and must be checked against every word.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class TrigramIndex {
+
+	static final int TRIGRAM_LENGTH = 3;
+
+	private static final Comparator<String> TEXT_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String first, String second) {
+			return first.compareTo(second);
+		}
+	};
+
+	static final TrigramIndex EMPTY = new TrigramIndex(
+			new PersistentSortedMap<String, PersistentSortedMap<String, String>>(TEXT_ORDER));
+
+	private final PersistentSortedMap<String, PersistentSortedMap<String, String>> wordsOfTrigram;
+
+	private TrigramIndex(PersistentSortedMap<String, PersistentSortedMap<String, String>> wordsOfTrigram) {
+		this.wordsOfTrigram = wordsOfTrigram;
+	}
+
+	/**
+	 * Builds the index of these distinct words in one pass
+	 */
+	static TrigramIndex build(Collection<String> words) {
+		Map<String, List<String>> grouped = new HashMap<String, List<String>>();
+
+		for (String word : words) {
+			for (String trigram : trigramsOf(word)) {
+				List<String> wordsWithTrigram = grouped.get(trigram);
+
+				if (wordsWithTrigram == null) {
+					wordsWithTrigram = new ArrayList<String>();
+					grouped.put(trigram, wordsWithTrigram);
+				}
+				wordsWithTrigram.add(word);
+			}
+		}
+
+		List<String> trigrams = new ArrayList<String>(grouped.keySet());
+		Collections.sort(trigrams, TEXT_ORDER);
+
+		List<PersistentSortedMap<String, String>> wordSets =
+				new ArrayList<PersistentSortedMap<String, String>>(trigrams.size());
+
+		for (String trigram : trigrams) {
+			List<String> wordsWithTrigram = grouped.get(trigram);
+			Collections.sort(wordsWithTrigram, TEXT_ORDER);
+			wordSets.add(PersistentSortedMap.fromSorted(TEXT_ORDER, wordsWithTrigram, wordsWithTrigram));
+		}
+
+		return new TrigramIndex(PersistentSortedMap.fromSorted(TEXT_ORDER, trigrams, wordSets));
+	}
+
+	/**
+	 * @return an index with this word added
+	 */
+	TrigramIndex with(String word) {
+		PersistentSortedMap<String, PersistentSortedMap<String, String>> changed = wordsOfTrigram;
+
+		for (String trigram : trigramsOf(word)) {
+			PersistentSortedMap<String, String> existing = changed.get(trigram);
+
+			if (existing == null) {
+				existing = new PersistentSortedMap<String, String>(TEXT_ORDER);
+			}
+			changed = changed.put(trigram, existing.put(word, word));
+		}
+
+		return new TrigramIndex(changed);
+	}
+
+	/**
+	 * @return an index with this word removed
+	 */
+	TrigramIndex without(String word) {
+		PersistentSortedMap<String, PersistentSortedMap<String, String>> changed = wordsOfTrigram;
+
+		for (String trigram : trigramsOf(word)) {
+			PersistentSortedMap<String, String> existing = changed.get(trigram);
+
+			if (existing == null) {
+				continue;
+			}
+
+			PersistentSortedMap<String, String> remaining = existing.remove(word);
+
+			if (remaining.isEmpty()) {
+				changed = changed.remove(trigram);
+			} else {
+				changed = changed.put(trigram, remaining);
+			}
+		}
+
+		return new TrigramIndex(changed);
+	}
+
+	/**
+	 * Finds the words that may contain the term. Every word containing the term is returned,
+	 * but the caller must still check each word with String.contains.
+	 *
+	 * @param term lowercased term without whitespace
+	 * @return candidate words, or null if the term is too short to use the index
+	 */
+	List<String> candidates(String term) {
+		if (term.length() < TRIGRAM_LENGTH) {
+			return null;
+		}
+
+		List<PersistentSortedMap<String, String>> wordSets = new ArrayList<PersistentSortedMap<String, String>>();
+		PersistentSortedMap<String, String> smallest = null;
+
+		for (String trigram : trigramsOf(term)) {
+			PersistentSortedMap<String, String> wordsWithTrigram = wordsOfTrigram.get(trigram);
+
+			if (wordsWithTrigram == null) {
+				return new ArrayList<String>();
+			}
+
+			wordSets.add(wordsWithTrigram);
+
+			if ((smallest == null) || (wordsWithTrigram.size() < smallest.size())) {
+				smallest = wordsWithTrigram;
+			}
+		}
+
+		List<String> found = new ArrayList<String>();
+
+		for (String word : smallest) {
+			if (isInAll(word, wordSets)) {
+				found.add(word);
+			}
+		}
+
+		return found;
+	}
+
+	private static boolean isInAll(String word, List<PersistentSortedMap<String, String>> wordSets) {
+		for (PersistentSortedMap<String, String> wordsWithTrigram : wordSets) {
+			if (!wordsWithTrigram.containsKey(word)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Set<String> trigramsOf(String text) {
+		Set<String> trigrams = new LinkedHashSet<String>();
+
+		for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+			trigrams.add(text.substring(i, i + TRIGRAM_LENGTH));
+		}
+
+		return trigrams;
+	}
+
+}
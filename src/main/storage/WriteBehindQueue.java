@@ -0,0 +1,221 @@
+//@author A0081007U
+package main.storage;
+
+/**
+ * WriteBehindQueue.java
+ * Holds database writes that have been accepted but not yet written to disk,
+ * and writes them out on a dedicated writer thread.
+ * <p>
+ * The writer waits up to the group commit delay for more writes to arrive and then
+ * writes the whole window in one go, so a burst of changes costs a single flush to disk.
+ * A failed write is kept and reported to the next caller.
+ * <p>
+ * The writes are handed to a WindowWriter, which is FileManagement outside of tests.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import main.LogHandler;
+import main.shared.Task;
+
+public class WriteBehindQueue {
+
+	private static final String THREAD_NAME = "DoIt database writer";
+
+	/**
+	 * One accepted write. Either a full snapshot of the database or a change for the journal.
+	 */
+	public static class PendingWrite {
+		private final List<Task> snapshot;
+		private final List<Task> removed;
+		private final List<Task> added;
+
+		private PendingWrite(List<Task> snapshot, List<Task> removed, List<Task> added) {
+			this.snapshot = snapshot;
+			this.removed = removed;
+			this.added = added;
+		}
+
+		public boolean isSnapshot() {
+			return snapshot != null;
+		}
+
+		public List<Task> getSnapshot() {
+			return snapshot;
+		}
+
+		public List<Task> getRemoved() {
+			return removed;
+		}
+
+		public List<Task> getAdded() {
+			return added;
+		}
+	}
+
+	/**
+	 * Writes out one window of accepted writes, in the order they were accepted.
+	 */
+	public interface WindowWriter {
+		void writeWindow(List<PendingWrite> window) throws IOException, WillNotWriteToCorruptFileException;
+	}
+
+	private WindowWriter diskFile;
+	private long groupCommitDelay;
+
+	private LinkedList<PendingWrite> pendingWrites = new LinkedList<PendingWrite>();
+	private boolean isWriting = false;
+	private boolean isShutdown = false;
+	private boolean isFlushRequested = false;
+	private IOException writeFailure = null;
+
+	private Thread writerThread;
+
+	private Logger log = LogHandler.getLogInstance();
+
+	public WriteBehindQueue(WindowWriter diskFile, long groupCommitDelay) {
+		assert (diskFile != null);
+		assert (groupCommitDelay >= 0);
+
+		this.diskFile = diskFile;
+		this.groupCommitDelay = groupCommitDelay;
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeUntilShutdown();
+			}
+		}, THREAD_NAME);
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public synchronized void enqueueSnapshot(List<Task> snapshot) {
+		assert (snapshot != null);
+		enqueue(new PendingWrite(snapshot, null, null));
+	}
+
+	public synchronized void enqueueChange(List<Task> removed, List<Task> added) {
+		assert (removed != null);
+		assert (added != null);
+		enqueue(new PendingWrite(null, removed, added));
+	}
+
+	/**
+	 * Throws the failure of an earlier write if there was one. The failure is only reported once.
+	 *
+	 * @throws IOException the failure of an earlier write
+	 */
+	public synchronized void throwWriteFailure() throws IOException {
+		if (writeFailure != null) {
+			IOException failure = writeFailure;
+			writeFailure = null;
+			throw failure;
+		}
+	}
+
+	/**
+	 * Waits until every accepted write has been written to disk
+	 *
+	 * @throws IOException if any of the writes failed
+	 */
+	public synchronized void flush() throws IOException {
+		while (!pendingWrites.isEmpty() || isWriting) {
+			isFlushRequested = true;
+			notifyAll();
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for writes to complete");
+			}
+		}
+
+		throwWriteFailure();
+	}
+
+	/**
+	 * Writes out everything still queued and stops the writer thread
+	 */
+	public void shutdown() {
+		try {
+			flush();
+		} catch (IOException e) {
+			log.severe("Queued writes lost on shutdown " + e);
+		}
+
+		synchronized (this) {
+			isShutdown = true;
+			notifyAll();
+		}
+	}
+
+	private void enqueue(PendingWrite toWrite) {
+		if (isShutdown) {
+			throw new IllegalStateException("Writer already shut down");
+		}
+
+		pendingWrites.add(toWrite);
+		notifyAll();
+	}
+
+	private void writeUntilShutdown() {
+		while (true) {
+			List<PendingWrite> window = takeWindow();
+
+			if (window == null) {
+				return;
+			}
+
+			try {
+				diskFile.writeWindow(window);
+			} catch (IOException | WillNotWriteToCorruptFileException e) {
+				log.severe("Write behind failed " + e);
+				synchronized (this) {
+					writeFailure = new IOException(e);
+				}
+			}
+
+			synchronized (this) {
+				isWriting = false;
+				notifyAll();
+			}
+		}
+	}
+
+	// Waits for the first write, then gathers everything that arrives within the group commit delay
+	private synchronized List<PendingWrite> takeWindow() {
+		try {
+			while (pendingWrites.isEmpty()) {
+				if (isShutdown) {
+					return null;
+				}
+				wait();
+			}
+
+			long windowEnd = System.currentTimeMillis() + groupCommitDelay;
+			long remaining = groupCommitDelay;
+
+			while (remaining > 0 && !isShutdown && !isFlushRequested) {
+				wait(remaining);
+				remaining = windowEnd - System.currentTimeMillis();
+			}
+		} catch (InterruptedException e) {
+			log.warning("Writer interrupted, writing window early");
+		}
+
+		List<PendingWrite> window = new ArrayList<PendingWrite>(pendingWrites);
+		pendingWrites.clear();
+		isWriting = true;
+		isFlushRequested = false;
+
+		log.info("Writing window of " + window.size() + " writes");
+		return window;
+	}
+
+}
@@ -0,0 +1,88 @@
+//@author A0081007U
+package main.ui;
+
+/**  
+ * BatchCli.java
+ * A class for running a script of commands as one batch, read from a file or from standard input.
+ * <p>
+ * The commands run between a begin and a commit, so they are saved in one write and undone as one.
+ * If any command fails, the whole batch is rolled back and the rest of the script is not run.
+ * @author  Yeo Kheng Meng
+ */
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public class BatchCli extends Cli {
+
+	private static final String COMMAND_BEGIN = "begin";
+	private static final String COMMAND_COMMIT = "commit";
+	private static final String COMMAND_ROLLBACK = "rollback";
+
+	private static final String MESSAGE_CANNOT_READ = "Cannot read the batch of commands: %1$s";
+	private static final String MESSAGE_STOPPED = "The batch stopped at line %1$d: \"%2$s\"";
+
+	// Null to read from standard input
+	private final String batchFilename;
+
+	public BatchCli(String batchFilename) {
+		this.batchFilename = batchFilename;
+	}
+
+	public void runUI() {
+		System.out.println(super.checkFilePermissions());
+
+		try {
+			runBatch();
+		} catch (IOException e) {
+			log.warning("Cannot read batch " + e);
+			System.out.println(String.format(MESSAGE_CANNOT_READ, e.getMessage()));
+		}
+
+		super.exit();
+	}
+
+	private void runBatch() throws IOException {
+		InputStream input = (batchFilename == null) ? System.in : new FileInputStream(batchFilename);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+		try {
+			System.out.println(passMessageToLogic(COMMAND_BEGIN));
+
+			String lineFromInput;
+			int lineNumber = 0;
+
+			while ((lineFromInput = reader.readLine()) != null) {
+				lineNumber++;
+				lineFromInput = lineFromInput.trim();
+
+				if (lineFromInput.isEmpty()) {
+					continue;
+				}
+
+				log.info("Received this batch command \"" + lineFromInput + "\"");
+				System.out.println(passMessageToLogic(lineFromInput));
+
+				//The script may end the batch itself
+				String commandWord = lineFromInput.split(COMMAND_GAPS, 2)[0].toLowerCase();
+				if (commandWord.equals(COMMAND_COMMIT) || commandWord.equals(COMMAND_ROLLBACK)) {
+					return;
+				}
+
+				if (!isInBatch()) {
+					System.out.println(String.format(MESSAGE_STOPPED, lineNumber, lineFromInput));
+					return;
+				}
+			}
+
+			System.out.println(passMessageToLogic(COMMAND_COMMIT));
+		} finally {
+			reader.close();
+		}
+	}
+
+}
@@ -48,6 +48,9 @@ public class Cli extends UI{
 	protected static final String TABLE_ENTRY_DONE = "*";
 	protected static final String TABLE_EMPTY_DATE_FIELD = "        -        ";
 	
+	// Number of tasks read from the listing at a time
+	private static final int TABLE_PAGE_SIZE = 100;
+	
 	protected final String LINE_BREAK = System.getProperty("line.separator");
 
 	Scanner scan = new Scanner(System.in);
@@ -136,7 +139,7 @@ public class Cli extends UI{
 	protected String formatTaskListToString(LogicToUi logicReturn) {
 		assert(logicReturn != null);
 
-		List<Task> listResults = logicReturn.getList();
+		int listSize = logicReturn.getList().size();
 
 		StringBuffer screenTable = new StringBuffer();
 
@@ -146,19 +149,25 @@ public class Cli extends UI{
 		screenTable.append(TABLE_ROW_DEMARCATION + LINE_BREAK);
 
 
-		for(int index = 0; index < listResults.size(); index++)
+		//The listing is read a page at a time, so only one page of tasks is fetched at once
+		for(int pageStart = 0; pageStart < listSize; pageStart += TABLE_PAGE_SIZE)
 		{
-			Task entry = listResults.get(index);
-			int numberShown = index + 1; //To allow number to start from 1 on the screen
-
-			String entryOutput = formatTaskEntry(entry, numberShown);
-			screenTable.append(entryOutput + LINE_BREAK);
-
-			//If last entry, show the table bottom instead
-			if(numberShown == listResults.size()) {
-				screenTable.append(TABLE_TOP_AND_BOTTOM + LINE_BREAK);
-			} else {
-				screenTable.append(TABLE_ROW_DEMARCATION + LINE_BREAK);
+			List<Task> page = logicReturn.getPage(pageStart, TABLE_PAGE_SIZE);
+
+			for(int i = 0; i < page.size(); i++)
+			{
+				Task entry = page.get(i);
+				int numberShown = pageStart + i + 1; //To allow number to start from 1 on the screen
+
+				String entryOutput = formatTaskEntry(entry, numberShown);
+				screenTable.append(entryOutput + LINE_BREAK);
+
+				//If last entry, show the table bottom instead
+				if(numberShown == listSize) {
+					screenTable.append(TABLE_TOP_AND_BOTTOM + LINE_BREAK);
+				} else {
+					screenTable.append(TABLE_ROW_DEMARCATION + LINE_BREAK);
+				}
 			}
 		}
 
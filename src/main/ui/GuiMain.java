@@ -82,6 +82,8 @@ public class GuiMain extends GuiCommandBox{
 	private static final String FIRST_LAUNCH_NO_TASKS_DATED = "Ooops! There nothing to show here. Why not add some tasks?";
 	private static final String NOTHING_TO_SHOW_UNDATED = "Nothing here";
 	private static final String NOTHING_TO_SHOW_DATED = "Ooops! There nothing to show here. Click the home button to see all your tasks.";
+	private static final String LOADING_TASKS_UNDATED = "Loading...";
+	private static final String LOADING_TASKS_DATED = "Loading your tasks...";
 	
 	private static final int KEYBOARD_PAGE_OVERLAP = 50;
 	private static final int KEYBOARD_PAGE_OFFSET = 200;
@@ -480,7 +482,10 @@ public class GuiMain extends GuiCommandBox{
 		// First launch 
 		lastShownCalendarDate = new DateTime();
 		List<Task> firstLaunchTasks = sendCommandToLogic("refresh").getList();
-		if(firstLaunchTasks.isEmpty()){
+		if(isLoadingTasks()){
+			txtDatedTasks.setText(LOADING_TASKS_DATED);
+			txtUndatedTasks.setText(LOADING_TASKS_UNDATED);
+		}else if(firstLaunchTasks.isEmpty()){
 			//txtDatedTasks.setText(Hint.getInstance().helpForThisCommandHTML("help"));
 			txtDatedTasks.setText(FIRST_LAUNCH_NO_TASKS_DATED);
 			txtUndatedTasks.setText(FIRST_LAUNCH_NO_TASKS_UNDATED);
@@ -540,7 +545,7 @@ public class GuiMain extends GuiCommandBox{
 	
 	public void updateWindow(Object source) {
 		log.entering(this.getClass().getName(), "updateWindow");
-		if(source != this){
+		if(source != this && !isLoadingTasks()){
 			LogicToUi result = sendCommandToLogic("refresh");
 			showTasksList(result.getList());
 			showStatus(result.getString());
@@ -550,6 +555,11 @@ public class GuiMain extends GuiCommandBox{
 	}
 	
 	public void update(LogicToUi returnValue) {
+		if(isLoadingTasks()){
+			showStatus(returnValue.getString());
+			return;
+		}
+		
 		List<Task> refreshedList = sendCommandToLogic("refresh").getList();
 		showTasksList(refreshedList, returnValue.getLastChangedSerial());
 		showStatus(returnValue.getString());
@@ -894,6 +904,9 @@ public class GuiMain extends GuiCommandBox{
 		}
 	}
 
+	//@author A0081007U
+	// The rows are made from the tasks a page at a time as the table asks for them,
+	// so only the rows around those on screen are read from the listing
 	class MyTableModel extends AbstractTableModel {
 		public static final long serialVersionUID = 8328597110205703514L;
 		public static final int COL_INDEX = 0;
@@ -901,14 +914,21 @@ public class GuiMain extends GuiCommandBox{
 		public static final int COL_START = 2;
 		public static final int COL_END = 3;
 		public static final int COL_TASKNAME = 4;
+		public static final int PAGE_SIZE = 100;
 
 		private String[] columnNames;
-		private List<Object[]> data;
+		private List<Task> tasks;
+
+		private int pageStart = -1;
+		private List<Object[]> pageRows = new ArrayList<Object[]>();
+
+		// Rows changed by the user, kept until the change is carried out and the table is refreshed
+		private Map<Integer, Object[]> editedRows = new HashMap<Integer, Object[]>();
 
-		public MyTableModel(List<Object[]> tableItems){
+		public MyTableModel(List<Task> tasks){
 			log.entering(this.getClass().getName(), "<init>");
 			columnNames = new String[]{"Idx", "", "Start/Deadline", "End", "Task"};
-			data = tableItems;
+			this.tasks = tasks;
 			log.exiting(this.getClass().getName(), "<init>");
 		}
 
@@ -918,9 +938,8 @@ public class GuiMain extends GuiCommandBox{
 		}
 
 		public int getRowCount() {
-			//return data.length;
-			log.fine("row count is " + data.size());
-			return data.size();
+			log.fine("row count is " + tasks.size());
+			return tasks.size();
 		}
 
 		public String getColumnName(int col) {
@@ -935,12 +954,11 @@ public class GuiMain extends GuiCommandBox{
 				log.finest(String.format("value at row %1d col %2d is %3d", row, col, index));
 	    		return index;
 			default:
-				if(data.get(row)[col] != null){
-					//log.finest(String.format("value at row %1d col %2d is %3d", row, col, data.get(row)[col].toString()));
-				}else{
+				Object value = rowAt(row)[col];
+				if(value == null){
 					log.finest(String.format("value at row %1d col %2d is %3d", row, col, "null"));
 				}
-				return data.get(row)[col];
+				return value;
 			}
 		}
 
@@ -962,22 +980,21 @@ public class GuiMain extends GuiCommandBox{
 			}
 		}
 
-		/*
-		 * Don't need to implement this method unless your table's
-		 * data can change.
-		 */
 		public void setValueAt(Object value, int row, int col) {
 			log.entering(this.getClass().getName(), "setValueAt");
 			log.finest(String.format("Setting row %1d col %2d to %3s", row, col, value));
 			
-			Object[] tableRow = data.get(row);
-
 			switch (col) {
 			case COL_INDEX:
 				log.warning("Try to set value of index!");
 				assert false;
 				break;
 			default:
+				Object[] tableRow = editedRows.get(row);
+				if (tableRow == null) {
+					tableRow = rowAt(row).clone();
+					editedRows.put(row, tableRow);
+				}
 				tableRow[col] = value;
 			}
 
@@ -985,28 +1002,30 @@ public class GuiMain extends GuiCommandBox{
 			
 			log.exiting(this.getClass().getName(), "setValueAt");
 		}
-	}
-	
-	public int getContentWidth(String content) {
-		log.entering(this.getClass().getName(), "getContentWidth");
-		
-	    JLabel dummylabel = new JLabel();
-	    //dummyEditorPane.setSize(1, Short.MAX_VALUE);
-	    dummylabel.setText(content);
-	    int width = dummylabel.getPreferredSize().width;
-	    
-	    log.finest(String.format("Width of string %1s is %2d", content, width));
-	    
-	    log.exiting(this.getClass().getName(), "getContentWidth");
-		return width;
-	}
 
-	public void showTasksListInTable(List<Task> taskListOrig){
-		List<Object[]> tableItems = new ArrayList<Object[]>();
-		int index = 1;
-		for(Task t : taskListOrig){
+		private Object[] rowAt(int row) {
+			if (editedRows.containsKey(row)) {
+				return editedRows.get(row);
+			}
+
+			if ((pageStart < 0) || (row < pageStart) || (row >= pageStart + pageRows.size())) {
+				readPageOf(row);
+			}
+			return pageRows.get(row - pageStart);
+		}
+
+		private void readPageOf(int row) {
+			pageStart = row - (row % PAGE_SIZE);
+			pageRows.clear();
+
+			for (Task t : LogicToUi.pageOf(tasks, pageStart, PAGE_SIZE)) {
+				pageRows.add(toTableRow(t));
+			}
+			log.finer(String.format("Read table rows %1d to %2d", pageStart, pageStart + pageRows.size() - 1));
+		}
+
+		private Object[] toTableRow(Task t) {
 			Object[] tableRowItems = new Object[5];
-			tableRowItems[MyTableModel.COL_INDEX] = new Integer(index++);
 								
 			String start = "", end = "";
 			if(t.getType().equals(TaskType.TIMED)) {
@@ -1023,24 +1042,39 @@ public class GuiMain extends GuiCommandBox{
 				end = TABLE_EMPTY_DATE_FIELD;
 			}
 
-			tableRowItems[MyTableModel.COL_DONE] = new Boolean(t.isDone());
-			tableRowItems[MyTableModel.COL_START] = start;
-			tableRowItems[MyTableModel.COL_END] = end;
-			tableRowItems[MyTableModel.COL_TASKNAME] = t.getTaskName();
+			tableRowItems[COL_DONE] = new Boolean(t.isDone());
+			tableRowItems[COL_START] = start;
+			tableRowItems[COL_END] = end;
+			tableRowItems[COL_TASKNAME] = t.getTaskName();
 
-			tableItems.add(tableRowItems);
-			
-			//System.out.println(Arrays.asList(tableRowItems));
+			return tableRowItems;
 		}
+	}
+	
+	//@author A0086826R
+	
+	public int getContentWidth(String content) {
+		log.entering(this.getClass().getName(), "getContentWidth");
 		
-		
+	    JLabel dummylabel = new JLabel();
+	    //dummyEditorPane.setSize(1, Short.MAX_VALUE);
+	    dummylabel.setText(content);
+	    int width = dummylabel.getPreferredSize().width;
+	    
+	    log.finest(String.format("Width of string %1s is %2d", content, width));
+	    
+	    log.exiting(this.getClass().getName(), "getContentWidth");
+		return width;
+	}
+
+	public void showTasksListInTable(List<Task> taskListOrig){
 		log.entering(this.getClass().getName(), "showTasksList");
 		
 		int indexNumberColumnWidth = getContentWidth(TABLE_COLUMN_WIDTH_INDEX_MAX_TEXT) + TABLE_COLUMN_WIDTH_EXTRA;
 		int checkboxColumnWidth = TABLE_COLUMN_WIDTH_CHECKBOX;
 		int dateColumnWidth = getContentWidth(TABLE_COLUMN_WIDTH_DATE_MAX_TEXT) + TABLE_COLUMN_WIDTH_EXTRA;
 
-		table.setModel(new MyTableModel(tableItems));
+		table.setModel(new MyTableModel(taskListOrig));
 		table.getColumnModel().getColumn(0).setMinWidth(indexNumberColumnWidth);
 		table.getColumnModel().getColumn(0).setMaxWidth(indexNumberColumnWidth);
 		table.getColumnModel().getColumn(1).setMinWidth(checkboxColumnWidth);
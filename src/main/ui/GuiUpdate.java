@@ -1,5 +1,11 @@
 package main.ui;
 
+import java.awt.EventQueue;
+import java.util.List;
+
+import main.logic.Logic;
+import main.shared.LogicToUi;
+
 //@author A0086826R
 
 public class GuiUpdate {
@@ -9,4 +15,27 @@ public class GuiUpdate {
 		GuiQuickAdd.getInstance().updateWindow(source);
 	}
 
+	//@author A0081007U
+
+	// Commands typed while the tasks were loading are carried out on the event thread,
+	// like every other command, once the tasks have loaded. The result of the last one is shown.
+	public static void applyQueuedCommandsWhenLoaded() {
+		final Logic logic = Logic.getInstance();
+
+		logic.addLoadedListener(new Runnable() {
+			public void run() {
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						List<LogicToUi> results = logic.applyPendingCommands();
+						update(null);
+
+						if (!results.isEmpty()) {
+							GuiMain.getInstance().showStatus(results.get(results.size() - 1).getString());
+						}
+					}
+				});
+			}
+		});
+	}
+
 }
@@ -68,6 +68,14 @@ public abstract class UI {
 		return logic.uiCommunicator(command);
 	}
 
+	protected boolean isLoadingTasks() {
+		return logic.isLoading();
+	}
+
+	protected boolean isInBatch() {
+		return logic.isInBatch();
+	}
+
 	protected String dateTimeToString(DateTime toBeConverted) {
 		return LINE_DATE_FORMATTER.print(toBeConverted);
 	}
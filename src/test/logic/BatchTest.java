@@ -0,0 +1,127 @@
+//@author A0081007U
+package test.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.logic.Logic;
+import main.shared.LogicToUi;
+import main.shared.Task;
+import main.storage.Database;
+import main.storage.WillNotWriteToCorruptFileException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchTest {
+
+	Database db = Database.getInstance();
+	Logic logic = Logic.getInstance();
+
+	@Before
+	public void runBeforeEveryTest() {
+		try {
+			db.setAll(new ArrayList<Task>());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+		commandTester("add kept task");
+	}
+
+	@After
+	public void runAfterEveryTest() {
+		if (logic.isInBatch()) {
+			commandTester("rollback");
+		}
+	}
+
+	@Test
+	public void commitThenUndoAsOne() {
+		commandTester("begin");
+		commandTester("add task1");
+		commandTester("add task2");
+		commandTester("list");
+		commandTester("edit 1 -name renamed");
+		assertTrue(logic.isInBatch());
+
+		//Changes are seen within the batch
+		assertEquals(3, listTester().size());
+
+		commandTester("commit");
+		assertFalse(logic.isInBatch());
+		assertEquals(3, listTester().size());
+
+		//One undo reverts the whole batch
+		commandTester("undo");
+		List<Task> result = listTester();
+		assertEquals(1, result.size());
+		assertEquals("kept task", result.get(0).getTaskName());
+	}
+
+	@Test
+	public void rollback() {
+		commandTester("begin");
+		commandTester("add task1");
+		commandTester("delete all");
+		assertEquals(0, listTester().size());
+
+		commandTester("rollback");
+		assertFalse(logic.isInBatch());
+
+		List<Task> result = listTester();
+		assertEquals(1, result.size());
+		assertEquals("kept task", result.get(0).getTaskName());
+	}
+
+	@Test
+	public void failedCommandRollsBack() {
+		commandTester("begin");
+		commandTester("add task1");
+		commandTester("list");
+		commandTester("done 99");
+
+		assertFalse(logic.isInBatch());
+		assertEquals(1, listTester().size());
+
+		//Undo and redo are not allowed within a batch
+		commandTester("begin");
+		commandTester("undo");
+		assertTrue(logic.isInBatch());
+		assertEquals(1, listTester().size());
+	}
+
+	@Test
+	public void nothingToChangeKeepsBatch() {
+		commandTester("begin");
+		commandTester("add task1");
+		commandTester("list");
+		commandTester("done 1");
+
+		//Tasks already as asked are not a failure, the batch goes on
+		commandTester("done 1");
+		assertTrue(logic.isInBatch());
+		commandTester("undone 2");
+		assertTrue(logic.isInBatch());
+		commandTester("done where done");
+		assertTrue(logic.isInBatch());
+		assertEquals(2, listTester().size());
+
+		commandTester("commit");
+		assertFalse(logic.isInBatch());
+		assertEquals(2, listTester().size());
+	}
+
+	private String commandTester(String command) {
+		LogicToUi result = logic.uiCommunicator(command);
+		return result.getString();
+	}
+
+	private List<Task> listTester() {
+		return logic.uiCommunicator("list").getList();
+	}
+
+}
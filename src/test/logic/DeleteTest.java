@@ -93,6 +93,34 @@ public class DeleteTest {
 		assertEquals(notPresentTasks.length, result);
 	}
 	
+	@Test
+	public void rangeDelete() {
+		String[] addCommands = new String[]{"add aaa", "add bbb", "add ccc", "add ddd"};
+		int result = CommandTester(addCommands, "delete 1-3", new Task[]{});
+		assertEquals(3, result);
+
+		result = CommandTester(addCommands, "delete 2-1", new Task[]{});
+		assertEquals(0, result);
+
+		result = CommandTester(addCommands, "delete 3-5", new Task[]{});
+		assertEquals(0, result);
+	}
+
+	@Test
+	public void whereDelete() {
+		String[] addCommands = new String[]{
+				"add \"project meeting at com\" by yesterday",
+				"add abcdefg by tomorrow",
+				"add floating task"
+				};
+		int result = CommandTester(addCommands, "delete where deadline", new Task[]{});
+		assertEquals(2, result);
+
+		result = CommandTester(addCommands, "delete overdue", new Task[]{
+				new Task("project meeting at com", new DateTime().minusDays(1))});
+		assertEquals(1, result);
+	}
+
 	@Test
 	public void testDeleteOver() {
 		String[] addCommands = new String[]{
@@ -177,6 +177,41 @@ public class DoneTest {
 	}
 	
 	
+	//Tasks given by ranges or "where" are changed at once, and undone at once
+	@Test
+	public void doneManyTasks(){
+		commandTester("undone where done");
+		assertEquals(0, countDone());
+
+		commandTester("list");
+		commandTester("done 1-3 5");
+		assertEquals(4, countDone());
+
+		commandTester("list");
+		commandTester("undone 1-" + filledListing.size());
+		assertEquals(0, countDone());
+
+		commandTester("done where floating");
+		assertEquals(3, countDone());
+
+		commandTester("undo");
+		assertEquals(0, countDone());
+
+		commandTester("list");
+		commandTester("done 0-2");
+		assertEquals(0, countDone());
+	}
+
+	private int countDone(){
+		int count = 0;
+		for(Task entry : db.getAll()){
+			if(entry.isDone()){
+				count++;
+			}
+		}
+		return count;
+	}
+
 	private List<Task> commandTester(String command){
 		Logic logic = Logic.getInstance();
 		logic.uiCommunicator(command);
@@ -0,0 +1,72 @@
+//@author A0081007U
+package test.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.logic.Logic;
+import main.shared.LogicToUi;
+import main.shared.Task;
+import main.storage.Database;
+import main.storage.WillNotWriteToCorruptFileException;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExplainTest {
+
+	private static final String NAME_BIRTHDAY = "birthday party";
+	private static final String NAME_BIRTHDAY_DONE = "buy birthday present";
+	private static final String NAME_MEETING = "project meeting";
+
+	Database db = Database.getInstance();
+
+	@Before
+	public void runBeforeEveryTest() {
+		List<Task> filledListing = new ArrayList<Task>();
+
+		filledListing.add(new Task(NAME_BIRTHDAY, new DateTime().plusDays(3)));
+		filledListing.add(new Task(NAME_BIRTHDAY_DONE, true));
+		filledListing.add(new Task(NAME_MEETING, new DateTime(), new DateTime().plusHours(2)));
+
+		try {
+			db.setAll(filledListing);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testExplainSearch() {
+		LogicToUi result = commandTester("explain search birthday");
+
+		assertNull(result.getList());
+		assertTrue(result.getString().contains("Keyword index (\"birthday\"): estimated 2 tasks, actual 2 tasks"));
+	}
+
+	@Test
+	public void testExplainList() {
+		LogicToUi result = commandTester("explain list undone");
+		assertTrue(result.getString().contains("Flag bitmap (undone)"));
+		assertTrue(result.getString().contains("actual 2 tasks"));
+
+		result = commandTester("explain list");
+		assertTrue(result.getString().contains("All tasks: estimated 3 tasks, actual 3 tasks"));
+	}
+
+	@Test
+	public void testNothingToExplain() {
+		assertNull(commandTester("explain list overdue").getList());
+		assertNull(commandTester("explain add something").getList());
+		assertNull(commandTester("explain").getList());
+	}
+
+	private LogicToUi commandTester(String command) {
+		Logic logic = Logic.getInstance();
+		return logic.uiCommunicator(command);
+	}
+}
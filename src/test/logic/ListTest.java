@@ -299,6 +299,50 @@ public class ListTest {
 		}
 	}
 	
+	@Test
+	public void pageTest(){
+		LogicToUi result = Logic.getInstance().uiCommunicator("list");
+		List<Task> all = result.getList();
+		assertTrue(all.size() > 3);
+		
+		//Every page read together gives the listing in the same order
+		List<Task> paged = new ArrayList<Task>();
+		for(int offset = 0; offset < all.size(); offset += 3){
+			List<Task> page = result.getPage(offset, 3);
+			assertTrue(page.size() <= 3);
+			paged.addAll(page);
+		}
+		
+		assertEquals(all.size(), paged.size());
+		for(int i = 0; i < all.size(); i++){
+			assertEquals(all.get(i).getSerial(), paged.get(i).getSerial());
+		}
+		
+		//A page past the end is empty and the last page is cut short
+		assertEquals(0, result.getPage(all.size(), 3).size());
+		assertEquals(1, result.getPage(all.size() - 1, 3).size());
+	}
+	
+	@Test
+	public void asOfTest() throws InterruptedException{
+		Thread.sleep(2000);
+		commandTester("delete all");
+		
+		assertEquals(0, commandTester("list floating").size());
+		
+		//The past tasks are listed without changing the database
+		List<Task> result = commandTester("list floating as of 1 second ago");
+		assertEquals(3 , result.size());
+		
+		for(Task entry : result){
+			if(!entry.isFloatingTask()){
+				fail();
+			}
+		}
+		
+		assertEquals(0, commandTester("list").size());
+	}
+	
 	private List<Task> commandTester(String command){
 		Logic logic = Logic.getInstance();
 		LogicToUi result = logic.uiCommunicator(command);
@@ -0,0 +1,160 @@
+//@author A0081007U
+package test.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import main.logic.Logic;
+import main.shared.LogicToUi;
+import main.shared.Task;
+import main.storage.Database;
+import main.storage.WillNotWriteToCorruptFileException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for commands given while the database is loading. The loading is
+ * stood in for by a future the test completes itself.
+ */
+public class LoadingTest {
+
+	private static final long LOADING_TIME = 200;
+	private static final long LISTENER_TIMEOUT = 5;
+
+	private static Future<Database> backgroundLoading;
+
+	Database db;
+	Logic logic = Logic.getInstance();
+	FutureTask<Object> loading;
+
+	@BeforeClass
+	public static void startLoading() {
+		// Started before anything else asks for the database
+		backgroundLoading = Database.loadInBackground();
+	}
+
+	@Before
+	public void runBeforeEveryTest() {
+		db = Database.getInstance();
+		try {
+			db.setAll(new ArrayList<Task>());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		loading = new FutureTask<Object>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, null);
+	}
+
+	@After
+	public void runAfterEveryTest() {
+		loading.run();
+		logic.applyPendingCommands();
+	}
+
+	@Test
+	public void getInstanceWaitsForLoading() throws Exception {
+		Database loaded = Database.getInstance();
+
+		assertTrue(backgroundLoading.isDone());
+		assertTrue(Database.isReady());
+		assertSame(backgroundLoading.get(), loaded);
+	}
+
+	@Test
+	public void queuedCommandsRunInOrder() {
+		logic.queueUntilLoaded(loading);
+		assertTrue(logic.isLoading());
+
+		// Nothing is carried out while loading
+		LogicToUi stillLoading = logic.uiCommunicator("add first");
+		assertTrue(stillLoading.getList().isEmpty());
+		logic.uiCommunicator("delete all");
+		logic.uiCommunicator("add second");
+		logic.uiCommunicator("list");
+		assertEquals(0, db.getAll().size());
+
+		loading.run();
+
+		// Commands received after loading still wait behind the queued ones
+		assertTrue(logic.isLoading());
+		logic.uiCommunicator("add third");
+
+		List<LogicToUi> feedback = logic.applyPendingCommands();
+		assertFalse(logic.isLoading());
+
+		// "delete all" came between the adds, so only what followed it is kept
+		assertEquals(5, feedback.size());
+		List<Task> listed = feedback.get(3).getList();
+		assertEquals(1, listed.size());
+		assertEquals("second", listed.get(0).getTaskName());
+		assertEquals(2, db.getAll().size());
+
+		// The feedback of each command is handed back
+		assertTrue(feedback.get(4).getString().contains("third"));
+	}
+
+	@Test
+	public void applyWaitsForLoading() {
+		logic.queueUntilLoaded(loading);
+		logic.uiCommunicator("add waited");
+
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(LOADING_TIME);
+				} catch (InterruptedException e) {
+				}
+				loading.run();
+			}
+		}).start();
+
+		List<LogicToUi> feedback = logic.applyPendingCommands();
+
+		assertTrue(loading.isDone());
+		assertEquals(1, feedback.size());
+		assertEquals(1, db.getAll().size());
+	}
+
+	@Test
+	public void listenerRunOnceLoaded() throws InterruptedException {
+		logic.queueUntilLoaded(loading);
+
+		final CountDownLatch loaded = new CountDownLatch(1);
+		logic.addLoadedListener(new Runnable() {
+			@Override
+			public void run() {
+				loaded.countDown();
+			}
+		});
+		assertEquals(1, loaded.getCount());
+
+		loading.run();
+		assertTrue(loaded.await(LISTENER_TIMEOUT, TimeUnit.SECONDS));
+
+		// Added after loading, the listener is run at once
+		final CountDownLatch addedLate = new CountDownLatch(1);
+		logic.addLoadedListener(new Runnable() {
+			@Override
+			public void run() {
+				addedLate.countDown();
+			}
+		});
+		assertEquals(0, addedLate.getCount());
+	}
+
+}
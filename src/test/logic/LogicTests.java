@@ -8,7 +8,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({ AddTest.class, DeleteTest.class, EditTest.class, ListTest.class, SearchTest.class,
-		DoneTest.class, SortTest.class, UndoneTest.class, UndoTest.class, PostponeTest.class})
+		DoneTest.class, SortTest.class, UndoneTest.class, UndoTest.class, PostponeTest.class,
+		ExplainTest.class, RankTest.class, BatchTest.class, LoadingTest.class})
 public class LogicTests {
 
 }
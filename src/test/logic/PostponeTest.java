@@ -4,10 +4,12 @@ package test.logic;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import main.logic.Logic;
 import main.shared.LogicToUi;
+import main.shared.NattyParserWrapper;
 import main.shared.Task;
 import main.storage.Database;
 import main.storage.WillNotWriteToCorruptFileException;
@@ -58,6 +60,82 @@ public class PostponeTest {
 	
 	
 
+	@Test
+	public void testPostponeMany() {
+		Task expected = new Task("project meeting at com",
+				new DateTime().withTime(19, 0, 0, 0));
+		Task actual = CommandTester("add \"project meeting at com\" at 3pm",
+				"postpone where deadline by 4 hours");
+		assertEquals(expected.showInfo(), actual.showInfo());
+
+		expected = new Task("project meeting at com", new DateTime().withTime(15, 0, 0, 0).plusDays(1),
+				new DateTime().withTime(16, 0, 0, 0).plusDays(1));
+		actual = CommandTester("add \"project meeting at com\" from 3 pm to 4 pm", "postpone 1-1 by 1 day");
+		assertEquals(expected.showInfo(), actual.showInfo());
+
+		expected = new Task("project meeting at com");
+		actual = CommandTester("add \"project meeting at com\"", "postpone 1 by 4 hours");
+		assertEquals(expected.showInfo(), actual.showInfo());
+	}
+
+	//@author A0081007U
+	@Test
+	public void testPostponeOneBy() {
+		// A weekday other than today's, so "by friday" lands on different days
+		// counted from the task and from now
+		DateTime deadline = new DateTime().withTime(15, 0, 0, 0).plusDays(17);
+		List<Task> backup = Database.getInstance().getAll();
+
+		try {
+			List<Task> tasks = new ArrayList<Task>();
+			tasks.add(new Task("project meeting at com", deadline));
+			Database.getInstance().setAll(tasks);
+			Logic.getInstance().uiCommunicator("list");
+
+			// One index before "by" is still read relative to the task's own date
+			Logic.getInstance().uiCommunicator("postpone 1 by friday");
+			Task actual = Logic.getInstance().uiCommunicator("list").getList().get(0);
+
+			DateTime expectedDeadline = new DateTime(NattyParserWrapper.getInstance()
+					.parseWCustomBaseDate(deadline, "by friday").get(0).getDates().get(0));
+			Task expected = new Task("project meeting at com", expectedDeadline);
+			assertEquals(expected.showInfo(), actual.showInfo());
+
+			Database.getInstance().setAll(backup);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testPostponeManyByMonth() {
+		// Months of different lengths, so one fixed length of time cannot move both
+		DateTime february = new DateTime().plusYears(1).withMonthOfYear(2).withDayOfMonth(15)
+				.withTime(15, 0, 0, 0);
+		DateTime april = february.withMonthOfYear(4);
+		List<Task> backup = Database.getInstance().getAll();
+
+		try {
+			List<Task> tasks = new ArrayList<Task>();
+			tasks.add(new Task("february meeting", february));
+			tasks.add(new Task("april meeting", april));
+			Database.getInstance().setAll(tasks);
+			Logic.getInstance().uiCommunicator("list");
+
+			// Each task keeps its day of the month and time
+			Logic.getInstance().uiCommunicator("postpone 1-2 by 1 month");
+			List<Task> actual = Logic.getInstance().uiCommunicator("list").getList();
+
+			assertEquals(new Task("february meeting", february.plusMonths(1)).showInfo(), actual.get(0).showInfo());
+			assertEquals(new Task("april meeting", april.plusMonths(1)).showInfo(), actual.get(1).showInfo());
+
+			Database.getInstance().setAll(backup);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	//@author A0088427U
 	public Task CommandTester(String addCommand, String postponeCommand) {
 		LogicToUi returnValue;
 		List<Task> backup = Database.getInstance().getAll();
@@ -0,0 +1,85 @@
+//@author A0081007U
+package test.logic;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.logic.Logic;
+import main.shared.LogicToUi;
+import main.shared.Task;
+import main.storage.Database;
+import main.storage.WillNotWriteToCorruptFileException;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RankTest {
+
+	private static final String NAME_BIRTHDAY_SOON = "birthday party";
+	private static final String NAME_BIRTHDAY_LATER = "birthday dinner";
+	private static final String NAME_BIRTHDAYS = "birthdays to remember";
+	private static final String NAME_BIRTHDAY_TWICE = "birthday cake for birthday girl";
+	private static final String NAME_MEETING = "project meeting";
+
+	Database db = Database.getInstance();
+
+	@Before
+	public void runBeforeEveryTest() {
+		List<Task> filledListing = new ArrayList<Task>();
+
+		filledListing.add(new Task(NAME_BIRTHDAY_LATER, new DateTime().plusMonths(2)));
+		filledListing.add(new Task(NAME_BIRTHDAYS));
+		filledListing.add(new Task(NAME_BIRTHDAY_SOON, new DateTime().plusDays(1)));
+		filledListing.add(new Task(NAME_BIRTHDAY_TWICE, true));
+		filledListing.add(new Task(NAME_MEETING, new DateTime(), new DateTime().plusHours(2)));
+
+		try {
+			db.setAll(filledListing);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testRankOneKeyword() {
+		LogicToUi result = commandTester("rank birthday");
+		List<Task> results = result.getList();
+
+		assertEquals(4, results.size());
+		assertEquals(NAME_BIRTHDAY_TWICE, results.get(0).getTaskName());
+		assertEquals(NAME_BIRTHDAY_SOON, results.get(1).getTaskName());
+		assertEquals(NAME_BIRTHDAY_LATER, results.get(2).getTaskName());
+		assertEquals(NAME_BIRTHDAYS, results.get(3).getTaskName());
+
+		assertTrue(result.containsScores());
+		assertEquals(4, result.getScores().size());
+		assertTrue(result.getString().startsWith("Best 4 of 4 matches"));
+	}
+
+	@Test
+	public void testRankQuery() {
+		LogicToUi result = commandTester("rank birthday -party");
+		assertEquals(3, result.getList().size());
+		assertEquals(NAME_BIRTHDAY_TWICE, result.getList().get(0).getTaskName());
+
+		result = commandTester("rank meeting OR dinner");
+		assertEquals(2, result.getList().size());
+		assertEquals(NAME_MEETING, result.getList().get(0).getTaskName());
+	}
+
+	@Test
+	public void testSearchHasNoScores() {
+		assertFalse(commandTester("search birthday").containsScores());
+		assertNull(commandTester("rank").getList());
+		assertNull(commandTester("rank (birthday").getList());
+	}
+
+	private LogicToUi commandTester(String command) {
+		Logic logic = Logic.getInstance();
+		return logic.uiCommunicator(command);
+	}
+}
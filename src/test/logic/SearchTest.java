@@ -140,9 +140,81 @@ public class SearchTest {
 		}
 	}
 	
-	
+	@Test
+	public void testOrAndNot() {
+		assertEquals(3, commandTester("search true OR 1month").size());
+		assertEquals(2, commandTester("search false -1month").size());
+		assertEquals(2, commandTester("search false NOT 1month").size());
+		assertEquals(2, commandTester("search (true OR false) AND type:floating").size());
+	}
+
+	@Test
+	public void testPhraseAndFields() {
+		List<Task> results = commandTester("search \"to tomorrow\" type:timed");
+		assertEquals(2, results.size());
+
+		for(Task entry : results){
+			if(!entry.containsTerm("to tomorrow")){
+				fail();
+			}
+		}
+
+		results = commandTester("search done:yes");
+		assertEquals(1, results.size());
+		assertEquals(NAME_TRUE, results.get(0).getTaskName());
+
+		results = commandTester("search type:deadline after:\"next week\"");
+		assertEquals(1, results.size());
+		assertEquals(NAME_1MONTH, results.get(0).getTaskName());
+
+		results = commandTester("search type:deadline before:yesterday");
+		assertEquals(1, results.size());
+		assertEquals(NAME_1MONTH_FALSE, results.get(0).getTaskName());
+	}
+
+	@Test
+	public void testFuzzy() {
+		List<Task> results = commandTester("search flase~");
+		assertEquals(3, results.size());
+
+		for(Task entry : results){
+			if(!entry.containsTerm("false")){
+				fail();
+			}
+		}
+
+		assertEquals(3, commandTester("search tomorow~1").size());
+		assertEquals(0, commandTester("search flase~1").size());
+		assertEquals(8, commandTester("search nme~").size());
+		assertEquals(5, commandTester("search nme~ -false").size());
+		assertEquals(null, commandTester("search flase~3"));
+	}
+
+	@Test
+	public void testInvalidQuery() {
+		assertEquals(null, commandTester("search (true"));
+		assertEquals(null, commandTester("search true OR"));
+		assertEquals(null, commandTester("search \"to tomorrow"));
+		assertEquals(null, commandTester("search done:maybe"));
+	}
+
+
+	@Test
+	public void testRefreshKeepsRelativeDateSearch() {
+		List<Task> results = commandTester("search type:deadline after:\"next week\"");
+		assertEquals(1, results.size());
+
+		//"next week" is only resolved once, so refreshing shows the kept result again
+		List<Task> refreshed = commandTester("refresh");
+		assertEquals(1, refreshed.size());
+		assertSame(refreshed, commandTester("refresh"));
+		assertSame(refreshed, commandTester("refresh"));
+
+		//Once the database changes the search is run again
+		commandTester("done 1");
+		assertNotSame(refreshed, commandTester("refresh"));
+	}
 
-	
 	private List<Task> commandTester(String command){
 		Logic logic = Logic.getInstance();
 		LogicToUi result = logic.uiCommunicator(command);
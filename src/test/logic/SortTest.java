@@ -313,6 +313,23 @@ public class SortTest {
 	
 	
 	
+	@Test
+	public void refreshIsCachedUntilDatabaseChanges() {
+		commandTester("list");
+		List<Task> sorted = commandTester("sort name");
+		
+		//Nothing changed, so the same sorted list is shown again
+		assertSame(sorted, commandTester("refresh"));
+		assertSame(sorted, commandTester("sort name"));
+		assertNotSame(sorted, commandTester("sort name reverse"));
+		
+		commandTester("add buy milk");
+		List<Task> afterAdd = commandTester("sort name");
+		
+		assertNotSame(sorted, afterAdd);
+		assertEquals(sorted.size() + 1, afterAdd.size());
+	}
+	
 	private List<Task> commandTester(String command){
 		Logic logic = Logic.getInstance();
 		LogicToUi result = logic.uiCommunicator(command);
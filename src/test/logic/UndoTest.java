@@ -118,6 +118,93 @@ public class UndoTest {
 	
 	
 	
+	@Test
+	public void undoSeveralSteps() {
+		try {
+			List<Task> result;
+			
+			db.setAll(new ArrayList<Task>());
+			commandTester("add task1");
+			commandTester("add task2");
+			commandTester("add task3 today 11pm");
+			commandTester("list");
+			commandTester("edit 1 -name changed");
+			commandTester("list");
+			commandTester("done 2");
+			commandTester("list");
+			commandTester("delete 1 2 3");
+			
+			result = commandTester("list");
+			assertEquals(0, result.size());
+			
+			//Each undo puts back only what its command changed
+			result = commandTester("undo");
+			assertEquals(3, result.size());
+			
+			result = commandTester("undo");
+			assertEquals(3, result.size());
+			for (Task entry : result) {
+				assertFalse(entry.isDone());
+			}
+			
+			result = commandTester("undo");
+			assertEquals(3, result.size());
+			for (Task entry : result) {
+				assertFalse(entry.getTaskName().equals("changed"));
+			}
+			
+			result = commandTester("undo");
+			assertEquals(2, result.size());
+			
+			//A change made outside the commands cannot be undone over
+			db.setAll(new ArrayList<Task>());
+			commandTester("undo");
+			result = commandTester("list");
+			assertEquals(0, result.size());
+			
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+	
+	@Test
+	public void redo() {
+		try {
+			List<Task> result;
+			
+			db.setAll(new ArrayList<Task>());
+			commandTester("add task1");
+			commandTester("list");
+			commandTester("edit 1 -name task2");
+			
+			result = commandTester("undo");
+			assertEquals("task1", result.get(0).getTaskName());
+			
+			result = commandTester("redo");
+			assertEquals("task2", result.get(0).getTaskName());
+			
+			//The redone command can be undone again
+			result = commandTester("undo");
+			assertEquals("task1", result.get(0).getTaskName());
+			
+			result = commandTester("undo");
+			assertEquals(0, result.size());
+			
+			result = commandTester("redo");
+			assertEquals(1, result.size());
+			
+			//A new command drops what could be redone
+			commandTester("add task3");
+			commandTester("redo");
+			result = commandTester("list");
+			assertEquals(2, result.size());
+			assertEquals("task1", result.get(0).getTaskName());
+			
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+	
 	private List<Task> commandTester(String command){
 		Logic logic = Logic.getInstance();
 		logic.uiCommunicator(command);
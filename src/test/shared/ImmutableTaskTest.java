@@ -0,0 +1,131 @@
+//@author A0081007U
+package test.shared;
+
+/**  
+ * ImmutableTaskTest.java 
+ * A Junit4 test for the ImmutableTask class
+ * @author  Yeo Kheng Meng
+ */ 
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import main.shared.ImmutableTask;
+import main.shared.Task;
+
+public class ImmutableTaskTest {
+
+	private static final String NAME = "name";
+	private static final String NEW_NAME = "new name";
+
+	private static final DateTime DEADLINE = new DateTime().plusMonths(1);
+	private static final DateTime TIMED_START = new DateTime().minusDays(1);
+	private static final DateTime TIMED_END = new DateTime().plusDays(1);
+
+	@Test
+	public void ofTest() {
+		Task mutable = new Task(NAME, DEADLINE);
+		ImmutableTask frozen = ImmutableTask.of(mutable);
+
+		assertTrue(frozen.isEqualTo(mutable));
+
+		//Changing the original does not change the immutable copy
+		mutable.done(true);
+		assertFalse(frozen.isDone());
+
+		assertSame(frozen, ImmutableTask.of(frozen));
+
+		try {
+			ImmutableTask.of(null);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void mutatorsThrowTest() {
+		ImmutableTask frozen = ImmutableTask.of(new Task(NAME, TIMED_START, TIMED_END));
+
+		try {
+			frozen.done(true);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			frozen.changeName(NEW_NAME);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			frozen.changetoFloating();
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			frozen.changeStartAndEndDate(TIMED_START, TIMED_START);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			frozen.becomeThis(new Task(NEW_NAME));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+
+		assertEquals(NAME, frozen.getTaskName());
+		assertTrue(frozen.isTimedTask());
+	}
+
+	@Test
+	public void withTest() {
+		ImmutableTask frozen = ImmutableTask.of(new Task(NAME));
+
+		ImmutableTask done = frozen.withDone(true);
+		assertTrue(done.isDone());
+		assertFalse(frozen.isDone());
+		assertEquals(frozen.getSerial(), done.getSerial());
+		assertSame(done, done.withDone(true));
+
+		ImmutableTask renamed = frozen.withName(NEW_NAME);
+		assertEquals(NEW_NAME, renamed.getTaskName());
+		assertEquals(NAME, frozen.getTaskName());
+
+		ImmutableTask deadline = frozen.withDeadline(DEADLINE);
+		assertTrue(deadline.isDeadlineTask());
+		assertEquals(DEADLINE, deadline.getDeadline());
+
+		ImmutableTask timed = deadline.withStartAndEndDate(TIMED_START, TIMED_END);
+		assertTrue(timed.isTimedTask());
+		assertEquals(Task.INVALID_DATE_FIELD, timed.getDeadline());
+
+		assertTrue(timed.asFloating().isFloatingTask());
+		assertTrue(frozen.isFloatingTask());
+
+		try {
+			frozen.withStartAndEndDate(TIMED_END, TIMED_START);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void mutableCopyTest() {
+		ImmutableTask frozen = ImmutableTask.of(new Task(NAME));
+		Task copy = new Task(frozen);
+
+		copy.changeName(NEW_NAME);
+		assertEquals(NEW_NAME, copy.getTaskName());
+		assertEquals(NAME, frozen.getTaskName());
+	}
+
+}
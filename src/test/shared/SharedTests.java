@@ -6,7 +6,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ TaskTest.class })
+@SuiteClasses({ TaskTest.class, ImmutableTaskTest.class })
 public class SharedTests {
 
 }
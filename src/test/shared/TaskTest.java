@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.junit.Before;
@@ -325,6 +326,33 @@ public class TaskTest {
 		assertEquals(Task.INVALID_DATE_FIELD, nameTimedFalse.getDeadline());
 	}
 	
+	@Test
+	public void testDatesKeepTimeZone() {
+		DateTimeZone otherZone = DateTimeZone.forOffsetHours(-5);
+		DateTime start = TIMED_START.withZone(otherZone);
+		DateTime end = TIMED_END.withZone(DateTimeZone.UTC);
+
+		Task timed = new Task(NAME_FROM_YESTERDAY_TO_TOMORROW, start, end);
+		assertEquals(start, timed.getStartDate());
+		assertEquals(end, timed.getEndDate());
+
+		//Same instants in another zone are different dates
+		Task sameInstant = new Task(timed);
+		sameInstant.changeStartAndEndDate(TIMED_START.withZone(DateTimeZone.UTC), end);
+		assertFalse(timed.isEqualTo(sameInstant));
+
+		//Changing the type clears the dates of the old type
+		timed.changeToDeadline(DEADLINE);
+		assertEquals(Task.INVALID_DATE_FIELD, timed.getStartDate());
+		assertEquals(Task.INVALID_DATE_FIELD, timed.getEndDate());
+		assertEquals(DEADLINE, timed.getDeadline());
+
+		timed.done(true);
+		timed.changetoFloating();
+		assertTrue(timed.isDone());
+		assertEquals(Task.INVALID_DATE_FIELD, timed.getDeadline());
+	}
+
 	@Test
 	public void testChangeName() {
 		try{
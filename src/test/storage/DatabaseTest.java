@@ -2,18 +2,31 @@
 package test.storage;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import main.shared.ImmutableTask;
+import main.shared.SearchQuery;
 import main.shared.SearchTerms;
 import main.shared.Task;
 import main.storage.Database;
+import main.storage.HistoryEntry;
+import main.storage.HistoryFile;
+import main.storage.QueryPlan;
+import main.storage.Ranking;
+import main.storage.ResultList;
+import main.storage.TaskTimeline;
+import main.storage.TaskUpdate;
 import main.storage.WillNotWriteToCorruptFileException;
 
 import org.joda.time.DateTime;
@@ -287,6 +300,35 @@ public class DatabaseTest {
 
 
 
+	}
+
+	@Test
+	public void testOrderKeptAfterChanges() {
+
+		try {
+			db.setAll(new ArrayList<Task>());
+			db.add(nameTrue);
+			db.add(nameDeadline);
+			db.add(nameTimed);
+
+			List<Task> before = db.getAll();
+
+			//Floating task moves from the bottom to the top once it has the earliest deadline
+			db.update(nameTrue.getSerial(), nameDeadlineTrue);
+			db.delete(nameTimed.getSerial());
+			initialClearListing = db.getAll();
+
+			assertEquals(2, initialClearListing.size());
+			assertEquals(nameDeadlineTrue.showInfo(), initialClearListing.get(0).showInfo());
+			assertEquals(nameDeadline.showInfo(), initialClearListing.get(1).showInfo());
+
+			//Lists returned earlier are not affected by later changes
+			assertEquals(3, before.size());
+			assertEquals(NAME_TRUE, before.get(2).getTaskName());
+
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
 	}
 
 	@Test
@@ -387,6 +429,714 @@ public class DatabaseTest {
 
 	}
 
+	@Test
+	public void testKeywordSearchAfterChanges() {
+		List<Task> results;
+
+		try {
+			db.setAll(new ArrayList<Task>());
+			db.add(nameTrue);
+			db.add(nameFalse);
+
+			//Part of a word, any case
+			results = db.search(new SearchTerms(new String[]{"TRU"}));
+			assertEquals(1, results.size());
+			assertEquals(NAME_TRUE, results.get(0).getTaskName());
+
+			//Renamed task is found by its new words only
+			db.update(nameTrue.getSerial(), new Task(NAME_1MONTH, true));
+			assertEquals(0, db.search(new SearchTerms(new String[]{"true"})).size());
+			assertEquals(1, db.search(new SearchTerms(new String[]{"+1mon", "name"})).size());
+
+			//Terms shorter than a trigram
+			assertEquals(1, db.search(new SearchTerms(new String[]{"fa"})).size());
+			assertEquals(2, db.search(new SearchTerms(new String[]{"e"})).size());
+
+			db.delete(nameFalse.getSerial());
+			assertEquals(0, db.search(new SearchTerms(new String[]{"false"})).size());
+			assertEquals(1, db.search(new SearchTerms(new String[]{"name"})).size());
+
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testDateSearchAfterChanges() {
+		DateTime startRange = new DateTime().minusDays(2);
+		DateTime endRange = new DateTime().plusDays(2);
+		List<Task> results;
+
+		try {
+			db.setAll(new ArrayList<Task>());
+			db.add(nameTimed);
+			db.add(nameDeadline);
+			db.add(name);
+
+			results = db.search(new SearchTerms(startRange, endRange));
+			assertEquals(1, results.size());
+			assertEquals(NAME_FROM_YESTERDAY_TO_TOMORROW, results.get(0).getTaskName());
+
+			//Deadline moved into the range, timed task moved out of it
+			db.update(nameDeadline.getSerial(), new Task(NAME_1MONTH, TIMED_END));
+			db.update(nameTimed.getSerial(), new Task(NAME_FROM_YESTERDAY_TO_TOMORROW, DEADLINE, DEADLINE.plusDays(1)));
+
+			results = db.search(new SearchTerms(startRange, endRange));
+			assertEquals(1, results.size());
+			assertEquals(NAME_1MONTH, results.get(0).getTaskName());
+
+			//Range touching only the end of a timed task
+			results = db.search(new SearchTerms(DEADLINE.plusDays(1), DEADLINE.plusDays(3)));
+			assertEquals(1, results.size());
+
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testFlagSearchAfterChanges() {
+		List<Task> results;
+
+		try {
+			db.setAll(new ArrayList<Task>());
+			db.add(nameTimed);
+			db.add(nameDeadline);
+			db.add(nameDeadlineTrue);
+			db.add(name);
+
+			results = db.search(new SearchTerms(false, true, true, false, false));
+			assertEquals(1, results.size());
+			assertEquals(NAME_FROM_YESTERDAY_TO_TOMORROW, results.get(0).getTaskName());
+
+			results = db.search(new SearchTerms(true, false, false, true, false, new String[] {"month"}));
+			assertEquals(1, results.size());
+			assertEquals(NAME_1MONTH_TRUE, results.get(0).getTaskName());
+
+			//Timed task marked done, done deadline task deleted
+			Task timedDone = new Task(nameTimed);
+			timedDone.done(true);
+			db.update(nameTimed.getSerial(), timedDone);
+			db.delete(nameDeadlineTrue.getSerial());
+
+			assertEquals(0, db.search(new SearchTerms(false, true, true, false, false)).size());
+			assertEquals(1, db.search(new SearchTerms(true, false, true, false, false)).size());
+			assertEquals(0, db.search(new SearchTerms(true, false, false, true, false, new String[] {"month"})).size());
+
+			//Conflicting flags match nothing
+			assertEquals(0, db.search(new SearchTerms(true, true, false, false, false)).size());
+
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testExplain() {
+		try {
+			db.setAll(filledListing);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		SearchTerms terms = new SearchTerms(false, true, true, false, false, new String[] {"tomorrow"});
+		List<QueryPlan.Step> steps = db.explain(terms).getSteps();
+		QueryPlan.Step last = steps.get(steps.size() - 1);
+
+		assertEquals(2, steps.size());
+		assertEquals(db.search(terms).size(), last.getActualRows());
+
+		//Nothing to use an index for
+		steps = db.explain(new SearchTerms(false, false, false, false, false)).getSteps();
+		assertEquals(1, steps.size());
+		assertEquals(filledListing.size(), steps.get(0).getActualRows());
+		assertEquals(filledListing.size(), steps.get(0).getEstimatedRows());
+	}
+
+	@Test
+	public void testRankedSearch() {
+		DateTime now = new DateTime();
+		List<Task> reports = new ArrayList<Task>();
+
+		reports.add(new Task("report report weekly"));
+		reports.add(new Task("reports due", now.plusHours(1)));
+		reports.add(new Task("monthlyreport"));
+		reports.add(new Task("report soon", now.plusMinutes(30)));
+
+		//Enough matches for the best few to be found by walking outwards from now
+		for (int i = 0; i < 200; i++) {
+			reports.add(new Task("report filler " + i, now.plusDays(i - 100).plusMinutes(i)));
+		}
+
+		try {
+			db.setAll(reports);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		SearchTerms terms = new SearchTerms(new String[] {"Report"});
+		Ranking everyMatch = db.searchRanked(terms, 1000);
+		Ranking best = db.searchRanked(terms, 5);
+
+		assertEquals(reports.size(), everyMatch.getMatchCount());
+		assertEquals(reports.size(), everyMatch.getTasks().size());
+		assertEquals(reports.size(), best.getMatchCount());
+		assertEquals(everyMatch.getTasks().subList(0, 5), best.getTasks());
+
+		for (int i = 1; i < everyMatch.getScores().size(); i++) {
+			assertTrue(everyMatch.getScores().get(i - 1) >= everyMatch.getScores().get(i));
+		}
+
+		//Repeated whole word, then whole words nearest now, then start of a word, then inside a word
+		List<Task> ranked = everyMatch.getTasks();
+		assertEquals("report report weekly", ranked.get(0).getTaskName());
+		assertEquals("report soon", ranked.get(1).getTaskName());
+		assertEquals("reports due", ranked.get(reports.size() - 2).getTaskName());
+		assertEquals("monthlyreport", ranked.get(reports.size() - 1).getTaskName());
+
+		//Several keywords score every match
+		best = db.searchRanked(new SearchTerms(new String[] {"report", "filler"}), 3);
+		assertEquals(200, best.getMatchCount());
+		assertEquals(3, best.getTasks().size());
+		assertEquals(everyMatch.getTasks().subList(2, 5), best.getTasks());
+	}
+
+	@Test
+	public void testFuzzySearchAfterChanges() {
+		List<Task> words = new ArrayList<Task>();
+
+		for (int i = 0; i < 50; i++) {
+			words.add(new Task("word" + i));
+		}
+		words.add(new Task("weekly report"));
+
+		try {
+			db.setAll(words);
+
+			SearchTerms typo = new SearchTerms(SearchQuery.fuzzy("Repotr", 2));
+			assertEquals(1, db.search(typo).size());
+
+			db.add(new Task("report card"));
+			assertEquals(2, db.search(typo).size());
+
+			//Leaves most words of the fuzzy index unused
+			for (Task current : db.search(new SearchTerms(new String[] {"word"}))) {
+				db.delete(current.getSerial());
+			}
+			db.delete(db.search(new SearchTerms(new String[] {"weekly"})).get(0).getSerial());
+
+			assertEquals(1, db.search(typo).size());
+			assertEquals("report card", db.search(typo).get(0).getTaskName());
+			assertEquals(0, db.search(new SearchTerms(SearchQuery.fuzzy("word1", 1))).size());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testReplace() {
+		try {
+			db.setAll(filledListing);
+
+			Task removed = db.getAll().get(0);
+			Task kept = db.getAll().get(1);
+			Task changed = new Task(kept);
+			changed.done(!kept.isDone());
+
+			List<Integer> removedSerials = new ArrayList<Integer>();
+			removedSerials.add(removed.getSerial());
+			removedSerials.add(kept.getSerial());
+			List<Task> added = new ArrayList<Task>();
+			added.add(changed);
+
+			db.replace(removedSerials, added);
+			assertEquals(filledListing.size() - 1, db.getAll().size());
+			assertEquals(changed.isDone(), db.locateATask(kept.getSerial()).isDone());
+
+			//Putting the task back keeps its serial number
+			db.replace(new ArrayList<Integer>(), Collections.singletonList(removed));
+			assertTrue(db.locateATask(removed.getSerial()).isEqualTo(removed));
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		try {
+			db.replace(new ArrayList<Integer>(), Collections.singletonList(db.getAll().get(0)));
+			fail();
+		} catch (NoSuchElementException e) {
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testLocateSameTasks() {
+		try {
+			db.setAll(filledListing);
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		//Tasks read back after a restart have new serial numbers but the same contents
+		List<Task> wanted = new ArrayList<Task>();
+		wanted.add(new Task(NAME_TRUE, true));
+		wanted.add(new Task(NAME_FROM_YESTERDAY_TO_TOMORROW, TIMED_START, TIMED_END));
+
+		List<Integer> found = db.locateSameTasks(wanted);
+		assertEquals(NAME_TRUE, db.locateATask(found.get(0)).getTaskName());
+		assertEquals(NAME_FROM_YESTERDAY_TO_TOMORROW, db.locateATask(found.get(1)).getTaskName());
+
+		try {
+			db.locateSameTasks(Collections.singletonList(new Task(NAME_TRUE, false)));
+			fail();
+		} catch (NoSuchElementException e) {
+		}
+
+		//A task found once cannot be taken again, whether by serial number or by contents
+		wanted = new ArrayList<Task>();
+		wanted.add(db.locateATask(found.get(0)));
+		wanted.add(new Task(NAME_TRUE, true));
+		try {
+			db.locateSameTasks(wanted);
+			fail();
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	@Test
+	public void testHistoryFile() {
+		File file = null;
+		HistoryFile history = null;
+
+		try {
+			file = File.createTempFile("history", ".test");
+			history = new HistoryFile(file);
+			history.open(1024 * 1024, 60 * 1000);
+
+			history.push(new HistoryEntry("first", System.currentTimeMillis(),
+					Collections.singletonList(name), new ArrayList<Task>()));
+			history.push(new HistoryEntry("second", System.currentTimeMillis(),
+					Collections.singletonList(nameTrue), Collections.singletonList(nameDeadline)));
+			history.close();
+
+			//Entries are still there after reopening
+			history = new HistoryFile(file);
+			history.open(1024 * 1024, 60 * 1000);
+			assertEquals(2, history.size());
+
+			HistoryEntry newest = history.peek();
+			assertEquals("second", newest.getMessage());
+			assertEquals(NAME_TRUE, newest.getAddedTasks().get(0).getTaskName());
+			assertTrue(newest.getAddedTasks().get(0).isDone());
+			assertEquals(NAME_1MONTH, newest.getRemovedTasks().get(0).getTaskName());
+
+			history.pop();
+			assertEquals("first", history.peek().getMessage());
+			history.close();
+
+			//Entries too old are dropped when opened
+			history = new HistoryFile(file);
+			history.open(1024 * 1024, -1);
+			assertEquals(0, history.size());
+
+			//The oldest entries are dropped once the file is too large, but never the newest
+			history.open(200, 60 * 1000);
+			for (int i = 0; i < 10; i++) {
+				history.push(new HistoryEntry("entry " + i, System.currentTimeMillis(),
+						filledListing, new ArrayList<Task>()));
+			}
+			assertEquals(1, history.size());
+			assertEquals("entry 9", history.peek().getMessage());
+		} catch (IOException e) {
+			fail();
+		} finally {
+			if (history != null) {
+				history.close();
+			}
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testHistoryFileReadOnly() {
+		File file = null;
+		HistoryFile history = null;
+
+		try {
+			file = File.createTempFile("history", ".test");
+			history = new HistoryFile(file);
+			history.open(1024 * 1024, 60 * 1000);
+			history.push(new HistoryEntry("old", System.currentTimeMillis() - 10 * 60 * 1000,
+					Collections.singletonList(name), new ArrayList<Task>()));
+			history.push(new HistoryEntry("newest", System.currentTimeMillis(),
+					Collections.singletonList(nameTrue), new ArrayList<Task>()));
+			history.close();
+
+			//Half written entry left by the copy of DoIt that holds the database
+			Files.write(file.toPath(), "@ | 1 | unfinished\n".getBytes("ISO-8859-1"),
+					StandardOpenOption.APPEND);
+			long lengthBefore = file.length();
+
+			//Read only, neither the old entry nor the unfinished tail is dropped
+			history = new HistoryFile(file);
+			history.openReadOnly();
+			assertEquals(2, history.size());
+			assertEquals("newest", history.peek().getMessage());
+			assertEquals(NAME_TRUE, history.peek().getAddedTasks().get(0).getTaskName());
+
+			try {
+				history.push(new HistoryEntry("refused", System.currentTimeMillis(),
+						Collections.singletonList(name), new ArrayList<Task>()));
+				fail();
+			} catch (IOException e) {
+			}
+
+			try {
+				history.pop();
+				fail();
+			} catch (IOException e) {
+			}
+
+			assertEquals(2, history.size());
+			history.close();
+			assertEquals(lengthBefore, file.length());
+		} catch (IOException e) {
+			fail();
+		} finally {
+			if (history != null) {
+				history.close();
+			}
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testTimelineReadOnly() {
+		File file = null;
+		TaskTimeline timeline = null;
+
+		try {
+			file = File.createTempFile("timeline", ".test");
+			timeline = new TaskTimeline(file);
+			timeline.open(filledListing);
+			timeline.close();
+
+			//Half written record left by the copy of DoIt that holds the database
+			Files.write(file.toPath(), "@ | 1\n- | unfinished\n".getBytes("ISO-8859-1"),
+					StandardOpenOption.APPEND);
+			long lengthBefore = file.length();
+
+			//Read only, the tasks can be read but nothing is written
+			timeline = new TaskTimeline(file);
+			timeline.openReadOnly();
+			assertTrue(timeline.isOpen());
+			assertTrue(!timeline.isWritable());
+			assertEquals(filledListing.size(), timeline.tasksAsOf(System.currentTimeMillis()).size());
+
+			try {
+				timeline.snapshot(new ArrayList<Task>());
+				fail();
+			} catch (IOException e) {
+			}
+
+			timeline.close();
+			assertEquals(lengthBefore, file.length());
+		} catch (IOException e) {
+			fail();
+		} finally {
+			if (timeline != null) {
+				timeline.close();
+			}
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testTimelineRetention() {
+		long defaultMaxBytes = TaskTimeline.maxBytes;
+		TaskTimeline.maxBytes = 16 * 1024;
+		File file = null;
+		TaskTimeline timeline = null;
+
+		try {
+			file = File.createTempFile("timeline", ".test");
+			timeline = new TaskTimeline(file);
+			timeline.open(filledListing);
+			long start = System.currentTimeMillis();
+
+			List<Task> all = new ArrayList<Task>(filledListing);
+			for (int i = 0; i < 50; i++) {
+				all.add(new Task("added " + i));
+				timeline.snapshot(all);
+			}
+
+			//The oldest snapshots are dropped in the background until the file is under its limit
+			long giveUpAt = System.currentTimeMillis() + 10000;
+			while ((timeline.isCompactionPending() || (file.length() > TaskTimeline.maxBytes))
+					&& (System.currentTimeMillis() < giveUpAt)) {
+				Thread.sleep(20);
+			}
+			assertTrue(file.length() <= TaskTimeline.maxBytes);
+
+			//The newest tasks are kept, the moments before the oldest snapshot kept are gone
+			assertEquals(all.size(), timeline.tasksAsOf(System.currentTimeMillis()).size());
+			assertEquals(0, timeline.tasksAsOf(start - 1).size());
+			timeline.close();
+
+			timeline = new TaskTimeline(file);
+			timeline.open(all);
+			assertEquals(all.size(), timeline.tasksAsOf(System.currentTimeMillis()).size());
+		} catch (IOException | InterruptedException e) {
+			fail();
+		} finally {
+			TaskTimeline.maxBytes = defaultMaxBytes;
+			if (timeline != null) {
+				timeline.close();
+			}
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testAsOf() {
+		int defaultInterval = TaskTimeline.snapshotInterval;
+		TaskTimeline.snapshotInterval = 3;
+
+		try {
+			db.setAll(filledListing);
+			List<DateTime> moments = new ArrayList<DateTime>();
+
+			//Some past moments are read from a snapshot and some by replaying the changes after one
+			for (int i = 0; i < 8; i++) {
+				Thread.sleep(5);
+				moments.add(new DateTime());
+				Thread.sleep(5);
+				db.add(new Task("added " + i));
+			}
+
+			Thread.sleep(5);
+			DateTime beforeDelete = new DateTime();
+			Thread.sleep(5);
+			db.delete(db.search(new SearchTerms(new String[] {"added"})).get(0).getSerial());
+
+			for (int i = 0; i < moments.size(); i++) {
+				assertEquals(filledListing.size() + i, db.getAllAsOf(moments.get(i)).size());
+				assertEquals(i, db.searchAsOf(new SearchTerms(new String[] {"added"}), moments.get(i)).size());
+			}
+			assertEquals(filledListing.size() + 8, db.getAllAsOf(beforeDelete).size());
+			assertEquals(filledListing.size() + 7, db.getAllAsOf(new DateTime()).size());
+			assertEquals(filledListing.size() + 7, db.getAll().size());
+		} catch (IOException | WillNotWriteToCorruptFileException | InterruptedException e) {
+			fail();
+		} finally {
+			TaskTimeline.snapshotInterval = defaultInterval;
+		}
+	}
+
+	@Test
+	public void testTransaction() {
+		try {
+			db.setAll(filledListing);
+			Task changed = new Task(db.getAll().get(0));
+			changed.done(!changed.isDone());
+
+			db.beginTransaction();
+			db.add(new Task("in transaction"));
+			db.update(changed.getSerial(), changed);
+			db.delete(db.getAll().get(1).getSerial());
+			assertEquals(filledListing.size(), db.getAll().size());
+
+			db.rollbackTransaction();
+			assertEquals(filledListing.size(), db.getAll().size());
+			assertEquals(0, db.search(new SearchTerms(new String[] {"transaction"})).size());
+
+			db.beginTransaction();
+			db.add(new Task("in transaction"));
+			db.update(changed.getSerial(), changed);
+			HistoryEntry committed = db.commitTransaction("batch");
+
+			//Only what changed is in the committed change
+			assertEquals(2, committed.getAddedTasks().size());
+			assertEquals(1, committed.getRemovedTasks().size());
+			assertEquals(filledListing.size() + 1, db.getAll().size());
+			assertEquals(changed.isDone(), db.locateATask(changed.getSerial()).isDone());
+
+			//A task added and deleted again in the transaction is neither added nor removed
+			Task temporary = new Task("temporary");
+			db.beginTransaction();
+			db.add(temporary);
+			db.delete(temporary.getSerial());
+			committed = db.commitTransaction("batch");
+			assertEquals(0, committed.getAddedTasks().size());
+			assertEquals(0, committed.getRemovedTasks().size());
+
+			//Every task is removed when all are replaced in the transaction
+			int sizeBefore = db.getAll().size();
+			db.beginTransaction();
+			db.deleteAll();
+			db.add(new Task("after delete all"));
+			committed = db.commitTransaction("batch");
+			assertEquals(1, committed.getAddedTasks().size());
+			assertEquals(sizeBefore, committed.getRemovedTasks().size());
+			assertEquals(1, db.getAll().size());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		try {
+			db.rollbackTransaction();
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testUpdateWhere() {
+		TaskUpdate markDone = new TaskUpdate() {
+			@Override
+			public Task apply(ImmutableTask current) {
+				return current.withDone(true);
+			}
+		};
+		TaskUpdate deleteDeadline = new TaskUpdate() {
+			@Override
+			public Task apply(ImmutableTask current) {
+				return current.isDeadlineTask() ? null : current;
+			}
+		};
+		SearchTerms undone = new SearchTerms(false, true, false, false, false);
+		SearchTerms done = new SearchTerms(true, false, false, false, false);
+
+		try {
+			db.setAll(filledListing);
+			int undoneCount = db.search(undone).size();
+			long before = db.getVersion();
+
+			HistoryEntry changed = db.updateWhere(undone, markDone, "mark done");
+			assertEquals(undoneCount, changed.getRemovedTasks().size());
+			assertEquals(undoneCount, changed.getAddedTasks().size());
+			assertEquals(0, db.search(undone).size());
+			assertEquals(filledListing.size(), db.getAll().size());
+
+			//All of it is one change
+			assertEquals(before + 1, db.getVersion());
+
+			//Nothing left to change, so nothing is written
+			changed = db.updateWhere(undone, markDone, "mark done");
+			assertEquals(0, changed.getTaskCount());
+			assertEquals(before + 1, db.getVersion());
+
+			//Tasks left as they are by the update stay
+			changed = db.updateWhere(done, deleteDeadline, "delete deadlines");
+			assertEquals(2, changed.getRemovedTasks().size());
+			assertEquals(0, changed.getAddedTasks().size());
+			assertEquals(filledListing.size() - 2, db.getAll().size());
+
+			List<Integer> serials = new ArrayList<Integer>();
+			serials.add(db.getAll().get(0).getSerial());
+			changed = db.updateSerials(serials, deleteDeadline, "delete deadlines");
+			assertEquals(0, changed.getTaskCount());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		try {
+			List<Integer> serials = new ArrayList<Integer>();
+			serials.add(db.getAll().get(0).getSerial());
+			serials.add(db.getAll().get(0).getSerial());
+			db.updateSerials(serials, markDone, "mark done");
+			fail();
+		} catch (NoSuchElementException e) {
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testVersion() {
+		try {
+			long before = db.getVersion();
+
+			db.setAll(filledListing);
+			assertTrue(db.getVersion() > before);
+
+			before = db.getVersion();
+			db.getAll();
+			db.search(new SearchTerms(new String[] {"name"}));
+			assertEquals(before, db.getVersion());
+
+			db.add(new Task("one more"));
+			assertEquals(before + 1, db.getVersion());
+
+			db.delete(db.getAll().get(0).getSerial());
+			assertEquals(before + 2, db.getVersion());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testViewPages() {
+		List<Task> many = new ArrayList<Task>();
+
+		for (int i = 0; i < 200; i++) {
+			Task current = new Task("item " + i, new DateTime().plusDays(i % 37));
+			current.done(i % 3 == 0);
+			many.add(current);
+		}
+		many.add(new Task("item floating"));
+
+		try {
+			db.setAll(many);
+
+			assertEquals(db.getAll(), db.viewAll());
+
+			SearchTerms doneOnly = new SearchTerms(true, false, false, false, false);
+			List<Task> expected = db.search(doneOnly);
+			ResultList view = db.view(doneOnly);
+			assertEquals(expected.size(), view.size());
+
+			//Pages read backwards, then forwards, then at random must all agree with the full search
+			for (int offset = 60; offset >= 0; offset -= 20) {
+				assertEquals(expected.subList(offset, Math.min(offset + 20, expected.size())),
+						view.page(offset, 20));
+			}
+			assertEquals(expected, view.page(0, 1000));
+			assertEquals(expected.get(50), view.get(50));
+			assertEquals(expected.get(3), view.get(3));
+			assertTrue(view.page(expected.size(), 20).isEmpty());
+
+			SearchTerms keyword = new SearchTerms(new String[] {"item"});
+			assertEquals(db.search(keyword), db.view(keyword));
+
+			SearchTerms nextWeek = new SearchTerms(false, true, false, false, false,
+					new DateTime(), new DateTime().plusDays(7));
+			assertEquals(db.search(nextWeek), db.view(nextWeek));
+
+			//A view keeps showing the tasks it was made from
+			Task first = view.get(0);
+			db.delete(first.getSerial());
+			assertEquals(first, view.get(0));
+			assertEquals(expected.size() - 1, db.view(doneOnly).size());
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		}
+
+		try {
+			db.viewAll().set(0, new Task("not allowed"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
 	@Test
 	public void testSearch() {
 		try {
@@ -6,7 +6,7 @@ package test.storage;
  * This test does not have complete branch coverage as some aspects 
  * 	like file locking cannot be simulated in the test.
  * 
- * Warning1: Database file will be cleared during and after the test
+ * Warning1: Database files are kept in a temporary directory of their own, so the database file in use is not touched
  * Warning2: If the read-only test fails, the database file attributes/permissions may remain at read only in the File System.
  * Subsequent tests may fail till you change it back.
  * @author  Yeo Kheng Meng
@@ -20,8 +20,11 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.zip.DataFormatException;
 
 import org.joda.time.DateTime;
 import org.junit.After;
@@ -87,7 +90,8 @@ public class FileManagementTest {
 	List<Task> shortListing;
 	List<Task> initialClearListing;
 
-	FileManagement fileMgmt = FileManagement.getInstance();
+	File directory;
+	FileManagement fileMgmt;
 
 
 	@Before
@@ -126,6 +130,9 @@ public class FileManagementTest {
 
 		//To ensure the database file is blank
 		try {
+			directory = Files.createTempDirectory("filemanagement").toFile();
+			fileMgmt = FileManagement.inDirectory(directory);
+
 			BufferedWriter writeFile = new BufferedWriter(new FileWriter(fileMgmt.filename));
 			writeFile.close();
 		} catch (IOException e) {
@@ -140,6 +147,11 @@ public class FileManagementTest {
 	@After
 	public void runAfterEveryTest() {
 		fileMgmt.closeFile();
+
+		for (File leftBehind : directory.listFiles()) {
+			leftBehind.delete();
+		}
+		directory.delete();
 	}
 
 
@@ -190,6 +202,98 @@ public class FileManagementTest {
 
 	}
 
+	@Test
+	public void journalReplayTest() {
+		FileManagement.journalOn = true;
+
+		try {
+			fileMgmt.prepareDatabaseFile();
+			assertTrue(fileMgmt.isJournalEnabled());
+
+			fileMgmt.writeDataBaseToFile(shortListing);
+
+			List<Task> removed = new ArrayList<Task>();
+			removed.add(nameDeadline);
+			List<Task> added = new ArrayList<Task>();
+			added.add(nameTrue);
+			added.add(nameTimed);
+			fileMgmt.writeChangesToJournal(removed, added);
+			fileMgmt.closeFile();
+
+			//Journal must be replayed on top of the checkpoint on the next launch
+			fileMgmt.prepareDatabaseFile();
+			initialClearListing = fileMgmt.readFileAndDetectCorruption();
+			assertEquals(FileManagement.FileStatus.FILE_ALL_OK, fileMgmt.getFileAttributes());
+
+			List<Task> expected = new ArrayList<Task>();
+			expected.add(nameTimedFalse);
+			expected.add(nameTrue);
+			expected.add(nameTimed);
+			Collections.sort(expected);
+
+			assertEquals(expected.size(), initialClearListing.size());
+			for(int i = 0; i < expected.size(); i++){
+				assertEquals(expected.get(i).showInfo(), initialClearListing.get(i).showInfo());
+			}
+
+			//A full write folds the journal into the checkpoint
+			fileMgmt.writeDataBaseToFile(shortListing);
+			fileMgmt.closeFile();
+			fileMgmt.prepareDatabaseFile();
+			initialClearListing = fileMgmt.readFileAndDetectCorruption();
+			assertEquals(shortListing.size(), initialClearListing.size());
+
+		} catch (IOException | WillNotWriteToCorruptFileException e) {
+			fail();
+		} finally {
+			fileMgmt.closeFile();
+			FileManagement.journalOn = false;
+			new File(fileMgmt.journalFilename).delete();
+		}
+	}
+
+	@Test
+	public void binaryFormatTest() {
+		File textFile = new File(fileMgmt.filename);
+		File binaryFile = new File(fileMgmt.binaryFilename);
+
+		try {
+			fileMgmt.prepareDatabaseFile();
+			fileMgmt.writeDataBaseToFile(filledListing);
+			fileMgmt.closeFile();
+
+			//Existing text database is converted on first launch in binary mode
+			FileManagement.binaryOn = true;
+			fileMgmt.prepareDatabaseFile();
+			initialClearListing = fileMgmt.readFileAndDetectCorruption();
+			assertEquals(FileManagement.FileStatus.FILE_ALL_OK, fileMgmt.getFileAttributes());
+			assertEquals(filledListing.size(), initialClearListing.size());
+
+			fileMgmt.writeDataBaseToFile(shortListing);
+			fileMgmt.closeFile();
+
+			//Converting back to text must give the same tasks
+			textFile.delete();
+			fileMgmt.convertToText(binaryFile, textFile);
+			FileManagement.binaryOn = false;
+			fileMgmt.prepareDatabaseFile();
+			initialClearListing = fileMgmt.readFileAndDetectCorruption();
+			assertEquals(FileManagement.FileStatus.FILE_ALL_OK, fileMgmt.getFileAttributes());
+
+			assertEquals(shortListing.size(), initialClearListing.size());
+			for(int i = 0; i < shortListing.size(); i++){
+				assertEquals(shortListing.get(i).showInfo(), initialClearListing.get(i).showInfo());
+			}
+
+		} catch (IOException | WillNotWriteToCorruptFileException | DataFormatException e) {
+			fail();
+		} finally {
+			fileMgmt.closeFile();
+			FileManagement.binaryOn = false;
+			binaryFile.delete();
+		}
+	}
+
 	@Test
 	public void corruptTest() {
 
@@ -0,0 +1,255 @@
+//@author A0081007U
+package test.storage;
+/**
+ * JournalCompactionTest.java
+ * A Junit4 test for folding the journal into the database file.
+ * Compaction runs in the background, so the tests wait for the journal file to shrink.
+ *
+ * The database and journal files are kept in a temporary directory of their own,
+ * so the database file in use is not touched.
+ * @author  Yeo Kheng Meng
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.shared.Task;
+import main.storage.FileManagement;
+import main.storage.WillNotWriteToCorruptFileException;
+
+public class JournalCompactionTest {
+
+	// Limits of JournalCompactor
+	private static final int COMPACT_AFTER_BATCHES = 500;
+	private static final long COMPACT_AFTER_BYTES = 256 * 1024;
+
+	private static final int LONG_NAME_LENGTH = 2000;
+	private static final long COMPACTION_TIMEOUT = 10000;
+	private static final long POLL_INTERVAL = 20;
+	private static final long SETTLE_TIME = 300;
+
+	private static final Pattern JOURNAL_OFFSET = Pattern.compile("#Journal Offset: (\\d+)");
+
+	private static final List<Task> NO_TASKS = Collections.emptyList();
+
+	File directory;
+	FileManagement fileMgmt;
+	File databaseFile;
+	File journalFile;
+
+	@Before
+	public void runBeforeEveryTest() throws IOException {
+		//Every test starts with a blank database file and no journal
+		directory = Files.createTempDirectory("journalcompaction").toFile();
+		fileMgmt = FileManagement.inDirectory(directory);
+		databaseFile = new File(fileMgmt.filename);
+		journalFile = new File(fileMgmt.journalFilename);
+
+		new FileOutputStream(databaseFile).close();
+		FileManagement.journalOn = true;
+	}
+
+	@After
+	public void runAfterEveryTest() {
+		fileMgmt.closeFile();
+		FileManagement.journalOn = false;
+
+		for (File leftBehind : directory.listFiles()) {
+			leftBehind.delete();
+		}
+		directory.delete();
+	}
+
+	private void startAfresh() throws IOException, WillNotWriteToCorruptFileException {
+		fileMgmt.prepareDatabaseFile();
+		fileMgmt.readFileAndDetectCorruption();
+		fileMgmt.writeDataBaseToFile(new ArrayList<Task>());
+	}
+
+	private List<Task> restart() {
+		fileMgmt.closeFile();
+		fileMgmt.prepareDatabaseFile();
+		List<Task> tasksRead = fileMgmt.readFileAndDetectCorruption();
+		assertEquals(FileManagement.FileStatus.FILE_ALL_OK, fileMgmt.getFileAttributes());
+		return tasksRead;
+	}
+
+	private void add(Task toAdd) throws IOException, WillNotWriteToCorruptFileException {
+		fileMgmt.writeChangesToJournal(NO_TASKS, Arrays.asList(toAdd));
+	}
+
+	private String longName(int number) {
+		StringBuilder name = new StringBuilder("long " + number + " ");
+		while (name.length() < LONG_NAME_LENGTH) {
+			name.append('x');
+		}
+		return name.toString();
+	}
+
+	// Waits for the background compaction to cut the journal below the given length
+	private boolean waitForJournalShorterThan(long length) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + COMPACTION_TIMEOUT;
+		while (System.currentTimeMillis() < giveUpAt) {
+			if (journalFile.length() < length) {
+				return true;
+			}
+			Thread.sleep(POLL_INTERVAL);
+		}
+		return false;
+	}
+
+	private long readJournalOffset() throws IOException {
+		String contents = new String(Files.readAllBytes(databaseFile.toPath()), "ISO-8859-1");
+		Matcher offset = JOURNAL_OFFSET.matcher(contents);
+		assertTrue(offset.find());
+		return Long.parseLong(offset.group(1));
+	}
+
+	@Test
+	public void compactAfterBatchesTest() throws Exception {
+		startAfresh();
+
+		for (int i = 1; i < COMPACT_AFTER_BATCHES; i++) {
+			add(new Task("batch " + i));
+		}
+
+		//One batch short of the limit nothing is compacted
+		long lengthBelowLimit = journalFile.length();
+		Thread.sleep(SETTLE_TIME);
+		assertEquals(lengthBelowLimit, journalFile.length());
+		assertTrue(lengthBelowLimit < COMPACT_AFTER_BYTES);
+
+		add(new Task("batch " + COMPACT_AFTER_BATCHES));
+		assertTrue(waitForJournalShorterThan(lengthBelowLimit / 10));
+
+		assertEquals(COMPACT_AFTER_BATCHES, fileMgmt.readFileAndDetectCorruption().size());
+		assertEquals(COMPACT_AFTER_BATCHES, restart().size());
+	}
+
+	@Test
+	public void compactionShrinksJournalTest() throws Exception {
+		startAfresh();
+
+		for (int i = 0; i < COMPACT_AFTER_BATCHES; i++) {
+			add(new Task("batch " + i));
+		}
+		long lengthBeforeCompaction = journalFile.length();
+		long databaseLengthBeforeCompaction = databaseFile.length();
+		assertTrue(waitForJournalShorterThan(lengthBeforeCompaction / 10));
+
+		//The batches moved from the journal into the database file that was swapped in
+		assertTrue(databaseFile.length() > databaseLengthBeforeCompaction);
+
+		//The new database file is locked again and still takes changes
+		assertTrue(fileMgmt.isHoldingFileLock());
+		add(new Task("after compaction"));
+		assertEquals(COMPACT_AFTER_BATCHES + 1, fileMgmt.readFileAndDetectCorruption().size());
+		assertEquals(COMPACT_AFTER_BATCHES + 1, restart().size());
+	}
+
+	@Test
+	public void compactAfterBytesTest() throws Exception {
+		startAfresh();
+
+		int batches = (int) (COMPACT_AFTER_BYTES / LONG_NAME_LENGTH) + 1;
+		assertTrue(batches < COMPACT_AFTER_BATCHES);
+
+		long longestJournal = 0;
+		for (int i = 0; i < batches; i++) {
+			add(new Task(longName(i)));
+			longestJournal = Math.max(longestJournal, journalFile.length());
+		}
+
+		//Far fewer batches than the limit, but the journal is large enough to be compacted
+		assertTrue(longestJournal >= COMPACT_AFTER_BYTES);
+		assertTrue(waitForJournalShorterThan(COMPACT_AFTER_BYTES / 10));
+
+		List<Task> tasksRead = restart();
+		assertEquals(batches, tasksRead.size());
+		assertEquals(LONG_NAME_LENGTH, tasksRead.get(0).getTaskName().length());
+	}
+
+	@Test
+	public void headersSurviveRestartTest() throws Exception {
+		startAfresh();
+
+		for (int i = 0; i < COMPACT_AFTER_BATCHES; i++) {
+			add(new Task("batch " + i));
+		}
+		long lengthBeforeCompaction = journalFile.length();
+		assertTrue(waitForJournalShorterThan(lengthBeforeCompaction / 10));
+
+		//The database file records how far into the journal it goes
+		long foldedOffset = readJournalOffset();
+		assertTrue(foldedOffset > 0);
+
+		add(new Task("after compaction 1"));
+		add(new Task("after compaction 2"));
+
+		//Only the batches after the offset are replayed on the next launch
+		List<Task> tasksRead = restart();
+		assertEquals(COMPACT_AFTER_BATCHES + 2, tasksRead.size());
+		assertEquals(foldedOffset, readJournalOffset());
+
+		//Changes journaled after the restart still line up with the offset
+		add(new Task("after restart"));
+		assertEquals(COMPACT_AFTER_BATCHES + 3, restart().size());
+	}
+
+	@Test
+	public void crashBeforeJournalTruncatedTest() throws Exception {
+		Task repeated = new Task("repeated");
+
+		startAfresh();
+
+		//Every batch is the same so the untruncated journal can be rebuilt from its first batches
+		long lengthBefore = 0;
+		for (int i = 1; i < COMPACT_AFTER_BATCHES; i++) {
+			lengthBefore = journalFile.length();
+			add(repeated);
+		}
+		long batchLength = journalFile.length() - lengthBefore;
+
+		fileMgmt.closeFile();
+		byte[] untruncated = Files.readAllBytes(journalFile.toPath());
+
+		fileMgmt.prepareDatabaseFile();
+		fileMgmt.readFileAndDetectCorruption();
+		add(repeated);
+		assertTrue(waitForJournalShorterThan(untruncated.length / 10));
+		fileMgmt.closeFile();
+
+		//Crash after the compacted database file is in place but before the journal is truncated
+		FileOutputStream crashedJournal = new FileOutputStream(journalFile);
+		try {
+			crashedJournal.write(untruncated);
+			crashedJournal.write(untruncated, (int) (untruncated.length - batchLength), (int) batchLength);
+		} finally {
+			crashedJournal.close();
+		}
+
+		//The batches already in the database file must not be applied a second time
+		List<Task> tasksRead = restart();
+		assertEquals(COMPACT_AFTER_BATCHES, tasksRead.size());
+
+		//The left over batches are cut from the journal by the next compaction
+		assertTrue(waitForJournalShorterThan(untruncated.length / 10));
+		assertEquals(COMPACT_AFTER_BATCHES, restart().size());
+	}
+
+}
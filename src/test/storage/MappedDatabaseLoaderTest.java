@@ -0,0 +1,218 @@
+//@author A0081007U
+package test.storage;
+/**
+ * MappedDatabaseLoaderTest.java
+ * A Junit4 test for the MappedDatabaseLoader class.
+ * The mapping window is made small so that ordinary sized files need several windows,
+ * and the parallel threshold is lowered so that they are parsed in parallel chunks.
+ * @author  Yeo Kheng Meng
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.shared.Task;
+import main.storage.MappedDatabaseLoader;
+
+public class MappedDatabaseLoaderTest {
+
+	private static final long SMALL_WINDOW = 4096;
+	private static final int LINES_OVER_SEVERAL_WINDOWS = 1000;
+	private static final int CORRUPT_LINE = 777;
+
+	// Smallest chunk MappedDatabaseLoader cuts a window into
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+	private static final int LINES_OVER_SEVERAL_CHUNKS = 5000;
+	private static final int CORRUPT_LINE_IN_LATER_CHUNK = 4321;
+
+	private static final String LINE_EMPTY_DATE = "----------------------";
+	private static final String LINE_DEADLINE_DATE = "21-Oct-2012 1729 +0800";
+	private static final String LINE_HEADER = "#Journal Generation: 3";
+	private static final String LINE_CORRUPT = " 99 | D | - | 21-O12 1729 +0800 | " + LINE_EMPTY_DATE + " | event";
+
+	private long originalWindow;
+	private int originalThreshold;
+	private File databaseFile;
+
+	@Before
+	public void runBeforeEveryTest() throws IOException {
+		originalWindow = MappedDatabaseLoader.mappingWindow;
+		originalThreshold = MappedDatabaseLoader.parallelThreshold;
+		databaseFile = File.createTempFile("mapped", ".txt");
+	}
+
+	@After
+	public void runAfterEveryTest() {
+		MappedDatabaseLoader.mappingWindow = originalWindow;
+		MappedDatabaseLoader.parallelThreshold = originalThreshold;
+		databaseFile.delete();
+	}
+
+	// Lines alternate between floating and deadline tasks and differ in length
+	private String taskLine(int number) {
+		String name = "task " + number + (number % 3 == 0 ? " with a longer name" : "");
+
+		if (number % 2 == 0) {
+			return String.format("%3d | F | - | %s | %s | %s", number, LINE_EMPTY_DATE, LINE_EMPTY_DATE, name);
+		}
+		return String.format("%3d | D | * | %s | %s | %s", number, LINE_DEADLINE_DATE, LINE_EMPTY_DATE, name);
+	}
+
+	private byte[] writeLines(String[] lines) throws IOException {
+		StringBuilder contents = new StringBuilder();
+		for (String line : lines) {
+			contents.append(line + "\n");
+		}
+
+		byte[] bytes = contents.toString().getBytes(StandardCharsets.ISO_8859_1);
+		FileOutputStream output = new FileOutputStream(databaseFile);
+		try {
+			output.write(bytes);
+		} finally {
+			output.close();
+		}
+		return bytes;
+	}
+
+	// Line 1 is a header line, tasks follow from line 2
+	private String[] taskFile(int taskCount) {
+		String[] lines = new String[taskCount + 1];
+		lines[0] = LINE_HEADER;
+		for (int i = 1; i <= taskCount; i++) {
+			lines[i] = taskLine(i);
+		}
+		return lines;
+	}
+
+	private List<Task> load() throws IOException, DataFormatException {
+		RandomAccessFile access = new RandomAccessFile(databaseFile, "r");
+		try {
+			return new MappedDatabaseLoader().load(access.getChannel());
+		} finally {
+			access.close();
+		}
+	}
+
+	@Test
+	public void largerThanOneWindowTest() throws Exception {
+		MappedDatabaseLoader.mappingWindow = SMALL_WINDOW;
+		writeLines(taskFile(LINES_OVER_SEVERAL_WINDOWS));
+		assertTrue(databaseFile.length() > 10 * SMALL_WINDOW);
+
+		List<Task> tasksRead = load();
+
+		//No line is lost or read twice where one window ends and the next starts
+		assertEquals(LINES_OVER_SEVERAL_WINDOWS, tasksRead.size());
+		for (int i = 1; i <= LINES_OVER_SEVERAL_WINDOWS; i++) {
+			Task task = tasksRead.get(i - 1);
+			assertTrue(task.getTaskName().startsWith("task " + i));
+			assertEquals(i % 2 != 0, task.isDone());
+		}
+	}
+
+	@Test
+	public void emptyFileTest() throws Exception {
+		assertEquals(0, databaseFile.length());
+		assertEquals(0, load().size());
+
+		MappedDatabaseLoader.mappingWindow = SMALL_WINDOW;
+		assertEquals(0, load().size());
+	}
+
+	@Test
+	public void corruptLineNumberTest() throws Exception {
+		String[] lines = taskFile(LINES_OVER_SEVERAL_WINDOWS);
+		lines[CORRUPT_LINE - 1] = LINE_CORRUPT;
+		writeLines(lines);
+
+		//Reported the same whether the line is in the first window or a later one
+		for (long window : new long[] {originalWindow, SMALL_WINDOW}) {
+			MappedDatabaseLoader.mappingWindow = window;
+
+			try {
+				load();
+				fail();
+			} catch (DataFormatException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Line " + CORRUPT_LINE + ":"));
+			}
+		}
+	}
+
+	@Test
+	public void lineLongerThanWindowTest() throws Exception {
+		MappedDatabaseLoader.mappingWindow = SMALL_WINDOW;
+
+		StringBuilder longName = new StringBuilder();
+		while (longName.length() < 2 * SMALL_WINDOW) {
+			longName.append('x');
+		}
+		writeLines(new String[] {taskLine(1), taskLine(2) + longName});
+
+		try {
+			load();
+			fail();
+		} catch (DataFormatException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2:"));
+		}
+	}
+
+	@Test
+	public void parallelSameAsSequentialTest() throws Exception {
+		byte[] contents = writeLines(taskFile(LINES_OVER_SEVERAL_CHUNKS));
+
+		//The first chunk would end in the middle of a line and has to be moved to the line end
+		assertTrue(contents.length > 4 * MIN_CHUNK_SIZE);
+		assertTrue(contents[MIN_CHUNK_SIZE - 1] != '\n');
+
+		MappedDatabaseLoader.parallelThreshold = Integer.MAX_VALUE;
+		List<Task> sequential = load();
+
+		MappedDatabaseLoader.parallelThreshold = 1;
+		List<Task> parallel = load();
+
+		assertEquals(LINES_OVER_SEVERAL_CHUNKS, sequential.size());
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).showInfo(), parallel.get(i).showInfo());
+		}
+
+		//Also in parallel across several windows
+		MappedDatabaseLoader.mappingWindow = 3 * MIN_CHUNK_SIZE;
+		parallel = load();
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).showInfo(), parallel.get(i).showInfo());
+		}
+	}
+
+	@Test
+	public void parallelCorruptLineNumberTest() throws Exception {
+		String[] lines = taskFile(LINES_OVER_SEVERAL_CHUNKS);
+		lines[CORRUPT_LINE_IN_LATER_CHUNK - 1] = LINE_CORRUPT;
+		writeLines(lines);
+
+		//Line numbers of the chunks before it are added up in file order
+		MappedDatabaseLoader.parallelThreshold = 1;
+
+		try {
+			load();
+			fail();
+		} catch (DataFormatException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Line " + CORRUPT_LINE_IN_LATER_CHUNK + ":"));
+		}
+	}
+
+}
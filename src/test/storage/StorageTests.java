@@ -5,7 +5,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ DatabaseTest.class})
+@SuiteClasses({ DatabaseTest.class, FileManagementTest.class, WriteBehindQueueTest.class, JournalCompactionTest.class, MappedDatabaseLoaderTest.class})
 public class StorageTests {
 
 }
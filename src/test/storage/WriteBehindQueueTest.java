@@ -0,0 +1,176 @@
+//@author A0081007U
+package test.storage;
+/**
+ * WriteBehindQueueTest.java
+ * A Junit4 test for the WriteBehindQueue class.
+ * A fake writer records the windows instead of writing them to disk.
+ * @author  Yeo Kheng Meng
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.shared.Task;
+import main.storage.WillNotWriteToCorruptFileException;
+import main.storage.WriteBehindQueue;
+import main.storage.WriteBehindQueue.PendingWrite;
+
+public class WriteBehindQueueTest {
+
+	// Long enough that only a flush or shutdown ends a window in these tests
+	private static final long LONG_DELAY = 10000;
+	private static final long SHORT_DELAY = 0;
+	private static final long FAILURE_TIMEOUT = 5000;
+
+	private static final List<Task> NO_TASKS = Collections.emptyList();
+
+	private class RecordingWriter implements WriteBehindQueue.WindowWriter {
+		List<List<PendingWrite>> windows = new ArrayList<List<PendingWrite>>();
+		int failuresLeft = 0;
+
+		@Override
+		public synchronized void writeWindow(List<PendingWrite> window) throws IOException,
+		WillNotWriteToCorruptFileException {
+			if (failuresLeft > 0) {
+				failuresLeft--;
+				throw new IOException("Disk full");
+			}
+			windows.add(new ArrayList<PendingWrite>(window));
+		}
+
+		synchronized List<PendingWrite> allWrites() {
+			List<PendingWrite> all = new ArrayList<PendingWrite>();
+			for (List<PendingWrite> window : windows) {
+				all.addAll(window);
+			}
+			return all;
+		}
+	}
+
+	private List<Task> tasksNamed(String name) {
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(new Task(name));
+		return tasks;
+	}
+
+	@Test
+	public void batchingAndOrderTest() throws IOException {
+		RecordingWriter writer = new RecordingWriter();
+		WriteBehindQueue queue = new WriteBehindQueue(writer, LONG_DELAY);
+
+		queue.enqueueChange(NO_TASKS, tasksNamed("first"));
+		queue.enqueueChange(NO_TASKS, tasksNamed("second"));
+		queue.enqueueSnapshot(tasksNamed("snapshot"));
+		queue.enqueueChange(tasksNamed("first"), tasksNamed("third"));
+		queue.flush();
+
+		//Everything accepted within the delay is written as one window
+		assertEquals(1, writer.windows.size());
+
+		List<PendingWrite> written = writer.allWrites();
+		assertEquals(4, written.size());
+		assertEquals("first", written.get(0).getAdded().get(0).getTaskName());
+		assertEquals("second", written.get(1).getAdded().get(0).getTaskName());
+		assertTrue(written.get(2).isSnapshot());
+		assertEquals("snapshot", written.get(2).getSnapshot().get(0).getTaskName());
+		assertFalse(written.get(3).isSnapshot());
+		assertEquals("first", written.get(3).getRemoved().get(0).getTaskName());
+		assertEquals("third", written.get(3).getAdded().get(0).getTaskName());
+
+		//Later writes go into a new window after the earlier ones
+		queue.enqueueChange(NO_TASKS, tasksNamed("fourth"));
+		queue.flush();
+
+		assertEquals(2, writer.windows.size());
+		assertEquals("fourth", writer.allWrites().get(4).getAdded().get(0).getTaskName());
+
+		queue.shutdown();
+	}
+
+	@Test
+	public void failureReportedToNextCallerTest() {
+		RecordingWriter writer = new RecordingWriter();
+		writer.failuresLeft = 1;
+		WriteBehindQueue queue = new WriteBehindQueue(writer, SHORT_DELAY);
+
+		queue.enqueueChange(NO_TASKS, tasksNamed("lost"));
+
+		//The writer fails in the background, the next caller is told about it
+		boolean isFailureReported = false;
+		long giveUpAt = System.currentTimeMillis() + FAILURE_TIMEOUT;
+		while (!isFailureReported && System.currentTimeMillis() < giveUpAt) {
+			try {
+				queue.throwWriteFailure();
+				Thread.yield();
+			} catch (IOException e) {
+				isFailureReported = true;
+			}
+		}
+		assertTrue(isFailureReported);
+
+		//The failure is only reported once and later writes still go through
+		try {
+			queue.throwWriteFailure();
+			queue.enqueueChange(NO_TASKS, tasksNamed("kept"));
+			queue.flush();
+		} catch (IOException e) {
+			fail();
+		}
+
+		List<PendingWrite> written = writer.allWrites();
+		assertEquals(1, written.size());
+		assertEquals("kept", written.get(0).getAdded().get(0).getTaskName());
+
+		queue.shutdown();
+	}
+
+	@Test
+	public void failureReportedByFlushTest() {
+		RecordingWriter writer = new RecordingWriter();
+		writer.failuresLeft = 1;
+		WriteBehindQueue queue = new WriteBehindQueue(writer, LONG_DELAY);
+
+		queue.enqueueSnapshot(tasksNamed("lost"));
+
+		try {
+			queue.flush();
+			fail();
+		} catch (IOException e) {
+		}
+
+		queue.shutdown();
+	}
+
+	@Test
+	public void shutdownFlushesPendingWritesTest() {
+		RecordingWriter writer = new RecordingWriter();
+		WriteBehindQueue queue = new WriteBehindQueue(writer, LONG_DELAY);
+
+		queue.enqueueChange(NO_TASKS, tasksNamed("first"));
+		queue.enqueueChange(NO_TASKS, tasksNamed("second"));
+		queue.enqueueChange(NO_TASKS, tasksNamed("third"));
+
+		//Shutting down must not wait out the delay or drop anything queued
+		queue.shutdown();
+
+		List<PendingWrite> written = writer.allWrites();
+		assertEquals(3, written.size());
+		assertEquals("third", written.get(2).getAdded().get(0).getTaskName());
+
+		try {
+			queue.enqueueChange(NO_TASKS, tasksNamed("too late"));
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+}